@@ -13,17 +13,32 @@
 import org.bouncycastle.util.BigIntegers;
 
 /**
- * this does your basic RSA algorithm with blinding
+ * this does your basic RSA algorithm with blinding.
+ * <p>
+ * The blinding pair (r^e, r^-1) is kept between private key operations with the same key and updated by squaring,
+ * with a fresh r drawn from the random source every {@link #BLINDING_REFRESH} operations, so most operations only
+ * pay for two modular squarings rather than an exponentiation and an inversion.
+ * </p>
  */
 public class RSABlindedEngine
     implements AsymmetricBlockCipher
 {
     private static final BigInteger ONE = BigInteger.valueOf(1);
 
+    /**
+     * The number of private key operations a blinding pair is updated for before a new one is generated.
+     */
+    public static final int BLINDING_REFRESH = 32;
+
     private RSACoreEngine    core = new RSACoreEngine();
     private RSAKeyParameters key;
     private SecureRandom     random;
 
+    private RSAKeyParameters blindingKey;
+    private BigInteger       blind;
+    private BigInteger       unblind;
+    private int              blindingUses;
+
     /**
      * initialise the RSA engine.
      *
@@ -64,6 +79,11 @@ public void init(
                 this.random = null;
             }
         }
+
+        if (key != blindingKey)
+        {
+            resetBlinding();
+        }
     }
 
     /**
@@ -120,16 +140,17 @@ public byte[] processBlock(
             if (e != null)   // can't do blinding without a public exponent
             {
                 BigInteger m = k.getModulus();
-                BigInteger r = BigIntegers.createRandomInRange(ONE, m.subtract(ONE), random);
 
-                BigInteger blindedInput = r.modPow(e, m).multiply(input).mod(m);
+                nextBlinding(m, e);
+
+                BigInteger blindedInput = blind.multiply(input).mod(m);
                 BigInteger blindedResult = core.processBlock(blindedInput);
 
-                BigInteger rInv = BigIntegers.modOddInverse(m, r);
-                result = blindedResult.multiply(rInv).mod(m);
+                result = blindedResult.multiply(unblind).mod(m);
                 // defence against Arjen Lenstra’s CRT attack
                 if (!input.equals(result.modPow(e, m)))
                 {
+                    resetBlinding();
                     throw new IllegalStateException("RSA engine faulty decryption/signing detected");
                 }
             }
@@ -145,4 +166,36 @@ public byte[] processBlock(
 
         return core.convertOutput(result);
     }
+
+    /**
+     * Move on to the next blinding pair, either by squaring the current one or by generating a new one.
+     */
+    private void nextBlinding(BigInteger m, BigInteger e)
+    {
+        if (blind == null || blindingUses >= BLINDING_REFRESH)
+        {
+            BigInteger r = BigIntegers.createRandomInRange(ONE, m.subtract(ONE), random);
+
+            blind = r.modPow(e, m);
+            unblind = BigIntegers.modOddInverse(m, r);
+            blindingKey = key;
+            blindingUses = 0;
+        }
+        else
+        {
+            // (r^e)^2 = (r^2)^e, (r^-1)^2 = (r^2)^-1
+            blind = blind.multiply(blind).mod(m);
+            unblind = unblind.multiply(unblind).mod(m);
+        }
+
+        blindingUses++;
+    }
+
+    private void resetBlinding()
+    {
+        blindingKey = null;
+        blind = null;
+        unblind = null;
+        blindingUses = 0;
+    }
 }
@@ -2,6 +2,7 @@
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.concurrent.Executor;
 
 import org.bouncycastle.crypto.params.DHParameters;
 
@@ -10,6 +11,8 @@
     private int             size;
     private int             certainty;
     private SecureRandom    random;
+    private Executor        executor;
+    private int             maxPending;
 
     private static final BigInteger TWO = BigInteger.valueOf(2);
 
@@ -30,6 +33,28 @@ public void init(
         this.random = random;
     }
 
+    /**
+     * Set an executor to test safe prime candidates on. Candidates are drawn from the random source on the calling
+     * thread and the first, in the order drawn, to pass is used, so the parameters generated from a given random
+     * source depend on maxPending but not on the executor or how the tests are scheduled.
+     *
+     * @param executor the executor to test candidates on, null to test them on the calling thread.
+     * @param maxPending the maximum number of candidates being tested at once.
+     * @return the current generator.
+     */
+    public DHParametersGenerator setExecutor(Executor executor, int maxPending)
+    {
+        if (executor != null && maxPending < 1)
+        {
+            throw new IllegalArgumentException("maxPending must be positive");
+        }
+
+        this.executor = executor;
+        this.maxPending = maxPending;
+
+        return this;
+    }
+
     /**
      * which generates the p and g values from the given parameters,
      * returning the DHParameters object.
@@ -42,7 +67,9 @@ public DHParameters generateParameters()
         //
         // find a safe prime p where p = 2*q + 1, where p and q are prime.
         //
-        BigInteger[] safePrimes = DHParametersHelper.generateSafePrimes(size, certainty, random);
+        BigInteger[] safePrimes = (executor == null)
+            ? DHParametersHelper.generateSafePrimes(size, certainty, random)
+            : DHParametersHelper.generateSafePrimes(size, certainty, random, executor, maxPending);
 
         BigInteger p = safePrimes[0];
         BigInteger q = safePrimes[1];
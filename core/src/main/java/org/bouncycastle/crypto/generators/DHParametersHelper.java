@@ -2,7 +2,10 @@
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
+import org.bouncycastle.math.Primes;
 import org.bouncycastle.math.ec.WNafUtil;
 import org.bouncycastle.util.BigIntegers;
 
@@ -56,6 +59,68 @@ static BigInteger[] generateSafePrimes(int size, int certainty, SecureRandom ran
         return new BigInteger[] { p, q };
     }
 
+    /*
+     * As generateSafePrimes(), but with the candidates tested on an executor. Candidates are drawn in order from
+     * random and the first to pass is used, so the result does not depend on how the tests are scheduled.
+     */
+    static BigInteger[] generateSafePrimes(final int size, final int certainty, final SecureRandom random,
+        Executor executor, int maxPending)
+    {
+        final int qLength = size - 1;
+        final int minWeight = size >>> 2;
+
+        ParallelCandidateSearch.Source<BigInteger[]> candidates = new ParallelCandidateSearch.Source<BigInteger[]>()
+        {
+            public Callable<BigInteger[]> next()
+            {
+                // each q is a fresh random value, those where q or p has small factors are discarded here rather
+                // than stepped past so every candidate is drawn independently.
+                BigInteger candidate;
+                do
+                {
+                    candidate = BigIntegers.createRandomBigInteger(qLength, random).setBit(qLength - 1).setBit(0);
+                }
+                while (qLength > 8
+                    && (Primes.hasAnySmallFactors(candidate) || Primes.hasAnySmallFactors(candidate.shiftLeft(1).add(ONE))));
+
+                final BigInteger q = candidate;
+                final BigInteger p = q.shiftLeft(1).add(ONE);
+
+                return new Callable<BigInteger[]>()
+                {
+                    public BigInteger[] call()
+                    {
+                        if (!q.isProbablePrime(2) || !p.isProbablePrime(certainty))
+                        {
+                            return null;
+                        }
+
+                        if (certainty > 2 && !q.isProbablePrime(certainty - 2))
+                        {
+                            return null;
+                        }
+
+                        if (WNafUtil.getNafWeight(p) < minWeight)
+                        {
+                            return null;
+                        }
+
+                        return new BigInteger[] { p, q };
+                    }
+                };
+            }
+        };
+
+        BigInteger[] safePrimes;
+        do
+        {
+            safePrimes = ParallelCandidateSearch.search(candidates, Integer.MAX_VALUE, executor, maxPending);
+        }
+        while (safePrimes == null);
+
+        return safePrimes;
+    }
+
     /*
      * Select a high order element of the multiplicative group Zp*
      * 
@@ -0,0 +1,105 @@
+package org.bouncycastle.crypto.generators;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A search over randomly drawn candidates with the tests run on an executor. Candidates are drawn on the calling
+ * thread, in order, and up to maxPending of them are tested at once. The result is the first candidate in the
+ * order drawn which passes its test, and the next candidate is only drawn once an earlier one has failed, so for a
+ * given random source and maxPending the result, and how much of the random source is used, does not depend on
+ * how the tests happen to be scheduled.
+ */
+class ParallelCandidateSearch
+{
+    /**
+     * A source of candidates.
+     */
+    interface Source<T>
+    {
+        /**
+         * Draw the next candidate, returning a test for it.
+         *
+         * @return a test returning the accepted value, or null if the candidate fails.
+         */
+        Callable<T> next();
+    }
+
+    /**
+     * Search for a candidate passing its test.
+     *
+     * @param source the source of candidates.
+     * @param maxCandidates the maximum number of candidates to draw.
+     * @param executor the executor to run the tests on.
+     * @param maxPending the maximum number of tests running at once.
+     * @return the first passing candidate, null if none of maxCandidates passed.
+     */
+    static <T> T search(Source<T> source, int maxCandidates, Executor executor, int maxPending)
+    {
+        LinkedList<FutureTask<T>> pending = new LinkedList<FutureTask<T>>();
+        int drawn = 0;
+
+        try
+        {
+            for (;;)
+            {
+                while (drawn < maxCandidates && pending.size() < maxPending)
+                {
+                    FutureTask<T> task = new FutureTask<T>(source.next());
+
+                    drawn++;
+                    pending.addLast(task);
+
+                    try
+                    {
+                        executor.execute(task);
+                    }
+                    catch (RejectedExecutionException e)
+                    {
+                        task.run();
+                    }
+                }
+
+                if (pending.isEmpty())
+                {
+                    return null;
+                }
+
+                T result = pending.removeFirst().get();
+                if (result != null)
+                {
+                    return result;
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted during candidate search");
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error)cause;
+            }
+            throw new IllegalStateException("exception testing candidate: " + cause.getMessage());
+        }
+        finally
+        {
+            while (!pending.isEmpty())
+            {
+                pending.removeFirst().cancel(false);
+            }
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package org.bouncycastle.crypto.generators;
 
 import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
 import org.bouncycastle.crypto.AsymmetricCipherKeyPairGenerator;
@@ -23,8 +26,11 @@
     implements AsymmetricCipherKeyPairGenerator
 {
     private static final BigInteger ONE = BigInteger.valueOf(1);
+    private static final BigInteger TWO = BigInteger.valueOf(2);
 
     private RSAKeyGenerationParameters param;
+    private Executor executor;
+    private int maxPending;
 
     public void init(KeyGenerationParameters param)
     {
@@ -33,6 +39,28 @@ public void init(KeyGenerationParameters param)
         CryptoServicesRegistrar.checkConstraints(new DefaultServiceProperties("RSAKeyGen", ConstraintUtils.bitsOfSecurityForFF(param.getStrength()), null, CryptoServicePurpose.KEYGEN));
     }
 
+    /**
+     * Set an executor to test prime candidates on. Candidates are drawn from the random source on the calling thread
+     * and the first, in the order drawn, to pass is used, so the key generated from a given random source depends
+     * on maxPending but not on the executor or how the tests are scheduled.
+     *
+     * @param executor the executor to test candidates on, null to test them on the calling thread.
+     * @param maxPending the maximum number of candidates being tested at once.
+     * @return the current generator.
+     */
+    public RSAKeyPairGenerator setExecutor(Executor executor, int maxPending)
+    {
+        if (executor != null && maxPending < 1)
+        {
+            throw new IllegalArgumentException("maxPending must be positive");
+        }
+
+        this.executor = executor;
+        this.maxPending = maxPending;
+
+        return this;
+    }
+
     public AsymmetricCipherKeyPair generateKeyPair()
     {
         AsymmetricCipherKeyPair result = null;
@@ -164,6 +192,19 @@ public AsymmetricCipherKeyPair generateKeyPair()
      */
     protected BigInteger chooseRandomPrime(int bitlength, BigInteger e, BigInteger sqrdBound)
     {
+        if (executor != null)
+        {
+            BigInteger p = ParallelCandidateSearch.search(
+                new PrimeCandidates(bitlength, e, sqrdBound), 5 * bitlength, executor, maxPending);
+
+            if (p == null)
+            {
+                throw new IllegalStateException("unable to generate prime number for RSA key");
+            }
+
+            return p;
+        }
+
         for (int i = 0; i != 5 * bitlength; i++)
         {
             BigInteger p = BigIntegers.createRandomPrime(bitlength, 1, param.getRandom());
@@ -204,6 +245,79 @@ protected boolean isProbablePrime(BigInteger x)
         return !Primes.hasAnySmallFactors(x) && Primes.isMRProbablePrime(x, param.getRandom(), iterations);
     }
 
+    /**
+     * Candidates for chooseRandomPrime(), with the random values needed by the tests drawn up front.
+     */
+    private class PrimeCandidates
+        implements ParallelCandidateSearch.Source<BigInteger>
+    {
+        private final int bitlength;
+        private final BigInteger e;
+        private final BigInteger sqrdBound;
+        private final int iterations;
+
+        PrimeCandidates(int bitlength, BigInteger e, BigInteger sqrdBound)
+        {
+            this.bitlength = bitlength;
+            this.e = e;
+            this.sqrdBound = sqrdBound;
+            this.iterations = getNumberOfIterations(bitlength, param.getCertainty());
+        }
+
+        public Callable<BigInteger> next()
+        {
+            SecureRandom random = param.getRandom();
+
+            // each candidate is a fresh random value, those with small factors are discarded here rather than
+            // stepped past so every candidate is drawn independently.
+            BigInteger candidate;
+            do
+            {
+                candidate = BigIntegers.createRandomBigInteger(bitlength, random).setBit(bitlength - 1).setBit(0);
+            }
+            while (bitlength > 8 && Primes.hasAnySmallFactors(candidate));
+
+            final BigInteger p = candidate;
+
+            // any value below 2^(bitlength - 1) is a valid Miller-Rabin base for the candidate.
+            final BigInteger[] bases = new BigInteger[iterations];
+            for (int i = 0; i != bases.length; i++)
+            {
+                do
+                {
+                    bases[i] = BigIntegers.createRandomBigInteger(bitlength - 1, random);
+                }
+                while (bases[i].compareTo(TWO) < 0);
+            }
+
+            return new Callable<BigInteger>()
+            {
+                public BigInteger call()
+                {
+                    if (Primes.hasAnySmallFactors(p) || p.mod(e).equals(ONE) || p.multiply(p).compareTo(sqrdBound) < 0)
+                    {
+                        return null;
+                    }
+
+                    for (int i = 0; i != bases.length; i++)
+                    {
+                        if (!Primes.isMRProbablePrimeToBase(p, bases[i]))
+                        {
+                            return null;
+                        }
+                    }
+
+                    if (!e.gcd(p.subtract(ONE)).equals(ONE))
+                    {
+                        return null;
+                    }
+
+                    return p;
+                }
+            };
+        }
+    }
+
     private static int getNumberOfIterations(int bits, int certainty)
     {
         /*
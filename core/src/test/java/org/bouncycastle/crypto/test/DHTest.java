@@ -2,6 +2,9 @@
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
 import org.bouncycastle.crypto.agreement.DHAgreement;
@@ -300,6 +303,62 @@ private void testGeneration(
         }
     }
 
+    private void testParallelGeneration(int size)
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            Executor inline = new Executor()
+            {
+                public void execute(Runnable task)
+                {
+                    task.run();
+                }
+            };
+
+            DHParameters sequential = generateParameters(size, null, 4);
+            DHParameters threaded = generateParameters(size, executor, 4);
+            DHParameters inlined = generateParameters(size, inline, 4);
+
+            // the same random stream gives the same parameters however the candidates are tested.
+            if (!threaded.equals(inlined))
+            {
+                fail("parallel DH parameter generation not deterministic");
+            }
+
+            if (threaded.getP().bitLength() != size || !threaded.getP().isProbablePrime(50)
+                || !threaded.getQ().isProbablePrime(50)
+                || !threaded.getQ().shiftLeft(1).add(BigInteger.valueOf(1)).equals(threaded.getP()))
+            {
+                fail("parallel DH parameter generation produced bad safe prime");
+            }
+
+            if (sequential.getP().bitLength() != size)
+            {
+                fail("DH parameter generation produced bad prime");
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private DHParameters generateParameters(int size, Executor executor, int maxPending)
+        throws Exception
+    {
+        SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+        random.setSeed(Hex.decode("000102030405060708090a0b0c0d0e0f"));
+
+        DHParametersGenerator pGen = new DHParametersGenerator();
+
+        pGen.init(size, 20, random);
+        pGen.setExecutor(executor, maxPending);
+
+        return pGen.generateParameters();
+    }
+
     private void testBounds()
     {
          BigInteger p1 = new BigInteger("00C8028E9151C6B51BCDB35C1F6B2527986A72D8546AE7A4BF41DC4289FF9837EE01592D36C324A0F066149B8B940C86C87D194206A39038AE3396F8E12435BB74449B70222D117B8A2BB77CB0D67A5D664DDE7B75E0FEC13CE0CAF258DAF3ADA0773F6FF0F2051D1859929AAA53B07809E496B582A89C3D7DA8B6E38305626621", 16);
@@ -460,6 +519,15 @@ public void performTest()
         // generation test.
         //
         testGeneration(256);
+
+        try
+        {
+            testParallelGeneration(256);
+        }
+        catch (Exception e)
+        {
+            fail("parallel generation test failed: " + e.toString(), e);
+        }
         
         //
         // with random test
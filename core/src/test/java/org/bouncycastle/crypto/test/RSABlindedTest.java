@@ -192,6 +192,51 @@ private void testOAEP(RSAKeyParameters pubParameters, RSAKeyParameters privParam
         }
     }
 
+    private void testBlindingUpdate(RSAKeyParameters pubParameters, RSAKeyParameters privParameters)
+    {
+        RSABlindedEngine privEng = new RSABlindedEngine();
+        RSABlindedEngine pubEng = new RSABlindedEngine();
+        byte[] data = Hex.decode(input);
+
+        pubEng.init(true, pubParameters);
+
+        byte[] enc = pubEng.processBlock(data, 0, data.length);
+
+        // run through several refreshes of the blinding pair, re-initialising along the way.
+        for (int i = 0; i != 3 * RSABlindedEngine.BLINDING_REFRESH + 5; i++)
+        {
+            if (i % 20 == 0)
+            {
+                privEng.init(false, privParameters);
+            }
+
+            byte[] dec = privEng.processBlock(enc, 0, enc.length);
+
+            if (!input.equals(Hex.toHexString(dec)))
+            {
+                fail("failed blinding update test at " + i);
+            }
+        }
+
+        // a new key starts a new blinding pair.
+        RSAKeyPairGenerator pGen = new RSAKeyPairGenerator();
+        pGen.init(new RSAKeyGenerationParameters(BigInteger.valueOf(0x11), new SecureRandom(), 768, 25));
+
+        AsymmetricCipherKeyPair pair = pGen.generateKeyPair();
+
+        pubEng.init(true, pair.getPublic());
+        enc = pubEng.processBlock(data, 0, data.length);
+
+        privEng.init(false, pair.getPrivate());
+        for (int i = 0; i != 3; i++)
+        {
+            if (!input.equals(Hex.toHexString(privEng.processBlock(enc, 0, enc.length))))
+            {
+                fail("failed blinding update test with new key");
+            }
+        }
+    }
+
     public void performTest()
     {
         RSAKeyParameters    pubParameters = new RSAKeyParameters(false, mod, pubExp);
@@ -416,6 +461,7 @@ public void performTest()
         testMissingDataPKCS1Block(pubParameters, privParameters);
         testTruncatedPKCS1Block(pubParameters, privParameters);
         testWrongPaddingPKCS1Block(pubParameters, privParameters);
+        testBlindingUpdate(pubParameters, privParameters);
 
         try
         {
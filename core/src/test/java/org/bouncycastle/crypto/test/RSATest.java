@@ -2,6 +2,9 @@
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.bouncycastle.crypto.AsymmetricBlockCipher;
 import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
@@ -418,6 +421,68 @@ private void test_CVE_2017_15361()
         }
     }
 
+    private void testParallelKeyGeneration()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            Executor inline = new Executor()
+            {
+                public void execute(Runnable task)
+                {
+                    task.run();
+                }
+            };
+
+            RSAPrivateCrtKeyParameters threaded = generateKey(executor, 5);
+            RSAPrivateCrtKeyParameters inlined = generateKey(inline, 5);
+
+            // the same random stream gives the same key however the candidates are tested.
+            if (!threaded.getP().equals(inlined.getP()) || !threaded.getQ().equals(inlined.getQ()))
+            {
+                fail("parallel RSA key generation not deterministic");
+            }
+
+            if (threaded.getModulus().bitLength() != 1024
+                || !threaded.getP().multiply(threaded.getQ()).equals(threaded.getModulus())
+                || !threaded.getP().isProbablePrime(50) || !threaded.getQ().isProbablePrime(50))
+            {
+                fail("parallel RSA key generation produced bad key");
+            }
+
+            byte[] data = Hex.decode(input);
+            RSAEngine eng = new RSAEngine();
+
+            eng.init(true, new RSAKeyParameters(false, threaded.getModulus(), threaded.getPublicExponent()));
+            byte[] enc = eng.processBlock(data, 0, data.length);
+
+            eng.init(false, threaded);
+            if (!Arrays.areEqual(data, eng.processBlock(enc, 0, enc.length)))
+            {
+                fail("parallel RSA key generation key failed");
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private RSAPrivateCrtKeyParameters generateKey(Executor executor, int maxPending)
+        throws Exception
+    {
+        SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+        random.setSeed(Hex.decode("000102030405060708090a0b0c0d0e0f"));
+
+        RSAKeyPairGenerator pGen = new RSAKeyPairGenerator();
+
+        pGen.init(new RSAKeyGenerationParameters(BigInteger.valueOf(0x10001), random, 1024, 100));
+        pGen.setExecutor(executor, maxPending);
+
+        return (RSAPrivateCrtKeyParameters)pGen.generateKeyPair().getPrivate();
+    }
+
     public void performTest()
     {
         RSAKeyParameters pubParameters = new RSAKeyParameters(false, mod, pubExp);
@@ -699,6 +764,15 @@ public void performTest()
         test_CVE_2017_15361();
         testUnsafeModulusAndWrongExp();
 
+        try
+        {
+            testParallelKeyGeneration();
+        }
+        catch (Exception e)
+        {
+            fail("parallel key generation test failed: " + e.toString(), e);
+        }
+
         try
         {
             new RSAEngine().processBlock(new byte[]{1}, 0, 1);
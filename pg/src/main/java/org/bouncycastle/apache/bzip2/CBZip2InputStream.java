@@ -99,6 +99,8 @@
 
     private int expectedBlockCRC, expectedStreamCRC, streamCRC;
 
+    private boolean blockRandomised;
+
     int i2, count, chPrev, ch2;
     int i, tPos;
     int rNToGo = 0;
@@ -108,6 +110,16 @@
 
     public CBZip2InputStream(InputStream zStream)
         throws IOException
+    {
+        this(zStream, false);
+    }
+
+    /**
+     * Base constructor. A block reader only entropy decodes blocks, the rest of the decoding is left to the
+     * {@link CBZip2ParallelInputStream} calling {@link #nextBlock()}.
+     */
+    CBZip2InputStream(InputStream zStream, boolean blockReader)
+        throws IOException
     {
         ll8 = null;
         tt = null;
@@ -133,11 +145,15 @@ public CBZip2InputStream(InputStream zStream)
 
         int n = baseBlockSize * blockSize100k;
         ll8 = new byte[n];
-        tt = new int[n];
 
         streamCRC = 0;
 
-        beginBlock();
+        if (!blockReader)
+        {
+            tt = new int[n];
+
+            beginBlock();
+        }
     }
 
     public int read()
@@ -169,33 +185,38 @@ public int read()
         return result;
     }
 
-    private void beginBlock()
+    /**
+     * Read and entropy decode the next block for a {@link CBZip2ParallelInputStream}. The block takes over the
+     * current ll8 buffer. The stream CRC is accumulated from the block CRC as read, so the caller must check the
+     * block CRC when it completes the decoding.
+     *
+     * @return the next block, null if the end of the stream has been reached.
+     */
+    CBZip2ParallelInputStream.Block nextBlock()
         throws IOException
     {
-        long magic48 = bsGetLong48();
-        if (magic48 != 0x314159265359L)
+        if (streamEnd || !decodeBlock())
         {
-            if (magic48 != 0x177245385090L)
-            {
-                throw new IOException("Block header error");
-            }
+            return null;
+        }
 
-            expectedStreamCRC = bsGetInt32();
-            if (expectedStreamCRC != streamCRC)
-            {
-                throw new IOException("Stream CRC error");
-            }
+        CBZip2ParallelInputStream.Block block = new CBZip2ParallelInputStream.Block(
+            ll8, last, origPtr, Arrays.clone(unzftab), blockRandomised, expectedBlockCRC);
 
-            bsFinishedWithStream();
-            streamEnd = true;
-            return;
-        }
+        streamCRC = Integers.rotateLeft(streamCRC, 1) ^ expectedBlockCRC;
 
-        expectedBlockCRC = bsGetInt32();
+        ll8 = new byte[ll8.length];
 
-        boolean blockRandomised = bsGetBit() == 1;
+        return block;
+    }
 
-        getAndMoveToFrontDecode();
+    private void beginBlock()
+        throws IOException
+    {
+        if (!decodeBlock())
+        {
+            return;
+        }
 
         blockCRC.initialise();
 
@@ -238,6 +259,42 @@ private void beginBlock()
         }
     }
 
+    /**
+     * Read the next block header and entropy decode the block into ll8.
+     *
+     * @return true if a block was read, false if the end of the stream has been reached.
+     */
+    private boolean decodeBlock()
+        throws IOException
+    {
+        long magic48 = bsGetLong48();
+        if (magic48 != 0x314159265359L)
+        {
+            if (magic48 != 0x177245385090L)
+            {
+                throw new IOException("Block header error");
+            }
+
+            expectedStreamCRC = bsGetInt32();
+            if (expectedStreamCRC != streamCRC)
+            {
+                throw new IOException("Stream CRC error");
+            }
+
+            bsFinishedWithStream();
+            streamEnd = true;
+            return false;
+        }
+
+        expectedBlockCRC = bsGetInt32();
+
+        blockRandomised = bsGetBit() == 1;
+
+        getAndMoveToFrontDecode();
+
+        return true;
+    }
+
     private void endBlock()
         throws IOException
     {
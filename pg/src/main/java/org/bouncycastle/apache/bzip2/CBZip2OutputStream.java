@@ -267,7 +267,7 @@ protected static void hbMakeCodeLengths(byte[] len, int[] freq, int alphaSize, i
       always: in the range 0 .. 9.
       The current block size is 100000 * this number.
     */
-    private final int blockSize100k;
+    final int blockSize100k;
     private final int allowableBlockSize;
 
     boolean blockRandomised;
@@ -277,12 +277,12 @@ protected static void hbMakeCodeLengths(byte[] len, int[] freq, int alphaSize, i
     int bsLivePos;
     private final CRC blockCRC = new CRC();
 
-    private boolean[] inUse = new boolean[256];
+    boolean[] inUse = new boolean[256];
     private int nInUse;
 
     private byte[] selectors = new byte[MAX_SELECTORS];
 
-    private byte[] blockBytes;
+    byte[] blockBytes;
     private short[] quadrantShorts;
     private int[] zptr;
     private int[] szptr;
@@ -314,14 +314,27 @@ public CBZip2OutputStream(OutputStream outStream)
 
     public CBZip2OutputStream(OutputStream outStream, int blockSize)
         throws IOException
+    {
+        this(outStream, blockSize, true);
+    }
+
+    /**
+     * Base constructor. A stream created without a header is used as a block encoder by
+     * {@link CBZip2ParallelOutputStream}, it is handed the blocks to sort and encode.
+     */
+    CBZip2OutputStream(OutputStream outStream, int blockSize, boolean writeHeader)
+        throws IOException
     {
         blockBytes = null;
         quadrantShorts = null;
         zptr = null;
         ftab = null;
 
-        outStream.write('B');
-        outStream.write('Z');
+        if (writeHeader)
+        {
+            outStream.write('B');
+            outStream.write('Z');
+        }
 
         bsStream = outStream;
         bsBuff = 0;
@@ -341,28 +354,15 @@ else if (blockSize < 1)
         /* 20 is just a paranoia constant */
         allowableBlockSize = baseBlockSize * blockSize100k - 20;
 
-        int n = baseBlockSize * blockSize100k;
-        blockBytes = new byte[(n + 1 + NUM_OVERSHOOT_BYTES)];
-        quadrantShorts = new short[(n + 1 + NUM_OVERSHOOT_BYTES)];
-        zptr = new int[n];
-        ftab = new int[65537];
-
-        /*
-          The back end needs a place to store the MTF values
-          whilst it calculates the coding tables.  We could
-          put them in the zptr array.  However, these values
-          will fit in a short, so we overlay szptr at the
-          start of zptr, in the hope of reducing the number
-          of cache misses induced by the multiple traversals
-          of the MTF values when calculating coding tables.
-          Seems to improve compression speed by about 1%.
-        */
-        // NOTE: We can't "overlay" in Java, so we just share zptr
-        szptr = zptr;
+        if (writeHeader)
+        {
+            int n = baseBlockSize * blockSize100k;
+            blockBytes = new byte[(n + 1 + NUM_OVERSHOOT_BYTES)];
 
-        // Write `magic' bytes h indicating file-format == huffmanised, followed by a digit indicating blockSize100k
-        outStream.write('h');
-        outStream.write('0' + blockSize100k);
+            // Write `magic' bytes h indicating file-format == huffmanised, followed by a digit indicating blockSize100k
+            outStream.write('h');
+            outStream.write('0' + blockSize100k);
+        }
 
         streamCRC = 0;
 
@@ -509,6 +509,17 @@ private void endBlock()
         int blockFinalCRC = blockCRC.getFinal();
         streamCRC = Integers.rotateLeft(streamCRC, 1) ^ blockFinalCRC;
 
+        writeBlock(blockFinalCRC);
+    }
+
+    /**
+     * Sort and encode the current block, writing it to the underlying stream.
+     *
+     * @param blockFinalCRC the CRC of the data in the block.
+     */
+    void writeBlock(int blockFinalCRC)
+        throws IOException
+    {
         /* sort the block and establish posn of original string */
         doReversibleTransformation();
 
@@ -537,7 +548,7 @@ private void endBlock()
         moveToFrontCodeAndSend();
     }
 
-    private void endCompression()
+    void endCompression()
         throws IOException
     {
         /*
@@ -554,6 +565,60 @@ private void endCompression()
         bsFinishedWithStream();
     }
 
+    /**
+     * Encode a block filled by the front end of a {@link CBZip2ParallelOutputStream}, taking over the passed in
+     * arrays. The encoding is written to the underlying stream with the last byte padded out with zero bits.
+     *
+     * @return the number of bits used in the last byte written, 0 if it is fully used.
+     */
+    int encodeBlock(byte[] blockBytes, int count, boolean[] inUse, int blockFinalCRC)
+        throws IOException
+    {
+        this.blockBytes = blockBytes;
+        this.count = count;
+        this.inUse = inUse;
+
+        writeBlock(blockFinalCRC);
+
+        this.blockBytes = null;
+        this.inUse = null;
+
+        int lastBits = 32 - bsLivePos;
+
+        bsFinishedWithStream();
+
+        return lastBits;
+    }
+
+    /**
+     * Append an encoded block to the bit stream.
+     *
+     * @param encoding the encoded block, as written by {@link #encodeBlock(byte[], int, boolean[], int)}.
+     * @param lastBits the number of bits used in the last byte of encoding, 0 if it is fully used.
+     */
+    void bsPutEncodedBlock(byte[] encoding, int lastBits)
+        throws IOException
+    {
+        int fullBytes = (lastBits == 0) ? encoding.length : encoding.length - 1;
+
+        if (bsLivePos == 32)
+        {
+            bsStream.write(encoding, 0, fullBytes);
+        }
+        else
+        {
+            for (int i = 0; i < fullBytes; i++)
+            {
+                bsPutBitsSmall(8, encoding[i] & 0xFF);
+            }
+        }
+
+        if (lastBits != 0)
+        {
+            bsPutBitsSmall(lastBits, (encoding[fullBytes] & 0xFF) >>> (8 - lastBits));
+        }
+    }
+
     private void hbAssignCodes(int[] code, byte[] length, int minLen, int maxLen, int alphaSize)
     {
         int vec = 0;
@@ -1460,6 +1525,27 @@ private void randomiseBlock()
 
     private void doReversibleTransformation()
     {
+        if (zptr == null)
+        {
+            int n = baseBlockSize * blockSize100k;
+            quadrantShorts = new short[(n + 1 + NUM_OVERSHOOT_BYTES)];
+            zptr = new int[n];
+            ftab = new int[65537];
+
+            /*
+              The back end needs a place to store the MTF values
+              whilst it calculates the coding tables.  We could
+              put them in the zptr array.  However, these values
+              will fit in a short, so we overlay szptr at the
+              start of zptr, in the hope of reducing the number
+              of cache misses induced by the multiple traversals
+              of the MTF values when calculating coding tables.
+              Seems to improve compression speed by about 1%.
+            */
+            // NOTE: We can't "overlay" in Java, so we just share zptr
+            szptr = zptr;
+        }
+
         workLimit = workFactor * (count - 1);
         workDone = 0;
         blockRandomised = false;
@@ -0,0 +1,396 @@
+package org.bouncycastle.apache.bzip2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Exceptions;
+
+/**
+ * A BZip2 input stream which decodes ahead on an executor. Blocks are entropy decoded on the reading thread, which
+ * is how the block boundaries are found, and the inverse Burrows-Wheeler transform, run length decoding and CRC
+ * check of each block are then done on the executor while the caller consumes the data of earlier blocks.
+ * <p>
+ * The data returned is identical to that from {@link CBZip2InputStream}, and any error in the compressed data is
+ * reported once the data preceding it has been read.
+ * </p>
+ */
+public class CBZip2ParallelInputStream
+    extends InputStream
+{
+    private final CBZip2InputStream reader;
+    private final Executor executor;
+    private final int maxPending;
+    private final LinkedList<FutureTask<byte[]>> pending = new LinkedList<FutureTask<byte[]>>();
+    private final List<int[]> ttBuffers = new ArrayList<int[]>();
+
+    private boolean eof;
+    private Exception readFailure;
+    private byte[] data;
+    private int dataOff;
+
+    /**
+     * Create a stream, decoding blocks on the passed in executor. Tasks rejected by the executor are run on the
+     * calling thread.
+     *
+     * @param zStream the stream of compressed data.
+     * @param executor the executor to decode blocks on.
+     * @param maxPending the maximum number of blocks decoded ahead of the caller.
+     */
+    public CBZip2ParallelInputStream(InputStream zStream, Executor executor, int maxPending)
+        throws IOException
+    {
+        if (executor == null)
+        {
+            throw new NullPointerException("executor cannot be null");
+        }
+        if (maxPending < 1)
+        {
+            throw new IllegalArgumentException("maxPending must be positive");
+        }
+
+        this.reader = new CBZip2InputStream(zStream, true);
+        this.executor = executor;
+        this.maxPending = maxPending;
+
+        fillPipeline();
+    }
+
+    public int read()
+        throws IOException
+    {
+        if (!nextData())
+        {
+            return -1;
+        }
+
+        return data[dataOff++] & 0xFF;
+    }
+
+    public int read(byte[] b, int off, int len)
+        throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+
+        if (!nextData())
+        {
+            return -1;
+        }
+
+        int supplyLen = Math.min(len, data.length - dataOff);
+        System.arraycopy(data, dataOff, b, off, supplyLen);
+        dataOff += supplyLen;
+
+        return supplyLen;
+    }
+
+    public int available()
+        throws IOException
+    {
+        return data == null ? 0 : data.length - dataOff;
+    }
+
+    public void close()
+        throws IOException
+    {
+        cancel();
+        data = null;
+        eof = true;
+    }
+
+    private boolean nextData()
+        throws IOException
+    {
+        while (data == null || dataOff == data.length)
+        {
+            if (pending.isEmpty())
+            {
+                data = null;
+
+                if (readFailure != null)
+                {
+                    Exception e = readFailure;
+
+                    readFailure = null;
+                    eof = true;
+
+                    if (e instanceof IOException)
+                    {
+                        throw (IOException)e;
+                    }
+                    throw (RuntimeException)e;
+                }
+
+                return false;
+            }
+
+            data = next();
+            dataOff = 0;
+
+            fillPipeline();
+        }
+
+        return true;
+    }
+
+    private void fillPipeline()
+    {
+        while (!eof && readFailure == null && pending.size() < maxPending)
+        {
+            final Block block;
+            try
+            {
+                block = reader.nextBlock();
+            }
+            catch (IOException e)
+            {
+                readFailure = e;
+                return;
+            }
+            catch (RuntimeException e)
+            {
+                readFailure = e;
+                return;
+            }
+
+            if (block == null)
+            {
+                eof = true;
+                return;
+            }
+
+            FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>()
+            {
+                public byte[] call()
+                    throws Exception
+                {
+                    return decode(block);
+                }
+            });
+
+            pending.addLast(task);
+
+            try
+            {
+                executor.execute(task);
+            }
+            catch (RejectedExecutionException e)
+            {
+                task.run();
+            }
+        }
+    }
+
+    private byte[] next()
+        throws IOException
+    {
+        FutureTask<byte[]> task = pending.removeFirst();
+
+        try
+        {
+            return task.get();
+        }
+        catch (InterruptedException e)
+        {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted waiting for BZip2 block");
+        }
+        catch (ExecutionException e)
+        {
+            cancel();
+            eof = true;
+
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException)cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+            throw Exceptions.ioException("exception decoding block: " + cause.getMessage(), cause);
+        }
+    }
+
+    private void cancel()
+    {
+        while (!pending.isEmpty())
+        {
+            pending.removeFirst().cancel(false);
+        }
+    }
+
+    /**
+     * Undo the Burrows-Wheeler transform and the initial run length encoding of a block, following the same steps
+     * as the state machine in {@link CBZip2InputStream}.
+     */
+    private byte[] decode(Block block)
+        throws IOException
+    {
+        byte[] ll8 = block.ll8;
+        int last = block.last;
+
+        int[] cftab = new int[257];
+        int accum = 0;
+        for (int i = 0; i < 256; ++i)
+        {
+            accum += block.unzftab[i];
+            cftab[i + 1] = accum;
+        }
+        if (accum != (last + 1))
+        {
+            throw new IllegalStateException();
+        }
+
+        int[] tt = takeTT(ll8.length);
+
+        for (int i = 0; i <= last; i++)
+        {
+            tt[cftab[ll8[i] & 0xFF]++] = i;
+        }
+
+        CRC blockCRC = new CRC();
+        blockCRC.initialise();
+
+        byte[] out = new byte[last + 1 + 64];
+        int outOff = 0;
+
+        boolean randomised = block.randomised;
+        int rNToGo = 0, rTPos = 0;
+        int tPos = tt[block.origPtr];
+        int chPrev = 256;
+        int run = 0;
+
+        int i2 = 0;
+        while (i2 <= last)
+        {
+            int ch = ll8[tPos] & 0xFF;
+            tPos = tt[tPos];
+            if (randomised)
+            {
+                if (rNToGo == 0)
+                {
+                    rNToGo = CBZip2OutputStream.R_NUMS[rTPos++];
+                    rTPos &= 0x1FF;
+                }
+                rNToGo--;
+                ch ^= rNToGo == 1 ? 1 : 0;
+            }
+            i2++;
+
+            if (outOff == out.length)
+            {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            out[outOff++] = (byte)ch;
+            blockCRC.update(ch);
+
+            if (ch != chPrev)
+            {
+                chPrev = ch;
+                run = 1;
+            }
+            else if (++run == 4)
+            {
+                // the next value is the number of further repeats, the streaming decoder reads it unconditionally.
+                int z = ll8[tPos] & 0xFF;
+                tPos = tt[tPos];
+                if (randomised)
+                {
+                    if (rNToGo == 0)
+                    {
+                        rNToGo = CBZip2OutputStream.R_NUMS[rTPos++];
+                        rTPos &= 0x1FF;
+                    }
+                    rNToGo--;
+                    z ^= rNToGo == 1 ? 1 : 0;
+                }
+                i2++;
+
+                if (outOff + z > out.length)
+                {
+                    out = Arrays.copyOf(out, Math.max(out.length * 2, outOff + z));
+                }
+                for (int j = 0; j < z; j++)
+                {
+                    out[outOff++] = (byte)ch;
+                }
+                if (z >= 4)
+                {
+                    blockCRC.updateRun(ch, z);
+                }
+                else
+                {
+                    for (int j = 0; j < z; j++)
+                    {
+                        blockCRC.update(ch);
+                    }
+                }
+
+                run = 0;
+            }
+        }
+
+        synchronized (ttBuffers)
+        {
+            ttBuffers.add(tt);
+        }
+
+        if (blockCRC.getFinal() != block.blockCRC)
+        {
+            throw new IOException("Block CRC error");
+        }
+
+        return (outOff == out.length) ? out : Arrays.copyOf(out, outOff);
+    }
+
+    private int[] takeTT(int length)
+    {
+        synchronized (ttBuffers)
+        {
+            if (!ttBuffers.isEmpty())
+            {
+                return ttBuffers.remove(ttBuffers.size() - 1);
+            }
+        }
+
+        return new int[length];
+    }
+
+    /**
+     * An entropy decoded block, as read by {@link CBZip2InputStream#nextBlock()}.
+     */
+    static class Block
+    {
+        final byte[] ll8;
+        final int last;
+        final int origPtr;
+        final int[] unzftab;
+        final boolean randomised;
+        final int blockCRC;
+
+        Block(byte[] ll8, int last, int origPtr, int[] unzftab, boolean randomised, int blockCRC)
+        {
+            this.ll8 = ll8;
+            this.last = last;
+            this.origPtr = origPtr;
+            this.unzftab = unzftab;
+            this.randomised = randomised;
+            this.blockCRC = blockCRC;
+        }
+    }
+}
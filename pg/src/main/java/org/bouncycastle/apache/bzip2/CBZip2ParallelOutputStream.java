@@ -0,0 +1,222 @@
+package org.bouncycastle.apache.bzip2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.bouncycastle.util.Exceptions;
+
+/**
+ * A BZip2 output stream which sorts and encodes blocks on an executor while the caller fills the next one. The
+ * encoded blocks are written out in order, and the output is identical to that of {@link CBZip2OutputStream}.
+ * <p>
+ * Each block in progress needs its own working space, about 7MB for the default block size, so maxPending
+ * limits the memory used as well as how far the writer can get ahead of the encoders.
+ * </p>
+ */
+public class CBZip2ParallelOutputStream
+    extends CBZip2OutputStream
+{
+    private final Executor executor;
+    private final int maxPending;
+    private final LinkedList<FutureTask<EncodedBlock>> pending = new LinkedList<FutureTask<EncodedBlock>>();
+    private final List<BlockEncoder> encoders = new ArrayList<BlockEncoder>();
+    private final List<byte[]> blockBuffers = new ArrayList<byte[]>();
+
+    public CBZip2ParallelOutputStream(OutputStream outStream, Executor executor, int maxPending)
+        throws IOException
+    {
+        this(outStream, 9, executor, maxPending);
+    }
+
+    /**
+     * Create a stream, encoding blocks on the passed in executor. Tasks rejected by the executor are run on the
+     * calling thread.
+     *
+     * @param outStream the stream the compressed data is written to.
+     * @param blockSize the block size, in units of 100k.
+     * @param executor the executor to sort and encode blocks on.
+     * @param maxPending the maximum number of blocks being encoded at once.
+     */
+    public CBZip2ParallelOutputStream(OutputStream outStream, int blockSize, Executor executor, int maxPending)
+        throws IOException
+    {
+        super(outStream, blockSize);
+
+        if (executor == null)
+        {
+            throw new NullPointerException("executor cannot be null");
+        }
+        if (maxPending < 1)
+        {
+            throw new IllegalArgumentException("maxPending must be positive");
+        }
+
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
+    void writeBlock(final int blockFinalCRC)
+        throws IOException
+    {
+        while (pending.size() >= maxPending)
+        {
+            writeNext();
+        }
+
+        final byte[] block = blockBytes;
+        final int blockCount = count;
+        final boolean[] blockInUse = inUse;
+
+        FutureTask<EncodedBlock> task = new FutureTask<EncodedBlock>(new Callable<EncodedBlock>()
+        {
+            public EncodedBlock call()
+                throws Exception
+            {
+                return encode(block, blockCount, blockInUse, blockFinalCRC);
+            }
+        });
+
+        pending.addLast(task);
+
+        try
+        {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException e)
+        {
+            task.run();
+        }
+
+        // the encoder owns the block now, carry on with a fresh one.
+        blockBytes = takeBlockBuffer(block.length);
+        inUse = new boolean[256];
+    }
+
+    void endCompression()
+        throws IOException
+    {
+        while (!pending.isEmpty())
+        {
+            writeNext();
+        }
+
+        super.endCompression();
+    }
+
+    private void writeNext()
+        throws IOException
+    {
+        FutureTask<EncodedBlock> task = pending.removeFirst();
+
+        EncodedBlock encoded;
+        try
+        {
+            encoded = task.get();
+        }
+        catch (InterruptedException e)
+        {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted waiting for BZip2 block");
+        }
+        catch (ExecutionException e)
+        {
+            cancel();
+
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException)cause;
+            }
+            throw Exceptions.ioException("exception encoding block: " + cause.getMessage(), cause);
+        }
+
+        bsPutEncodedBlock(encoded.encoding, encoded.lastBits);
+    }
+
+    private void cancel()
+    {
+        while (!pending.isEmpty())
+        {
+            pending.removeFirst().cancel(false);
+        }
+    }
+
+    private EncodedBlock encode(byte[] block, int blockCount, boolean[] blockInUse, int blockFinalCRC)
+        throws IOException
+    {
+        BlockEncoder encoder;
+        synchronized (encoders)
+        {
+            encoder = encoders.isEmpty() ? null : encoders.remove(encoders.size() - 1);
+        }
+        if (encoder == null)
+        {
+            encoder = new BlockEncoder(blockSize100k);
+        }
+
+        encoder.bOut.reset();
+
+        int lastBits = encoder.encoder.encodeBlock(block, blockCount, blockInUse, blockFinalCRC);
+        EncodedBlock encoded = new EncodedBlock(encoder.bOut.toByteArray(), lastBits);
+
+        // only returned to the pools if the encoding succeeded, otherwise the encoder state is unknown.
+        synchronized (encoders)
+        {
+            encoders.add(encoder);
+        }
+        synchronized (blockBuffers)
+        {
+            blockBuffers.add(block);
+        }
+
+        return encoded;
+    }
+
+    private byte[] takeBlockBuffer(int length)
+    {
+        synchronized (blockBuffers)
+        {
+            if (!blockBuffers.isEmpty())
+            {
+                return blockBuffers.remove(blockBuffers.size() - 1);
+            }
+        }
+
+        return new byte[length];
+    }
+
+    private static class BlockEncoder
+    {
+        final ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+        final CBZip2OutputStream encoder;
+
+        BlockEncoder(int blockSize100k)
+            throws IOException
+        {
+            this.encoder = new CBZip2OutputStream(bOut, blockSize100k, false);
+        }
+    }
+
+    private static class EncodedBlock
+    {
+        final byte[] encoding;
+        final int lastBits;
+
+        EncodedBlock(byte[] encoding, int lastBits)
+        {
+            this.encoding = encoding;
+            this.lastBits = lastBits;
+        }
+    }
+}
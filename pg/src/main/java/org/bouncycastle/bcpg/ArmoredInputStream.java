@@ -19,6 +19,11 @@
  *
  *     aIn.setDetectMissingCRC(true);
  * </pre>
+ * </p><p>
+ * If read ahead is enabled, and the underlying stream supports mark/reset (e.g. a {@link java.io.BufferedInputStream}),
+ * the underlying stream is read in blocks and the base 64 data is decoded in bulk by {@link #read(byte[], int, int)}.
+ * The underlying stream's mark is then used to leave it positioned straight after the armor when the end of it is
+ * reached, so any mark the caller set on it is lost.
  * </p>
  */
 public class ArmoredInputStream
@@ -122,6 +127,8 @@ else if (in3 == '=')
         }
     }
 
+    private static final int LOOK_AHEAD_SIZE = 8192;
+
     /*
      * Ignore missing CRC checksums.
      * https://tests.sequoia-pgp.org/#ASCII_Armor suggests that missing CRC sums do not invalidate the message.
@@ -142,6 +149,10 @@ else if (in3 == '=')
     StringList     headerList= Strings.newList();
     int            lastC = 0;
     boolean        isEndOfStream;
+
+    private final byte[] lookAhead;
+    private int          lookAheadPos = 0;
+    private int          lookAheadEnd = 0;
     
     /**
      * Create a stream for reading a PGP armoured message, parsing up to a header 
@@ -168,10 +179,30 @@ public ArmoredInputStream(
         InputStream    in,
         boolean        hasHeaders) 
         throws IOException
+    {
+        this(in, hasHeaders, false);
+    }
+
+    /**
+     * Create an armoured input stream which will assume the data starts
+     * straight away, or parse for headers first depending on the value of
+     * hasHeaders, optionally reading ahead in the underlying stream.
+     *
+     * @param in
+     * @param hasHeaders true if headers are to be looked for, false otherwise.
+     * @param readAhead true if the underlying stream should be read in blocks, which is only done if it supports
+     * mark/reset.
+     */
+    public ArmoredInputStream(
+        InputStream    in,
+        boolean        hasHeaders,
+        boolean        readAhead)
+        throws IOException
     {
         this.in = in;
         this.hasHeaders = hasHeaders;
-        
+        this.lookAhead = (readAhead && in.markSupported()) ? new byte[LOOK_AHEAD_SIZE] : null;
+
         if (hasHeaders)
         {
             parseHeaders();
@@ -183,7 +214,74 @@ public ArmoredInputStream(
     public int available()
         throws IOException
     {
-        return in.available();
+        return in.available() + (lookAheadEnd - lookAheadPos);
+    }
+
+    /**
+     * Read the next byte of the underlying stream, through the look ahead buffer if there is one.
+     */
+    private int readIn()
+        throws IOException
+    {
+        if (lookAhead == null)
+        {
+            return in.read();
+        }
+
+        if (lookAheadPos == lookAheadEnd && !fillLookAhead())
+        {
+            return -1;
+        }
+
+        return lookAhead[lookAheadPos++] & 0xFF;
+    }
+
+    private boolean fillLookAhead()
+        throws IOException
+    {
+        int count;
+
+        in.mark(lookAhead.length);
+        do
+        {
+            count = in.read(lookAhead, 0, lookAhead.length);
+        }
+        while (count == 0);
+
+        lookAheadPos = 0;
+        lookAheadEnd = Math.max(count, 0);
+
+        return count > 0;
+    }
+
+    /**
+     * Return the bytes read ahead of the current position to the underlying stream.
+     */
+    private void releaseLookAhead()
+        throws IOException
+    {
+        if (lookAheadPos < lookAheadEnd)
+        {
+            in.reset();
+
+            long remaining = lookAheadPos;
+            while (remaining > 0)
+            {
+                long skipped = in.skip(remaining);
+                if (skipped <= 0)
+                {
+                    if (in.read() < 0)
+                    {
+                        break;
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+        }
+
+        lookAheadPos = 0;
+        lookAheadEnd = 0;
     }
     
     private boolean parseHeaders()
@@ -206,7 +304,7 @@ private boolean parseHeaders()
         }
         else
         {
-            while ((c = in.read()) >= 0)
+            while ((c = readIn()) >= 0)
             {
                 if (c == '-' && (last == 0 || last == '\n' || last == '\r'))
                 {
@@ -231,7 +329,7 @@ private boolean parseHeaders()
                 buf.write('-');
             }
             
-            while ((c = in.read()) >= 0)
+            while ((c = readIn()) >= 0)
             {
                 if (last == '\r' && c == '\n')
                 {
@@ -278,7 +376,7 @@ private boolean parseHeaders()
             
             if (crLf)
             {
-                int nl = in.read(); // skip last \n
+                int nl = readIn(); // skip last \n
                 if (nl != '\n')
                 {
                     throw new ArmoredInputException("inconsistent line endings in headers");
@@ -340,11 +438,11 @@ public String[] getArmorHeaders()
     private int readIgnoreSpace() 
         throws IOException
     {
-        int    c = in.read();
+        int    c = readIn();
         
         while (c == ' ' || c == '\t' || c == '\f' || c == '\u000B') // \u000B ~ \v
         {
-            c = in.read();
+            c = readIn();
         }
 
         if (c >= 128)
@@ -373,7 +471,7 @@ public int read()
         
         if (clearText)
         {
-            c = in.read();
+            c = readIn();
 
             if (c == '\r' || (c == '\n' && lastC != '\r'))
             {
@@ -381,7 +479,7 @@ public int read()
             }
             else if (newLineFound && c == '-')
             {
-                c = in.read();
+                c = readIn();
                 if (c == '-')            // a header, not dash escaped
                 {
                     clearText = false;
@@ -390,7 +488,7 @@ else if (newLineFound && c == '-')
                 }
                 else                   // a space - must be a dash escape
                 {
-                    c = in.read();
+                    c = readIn();
                 }
                 newLineFound = false;
             }
@@ -448,7 +546,7 @@ else if (newLineFound && c == '-')
 
                 if (c == '-')        // end of record reached
                 {
-                    while ((c = in.read()) >= 0)
+                    while ((c = readIn()) >= 0)
                     {
                         if (c == '\n' || c == '\r')
                         {
@@ -456,6 +554,11 @@ else if (newLineFound && c == '-')
                         }
                     }
 
+                    if (lookAhead != null)
+                    {
+                        releaseLookAhead();
+                    }
+
                     if (!crcFound && detectMissingChecksum)
                     {
                         throw new ArmoredInputException("crc check not found");
@@ -529,24 +632,76 @@ public int read(byte[] b, int off, int len) throws IOException
             return 0;
         }
 
-        int c = read();
-        if (c == -1)
+        int pos = off, end = off + len;
+        while (pos < end)
         {
-            return -1;
+            if (lookAhead != null && !start && !clearText && !crcFound && bufPtr > 2)
+            {
+                pos += decodeBlock(b, pos, end - pos);
+                if (pos == end)
+                {
+                    break;
+                }
+            }
+
+            int c = read();
+            if (c == -1)
+            {
+                break;
+            }
+            b[pos++] = (byte)c;
         }
-        b[off] = (byte)c;
 
-        int i = 1;
-        for (; i < len ; i++)
+        int count = pos - off;
+        return count == 0 ? -1 : count;
+    }
+
+    /**
+     * Decode as many complete groups of 4 base 64 characters as are in the look ahead buffer (and fit in out),
+     * stopping at anything else (white space, line ends, padding, the CRC or the armor end), which is left for
+     * {@link #read()} to deal with.
+     *
+     * @return the number of bytes decoded into out.
+     */
+    private int decodeBlock(byte[] out, int outOff, int outLen)
+        throws IOException
+    {
+        if (lookAheadPos == lookAheadEnd && !fillLookAhead())
         {
-            c = read();
-            if (c == -1)
+            return 0;
+        }
+
+        byte[] buf = lookAhead;
+        int pos = lookAheadPos, limit = lookAheadEnd;
+        int outPos = outOff, outEnd = outOff + outLen;
+
+        while (outEnd - outPos >= 3 && limit - pos >= 4)
+        {
+            int in0 = buf[pos] & 0xFF, in1 = buf[pos + 1] & 0xFF, in2 = buf[pos + 2] & 0xFF, in3 = buf[pos + 3] & 0xFF;
+            if ((in0 | in1 | in2 | in3) >= 128)
             {
                 break;
             }
-            b[off + i] = (byte)c;
+
+            int b1 = decodingTable[in0], b2 = decodingTable[in1], b3 = decodingTable[in2], b4 = decodingTable[in3];
+            if ((b1 | b2 | b3 | b4) < 0)
+            {
+                break;
+            }
+
+            out[outPos] = (byte)((b1 << 2) | (b2 >> 4));
+            out[outPos + 1] = (byte)((b2 << 4) | (b3 >> 2));
+            out[outPos + 2] = (byte)((b3 << 6) | b4);
+
+            pos += 4;
+            outPos += 3;
         }
-        return i;
+
+        lookAheadPos = pos;
+
+        int count = outPos - outOff;
+        crc.update(out, outOff, count);
+        return count;
     }
 
     private void checkIndexSize(int size, int off, int len)
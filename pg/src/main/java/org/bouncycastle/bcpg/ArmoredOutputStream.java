@@ -97,6 +97,8 @@ private static void encode3(OutputStream out, byte[] data)
         out.write(encodingTable[d3 & 0x3f]);
     }
 
+    private static final int ENCODE_BLOCK_SIZE = 8192;
+
     OutputStream    out;
     byte[]           buf = new byte[3];
     int             bufPtr = 0;
@@ -462,6 +464,103 @@ public void write(
         buf[bufPtr++] = (byte)b;
     }
 
+    /**
+     * Write a block of data. Outside the clear text section, complete groups of 3 bytes are base 64 encoded in bulk
+     * and written to the underlying stream in as few calls as possible.
+     *
+     * @param b the data.
+     * @param off the offset of the data in b.
+     * @param len the length of the data.
+     * @throws IOException if the underlying stream throws an exception.
+     */
+    public void write(byte[] b, int off, int len)
+        throws IOException
+    {
+        if (off < 0 || len < 0 || off > b.length - len)
+        {
+            throw new IndexOutOfBoundsException("invalid offset/length for buffer");
+        }
+
+        int end = off + len;
+
+        // the header is written by the first write, and clear text needs dash escaping.
+        while (off < end && (start || clearText))
+        {
+            write(b[off++] & 0xFF);
+        }
+
+        // fill and encode any partial group.
+        while (off < end && bufPtr < 3)
+        {
+            buf[bufPtr++] = b[off++];
+        }
+
+        // a group is only encoded once the data after it arrives (see write(int)), so the final group is left in buf.
+        if (end - off > 0)
+        {
+            byte[] encoded = new byte[Math.min(ENCODE_BLOCK_SIZE, ((end - off) / 3 + 1) * 4 * 2)];
+
+            crc.update3(buf, 0);
+            int encPos = encode3(encoded, 0, buf, 0);
+
+            int spanStart = off;
+            while (end - off > 3)
+            {
+                if (encPos > encoded.length - 4 - 2 * nl.length())
+                {
+                    out.write(encoded, 0, encPos);
+                    encPos = 0;
+                }
+
+                if ((chunkCount & 0xf) == 0)
+                {
+                    encPos = appendLineSeparator(encoded, encPos);
+                }
+
+                encPos = encode3(encoded, encPos, b, off);
+                off += 3;
+            }
+
+            if ((chunkCount & 0xf) == 0)
+            {
+                encPos = appendLineSeparator(encoded, encPos);
+            }
+            out.write(encoded, 0, encPos);
+
+            crc.update(b, spanStart, off - spanStart);
+
+            bufPtr = 0;
+            while (off < end)
+            {
+                buf[bufPtr++] = b[off++];
+            }
+        }
+    }
+
+    private int encode3(byte[] encoded, int encPos, byte[] data, int off)
+    {
+        int d1 = data[off] & 0xFF;
+        int d2 = data[off + 1] & 0xFF;
+        int d3 = data[off + 2] & 0xFF;
+
+        encoded[encPos] = encodingTable[(d1 >>> 2) & 0x3f];
+        encoded[encPos + 1] = encodingTable[((d1 << 4) | (d2 >>> 4)) & 0x3f];
+        encoded[encPos + 2] = encodingTable[((d2 << 2) | (d3 >>> 6)) & 0x3f];
+        encoded[encPos + 3] = encodingTable[d3 & 0x3f];
+
+        ++chunkCount;
+        return encPos + 4;
+    }
+
+    private int appendLineSeparator(byte[] encoded, int encPos)
+    {
+        for (int i = 0; i != nl.length(); i++)
+        {
+            encoded[encPos++] = (byte)nl.charAt(i);
+        }
+        return encPos;
+    }
+
     public void flush()
         throws IOException
     {
@@ -59,4 +59,18 @@ public void update3(byte[] buf, int off)
             ^ TABLE8[(buf[off + 1] ^ (crc >> 8)) & 255]
             ^ TABLE0[(buf[off + 2] ^ crc) & 255];
     }
+
+    public void update(byte[] buf, int off, int len)
+    {
+        int end = off + len;
+        while (end - off >= 3)
+        {
+            update3(buf, off);
+            off += 3;
+        }
+        while (off < end)
+        {
+            update(buf[off++] & 0xFF);
+        }
+    }
 }
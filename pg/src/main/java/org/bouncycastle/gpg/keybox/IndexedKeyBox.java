@@ -0,0 +1,475 @@
+package org.bouncycastle.gpg.keybox;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bouncycastle.openpgp.operator.KeyFingerPrintCalculator;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Pack;
+import org.bouncycastle.util.Strings;
+
+/**
+ * A keybox file reader for large keyboxes. Unlike {@link KeyBox}, which parses every blob up front, the file is
+ * memory mapped and only an index of fingerprint, key ID and user ID to blob offset is built, held off the heap.
+ * Blobs are parsed, and their checksums verified, when they are looked up.
+ * <p>
+ * GnuPG appends new blobs to the end of a keybox, {@link #refresh()} will index any blobs added since the file was
+ * last read. A file which has been rewritten, rather than appended to, is indexed again from the start: that is one
+ * which has shrunk, been modified without growing, or no longer starts with the first blob and the last blob indexed
+ * at their old offsets. Blobs which have been deleted in place, since they were indexed, are skipped on lookup.
+ * </p><p>
+ * Instances are safe for use by multiple threads.
+ * </p>
+ */
+public class IndexedKeyBox
+{
+    private final File file;
+    private final KeyFingerPrintCalculator keyFingerPrintCalculator;
+    private final BlobVerifier blobVerifier;
+
+    private final KeyBoxIndex fingerprintIndex = new KeyBoxIndex();
+    private final KeyBoxIndex keyIDIndex = new KeyBoxIndex();
+    private final KeyBoxIndex userIDIndex = new KeyBoxIndex();
+
+    private ByteBuffer mapping;
+    private long lastModified;
+    private FirstBlob firstBlob;
+    private byte[] firstBlobEncoding;
+    private byte[] lastBlobEncoding;
+    private int indexedLength;
+    private int keyBlobCount;
+
+    public IndexedKeyBox(File file, KeyFingerPrintCalculator keyFingerPrintCalculator, BlobVerifier blobVerifier)
+        throws IOException
+    {
+        this.file = file;
+        this.keyFingerPrintCalculator = keyFingerPrintCalculator;
+        this.blobVerifier = blobVerifier;
+
+        refresh();
+
+        if (firstBlob == null)
+        {
+            throw new IOException("No first blob, is the source zero length?");
+        }
+    }
+
+    /**
+     * Index any blobs added to the end of the keybox file since it was last read, or index the whole file again if it
+     * has been rewritten.
+     *
+     * @return the number of key blobs added to the index.
+     * @throws IOException if the file cannot be read or contains a malformed blob.
+     */
+    public synchronized int refresh()
+        throws IOException
+    {
+        long modified = file.lastModified();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            long fileLength = raf.length();
+            if (fileLength > Integer.MAX_VALUE)
+            {
+                throw new IOException("keybox file too large: " + fileLength);
+            }
+
+            if (mapping != null && fileLength == mapping.limit() && modified == lastModified)
+            {
+                return 0;
+            }
+
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, fileLength);
+
+            if (!isAppendedTo(buffer))
+            {
+                // replaced, start again.
+                fingerprintIndex.clear();
+                keyIDIndex.clear();
+                userIDIndex.clear();
+                firstBlob = null;
+                firstBlobEncoding = null;
+                lastBlobEncoding = null;
+                indexedLength = 0;
+                keyBlobCount = 0;
+            }
+
+            mapping = buffer;
+            lastModified = modified;
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        return indexBlobs();
+    }
+
+    public synchronized FirstBlob getFirstBlob()
+    {
+        return firstBlob;
+    }
+
+    /**
+     * Return the number of key blobs (OpenPGP and X.509) indexed.
+     *
+     * @return the number of key blobs.
+     */
+    public synchronized int getKeyBlobCount()
+    {
+        return keyBlobCount;
+    }
+
+    /**
+     * Return the key blob containing a key with the passed in fingerprint.
+     *
+     * @param fingerprint the fingerprint of the key of interest.
+     * @return the key blob, null if there is no matching key.
+     * @throws IOException if the blob cannot be parsed or fails its checksum.
+     */
+    public KeyBlob getKeyBlob(byte[] fingerprint)
+        throws IOException
+    {
+        if (fingerprint.length < 8)
+        {
+            throw new IllegalArgumentException("fingerprint too short");
+        }
+
+        ByteBuffer buffer;
+        int[] offsets;
+        synchronized (this)
+        {
+            buffer = mapping.duplicate();
+            offsets = fingerprintIndex.get(Pack.bigEndianToLong(fingerprint, 0));
+        }
+
+        for (int i = 0; i != offsets.length; i++)
+        {
+            KeyBlob blob = parseKeyBlob(buffer, offsets[i]);
+            if (blob == null)
+            {
+                continue;
+            }
+
+            for (KeyInformation keyInformation : blob.getKeyInformation())
+            {
+                if (Arrays.areEqual(fingerprint, keyInformation.getFingerprint()))
+                {
+                    return blob;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Return the key blobs containing a key with the passed in key ID.
+     *
+     * @param keyID the key ID of interest.
+     * @return a list of the matching key blobs, empty if there are none.
+     * @throws IOException if a blob cannot be parsed or fails its checksum.
+     */
+    public List<KeyBlob> getKeyBlobs(long keyID)
+        throws IOException
+    {
+        ByteBuffer buffer;
+        int[] offsets;
+        synchronized (this)
+        {
+            buffer = mapping.duplicate();
+            offsets = keyIDIndex.get(keyID);
+        }
+
+        byte[] keyIDBytes = Pack.longToBigEndian(keyID);
+        List<KeyBlob> blobs = new ArrayList<KeyBlob>();
+
+        for (int i = 0; i != offsets.length; i++)
+        {
+            KeyBlob blob = parseKeyBlob(buffer, offsets[i]);
+            if (blob == null)
+            {
+                continue;
+            }
+
+            for (KeyInformation keyInformation : blob.getKeyInformation())
+            {
+                if (Arrays.areEqual(keyIDBytes, keyInformation.getKeyID()))
+                {
+                    blobs.add(blob);
+                    break;
+                }
+            }
+        }
+
+        return blobs;
+    }
+
+    /**
+     * Return the key blobs with the passed in user ID.
+     *
+     * @param userID the exact user ID of interest.
+     * @return a list of the matching key blobs, empty if there are none.
+     * @throws IOException if a blob cannot be parsed or fails its checksum.
+     */
+    public List<KeyBlob> getKeyBlobs(String userID)
+        throws IOException
+    {
+        byte[] userIDBytes = Strings.toUTF8ByteArray(userID);
+
+        ByteBuffer buffer;
+        int[] offsets;
+        synchronized (this)
+        {
+            buffer = mapping.duplicate();
+            offsets = userIDIndex.get(userIDHash(userIDBytes, 0, userIDBytes.length));
+        }
+
+        List<KeyBlob> blobs = new ArrayList<KeyBlob>();
+
+        for (int i = 0; i != offsets.length; i++)
+        {
+            KeyBlob blob = parseKeyBlob(buffer, offsets[i]);
+            if (blob == null)
+            {
+                continue;
+            }
+
+            for (UserID id : blob.getUserIds())
+            {
+                if (Arrays.areEqual(userIDBytes, id.getUserID()))
+                {
+                    blobs.add(blob);
+                    break;
+                }
+            }
+        }
+
+        return blobs;
+    }
+
+    /**
+     * Return the key blob at offset, or null if there is no longer one there as it has been deleted since it was
+     * indexed.
+     */
+    private KeyBlob parseKeyBlob(ByteBuffer buffer, int offset)
+        throws IOException
+    {
+        buffer.position(offset);
+
+        Blob blob = Blob.getInstance(new KeyBoxByteBuffer(buffer), keyFingerPrintCalculator, blobVerifier);
+        if (blob instanceof KeyBlob)
+        {
+            return (KeyBlob)blob;
+        }
+
+        return null;
+    }
+
+    /**
+     * Return true if buffer holds the blobs already indexed followed by new ones, so only the new ones need indexing.
+     * The first blob and the last blob indexed are compared, and the data following them must start a blob.
+     */
+    private boolean isAppendedTo(ByteBuffer buffer)
+    {
+        if (indexedLength == 0)
+        {
+            return true;
+        }
+        if (mapping == null || buffer.limit() <= mapping.limit())
+        {
+            return false;
+        }
+        if (!regionEquals(buffer, 0, firstBlobEncoding)
+            || !regionEquals(buffer, indexedLength - lastBlobEncoding.length, lastBlobEncoding))
+        {
+            return false;
+        }
+
+        if (buffer.limit() - indexedLength >= 5)
+        {
+            long length = buffer.getInt(indexedLength) & 0xffffffffL;
+            int type = buffer.get(indexedLength + 4) & 0xff;
+
+            return length >= 6
+                && (type == BlobType.EMPTY_BLOB.getByteValue()
+                    || type == BlobType.OPEN_PGP_BLOB.getByteValue()
+                    || type == BlobType.X509_BLOB.getByteValue());
+        }
+
+        return true;
+    }
+
+    private static boolean regionEquals(ByteBuffer buffer, int off, byte[] expected)
+    {
+        if (off < 0 || buffer.limit() - off < expected.length)
+        {
+            return false;
+        }
+
+        for (int i = 0; i != expected.length; i++)
+        {
+            if (buffer.get(off + i) != expected[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] copyRegion(ByteBuffer buffer, int off, int len)
+    {
+        byte[] region = new byte[len];
+        for (int i = 0; i != len; i++)
+        {
+            region[i] = buffer.get(off + i);
+        }
+        return region;
+    }
+
+    private int indexBlobs()
+        throws IOException
+    {
+        ByteBuffer buffer = mapping;
+        int limit = buffer.limit();
+        int count = 0;
+        int lastBase = -1;
+
+        while (limit - indexedLength >= 6)
+        {
+            int base = indexedLength;
+            long length = buffer.getInt(base) & 0xffffffffL;
+
+            if (length < 6)
+            {
+                throw new IOException("Blob with base offset of " + base + " has invalid length " + length + ".");
+            }
+            if (length > limit - base)
+            {
+                break;   // not completely written yet.
+            }
+
+            int type = buffer.get(base + 4) & 0xff;
+
+            if (base == 0)
+            {
+                if (type != BlobType.FIRST_BLOB.getByteValue())
+                {
+                    throw new IOException("First blob is not KeyBox 'First Blob'.");
+                }
+
+                ByteBuffer first = buffer.duplicate();
+                first.limit((int)length);
+                firstBlob = (FirstBlob)Blob.getInstance(new KeyBoxByteBuffer(first), keyFingerPrintCalculator, blobVerifier);
+                firstBlobEncoding = copyRegion(buffer, 0, (int)length);
+            }
+            else if (type == BlobType.FIRST_BLOB.getByteValue())
+            {
+                throw new IOException("Unexpected second 'FirstBlob', there should only be one FirstBlob at the start of the file.");
+            }
+            else if (type == BlobType.OPEN_PGP_BLOB.getByteValue() || type == BlobType.X509_BLOB.getByteValue())
+            {
+                indexKeyBlob(buffer, base);
+                count++;
+            }
+
+            indexedLength = base + (int)length;
+            lastBase = base;
+        }
+
+        if (lastBase >= 0)
+        {
+            lastBlobEncoding = copyRegion(buffer, lastBase, indexedLength - lastBase);
+        }
+
+        keyBlobCount += count;
+
+        return count;
+    }
+
+    /**
+     * Add the key information and user IDs of a key blob to the indexes, reading the fields directly from the
+     * mapping without parsing the blob.
+     */
+    private void indexKeyBlob(ByteBuffer buffer, int base)
+        throws IOException
+    {
+        try
+        {
+            int pos = base + 16;    // skip length, type, version, flags, key block offset and length.
+
+            int keyNumber = u16(buffer, pos);
+            int keyInformationSize = u16(buffer, pos + 2);
+            pos += 4;
+
+            for (int i = 0; i != keyNumber; i++)
+            {
+                fingerprintIndex.put(buffer.getLong(pos), base);
+
+                long offsetToKeyID = buffer.getInt(pos + 20) & 0xffffffffL;
+                if (offsetToKeyID > 0)
+                {
+                    keyIDIndex.put(buffer.getLong(base + (int)offsetToKeyID), base);
+                }
+
+                pos += keyInformationSize;
+            }
+
+            pos += 2 + u16(buffer, pos);      // serial number
+
+            int numberOfUserIDs = u16(buffer, pos);
+            pos += 4;
+
+            for (int i = 0; i != numberOfUserIDs; i++)
+            {
+                int offsetToUserID = buffer.getInt(pos);
+                int lengthOfUserID = buffer.getInt(pos + 4);
+
+                userIDIndex.put(userIDHash(buffer, base + offsetToUserID, lengthOfUserID), base);
+
+                pos += 12;
+            }
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+            throw new IOException("Blob with base offset of " + base + " is malformed.");
+        }
+    }
+
+    private static int u16(ByteBuffer buffer, int pos)
+    {
+        return buffer.getShort(pos) & 0xffff;
+    }
+
+    // 64 bit FNV-1a
+    private static long userIDHash(ByteBuffer buffer, int off, int len)
+    {
+        if (len < 0 || off < 0)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i != len; i++)
+        {
+            h = (h ^ (buffer.get(off + i) & 0xff)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long userIDHash(byte[] userID, int off, int len)
+    {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i != len; i++)
+        {
+            h = (h ^ (userID[off + i] & 0xff)) * 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,135 @@
+package org.bouncycastle.gpg.keybox;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Open addressing multimap from a 64 bit key to a blob offset, held in a direct buffer so a large index is
+ * kept off the heap. Keys are hashes, so callers need to check the blobs found actually match.
+ */
+class KeyBoxIndex
+{
+    private static final int SLOT_SIZE = 12;        // u64 key, u32 offset + 1 (0 marks an empty slot)
+    private static final int MIN_CAPACITY = 1024;
+
+    private ByteBuffer table;
+    private int mask;
+    private int size;
+
+    KeyBoxIndex()
+    {
+        allocate(MIN_CAPACITY);
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    void clear()
+    {
+        allocate(MIN_CAPACITY);
+    }
+
+    void put(long key, int offset)
+    {
+        if ((size + 1) * 2 > mask + 1)
+        {
+            resize();
+        }
+
+        store(table, mask, key, offset + 1);
+        size++;
+    }
+
+    /**
+     * Return the offsets stored against key.
+     *
+     * @param key the key of interest.
+     * @return the distinct offsets stored, an empty array if there are none.
+     */
+    int[] get(long key)
+    {
+        int[] offsets = new int[0];
+
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask)
+        {
+            int value = table.getInt(slot * SLOT_SIZE + 8);
+            if (value == 0)
+            {
+                return offsets;
+            }
+
+            if (table.getLong(slot * SLOT_SIZE) == key && !contains(offsets, value - 1))
+            {
+                int[] tmp = new int[offsets.length + 1];
+                System.arraycopy(offsets, 0, tmp, 0, offsets.length);
+                tmp[offsets.length] = value - 1;
+                offsets = tmp;
+            }
+        }
+    }
+
+    private void resize()
+    {
+        ByteBuffer old = this.table;
+        int oldCapacity = mask + 1;
+
+        if (oldCapacity > (Integer.MAX_VALUE / SLOT_SIZE) / 2)
+        {
+            throw new IllegalStateException("keybox index too large");
+        }
+
+        int oldSize = size;
+
+        allocate(oldCapacity * 2);
+
+        for (int slot = 0; slot != oldCapacity; slot++)
+        {
+            int value = old.getInt(slot * SLOT_SIZE + 8);
+            if (value != 0)
+            {
+                store(table, mask, old.getLong(slot * SLOT_SIZE), value);
+            }
+        }
+
+        this.size = oldSize;
+    }
+
+    private void allocate(int capacity)
+    {
+        this.table = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+        this.mask = capacity - 1;
+        this.size = 0;
+    }
+
+    private static void store(ByteBuffer table, int mask, long key, int value)
+    {
+        int slot = hash(key) & mask;
+        while (table.getInt(slot * SLOT_SIZE + 8) != 0)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        table.putLong(slot * SLOT_SIZE, key);
+        table.putInt(slot * SLOT_SIZE + 8, value);
+    }
+
+    private static boolean contains(int[] offsets, int offset)
+    {
+        for (int i = 0; i != offsets.length; i++)
+        {
+            if (offsets[i] == offset)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+
+        return (int)(h >>> 32);
+    }
+}
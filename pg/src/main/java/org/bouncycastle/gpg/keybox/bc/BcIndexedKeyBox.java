@@ -0,0 +1,17 @@
+package org.bouncycastle.gpg.keybox.bc;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.bouncycastle.gpg.keybox.IndexedKeyBox;
+import org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+
+public class BcIndexedKeyBox
+    extends IndexedKeyBox
+{
+    public BcIndexedKeyBox(File file)
+        throws IOException
+    {
+        super(file, new BcKeyFingerprintCalculator(), new BcBlobVerifier());
+    }
+}
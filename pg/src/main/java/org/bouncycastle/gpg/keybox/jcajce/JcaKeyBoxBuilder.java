@@ -1,11 +1,13 @@
 package org.bouncycastle.gpg.keybox.jcajce;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.Provider;
 
+import org.bouncycastle.gpg.keybox.IndexedKeyBox;
 import org.bouncycastle.jcajce.util.DefaultJcaJceHelper;
 import org.bouncycastle.jcajce.util.JcaJceHelper;
 import org.bouncycastle.jcajce.util.NamedJcaJceHelper;
@@ -60,4 +62,16 @@ public JcaKeyBox build(byte[] encoding)
     {
         return new JcaKeyBox(encoding, new JcaKeyFingerprintCalculator(), new JcaBlobVerifier(helper));
     }
+
+    /**
+     * Build an indexed, memory mapped, view of a keybox file.
+     *
+     * @param file the keybox file.
+     * @return an IndexedKeyBox for the file.
+     */
+    public IndexedKeyBox buildIndexed(File file)
+        throws NoSuchProviderException, NoSuchAlgorithmException, IOException
+    {
+        return new IndexedKeyBox(file, new JcaKeyFingerprintCalculator(), new JcaBlobVerifier(helper));
+    }
 }
@@ -0,0 +1,251 @@
+package org.bouncycastle.openpgp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Longs;
+import org.bouncycastle.util.Strings;
+
+/**
+ * Lookup tables for a key ring collection, from the key ID and fingerprint of every key in a ring, and the lower
+ * cased user IDs of the master key, to the rings carrying them. The signer table, mapping the key ID of a
+ * signature issuer to the rings with keys carrying a signature from it, is only built when first asked for.
+ * <p>
+ * Lists of rings are kept in the order the rings were added and are never modified once published, so an index
+ * can be copied cheaply when a collection is extended.
+ * </p>
+ */
+class KeyRingIndex<T extends PGPKeyRing>
+{
+    private final Map<Long, List<T>> keyIDs;
+    private final Map<Fingerprint, List<T>> fingerprints;
+    private final Map<String, List<T>> userIDs;
+
+    private Map<Long, List<T>> signers;
+
+    KeyRingIndex(Iterator<T> rings)
+    {
+        this.keyIDs = new HashMap<Long, List<T>>();
+        this.fingerprints = new HashMap<Fingerprint, List<T>>();
+        this.userIDs = new HashMap<String, List<T>>();
+
+        while (rings.hasNext())
+        {
+            add(rings.next());
+        }
+    }
+
+    private KeyRingIndex(KeyRingIndex<T> other)
+    {
+        this.keyIDs = new HashMap<Long, List<T>>(other.keyIDs);
+        this.fingerprints = new HashMap<Fingerprint, List<T>>(other.fingerprints);
+        this.userIDs = new HashMap<String, List<T>>(other.userIDs);
+
+        synchronized (other)
+        {
+            this.signers = (other.signers == null) ? null : new HashMap<Long, List<T>>(other.signers);
+        }
+    }
+
+    /**
+     * Return a copy of this index with ring added.
+     */
+    KeyRingIndex<T> with(T ring)
+    {
+        KeyRingIndex<T> index = new KeyRingIndex<T>(this);
+
+        index.add(ring);
+
+        return index;
+    }
+
+    /**
+     * Return a copy of this index with ring removed.
+     */
+    KeyRingIndex<T> without(T ring)
+    {
+        KeyRingIndex<T> index = new KeyRingIndex<T>(this);
+
+        for (Iterator<PGPPublicKey> it = ring.getPublicKeys(); it.hasNext();)
+        {
+            PGPPublicKey key = it.next();
+
+            remove(index.keyIDs, Longs.valueOf(key.getKeyID()), ring);
+            remove(index.fingerprints, new Fingerprint(key.getFingerprint()), ring);
+        }
+
+        for (Iterator<String> it = ring.getPublicKey().getUserIDs(); it.hasNext();)
+        {
+            remove(index.userIDs, Strings.toLowerCase(it.next()), ring);
+        }
+
+        if (index.signers != null)
+        {
+            for (Iterator<Long> it = getSignerKeyIDs(ring).iterator(); it.hasNext();)
+            {
+                remove(index.signers, it.next(), ring);
+            }
+        }
+
+        return index;
+    }
+
+    List<T> getByKeyID(long keyID)
+    {
+        return get(keyIDs, Longs.valueOf(keyID));
+    }
+
+    List<T> getByFingerprint(byte[] fingerprint)
+    {
+        return get(fingerprints, new Fingerprint(fingerprint));
+    }
+
+    /**
+     * Return the rings with a user ID which matches userID, ignoring case.
+     */
+    List<T> getByUserID(String userID)
+    {
+        return get(userIDs, Strings.toLowerCase(userID));
+    }
+
+    /**
+     * Return the rings with keys carrying a signature issued by keyID.
+     *
+     * @param keyID the key ID of the signature issuer.
+     * @param rings the rings in the collection, used to build the signer table if it is not yet present.
+     */
+    synchronized List<T> getBySigner(long keyID, Iterator<T> rings)
+    {
+        if (signers == null)
+        {
+            signers = new HashMap<Long, List<T>>();
+
+            while (rings.hasNext())
+            {
+                addSigner(signers, rings.next());
+            }
+        }
+
+        return get(signers, Longs.valueOf(keyID));
+    }
+
+    private void add(T ring)
+    {
+        for (Iterator<PGPPublicKey> it = ring.getPublicKeys(); it.hasNext();)
+        {
+            PGPPublicKey key = it.next();
+
+            put(keyIDs, Longs.valueOf(key.getKeyID()), ring);
+            put(fingerprints, new Fingerprint(key.getFingerprint()), ring);
+        }
+
+        for (Iterator<String> it = ring.getPublicKey().getUserIDs(); it.hasNext();)
+        {
+            put(userIDs, Strings.toLowerCase(it.next()), ring);
+        }
+
+        if (signers != null)
+        {
+            addSigner(signers, ring);
+        }
+    }
+
+    private void addSigner(Map<Long, List<T>> signers, T ring)
+    {
+        for (Iterator<Long> it = getSignerKeyIDs(ring).iterator(); it.hasNext();)
+        {
+            put(signers, it.next(), ring);
+        }
+    }
+
+    private static List<Long> getSignerKeyIDs(PGPKeyRing ring)
+    {
+        List<Long> ids = new ArrayList<Long>();
+
+        for (Iterator<PGPPublicKey> keyIt = ring.getPublicKeys(); keyIt.hasNext();)
+        {
+            for (Iterator<PGPSignature> sigIt = keyIt.next().getSignatures(); sigIt.hasNext();)
+            {
+                Long id = Longs.valueOf(sigIt.next().getKeyID());
+                if (!ids.contains(id))
+                {
+                    ids.add(id);
+                }
+            }
+        }
+
+        return ids;
+    }
+
+    private static <K, T> List<T> get(Map<K, List<T>> map, K key)
+    {
+        List<T> rings = map.get(key);
+
+        return (rings == null) ? Collections.<T>emptyList() : rings;
+    }
+
+    private static <K, T> void put(Map<K, List<T>> map, K key, T ring)
+    {
+        List<T> rings = map.get(key);
+
+        if (rings == null)
+        {
+            map.put(key, Collections.singletonList(ring));
+        }
+        else if (!rings.contains(ring))
+        {
+            List<T> newRings = new ArrayList<T>(rings.size() + 1);
+            newRings.addAll(rings);
+            newRings.add(ring);
+
+            map.put(key, Collections.unmodifiableList(newRings));
+        }
+    }
+
+    private static <K, T> void remove(Map<K, List<T>> map, K key, T ring)
+    {
+        List<T> rings = map.get(key);
+
+        if (rings != null && rings.contains(ring))
+        {
+            if (rings.size() == 1)
+            {
+                map.remove(key);
+            }
+            else
+            {
+                List<T> newRings = new ArrayList<T>(rings);
+                newRings.remove(ring);
+
+                map.put(key, Collections.unmodifiableList(newRings));
+            }
+        }
+    }
+
+    private static class Fingerprint
+    {
+        private final byte[] fingerprint;
+        private final int hashCode;
+
+        Fingerprint(byte[] fingerprint)
+        {
+            this.fingerprint = fingerprint;
+            this.hashCode = Arrays.hashCode(fingerprint);
+        }
+
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        public boolean equals(Object o)
+        {
+            return o instanceof Fingerprint && Arrays.areEqual(fingerprint, ((Fingerprint)o).fingerprint);
+        }
+    }
+}
@@ -4,10 +4,12 @@
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.Executor;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 import org.bouncycastle.apache.bzip2.CBZip2InputStream;
+import org.bouncycastle.apache.bzip2.CBZip2ParallelInputStream;
 import org.bouncycastle.bcpg.BCPGInputStream;
 import org.bouncycastle.bcpg.CompressedDataPacket;
 import org.bouncycastle.bcpg.CompressionAlgorithmTags;
@@ -184,4 +186,32 @@ protected void fill() throws IOException
 
       throw new PGPException("can't recognise compression algorithm: " + this.getAlgorithm());
     }
+
+    /**
+     * Return an input stream that decompresses and returns data in the compressed packet, decoding
+     * ahead on the passed in executor. Only {@link CompressionAlgorithmTags#BZIP2} data is decoded on
+     * the executor, other algorithms are handled as for {@link #getDataStream()}.
+     *
+     * @param executor the executor to decompress on.
+     * @param maxPending the maximum number of blocks decompressed ahead of the reader.
+     * @return a stream over the uncompressed data.
+     * @throws PGPException if an error occurs constructing the decompression stream.
+     */
+    public InputStream getDataStream(Executor executor, int maxPending)
+        throws PGPException
+    {
+        if (this.getAlgorithm() == BZIP2)
+        {
+            try
+            {
+                return new CBZip2ParallelInputStream(this.getInputStream(), executor, maxPending);
+            }
+            catch (IOException e)
+            {
+                throw new PGPException("I/O problem with stream: " + e, e);
+            }
+        }
+
+        return getDataStream();
+    }
 }
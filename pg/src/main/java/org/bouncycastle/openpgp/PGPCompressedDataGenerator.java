@@ -2,10 +2,12 @@
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.Executor;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 
 import org.bouncycastle.apache.bzip2.CBZip2OutputStream;
+import org.bouncycastle.apache.bzip2.CBZip2ParallelOutputStream;
 import org.bouncycastle.bcpg.BCPGOutputStream;
 import org.bouncycastle.bcpg.CompressionAlgorithmTags;
 import org.bouncycastle.bcpg.PacketTags;
@@ -40,6 +42,8 @@
 {
     private int                     algorithm;
     private int                     compression;
+    private Executor                executor;
+    private int                     maxPending;
 
     private OutputStream            dOut;
     private BCPGOutputStream        pkOut;
@@ -90,6 +94,28 @@ public PGPCompressedDataGenerator(
         this.compression = compression;
     }
 
+    /**
+     * Set an executor to compress on. This is only used with {@link CompressionAlgorithmTags#BZIP2}, where blocks
+     * are sorted and encoded on the executor while the next block is filled. The output is the same as without
+     * an executor.
+     *
+     * @param executor the executor to compress on, null to compress on the calling thread.
+     * @param maxPending the maximum number of blocks being compressed at once, each needs about 7MB of memory.
+     * @return the current generator.
+     */
+    public PGPCompressedDataGenerator setExecutor(Executor executor, int maxPending)
+    {
+        if (executor != null && maxPending < 1)
+        {
+            throw new IllegalArgumentException("maxPending must be positive");
+        }
+
+        this.executor = executor;
+        this.maxPending = maxPending;
+
+        return this;
+    }
+
     /**
      * Return an OutputStream which will save the data being written to
      * the compressed object.
@@ -176,7 +202,14 @@ private void doOpen() throws IOException
                 dOut = new SafeDeflaterOutputStream(pkOut, compression, false);
                 break;
             case CompressionAlgorithmTags.BZIP2:
-                dOut = new SafeCBZip2OutputStream(pkOut);
+                if (executor != null)
+                {
+                    dOut = new SafeCBZip2ParallelOutputStream(pkOut, executor, maxPending);
+                }
+                else
+                {
+                    dOut = new SafeCBZip2OutputStream(pkOut);
+                }
                 break;
             default:
                 // Constructor should guard against this possibility
@@ -221,6 +254,19 @@ public void close() throws IOException
         }
     }
 
+    private static class SafeCBZip2ParallelOutputStream extends CBZip2ParallelOutputStream
+    {
+        public SafeCBZip2ParallelOutputStream(OutputStream output, Executor executor, int maxPending) throws IOException
+        {
+            super(output, executor, maxPending);
+        }
+
+        public void close() throws IOException
+        {
+            finish();
+        }
+    }
+
     private static class SafeDeflaterOutputStream extends DeflaterOutputStream
     {
         public SafeDeflaterOutputStream(OutputStream output, int compression, boolean nowrap)
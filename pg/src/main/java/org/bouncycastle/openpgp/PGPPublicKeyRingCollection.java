@@ -28,12 +28,16 @@
     private Map<Long, PGPPublicKeyRing> pubRings = new HashMap<Long, PGPPublicKeyRing>();
     private List<Long> order = new ArrayList<Long>();
 
+    private KeyRingIndex<PGPPublicKeyRing> index;      // built on first lookup
+
     private PGPPublicKeyRingCollection(
         Map<Long, PGPPublicKeyRing> pubRings,
-        List<Long> order)
+        List<Long> order,
+        KeyRingIndex<PGPPublicKeyRing> index)
     {
         this.pubRings = pubRings;
         this.order = order;
+        this.index = index;
     }
 
     public PGPPublicKeyRingCollection(
@@ -154,7 +158,7 @@ public Iterator<PGPPublicKeyRing> getKeyRings(
         boolean matchPartial,
         boolean ignoreCase)
     {
-        Iterator<PGPPublicKeyRing> it = this.getKeyRings();
+        Iterator<PGPPublicKeyRing> it = matchPartial ? this.getKeyRings() : getIndex().getByUserID(userID).iterator();
         List<PGPPublicKeyRing> rings = new ArrayList<PGPPublicKeyRing>();
 
         if (ignoreCase)
@@ -204,7 +208,7 @@ public Iterator<PGPPublicKeyRing> getKeyRings(
     public PGPPublicKey getPublicKey(
         long keyID)
     {
-        Iterator<PGPPublicKeyRing> it = this.getKeyRings();
+        Iterator<PGPPublicKeyRing> it = getIndex().getByKeyID(keyID).iterator();
 
         while (it.hasNext())
         {
@@ -236,7 +240,7 @@ public PGPPublicKeyRing getPublicKeyRing(
             return (PGPPublicKeyRing)pubRings.get(id);
         }
 
-        Iterator<PGPPublicKeyRing> it = this.getKeyRings();
+        Iterator<PGPPublicKeyRing> it = getIndex().getByKeyID(keyID).iterator();
 
         while (it.hasNext())
         {
@@ -261,7 +265,7 @@ public PGPPublicKeyRing getPublicKeyRing(
     public PGPPublicKey getPublicKey(
         byte[] fingerprint)
     {
-        Iterator<PGPPublicKeyRing> it = this.getKeyRings();
+        Iterator<PGPPublicKeyRing> it = getIndex().getByFingerprint(fingerprint).iterator();
 
         while (it.hasNext())
         {
@@ -286,7 +290,7 @@ public PGPPublicKey getPublicKey(
     public PGPPublicKeyRing getPublicKeyRing(
         byte[] fingerprint)
     {
-        Iterator<PGPPublicKeyRing> it = this.getKeyRings();
+        Iterator<PGPPublicKeyRing> it = getIndex().getByFingerprint(fingerprint).iterator();
 
         while (it.hasNext())
         {
@@ -312,7 +316,7 @@ public Iterator<PGPPublicKey> getKeysWithSignaturesBy(long keyID)
     {
         List<PGPPublicKey> keysWithSigs = new ArrayList<PGPPublicKey>();
 
-        for (Iterator<PGPPublicKeyRing> it = this.iterator(); it.hasNext(); )
+        for (Iterator<PGPPublicKeyRing> it = getIndex().getBySigner(keyID, this.iterator()).iterator(); it.hasNext(); )
         {
             PGPPublicKeyRing k = (PGPPublicKeyRing)it.next();
 
@@ -398,7 +402,10 @@ public static PGPPublicKeyRingCollection addPublicKeyRing(
         newPubRings.put(key, publicKeyRing);
         newOrder.add(key);
 
-        return new PGPPublicKeyRingCollection(newPubRings, newOrder);
+        KeyRingIndex<PGPPublicKeyRing> index = ringCollection.getBuiltIndex();
+
+        return new PGPPublicKeyRingCollection(newPubRings, newOrder,
+            (index == null) ? null : index.with(publicKeyRing));
     }
 
     /**
@@ -424,7 +431,7 @@ public static PGPPublicKeyRingCollection removePublicKeyRing(
         Map<Long, PGPPublicKeyRing> newPubRings = new HashMap<Long, PGPPublicKeyRing>(ringCollection.pubRings);
         List<Long> newOrder = new ArrayList<Long>(ringCollection.order);
 
-        newPubRings.remove(key);
+        PGPPublicKeyRing oldRing = newPubRings.remove(key);
 
         for (int i = 0; i < newOrder.size(); i++)
         {
@@ -437,7 +444,25 @@ public static PGPPublicKeyRingCollection removePublicKeyRing(
             }
         }
 
-        return new PGPPublicKeyRingCollection(newPubRings, newOrder);
+        KeyRingIndex<PGPPublicKeyRing> index = ringCollection.getBuiltIndex();
+
+        return new PGPPublicKeyRingCollection(newPubRings, newOrder,
+            (index == null) ? null : index.without(oldRing));
+    }
+
+    private synchronized KeyRingIndex<PGPPublicKeyRing> getIndex()
+    {
+        if (index == null)
+        {
+            index = new KeyRingIndex<PGPPublicKeyRing>(this.iterator());
+        }
+
+        return index;
+    }
+
+    private synchronized KeyRingIndex<PGPPublicKeyRing> getBuiltIndex()
+    {
+        return index;
     }
 
     /**
@@ -28,12 +28,16 @@
     private Map<Long, PGPSecretKeyRing> secretRings = new HashMap<Long, PGPSecretKeyRing>();
     private List<Long> order = new ArrayList<Long>();
 
+    private KeyRingIndex<PGPSecretKeyRing> index;      // built on first lookup
+
     private PGPSecretKeyRingCollection(
         Map<Long, PGPSecretKeyRing> secretRings,
-        List<Long> order)
+        List<Long> order,
+        KeyRingIndex<PGPSecretKeyRing> index)
     {
         this.secretRings = secretRings;
         this.order = order;
+        this.index = index;
     }
 
     public PGPSecretKeyRingCollection(
@@ -153,7 +157,7 @@ public Iterator<PGPSecretKeyRing> getKeyRings(
         boolean matchPartial,
         boolean ignoreCase)
     {
-        Iterator<PGPSecretKeyRing> it = this.getKeyRings();
+        Iterator<PGPSecretKeyRing> it = matchPartial ? this.getKeyRings() : getIndex().getByUserID(userID).iterator();
         List<PGPSecretKeyRing> rings = new ArrayList<PGPSecretKeyRing>();
 
         if (ignoreCase)
@@ -203,7 +207,7 @@ public Iterator<PGPSecretKeyRing> getKeyRings(
     public PGPSecretKey getSecretKey(
         long keyID)
     {
-        Iterator<PGPSecretKeyRing> it = this.getKeyRings();
+        Iterator<PGPSecretKeyRing> it = getIndex().getByKeyID(keyID).iterator();
 
         while (it.hasNext())
         {
@@ -235,7 +239,7 @@ public PGPSecretKeyRing getSecretKeyRing(
             return (PGPSecretKeyRing)secretRings.get(id);
         }
 
-        Iterator<PGPSecretKeyRing> it = this.getKeyRings();
+        Iterator<PGPSecretKeyRing> it = getIndex().getByKeyID(keyID).iterator();
 
         while (it.hasNext())
         {
@@ -312,7 +316,10 @@ public static PGPSecretKeyRingCollection addSecretKeyRing(
         newSecretRings.put(key, secretKeyRing);
         newOrder.add(key);
 
-        return new PGPSecretKeyRingCollection(newSecretRings, newOrder);
+        KeyRingIndex<PGPSecretKeyRing> index = ringCollection.getBuiltIndex();
+
+        return new PGPSecretKeyRingCollection(newSecretRings, newOrder,
+            (index == null) ? null : index.with(secretKeyRing));
     }
 
     /**
@@ -338,7 +345,7 @@ public static PGPSecretKeyRingCollection removeSecretKeyRing(
         Map<Long, PGPSecretKeyRing> newSecretRings = new HashMap<Long, PGPSecretKeyRing>(ringCollection.secretRings);
         List<Long> newOrder = new ArrayList<Long>(ringCollection.order);
 
-        newSecretRings.remove(key);
+        PGPSecretKeyRing oldRing = newSecretRings.remove(key);
 
         for (int i = 0; i < newOrder.size(); i++)
         {
@@ -351,7 +358,25 @@ public static PGPSecretKeyRingCollection removeSecretKeyRing(
             }
         }
 
-        return new PGPSecretKeyRingCollection(newSecretRings, newOrder);
+        KeyRingIndex<PGPSecretKeyRing> index = ringCollection.getBuiltIndex();
+
+        return new PGPSecretKeyRingCollection(newSecretRings, newOrder,
+            (index == null) ? null : index.without(oldRing));
+    }
+
+    private synchronized KeyRingIndex<PGPSecretKeyRing> getIndex()
+    {
+        if (index == null)
+        {
+            index = new KeyRingIndex<PGPSecretKeyRing>(this.iterator());
+        }
+
+        return index;
+    }
+
+    private synchronized KeyRingIndex<PGPSecretKeyRing> getBuiltIndex()
+    {
+        return index;
     }
 
     /**
@@ -509,7 +509,7 @@ public static InputStream getDecoderStream(
             {
                 in.reset();
 
-                return new ArmoredInputStream(in);
+                return new ArmoredInputStream(in, true, true);
             }
 
             byte[] buf = new byte[READ_AHEAD];
@@ -523,7 +523,7 @@ public static InputStream getDecoderStream(
                 {
                     in.reset();
 
-                    return new ArmoredInputStream(in);
+                    return new ArmoredInputStream(in, true, true);
                 }
 
                 if (ch != '\n' && ch != '\r')
@@ -541,7 +541,7 @@ public static InputStream getDecoderStream(
             //
             if (count < 4)
             {
-                return new ArmoredInputStream(in);
+                return new ArmoredInputStream(in, true, true);
             }
 
             //
@@ -560,10 +560,10 @@ public static InputStream getDecoderStream(
                 //
                 if ((decoded[0] & 0x80) != 0)
                 {
-                    return new ArmoredInputStream(in, false);
+                    return new ArmoredInputStream(in, false, true);
                 }
 
-                return new ArmoredInputStream(in);
+                return new ArmoredInputStream(in, true, true);
             }
             catch (DecoderException e)
             {
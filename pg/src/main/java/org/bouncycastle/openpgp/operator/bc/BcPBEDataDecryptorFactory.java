@@ -1,5 +1,7 @@
 package org.bouncycastle.openpgp.operator.bc;
 
+import java.util.concurrent.Executor;
+
 import org.bouncycastle.crypto.BlockCipher;
 import org.bouncycastle.crypto.BufferedBlockCipher;
 import org.bouncycastle.openpgp.PGPException;
@@ -13,6 +15,9 @@
 public class BcPBEDataDecryptorFactory
     extends PBEDataDecryptorFactory
 {
+    private Executor aeadExecutor;
+    private int aeadMaxPending;
+
     /**
      * Base constructor.
      *
@@ -24,6 +29,28 @@ public BcPBEDataDecryptorFactory(char[] pass, BcPGPDigestCalculatorProvider calc
         super(pass, calculatorProvider);
     }
 
+    /**
+     * Decrypt the chunks of AEAD encrypted data using tasks run on an executor. The data is read ahead of the
+     * caller, and decrypted groups of chunks (of at least 64KB) are returned in order, the plain text being the
+     * same as that of the sequential stream.
+     *
+     * @param executor the executor to run the decryption tasks, null to decrypt on the calling thread.
+     * @param maxPending the maximum number of groups of chunks being decrypted or waiting to be read.
+     * @return the current factory.
+     */
+    public BcPBEDataDecryptorFactory setAEADExecutor(Executor executor, int maxPending)
+    {
+        if (executor != null && maxPending < 1)
+        {
+            throw new IllegalArgumentException("maxPending must be positive");
+        }
+
+        this.aeadExecutor = executor;
+        this.aeadMaxPending = maxPending;
+
+        return this;
+    }
+
     public byte[] recoverSessionData(int keyAlgorithm, byte[] key, byte[] secKeyData)
         throws PGPException
     {
@@ -69,6 +96,6 @@ public PGPDataDecryptor createDataDecryptor(boolean withIntegrityPacket, int enc
     public PGPDataDecryptor createDataDecryptor(int aeadAlgorithm, byte[] iv, int chunkSize, int encAlgorithm, byte[] key)
         throws PGPException
     {
-        return BcUtil.createDataDecryptor(aeadAlgorithm, iv, chunkSize, encAlgorithm, key);
+        return BcUtil.createDataDecryptor(aeadAlgorithm, iv, chunkSize, encAlgorithm, key, aeadExecutor, aeadMaxPending);
     }
 }
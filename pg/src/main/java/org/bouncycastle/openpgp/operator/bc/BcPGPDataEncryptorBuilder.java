@@ -2,6 +2,7 @@
 
 import java.io.OutputStream;
 import java.security.SecureRandom;
+import java.util.concurrent.Executor;
 
 import org.bouncycastle.bcpg.AEADEncDataPacket;
 import org.bouncycastle.bcpg.SymmetricKeyAlgorithmTags;
@@ -29,6 +30,8 @@
     private int encAlgorithm;
     private int aeadAlgorithm = -1;
     private int chunkSize;
+    private Executor aeadExecutor;
+    private int aeadMaxPending;
 
     /**
      * Constructs a new data encryptor builder for a specified cipher type.
@@ -79,6 +82,28 @@ public BcPGPDataEncryptorBuilder setWithAEAD(int aeadAlgorithm, int chunkSize)
         return this;
     }
 
+    /**
+     * Encrypt the chunks of AEAD encrypted data using tasks run on an executor. Groups of chunks (of at least 64KB)
+     * are encrypted while the caller writes more data and are written out in order, so the output is the same as
+     * that of the sequential stream.
+     *
+     * @param executor the executor to run the encryption tasks, null to encrypt on the calling thread.
+     * @param maxPending the maximum number of groups of chunks being encrypted or waiting to be written.
+     * @return the current builder.
+     */
+    public BcPGPDataEncryptorBuilder setAEADExecutor(Executor executor, int maxPending)
+    {
+        if (executor != null && maxPending < 1)
+        {
+            throw new IllegalArgumentException("maxPending must be positive");
+        }
+
+        this.aeadExecutor = executor;
+        this.aeadMaxPending = maxPending;
+
+        return this;
+    }
+
     /**
      * Provide a user defined source of randomness.
      * <p>
@@ -182,6 +207,11 @@ public OutputStream getOutputStream(OutputStream out)
         {
             try
             {
+                if (aeadExecutor != null)
+                {
+                    return new BcUtil.PGPAeadParallelOutputStream(out, aeadExecutor, aeadMaxPending, new KeyParameter(keyBytes), encAlgorithm, aeadAlgorithm, chunkSize, iv);
+                }
+
                 return new BcUtil.PGPAeadOutputStream(out, c, new KeyParameter(keyBytes), encAlgorithm, aeadAlgorithm, chunkSize, iv);
             }
             catch (Exception e)
@@ -2,6 +2,7 @@
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.concurrent.Executor;
 
 import org.bouncycastle.bcpg.ECDHPublicBCPGKey;
 import org.bouncycastle.bcpg.PublicKeyAlgorithmTags;
@@ -37,11 +38,36 @@
 
     private final PGPPrivateKey pgpPrivKey;
 
+    private Executor aeadExecutor;
+    private int aeadMaxPending;
+
     public BcPublicKeyDataDecryptorFactory(PGPPrivateKey pgpPrivKey)
     {
         this.pgpPrivKey = pgpPrivKey;
     }
 
+    /**
+     * Decrypt the chunks of AEAD encrypted data using tasks run on an executor. The data is read ahead of the
+     * caller, and decrypted groups of chunks (of at least 64KB) are returned in order, the plain text being the
+     * same as that of the sequential stream.
+     *
+     * @param executor the executor to run the decryption tasks, null to decrypt on the calling thread.
+     * @param maxPending the maximum number of groups of chunks being decrypted or waiting to be read.
+     * @return the current factory.
+     */
+    public BcPublicKeyDataDecryptorFactory setAEADExecutor(Executor executor, int maxPending)
+    {
+        if (executor != null && maxPending < 1)
+        {
+            throw new IllegalArgumentException("maxPending must be positive");
+        }
+
+        this.aeadExecutor = executor;
+        this.aeadMaxPending = maxPending;
+
+        return this;
+    }
+
     public byte[] recoverSessionData(int keyAlgorithm, byte[][] secKeyData)
         throws PGPException
     {
@@ -189,6 +215,6 @@ public PGPDataDecryptor createDataDecryptor(boolean withIntegrityPacket, int enc
     public PGPDataDecryptor createDataDecryptor(final int aeadAlgorithm, final byte[] iv, final int chunkSize, final int encAlgorithm, byte[] key)
         throws PGPException
     {
-        return BcUtil.createDataDecryptor(aeadAlgorithm, iv, chunkSize, encAlgorithm, key);
+        return BcUtil.createDataDecryptor(aeadAlgorithm, iv, chunkSize, encAlgorithm, key, aeadExecutor, aeadMaxPending);
     }
 }
@@ -1,5 +1,7 @@
 package org.bouncycastle.openpgp.operator.bc;
 
+import java.util.concurrent.Executor;
+
 import org.bouncycastle.crypto.BlockCipher;
 import org.bouncycastle.openpgp.PGPException;
 import org.bouncycastle.openpgp.PGPSessionKey;
@@ -14,11 +16,36 @@
 {
     private final PGPSessionKey sessionKey;
 
+    private Executor aeadExecutor;
+    private int aeadMaxPending;
+
     public BcSessionKeyDataDecryptorFactory(PGPSessionKey sessionKey)
     {
         this.sessionKey = sessionKey;
     }
 
+    /**
+     * Decrypt the chunks of AEAD encrypted data using tasks run on an executor. The data is read ahead of the
+     * caller, and decrypted groups of chunks (of at least 64KB) are returned in order, the plain text being the
+     * same as that of the sequential stream.
+     *
+     * @param executor the executor to run the decryption tasks, null to decrypt on the calling thread.
+     * @param maxPending the maximum number of groups of chunks being decrypted or waiting to be read.
+     * @return the current factory.
+     */
+    public BcSessionKeyDataDecryptorFactory setAEADExecutor(Executor executor, int maxPending)
+    {
+        if (executor != null && maxPending < 1)
+        {
+            throw new IllegalArgumentException("maxPending must be positive");
+        }
+
+        this.aeadExecutor = executor;
+        this.aeadMaxPending = maxPending;
+
+        return this;
+    }
+
     public PGPSessionKey getSessionKey()
     {
         return sessionKey;
@@ -35,6 +62,6 @@ public PGPDataDecryptor createDataDecryptor(boolean withIntegrityPacket, int enc
     public PGPDataDecryptor createDataDecryptor(int aeadAlgorithm, byte[] iv, int chunkSize, int encAlgorithm, byte[] key)
         throws PGPException
     {
-        return BcUtil.createDataDecryptor(aeadAlgorithm, iv, chunkSize, encAlgorithm, key);
+        return BcUtil.createDataDecryptor(aeadAlgorithm, iv, chunkSize, encAlgorithm, key, aeadExecutor, aeadMaxPending);
     }
 }
@@ -2,8 +2,17 @@
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.x9.ECNamedCurveTable;
@@ -123,6 +132,13 @@ private static long getChunkLength(int chunkSize)
 
     static PGPDataDecryptor createDataDecryptor(final int aeadAlgorithm, final byte[] iv, final int chunkSize, final int encAlgorithm, final byte[] key)
         throws PGPException
+    {
+        return createDataDecryptor(aeadAlgorithm, iv, chunkSize, encAlgorithm, key, null, 0);
+    }
+
+    static PGPDataDecryptor createDataDecryptor(final int aeadAlgorithm, final byte[] iv, final int chunkSize, final int encAlgorithm, final byte[] key,
+                                                final Executor executor, final int maxPending)
+        throws PGPException
     {
         final KeyParameter secretKey = new KeyParameter(key);
 
@@ -134,6 +150,11 @@ public InputStream getInputStream(InputStream in)
             {
                 try
                 {
+                    if (executor != null)
+                    {
+                        return new PGPAeadParallelInputStream(in, executor, maxPending, secretKey, iv, encAlgorithm, aeadAlgorithm, chunkSize);
+                    }
+
                     return new PGPAeadInputStream(in, c, secretKey, iv, encAlgorithm, aeadAlgorithm, chunkSize);
                 }
                 catch (IOException e)
@@ -531,4 +552,463 @@ private void finish()
             }
         }
     }
+
+    /**
+     * Runs the chunk processing for an AEAD stream as tasks on an executor. Each task covers a group of consecutive
+     * chunks so the per task overhead stays small for short chunk sizes, and results are collected in submission
+     * order.
+     */
+    private static class AEADChunkPipeline
+    {
+        private static final int MIN_GROUP_LENGTH = 64 * 1024;
+
+        private final Executor executor;
+        private final int maxPending;
+        private final KeyParameter secretKey;
+        private final byte[] iv;
+        private final byte[] aaData;
+        private final int encAlgorithm;
+        private final int aeadAlgorithm;
+        private final int chunkLength;
+        private final int chunksPerGroup;
+        private final List<AEADBlockCipher> ciphers = new ArrayList<AEADBlockCipher>();
+        private final LinkedList<FutureTask<byte[]>> pending = new LinkedList<FutureTask<byte[]>>();
+
+        AEADChunkPipeline(Executor executor, int maxPending, KeyParameter secretKey, byte[] iv, int encAlgorithm, int aeadAlgorithm, int chunkSize)
+        {
+            this.executor = executor;
+            this.maxPending = maxPending;
+            this.secretKey = secretKey;
+            this.iv = iv;
+            this.encAlgorithm = encAlgorithm;
+            this.aeadAlgorithm = aeadAlgorithm;
+            this.chunkLength = (int)getChunkLength(chunkSize);
+            this.chunksPerGroup = Math.max(1, MIN_GROUP_LENGTH / chunkLength);
+
+            aaData = new byte[5];
+
+            aaData[0] = (byte)(0xC0 | PacketTags.AEAD_ENC_DATA);
+            aaData[1] = 0x01;   // packet version
+            aaData[2] = (byte)encAlgorithm;
+            aaData[3] = (byte)aeadAlgorithm;
+            aaData[4] = (byte)chunkSize;
+        }
+
+        boolean isFull()
+        {
+            return pending.size() >= maxPending;
+        }
+
+        boolean isEmpty()
+        {
+            return pending.isEmpty();
+        }
+
+        /**
+         * Return the number of chunks in len bytes of input, where every chunk but the last is full length.
+         */
+        int getChunkCount(boolean forEncryption, int len)
+        {
+            int inChunkLength = forEncryption ? chunkLength : chunkLength + 16;
+
+            return (len + inChunkLength - 1) / inChunkLength;
+        }
+
+        void submit(final boolean forEncryption, final byte[] buf, final int len, final long firstChunkIndex)
+        {
+            FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>()
+            {
+                public byte[] call()
+                    throws Exception
+                {
+                    return processChunks(forEncryption, buf, len, firstChunkIndex);
+                }
+            });
+
+            pending.addLast(task);
+
+            try
+            {
+                executor.execute(task);
+            }
+            catch (RejectedExecutionException e)
+            {
+                task.run();
+            }
+        }
+
+        /**
+         * Wait for the oldest task and return its output.
+         */
+        byte[] next()
+            throws IOException
+        {
+            FutureTask<byte[]> task = pending.removeFirst();
+
+            try
+            {
+                return task.get();
+            }
+            catch (InterruptedException e)
+            {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for AEAD chunk");
+            }
+            catch (ExecutionException e)
+            {
+                cancel();
+
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException)
+                {
+                    throw (IOException)cause;
+                }
+                throw Exceptions.ioException("exception processing chunks: " + cause.getMessage(), cause);
+            }
+        }
+
+        void cancel()
+        {
+            while (!pending.isEmpty())
+            {
+                pending.removeFirst().cancel(false);
+            }
+        }
+
+        /**
+         * Calculate the final tag when encrypting, or check it when decrypting.
+         */
+        byte[] processFinalTag(boolean forEncryption, long chunkIndex, long totalBytes, byte[] tag)
+            throws IOException
+        {
+            AEADBlockCipher c = takeCipher();
+
+            byte[] adata = new byte[13];
+            System.arraycopy(aaData, 0, adata, 0, aaData.length);
+
+            xorChunkId(adata, chunkIndex);
+            try
+            {
+                c.init(forEncryption, new AEADParameters(secretKey, 128, getNonce(iv, chunkIndex)));  // always full tag.
+
+                c.processAADBytes(adata, 0, adata.length);
+                c.processAADBytes(Pack.longToBigEndian(totalBytes), 0, 8);
+
+                if (forEncryption)
+                {
+                    tag = new byte[16];
+                }
+                else
+                {
+                    c.processBytes(tag, 0, 16, tag, 0);
+                }
+
+                c.doFinal(tag, 0);
+            }
+            catch (InvalidCipherTextException e)
+            {
+                throw new IOException("exception processing final tag: " + e.getMessage());
+            }
+
+            returnCipher(c);
+
+            return tag;
+        }
+
+        private byte[] processChunks(boolean forEncryption, byte[] buf, int len, long chunkIndex)
+            throws IOException
+        {
+            int inChunkLength = forEncryption ? chunkLength : chunkLength + 16;
+            int chunkCount = getChunkCount(forEncryption, len);
+            byte[] out = new byte[forEncryption ? len + chunkCount * 16 : len - chunkCount * 16];
+
+            AEADBlockCipher c = takeCipher();
+
+            int inOff = 0;
+            int outOff = 0;
+            while (inOff < len)
+            {
+                int inLen = Math.min(inChunkLength, len - inOff);
+
+                byte[] adata = new byte[13];
+                System.arraycopy(aaData, 0, adata, 0, aaData.length);
+
+                xorChunkId(adata, chunkIndex);
+
+                try
+                {
+                    c.init(forEncryption, new AEADParameters(secretKey, 128, getNonce(iv, chunkIndex)));  // always full tag.
+
+                    c.processAADBytes(adata, 0, adata.length);
+
+                    int outLen = c.processBytes(buf, inOff, inLen, out, outOff);
+
+                    outOff += outLen + c.doFinal(out, outOff + outLen);
+                }
+                catch (InvalidCipherTextException e)
+                {
+                    throw new IOException("exception processing chunk " + chunkIndex + ": " + e.getMessage());
+                }
+
+                inOff += inLen;
+                chunkIndex++;
+            }
+
+            returnCipher(c);
+
+            return out;
+        }
+
+        private AEADBlockCipher takeCipher()
+            throws IOException
+        {
+            synchronized (ciphers)
+            {
+                if (!ciphers.isEmpty())
+                {
+                    return ciphers.remove(ciphers.size() - 1);
+                }
+            }
+
+            try
+            {
+                return createAEADCipher(encAlgorithm, aeadAlgorithm);
+            }
+            catch (PGPException e)
+            {
+                throw Exceptions.ioException(e.getMessage(), e);
+            }
+        }
+
+        private void returnCipher(AEADBlockCipher c)
+        {
+            synchronized (ciphers)
+            {
+                ciphers.add(c);
+            }
+        }
+    }
+
+    /**
+     * AEAD decryption stream which reads ahead, decrypting groups of chunks on an executor while the caller consumes
+     * the plain text of earlier ones.
+     */
+    private static class PGPAeadParallelInputStream
+        extends InputStream
+    {
+        private final InputStream in;
+        private final AEADChunkPipeline pipeline;
+        private final int groupLength;
+        private final byte[] tag = new byte[16];
+
+        private boolean eof;
+        private byte[] data;
+        private int dataOff;
+        private long chunkIndex = 0;
+        private long totalBytes = 0;
+
+        public PGPAeadParallelInputStream(InputStream in, Executor executor, int maxPending, KeyParameter secretKey, byte[] iv, int encAlgorithm, int aeadAlgorithm, int chunkSize)
+            throws IOException
+        {
+            this.in = in;
+            this.pipeline = new AEADChunkPipeline(executor, maxPending, secretKey, iv, encAlgorithm, aeadAlgorithm, chunkSize);
+            this.groupLength = pipeline.chunksPerGroup * (pipeline.chunkLength + 16);
+
+            // there is always a 16 byte tag following the last chunk.
+            if (Streams.readFully(in, tag, 0, 16) != 16)
+            {
+                throw new IOException("premature end of stream in AEAD data");
+            }
+
+            fillPipeline();
+        }
+
+        public int read()
+            throws IOException
+        {
+            if (!nextData())
+            {
+                return -1;
+            }
+
+            return data[dataOff++] & 0xff;
+        }
+
+        public int read(byte[] b, int off, int len)
+            throws IOException
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+
+            if (!nextData())
+            {
+                return -1;
+            }
+
+            int supplyLen = Math.min(len, data.length - dataOff);
+            System.arraycopy(data, dataOff, b, off, supplyLen);
+            dataOff += supplyLen;
+
+            return supplyLen;
+        }
+
+        public int available()
+            throws IOException
+        {
+            return data == null ? 0 : data.length - dataOff;
+        }
+
+        public void close()
+            throws IOException
+        {
+            pipeline.cancel();
+            data = null;
+            eof = true;
+        }
+
+        private boolean nextData()
+            throws IOException
+        {
+            while (data == null || dataOff == data.length)
+            {
+                if (pipeline.isEmpty())
+                {
+                    data = null;
+                    return false;
+                }
+
+                data = pipeline.next();
+                dataOff = 0;
+
+                fillPipeline();
+            }
+
+            return true;
+        }
+
+        private void fillPipeline()
+            throws IOException
+        {
+            while (!eof && !pipeline.isFull())
+            {
+                // the tag held back from the previous read may turn out to be the start of the next chunk.
+                byte[] buf = new byte[16 + groupLength];
+                System.arraycopy(tag, 0, buf, 0, 16);
+
+                int len = Streams.readFully(in, buf, 16, groupLength);
+
+                System.arraycopy(buf, len, tag, 0, 16);
+                eof = (len != groupLength);
+
+                if (len > 0)
+                {
+                    int chunkCount = pipeline.getChunkCount(false, len);
+                    if (len - (chunkCount - 1) * (pipeline.chunkLength + 16) < 16)
+                    {
+                        throw new IOException("truncated chunk " + (chunkIndex + chunkCount - 1) + " in AEAD data");
+                    }
+
+                    pipeline.submit(false, buf, len, chunkIndex);
+
+                    chunkIndex += chunkCount;
+                    totalBytes += len - chunkCount * 16;
+                }
+
+                if (eof)
+                {
+                    pipeline.processFinalTag(false, chunkIndex, totalBytes, tag);
+                }
+            }
+        }
+    }
+
+    /**
+     * AEAD encryption stream which encrypts groups of chunks on an executor while the caller writes more data,
+     * writing the encrypted chunks out in order. The output is identical to that of {@link PGPAeadOutputStream}.
+     */
+    static class PGPAeadParallelOutputStream
+        extends OutputStream
+    {
+        private final OutputStream out;
+        private final AEADChunkPipeline pipeline;
+
+        private byte[] data;
+        private int dataOff;
+        private long chunkIndex = 0;
+        private long totalBytes = 0;
+
+        public PGPAeadParallelOutputStream(OutputStream out, Executor executor, int maxPending, KeyParameter secretKey, int encAlgorithm, int aeadAlgorithm, int chunkSize, byte[] iv)
+        {
+            this.out = out;
+            this.pipeline = new AEADChunkPipeline(executor, maxPending, secretKey, iv, encAlgorithm, aeadAlgorithm, chunkSize);
+            this.data = new byte[pipeline.chunksPerGroup * pipeline.chunkLength];
+        }
+
+        public void write(int b)
+            throws IOException
+        {
+            data[dataOff++] = (byte)b;
+
+            if (dataOff == data.length)
+            {
+                submitData();
+            }
+        }
+
+        public void write(byte[] b, int off, int len)
+            throws IOException
+        {
+            while (len > 0)
+            {
+                int copyLen = Math.min(len, data.length - dataOff);
+                System.arraycopy(b, off, data, dataOff, copyLen);
+                dataOff += copyLen;
+                off += copyLen;
+                len -= copyLen;
+
+                if (dataOff == data.length)
+                {
+                    submitData();
+                }
+            }
+        }
+
+        public void close()
+            throws IOException
+        {
+            if (dataOff > 0)
+            {
+                submitData();
+            }
+
+            while (!pipeline.isEmpty())
+            {
+                out.write(pipeline.next());
+            }
+
+            out.write(pipeline.processFinalTag(true, chunkIndex, totalBytes, null)); // output final tag
+
+            out.close();
+        }
+
+        private void submitData()
+            throws IOException
+        {
+            while (pipeline.isFull())
+            {
+                out.write(pipeline.next());
+            }
+
+            pipeline.submit(true, data, dataOff, chunkIndex);
+
+            chunkIndex += pipeline.getChunkCount(true, dataOff);
+            totalBytes += dataOff;
+
+            data = new byte[data.length];
+            dataOff = 0;
+        }
+    }
 }
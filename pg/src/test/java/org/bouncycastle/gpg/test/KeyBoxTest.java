@@ -1,27 +1,36 @@
 package org.bouncycastle.gpg.test;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.Security;
 import java.security.cert.CertificateFactory;
 import java.util.Iterator;
+import java.util.List;
 
 import junit.framework.TestCase;
 import org.bouncycastle.bcpg.PublicKeyAlgorithmTags;
 import org.bouncycastle.gpg.keybox.BlobType;
 import org.bouncycastle.gpg.keybox.CertificateBlob;
 import org.bouncycastle.gpg.keybox.FirstBlob;
+import org.bouncycastle.gpg.keybox.IndexedKeyBox;
 import org.bouncycastle.gpg.keybox.KeyBlob;
 import org.bouncycastle.gpg.keybox.KeyBox;
+import org.bouncycastle.gpg.keybox.KeyInformation;
 import org.bouncycastle.gpg.keybox.PublicKeyRingBlob;
+import org.bouncycastle.gpg.keybox.UserID;
 import org.bouncycastle.gpg.keybox.bc.BcBlobVerifier;
+import org.bouncycastle.gpg.keybox.bc.BcIndexedKeyBox;
 import org.bouncycastle.gpg.keybox.bc.BcKeyBox;
 import org.bouncycastle.gpg.keybox.jcajce.JcaKeyBoxBuilder;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.openpgp.PGPPublicKey;
 import org.bouncycastle.openpgp.PGPPublicKeyRing;
 import org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Pack;
 import org.bouncycastle.util.io.Streams;
 import org.bouncycastle.util.test.SimpleTest;
 
@@ -367,9 +376,181 @@ public void testKeyBoxWithBrokenMD5()
     }
 
 
+    /**
+     * Check the indexed key box finds the same blobs as a fully parsed one.
+     *
+     * @throws Exception
+     */
+    public void testIndexedLookup()
+        throws Exception
+    {
+        byte[] raw = Streams.readAll(KeyBoxTest.class.getResourceAsStream("/pgpdata/pubring.kbx"));
+        File file = writeTempFile(raw);
+        try
+        {
+            KeyBox keyBox = new BcKeyBox(raw);
+
+            indexedLookupCheck(keyBox, new BcIndexedKeyBox(file));
+            indexedLookupCheck(keyBox, new JcaKeyBoxBuilder().buildIndexed(file));
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    private void indexedLookupCheck(KeyBox keyBox, IndexedKeyBox indexed)
+        throws Exception
+    {
+        isEquals(keyBox.getKeyBlobs().size(), indexed.getKeyBlobCount());
+        isEquals(keyBox.getFirstBlob().getFileCreatedAt(), indexed.getFirstBlob().getFileCreatedAt());
+
+        for (KeyBlob keyBlob : keyBox.getKeyBlobs())
+        {
+            for (KeyInformation keyInformation : keyBlob.getKeyInformation())
+            {
+                KeyBlob found = indexed.getKeyBlob(keyInformation.getFingerprint());
+                isEquals(keyBlob.getType(), found.getType());
+                isTrue(Arrays.areEqual(keyBlob.getKeyBytes(), found.getKeyBytes()));
+
+                if (keyInformation.getKeyID() != null)
+                {
+                    List<KeyBlob> blobs = indexed.getKeyBlobs(Pack.bigEndianToLong(keyInformation.getKeyID(), 0));
+                    isEquals(1, blobs.size());
+                    isTrue(Arrays.areEqual(keyBlob.getKeyBytes(), blobs.get(0).getKeyBytes()));
+                }
+            }
+
+            for (UserID userID : keyBlob.getUserIds())
+            {
+                List<KeyBlob> blobs = indexed.getKeyBlobs(userID.getUserIDAsString());
+                isEquals(1, blobs.size());
+                isTrue(Arrays.areEqual(keyBlob.getKeyBytes(), blobs.get(0).getKeyBytes()));
+            }
+        }
+
+        isTrue(indexed.getKeyBlob(new byte[20]) == null);
+        isTrue(indexed.getKeyBlobs(0x0102030405060708L).isEmpty());
+        isTrue(indexed.getKeyBlobs("Nobody <nobody@nowhere.local>").isEmpty());
+    }
+
+    /**
+     * Check blobs appended to a key box file are picked up, including one that is only partly written.
+     *
+     * @throws Exception
+     */
+    public void testIndexedRefresh()
+        throws Exception
+    {
+        byte[] raw = Streams.readAll(KeyBoxTest.class.getResourceAsStream("/pgpdata/pubring.kbx"));
+
+        int firstEnd = (int)Pack.bigEndianToInt(raw, 0);
+        int secondEnd = firstEnd + (int)Pack.bigEndianToInt(raw, firstEnd);
+
+        File file = writeTempFile(Arrays.copyOfRange(raw, 0, secondEnd));
+        try
+        {
+            IndexedKeyBox indexed = new BcIndexedKeyBox(file);
+            isEquals(1, indexed.getKeyBlobCount());
+            isEquals(0, indexed.refresh());
+
+            writeFile(file, Arrays.copyOfRange(raw, 0, secondEnd + 10));
+            isEquals(0, indexed.refresh());
+            isEquals(1, indexed.getKeyBlobCount());
+
+            writeFile(file, raw);
+            isEquals(1, indexed.refresh());
+            isEquals(2, indexed.getKeyBlobCount());
+            isTrue(indexed.getKeyBlobs("Walter Mitty <walter@mitty.local>").size() == 1);
+
+            // shrunk, indexed from the start
+            writeFile(file, Arrays.copyOfRange(raw, 0, firstEnd));
+            isEquals(0, indexed.refresh());
+            isEquals(0, indexed.getKeyBlobCount());
+            isTrue(indexed.getKeyBlobs("Walter Mitty <walter@mitty.local>").isEmpty());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Check a key box file which is rewritten, rather than appended to, is indexed again from the start, and that
+     * blobs deleted in place are skipped.
+     *
+     * @throws Exception
+     */
+    public void testIndexedRewrite()
+        throws Exception
+    {
+        byte[] raw = Streams.readAll(KeyBoxTest.class.getResourceAsStream("/pgpdata/pubring.kbx"));
+
+        int firstEnd = (int)Pack.bigEndianToInt(raw, 0);
+        int secondEnd = firstEnd + (int)Pack.bigEndianToInt(raw, firstEnd);
+
+        // the first blob followed by the X.509 one only, so the old end falls in the middle of a blob on growing
+        File file = writeTempFile(Arrays.concatenate(Arrays.copyOfRange(raw, 0, firstEnd),
+            Arrays.copyOfRange(raw, secondEnd, raw.length)));
+        try
+        {
+            IndexedKeyBox indexed = new BcIndexedKeyBox(file);
+            isEquals(1, indexed.getKeyBlobCount());
+
+            // grown, but not by appending
+            writeFile(file, raw);
+            isEquals(2, indexed.refresh());
+            isEquals(2, indexed.getKeyBlobCount());
+            isEquals(1, indexed.getKeyBlobs("Walter Mitty <walter@mitty.local>").size());
+
+            // the OpenPGP blob deleted in place, the lookup sees the empty blob before any refresh
+            byte[] deleted = Arrays.clone(raw);
+            deleted[firstEnd + 4] = (byte)BlobType.EMPTY_BLOB.getByteValue();
+            writeFile(file, deleted);
+            isTrue(indexed.getKeyBlobs("Walter Mitty <walter@mitty.local>").isEmpty());
+
+            // same size, but modified later
+            file.setLastModified(file.lastModified() + 2000);
+            isEquals(1, indexed.refresh());
+            isEquals(1, indexed.getKeyBlobCount());
+            isTrue(indexed.getKeyBlobs("Walter Mitty <walter@mitty.local>").isEmpty());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    private static File writeTempFile(byte[] data)
+        throws IOException
+    {
+        File file = File.createTempFile("bcpg", ".kbx");
+
+        writeFile(file, data);
+
+        return file;
+    }
+
+    private static void writeFile(File file, byte[] data)
+        throws IOException
+    {
+        FileOutputStream fOut = new FileOutputStream(file);
+        try
+        {
+            fOut.write(data);
+        }
+        finally
+        {
+            fOut.close();
+        }
+    }
+
     public void performTest()
         throws Exception
     {
+        testIndexedLookup();
+        testIndexedRefresh();
+        testIndexedRewrite();
         testNoFirstBlob();
         testSanityElGamal();
         testKeyBoxWithBrokenMD5();
@@ -1,16 +1,22 @@
 package org.bouncycastle.openpgp.test;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.SecureRandom;
 import java.security.Security;
 
 import org.bouncycastle.bcpg.ArmoredInputStream;
+import org.bouncycastle.bcpg.ArmoredOutputStream;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.openpgp.PGPObjectFactory;
 import org.bouncycastle.openpgp.operator.jcajce.JcaKeyFingerprintCalculator;
 import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.Strings;
 import org.bouncycastle.util.encoders.Hex;
+import org.bouncycastle.util.io.Streams;
 import org.bouncycastle.util.test.SimpleTest;
 
 public class ArmoredInputStreamTest
@@ -98,6 +104,115 @@ public void performTest()
         {
             isTrue("invalid armor header".equals(e.getMessage()));
         }
+
+        bulkTest();
+        readAheadPositionTest();
+        readAheadCRCTest();
+    }
+
+    private void bulkTest()
+        throws Exception
+    {
+        SecureRandom random = new SecureRandom();
+        int[] sizes = { 1, 2, 3, 4, 47, 48, 49, 50, 95, 96, 97, 1000, 4095, 20000 };
+
+        for (int i = 0; i != sizes.length; i++)
+        {
+            byte[] data = new byte[sizes[i]];
+            random.nextBytes(data);
+
+            ByteArrayOutputStream bytewise = new ByteArrayOutputStream();
+            ArmoredOutputStream aOut = new ArmoredOutputStream(bytewise);
+            for (int j = 0; j != data.length; j++)
+            {
+                aOut.write(data[j] & 0xFF);
+            }
+            aOut.close();
+
+            ByteArrayOutputStream bulk = new ByteArrayOutputStream();
+            aOut = new ArmoredOutputStream(bulk);
+            aOut.write(data, 0, 1);
+            for (int off = 1, chunk = 1; off < data.length; off += chunk, chunk = chunk * 2 + 1)
+            {
+                aOut.write(data, off, Math.min(chunk, data.length - off));
+            }
+            aOut.close();
+
+            isTrue("bulk encoding differs for " + sizes[i], Arrays.areEqual(bytewise.toByteArray(), bulk.toByteArray()));
+
+            byte[] armored = bulk.toByteArray();
+            isTrue(Arrays.areEqual(data, readAll(new ArmoredInputStream(new ByteArrayInputStream(armored)), 4096)));
+            isTrue(Arrays.areEqual(data, readAll(new ArmoredInputStream(new ByteArrayInputStream(armored), true, true), 4096)));
+            isTrue(Arrays.areEqual(data, readAll(new ArmoredInputStream(new ByteArrayInputStream(armored), true, true), 7)));
+            isTrue(Arrays.areEqual(data, readAll(new ArmoredInputStream(new ByteArrayInputStream(armored), true, true), 1)));
+        }
+    }
+
+    private void readAheadPositionTest()
+        throws Exception
+    {
+        byte[] data = new byte[10000];
+        new SecureRandom().nextBytes(data);
+
+        ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+        ArmoredOutputStream aOut = new ArmoredOutputStream(bOut);
+        aOut.write(data);
+        aOut.close();
+        byte[] trailer = Strings.toByteArray("trailing data");
+        bOut.write(trailer);
+
+        InputStream bIn = new BufferedInputStream(new ByteArrayInputStream(bOut.toByteArray()), 100);
+        ArmoredInputStream aIn = new ArmoredInputStream(bIn, true, true);
+        isTrue(Arrays.areEqual(data, readAll(aIn, 1000)));
+
+        // the underlying stream is left straight after the armor
+        byte[] rest = new byte[trailer.length];
+        isEquals(trailer.length, Streams.readFully(bIn, rest));
+        isTrue(Arrays.areEqual(trailer, rest));
+    }
+
+    private void readAheadCRCTest()
+        throws Exception
+    {
+        byte[] data = new byte[1000];
+        new SecureRandom().nextBytes(data);
+
+        ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+        ArmoredOutputStream aOut = new ArmoredOutputStream(bOut);
+        aOut.write(data);
+        aOut.close();
+
+        String armored = Strings.fromByteArray(bOut.toByteArray());
+        int index = armored.length() / 2;
+        while (armored.charAt(index) == '\r' || armored.charAt(index) == '\n')
+        {
+            index++;
+        }
+        char c = armored.charAt(index) == 'A' ? 'B' : 'A';
+        byte[] corrupted = Strings.toByteArray(armored.substring(0, index) + c + armored.substring(index + 1));
+
+        try
+        {
+            readAll(new ArmoredInputStream(new ByteArrayInputStream(corrupted), true, true), 4096);
+            fail("no exception");
+        }
+        catch (IOException e)
+        {
+            isTrue("crc check failed in armored message".equals(e.getMessage()));
+        }
+    }
+
+    private static byte[] readAll(InputStream in, int chunkSize)
+        throws IOException
+    {
+        ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+        byte[] buf = new byte[chunkSize];
+        int len;
+        while ((len = in.read(buf, 0, buf.length)) >= 0)
+        {
+            bOut.write(buf, 0, len);
+        }
+        return bOut.toByteArray();
     }
 
     public static void main(
@@ -0,0 +1,276 @@
+package org.bouncycastle.openpgp.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.bouncycastle.bcpg.AEADAlgorithmTags;
+import org.bouncycastle.crypto.AsymmetricCipherKeyPairGenerator;
+import org.bouncycastle.crypto.generators.RSAKeyPairGenerator;
+import org.bouncycastle.crypto.params.RSAKeyGenerationParameters;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openpgp.PGPEncryptedData;
+import org.bouncycastle.openpgp.PGPEncryptedDataGenerator;
+import org.bouncycastle.openpgp.PGPEncryptedDataList;
+import org.bouncycastle.openpgp.PGPKeyPair;
+import org.bouncycastle.openpgp.PGPLiteralData;
+import org.bouncycastle.openpgp.PGPLiteralDataGenerator;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyEncryptedData;
+import org.bouncycastle.openpgp.PGPSessionKey;
+import org.bouncycastle.openpgp.bc.BcPGPObjectFactory;
+import org.bouncycastle.openpgp.operator.PGPAEADDataEncryptor;
+import org.bouncycastle.openpgp.operator.PGPDataDecryptor;
+import org.bouncycastle.openpgp.operator.bc.BcPGPDataEncryptorBuilder;
+import org.bouncycastle.openpgp.operator.bc.BcPGPKeyPair;
+import org.bouncycastle.openpgp.operator.bc.BcPublicKeyDataDecryptorFactory;
+import org.bouncycastle.openpgp.operator.bc.BcPublicKeyKeyEncryptionMethodGenerator;
+import org.bouncycastle.openpgp.operator.bc.BcSessionKeyDataDecryptorFactory;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.io.Streams;
+import org.bouncycastle.util.test.SimpleTest;
+
+/**
+ * Check the AEAD streams using an executor produce and accept the same data as the sequential ones.
+ */
+public class BcPGPAeadParallelTest
+    extends SimpleTest
+{
+    private final SecureRandom random = new SecureRandom();
+
+    public String getName()
+    {
+        return "BcPGPAeadParallel";
+    }
+
+    public void performTest()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            int[] aeadAlgorithms = { AEADAlgorithmTags.EAX, AEADAlgorithmTags.OCB, AEADAlgorithmTags.GCM };
+            int[] lengths = { 0, 1, 63, 64, 65, 64 * 1024, 3 * 64 * 1024, 5 * 64 * 1024 + 17 };
+
+            for (int i = 0; i != aeadAlgorithms.length; i++)
+            {
+                for (int j = 0; j != lengths.length; j++)
+                {
+                    compareTest(executor, aeadAlgorithms[i], 6, lengths[j]);
+                }
+            }
+
+            compareTest(executor, AEADAlgorithmTags.OCB, 16, 64 * 1024);
+            compareTest(executor, AEADAlgorithmTags.OCB, 17, 3 * 128 * 1024 + 5);
+
+            tamperTest(executor);
+            rejectingExecutorTest();
+            encryptedDataTest(executor);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private void compareTest(ExecutorService executor, int aeadAlgorithm, int chunkSize, int length)
+        throws Exception
+    {
+        byte[] msg = new byte[length];
+        random.nextBytes(msg);
+
+        byte[] key = new byte[16];
+        random.nextBytes(key);
+
+        BcPGPDataEncryptorBuilder builder = new BcPGPDataEncryptorBuilder(PGPEncryptedData.AES_128)
+            .setWithAEAD(aeadAlgorithm, chunkSize)
+            .setSecureRandom(random);
+        PGPAEADDataEncryptor encryptor = (PGPAEADDataEncryptor)builder.build(key);
+
+        byte[] sequential = encrypt(encryptor, msg);
+
+        builder.setAEADExecutor(executor, 4);
+
+        byte[] parallel = encrypt(encryptor, msg);
+
+        isTrue("encoding mismatch: " + aeadAlgorithm + "/" + chunkSize + "/" + length, Arrays.areEqual(sequential, parallel));
+
+        isTrue("sequential decryption failed", Arrays.areEqual(msg, decrypt(encryptor, key, sequential, null)));
+        isTrue("parallel decryption failed", Arrays.areEqual(msg, decrypt(encryptor, key, sequential, executor)));
+    }
+
+    private void tamperTest(ExecutorService executor)
+        throws Exception
+    {
+        byte[] key = new byte[16];
+        random.nextBytes(key);
+
+        BcPGPDataEncryptorBuilder builder = new BcPGPDataEncryptorBuilder(PGPEncryptedData.AES_128)
+            .setWithAEAD(AEADAlgorithmTags.OCB, 6)
+            .setSecureRandom(random)
+            .setAEADExecutor(executor, 2);
+        PGPAEADDataEncryptor encryptor = (PGPAEADDataEncryptor)builder.build(key);
+
+        byte[] msg = new byte[4 * 64 * 1024];
+        random.nextBytes(msg);
+
+        byte[] encrypted = encrypt(encryptor, msg);
+
+        // a chunk in the third group
+        byte[] tampered = Arrays.clone(encrypted);
+        tampered[2 * 1024 * (64 + 16) + 100] ^= 1;
+        checkDecryptFails(encryptor, key, tampered, executor, "exception processing chunk 2049");
+
+        // the final tag, for data which is an exact number of chunks
+        tampered = Arrays.clone(encrypted);
+        tampered[tampered.length - 1] ^= 1;
+        checkDecryptFails(encryptor, key, tampered, executor, "exception processing final tag");
+
+        // missing the final tag
+        checkDecryptFails(encryptor, key, Arrays.copyOfRange(encrypted, 0, encrypted.length - 16), executor,
+            "exception processing final tag");
+
+        // a truncated chunk
+        checkDecryptFails(encryptor, key, Arrays.copyOfRange(encrypted, 0, 64 + 16 + 8 + 16), executor,
+            "truncated chunk 1");
+    }
+
+    private void rejectingExecutorTest()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+
+        BcPGPDataEncryptorBuilder builder = new BcPGPDataEncryptorBuilder(PGPEncryptedData.AES_256)
+            .setWithAEAD(AEADAlgorithmTags.EAX, 8)
+            .setSecureRandom(random);
+        PGPAEADDataEncryptor encryptor = (PGPAEADDataEncryptor)builder.build(key);
+
+        byte[] msg = new byte[200 * 1024 + 3];
+        random.nextBytes(msg);
+
+        byte[] sequential = encrypt(encryptor, msg);
+
+        // tasks rejected by the executor are run on the calling thread
+        builder.setAEADExecutor(executor, 1);
+
+        isTrue(Arrays.areEqual(sequential, encrypt(encryptor, msg)));
+        isTrue(Arrays.areEqual(msg, decrypt(encryptor, key, sequential, executor)));
+    }
+
+    private void encryptedDataTest(ExecutorService executor)
+        throws Exception
+    {
+        byte[] msg = new byte[300 * 1024];
+        random.nextBytes(msg);
+
+        AsymmetricCipherKeyPairGenerator kpGen = new RSAKeyPairGenerator();
+
+        kpGen.init(new RSAKeyGenerationParameters(new BigInteger("10001", 16), random, 2048, 100));
+
+        PGPKeyPair pgpKp = new BcPGPKeyPair(PGPPublicKey.RSA_GENERAL, kpGen.generateKeyPair(), new Date());
+
+        BcPGPDataEncryptorBuilder encryptorBuilder = new BcPGPDataEncryptorBuilder(PGPEncryptedData.AES_128)
+            .setWithAEAD(AEADAlgorithmTags.OCB, 10)
+            .setSecureRandom(random)
+            .setAEADExecutor(executor, 4);
+
+        PGPEncryptedDataGenerator cPk = new PGPEncryptedDataGenerator(encryptorBuilder);
+
+        cPk.addMethod(new BcPublicKeyKeyEncryptionMethodGenerator(pgpKp.getPublicKey()));
+
+        ByteArrayOutputStream cbOut = new ByteArrayOutputStream();
+        OutputStream cOut = cPk.open(cbOut, new byte[1 << 16]);
+
+        PGPLiteralDataGenerator ldGen = new PGPLiteralDataGenerator();
+        OutputStream ldOut = ldGen.open(cOut, PGPLiteralData.BINARY, PGPLiteralData.CONSOLE, new Date(), new byte[1 << 16]);
+
+        ldOut.write(msg);
+        ldOut.close();
+        cOut.close();
+
+        BcPGPObjectFactory oIn = new BcPGPObjectFactory(new ByteArrayInputStream(cbOut.toByteArray()));
+        PGPEncryptedDataList encList = (PGPEncryptedDataList)oIn.nextObject();
+        PGPPublicKeyEncryptedData encP = (PGPPublicKeyEncryptedData)encList.get(0);
+
+        InputStream clear = encP.getDataStream(
+            new BcPublicKeyDataDecryptorFactory(pgpKp.getPrivateKey()).setAEADExecutor(executor, 4));
+
+        PGPLiteralData ld = (PGPLiteralData)new BcPGPObjectFactory(clear).nextObject();
+
+        isTrue("msg mismatch", Arrays.areEqual(msg, Streams.readAll(ld.getDataStream())));
+    }
+
+    private byte[] encrypt(PGPAEADDataEncryptor encryptor, byte[] msg)
+        throws IOException
+    {
+        ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+        OutputStream out = encryptor.getOutputStream(bOut);
+
+        // mix single byte and block writes
+        int off = 0;
+        if (msg.length > 0)
+        {
+            out.write(msg[off++]);
+        }
+        while (off < msg.length)
+        {
+            int len = Math.min(msg.length - off, 1 + random.nextInt(100000));
+            out.write(msg, off, len);
+            off += len;
+        }
+        out.close();
+
+        return bOut.toByteArray();
+    }
+
+    private byte[] decrypt(PGPAEADDataEncryptor encryptor, byte[] key, byte[] encrypted, ExecutorService executor)
+        throws Exception
+    {
+        PGPDataDecryptor decryptor = new BcSessionKeyDataDecryptorFactory(new PGPSessionKey(PGPEncryptedData.AES_128, key))
+            .setAEADExecutor(executor, 3)
+            .createDataDecryptor(encryptor.getAEADAlgorithm(), encryptor.getIV(), encryptor.getChunkSize(),
+                key.length == 16 ? PGPEncryptedData.AES_128 : PGPEncryptedData.AES_256, key);
+
+        return Streams.readAll(decryptor.getInputStream(new ByteArrayInputStream(encrypted)));
+    }
+
+    private void checkDecryptFails(PGPAEADDataEncryptor encryptor, byte[] key, byte[] encrypted,
+        ExecutorService executor, String message)
+        throws Exception
+    {
+        try
+        {
+            decrypt(encryptor, key, encrypted, executor);
+            fail("no exception");
+        }
+        catch (IOException e)
+        {
+            isTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+        catch (IllegalStateException e)
+        {
+            // failures in the initial read ahead are reported when the stream is opened
+            isTrue(e.getMessage(), e.getMessage().startsWith("unable to open stream: " + message));
+        }
+    }
+
+    public static void main(
+        String[] args)
+    {
+        Security.addProvider(new BouncyCastleProvider());
+
+        runTest(new BcPGPAeadParallelTest());
+    }
+}
@@ -1,17 +1,26 @@
 package org.bouncycastle.openpgp.test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.SecureRandom;
 import java.security.Security;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.bouncycastle.apache.bzip2.CBZip2InputStream;
+import org.bouncycastle.apache.bzip2.CBZip2OutputStream;
+import org.bouncycastle.apache.bzip2.CBZip2ParallelInputStream;
+import org.bouncycastle.apache.bzip2.CBZip2ParallelOutputStream;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.openpgp.PGPCompressedData;
 import org.bouncycastle.openpgp.PGPCompressedDataGenerator;
 import org.bouncycastle.openpgp.PGPException;
 import org.bouncycastle.openpgp.jcajce.JcaPGPObjectFactory;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.io.Streams;
 import org.bouncycastle.util.test.SimpleTest;
 import org.bouncycastle.util.test.UncloseableOutputStream;
 
@@ -79,6 +88,127 @@ public void performTest()
         {
             fail("Redundant close() should be ignored");
         }
+
+        parallelBZip2Test(randomData);
+    }
+
+    private void parallelBZip2Test(byte[] randomData)
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            // text like data, long runs, and data that will trigger block randomisation.
+            byte[] text = new byte[200000];
+            for (int i = 0; i != text.length; i++)
+            {
+                text[i] = (byte)('a' + (i * 7 + i / 13) % 26);
+            }
+            byte[] runs = new byte[300000];
+            for (int i = 0; i != runs.length; i++)
+            {
+                runs[i] = (byte)((i / 1000) % 3);
+            }
+            byte[] repeated = new byte[150000];
+            for (int i = 0; i != repeated.length; i++)
+            {
+                repeated[i] = (byte)"abcdefghijklmnopqrstuvwxyz0123456789".charAt(i % 36);
+            }
+
+            byte[][] inputs = { new byte[0], "hello world!".getBytes(), randomData, text, runs, repeated,
+                Arrays.concatenate(runs, text, repeated) };
+
+            for (int i = 0; i != inputs.length; i++)
+            {
+                for (int blockSize = 1; blockSize <= 9; blockSize += 8)
+                {
+                    checkParallelBZip2(executor, inputs[i], blockSize);
+                }
+            }
+
+            // via the generator
+            ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+            PGPCompressedDataGenerator cPacket = new PGPCompressedDataGenerator(PGPCompressedData.BZIP2)
+                .setExecutor(executor, 2);
+
+            OutputStream out = cPacket.open(new UncloseableOutputStream(bOut));
+            out.write(text);
+            out.close();
+
+            JcaPGPObjectFactory pgpFact = new JcaPGPObjectFactory(bOut.toByteArray());
+            PGPCompressedData c1 = (PGPCompressedData)pgpFact.nextObject();
+
+            isTrue("generator compression failed", areEqual(text, Streams.readAll(c1.getDataStream(executor, 2))));
+
+            // a corrupted block is reported once the data before it has been returned.
+            byte[] compressed = bzip2(null, Arrays.concatenate(randomData, text), 1);
+            compressed[compressed.length - 100] ^= 0x10;
+
+            InputStream pIn = new CBZip2ParallelInputStream(new ByteArrayInputStream(compressed), executor, 3);
+            byte[] buf = new byte[randomData.length];
+            isEquals(buf.length, Streams.readFully(pIn, buf));
+            isTrue(areEqual(randomData, buf));
+            try
+            {
+                Streams.drain(pIn);
+                fail("no exception on corrupt data");
+            }
+            catch (IOException e)
+            {
+                // expected
+            }
+            catch (IllegalStateException e)
+            {
+                // expected
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private void checkParallelBZip2(ExecutorService executor, byte[] data, int blockSize)
+        throws IOException
+    {
+        byte[] sequential = bzip2(null, data, blockSize);
+
+        isTrue("encoding mismatch: " + data.length + "/" + blockSize, areEqual(sequential, bzip2(executor, data, blockSize)));
+
+        InputStream sIn = new CBZip2InputStream(new ByteArrayInputStream(sequential));
+        InputStream pIn = new CBZip2ParallelInputStream(new ByteArrayInputStream(sequential), executor, 2);
+
+        isTrue("sequential decoding failed", areEqual(data, Streams.readAll(sIn)));
+
+        // mix single byte and block reads
+        ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+        byte[] buf = new byte[10000];
+        int ch;
+        while ((ch = pIn.read()) >= 0)
+        {
+            bOut.write(ch);
+
+            int len = pIn.read(buf, 0, buf.length);
+            if (len > 0)
+            {
+                bOut.write(buf, 0, len);
+            }
+        }
+
+        isTrue("parallel decoding failed", areEqual(data, bOut.toByteArray()));
+    }
+
+    private byte[] bzip2(ExecutorService executor, byte[] data, int blockSize)
+        throws IOException
+    {
+        ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+        OutputStream out = (executor == null) ? new CBZip2OutputStream(bOut, blockSize)
+            : new CBZip2ParallelOutputStream(bOut, blockSize, executor, 2);
+
+        out.write(data);
+        out.close();
+
+        return bOut.toByteArray();
     }
 
     private void validateData(byte[] data)
@@ -0,0 +1,255 @@
+package org.bouncycastle.openpgp.test;
+
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.bouncycastle.bcpg.HashAlgorithmTags;
+import org.bouncycastle.crypto.generators.Ed25519KeyPairGenerator;
+import org.bouncycastle.crypto.generators.X25519KeyPairGenerator;
+import org.bouncycastle.crypto.params.Ed25519KeyGenerationParameters;
+import org.bouncycastle.crypto.params.X25519KeyGenerationParameters;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openpgp.PGPKeyPair;
+import org.bouncycastle.openpgp.PGPKeyRingGenerator;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPPublicKeyRingCollection;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRingCollection;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.PGPSignatureGenerator;
+import org.bouncycastle.openpgp.operator.PGPDigestCalculator;
+import org.bouncycastle.openpgp.operator.bc.BcPGPContentSignerBuilder;
+import org.bouncycastle.openpgp.operator.bc.BcPGPDigestCalculatorProvider;
+import org.bouncycastle.openpgp.operator.bc.BcPGPKeyPair;
+import org.bouncycastle.util.test.SimpleTest;
+
+/**
+ * Check the indexed lookups in the key ring collections, including after rings are added and removed.
+ */
+public class PGPKeyRingCollectionTest
+    extends SimpleTest
+{
+    private static final String[] USER_IDS = {
+        "Alice <alice@example.org>",
+        "Bob <bob@example.org>",
+        "ALICE <alice@example.org>",
+        "Carol <carol@example.org>",
+        "Alice <alice@example.org>"
+    };
+
+    private final SecureRandom random = new SecureRandom();
+
+    public String getName()
+    {
+        return "PGPKeyRingCollection";
+    }
+
+    public void performTest()
+        throws Exception
+    {
+        List<PGPSecretKeyRing> secRings = new ArrayList<PGPSecretKeyRing>();
+        List<PGPPublicKeyRing> pubRings = new ArrayList<PGPPublicKeyRing>();
+
+        for (int i = 0; i != USER_IDS.length; i++)
+        {
+            PGPKeyRingGenerator keyRingGen = createKeyRingGenerator(USER_IDS[i]);
+
+            secRings.add(keyRingGen.generateSecretKeyRing());
+            pubRings.add(keyRingGen.generatePublicKeyRing());
+        }
+
+        // have the first key certify the user ID of the second.
+        PGPSecretKeyRing signer = secRings.get(0);
+        PGPPublicKey certified = pubRings.get(1).getPublicKey();
+
+        PGPSignatureGenerator sGen = new PGPSignatureGenerator(
+            new BcPGPContentSignerBuilder(signer.getPublicKey().getAlgorithm(), HashAlgorithmTags.SHA256));
+        sGen.init(PGPSignature.DEFAULT_CERTIFICATION, signer.getSecretKey().extractPrivateKey(null));
+
+        certified = PGPPublicKey.addCertification(certified, USER_IDS[1],
+            sGen.generateCertification(USER_IDS[1], certified));
+        pubRings.set(1, PGPPublicKeyRing.insertPublicKey(pubRings.get(1), certified));
+
+        publicCollectionTest(pubRings);
+        secretCollectionTest(secRings);
+    }
+
+    private void publicCollectionTest(List<PGPPublicKeyRing> rings)
+        throws Exception
+    {
+        PGPPublicKeyRingCollection pubCol = new PGPPublicKeyRingCollection(rings);
+
+        checkPublicLookups(pubCol, rings);
+
+        isEquals(2, count(pubCol.getKeyRings("Alice <alice@example.org>")));
+        isEquals(3, count(pubCol.getKeyRings("alice <ALICE@example.org>", false, true)));
+        isEquals(0, count(pubCol.getKeyRings("alice <alice@example.org>")));
+        isEquals(3, count(pubCol.getKeyRings("alice@", true)));
+        isEquals(1, count(pubCol.getKeyRings("bob", true, true)));
+
+        long signerID = rings.get(0).getPublicKey().getKeyID();
+
+        // the signer's own key and subkey, and the certified key.
+        isEquals(3, count(pubCol.getKeysWithSignaturesBy(signerID)));
+        isEquals(0, count(pubCol.getKeysWithSignaturesBy(signerID + 1)));
+
+        // the index, including the signer table, is carried through to the new collections.
+        PGPPublicKeyRingCollection smaller = PGPPublicKeyRingCollection.removePublicKeyRing(pubCol, rings.get(1));
+
+        List<PGPPublicKeyRing> remaining = new ArrayList<PGPPublicKeyRing>(rings);
+        remaining.remove(1);
+
+        checkPublicLookups(smaller, remaining);
+        checkPublicAbsent(smaller, rings.get(1));
+        isEquals(2, count(smaller.getKeysWithSignaturesBy(signerID)));
+        isEquals(0, count(smaller.getKeyRings("Bob <bob@example.org>", true)));
+
+        PGPPublicKeyRingCollection restored = PGPPublicKeyRingCollection.addPublicKeyRing(smaller, rings.get(1));
+
+        remaining.add(rings.get(1));
+
+        checkPublicLookups(restored, remaining);
+        isEquals(3, count(restored.getKeysWithSignaturesBy(signerID)));
+        isEquals(1, count(restored.getKeyRings("Bob <bob@example.org>")));
+
+        // the original collection is unchanged.
+        checkPublicLookups(pubCol, rings);
+    }
+
+    private void checkPublicLookups(PGPPublicKeyRingCollection pubCol, List<PGPPublicKeyRing> rings)
+    {
+        isEquals(rings.size(), pubCol.size());
+
+        for (Iterator<PGPPublicKeyRing> it = rings.iterator(); it.hasNext();)
+        {
+            PGPPublicKeyRing ring = it.next();
+
+            for (Iterator<PGPPublicKey> keyIt = ring.getPublicKeys(); keyIt.hasNext();)
+            {
+                PGPPublicKey key = keyIt.next();
+
+                isTrue(pubCol.contains(key.getKeyID()));
+                isTrue(pubCol.contains(key.getFingerprint()));
+                isTrue(pubCol.getPublicKey(key.getKeyID()) == key);
+                isTrue(pubCol.getPublicKey(key.getFingerprint()) == key);
+                isTrue(pubCol.getPublicKeyRing(key.getKeyID()) == ring);
+                isTrue(pubCol.getPublicKeyRing(key.getFingerprint()) == ring);
+            }
+        }
+    }
+
+    private void checkPublicAbsent(PGPPublicKeyRingCollection pubCol, PGPPublicKeyRing ring)
+    {
+        for (Iterator<PGPPublicKey> keyIt = ring.getPublicKeys(); keyIt.hasNext();)
+        {
+            PGPPublicKey key = keyIt.next();
+
+            isTrue(!pubCol.contains(key.getKeyID()));
+            isTrue(!pubCol.contains(key.getFingerprint()));
+            isTrue(pubCol.getPublicKeyRing(key.getKeyID()) == null);
+            isTrue(pubCol.getPublicKeyRing(key.getFingerprint()) == null);
+        }
+    }
+
+    private void secretCollectionTest(List<PGPSecretKeyRing> rings)
+        throws Exception
+    {
+        PGPSecretKeyRingCollection secCol = new PGPSecretKeyRingCollection(rings);
+
+        checkSecretLookups(secCol, rings);
+
+        isEquals(2, count(secCol.getKeyRings("Alice <alice@example.org>")));
+        isEquals(3, count(secCol.getKeyRings("ALICE <alice@EXAMPLE.org>", false, true)));
+        isEquals(1, count(secCol.getKeyRings("carol", true, true)));
+
+        PGPSecretKeyRingCollection smaller = PGPSecretKeyRingCollection.removeSecretKeyRing(secCol, rings.get(0));
+
+        List<PGPSecretKeyRing> remaining = new ArrayList<PGPSecretKeyRing>(rings);
+        remaining.remove(0);
+
+        checkSecretLookups(smaller, remaining);
+        isEquals(1, count(smaller.getKeyRings("Alice <alice@example.org>")));
+
+        for (Iterator<PGPPublicKey> keyIt = rings.get(0).getPublicKeys(); keyIt.hasNext();)
+        {
+            long keyID = keyIt.next().getKeyID();
+
+            isTrue(!smaller.contains(keyID));
+            isTrue(smaller.getSecretKeyRing(keyID) == null);
+        }
+
+        PGPSecretKeyRingCollection restored = PGPSecretKeyRingCollection.addSecretKeyRing(smaller, rings.get(0));
+
+        checkSecretLookups(restored, rings);
+        isEquals(2, count(restored.getKeyRings("Alice <alice@example.org>")));
+    }
+
+    private void checkSecretLookups(PGPSecretKeyRingCollection secCol, List<PGPSecretKeyRing> rings)
+    {
+        isEquals(rings.size(), secCol.size());
+
+        for (Iterator<PGPSecretKeyRing> it = rings.iterator(); it.hasNext();)
+        {
+            PGPSecretKeyRing ring = it.next();
+
+            for (Iterator<PGPPublicKey> keyIt = ring.getPublicKeys(); keyIt.hasNext();)
+            {
+                long keyID = keyIt.next().getKeyID();
+
+                isTrue(secCol.contains(keyID));
+                isTrue(secCol.getSecretKey(keyID) == ring.getSecretKey(keyID));
+                isTrue(secCol.getSecretKeyRing(keyID) == ring);
+            }
+        }
+    }
+
+    private PGPKeyRingGenerator createKeyRingGenerator(String identity)
+        throws Exception
+    {
+        Ed25519KeyPairGenerator edKp = new Ed25519KeyPairGenerator();
+        edKp.init(new Ed25519KeyGenerationParameters(random));
+
+        PGPKeyPair signKeyPair = new BcPGPKeyPair(PGPPublicKey.EDDSA_LEGACY, edKp.generateKeyPair(), new Date());
+
+        X25519KeyPairGenerator dhKp = new X25519KeyPairGenerator();
+        dhKp.init(new X25519KeyGenerationParameters(random));
+
+        PGPKeyPair dhKeyPair = new BcPGPKeyPair(PGPPublicKey.ECDH, dhKp.generateKeyPair(), new Date());
+
+        PGPDigestCalculator sha1Calc = new BcPGPDigestCalculatorProvider().get(HashAlgorithmTags.SHA1);
+
+        PGPKeyRingGenerator keyRingGen = new PGPKeyRingGenerator(
+            PGPSignature.POSITIVE_CERTIFICATION, signKeyPair,
+            identity, sha1Calc, null, null,
+            new BcPGPContentSignerBuilder(signKeyPair.getPublicKey().getAlgorithm(), HashAlgorithmTags.SHA256),
+            null);
+
+        keyRingGen.addSubKey(dhKeyPair);
+
+        return keyRingGen;
+    }
+
+    private static int count(Iterator<?> it)
+    {
+        int count = 0;
+        while (it.hasNext())
+        {
+            it.next();
+            count++;
+        }
+        return count;
+    }
+
+    public static void main(
+        String[] args)
+    {
+        Security.addProvider(new BouncyCastleProvider());
+
+        runTest(new PGPKeyRingCollectionTest());
+    }
+}
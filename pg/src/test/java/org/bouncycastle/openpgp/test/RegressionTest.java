@@ -10,6 +10,7 @@
     public static Test[] tests = {
         new BcPGPKeyRingTest(),
         new PGPKeyRingTest(),
+        new PGPKeyRingCollectionTest(),
         new BcPGPRSATest(),
         new PGPRSATest(),
         new BcPGPDSATest(),
@@ -50,6 +51,7 @@
         new IgnoreUnknownEncryptedSessionKeys(),
         new PGPEncryptedDataTest(),
         new PGPAeadTest(),
+        new BcPGPAeadParallelTest(),
         new CRC24Test()
     };
 
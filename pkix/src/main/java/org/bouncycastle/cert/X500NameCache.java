@@ -0,0 +1,155 @@
+package org.bouncycastle.cert;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.util.Arrays;
+
+/**
+ * A bounded cache of X500Name objects keyed on their DER encoding, so that names which turn up again and again, such
+ * as the issuer of a leaf certificate and the subject of the CA certificate which signed it, are decoded once and
+ * shared rather than decoded into a new X500Name for every certificate.
+ * <p>
+ * Names are held least recently used first out. Instances are safe for use by multiple threads.
+ * </p>
+ */
+public class X500NameCache
+{
+    private final Map names;
+
+    /**
+     * Base constructor.
+     *
+     * @param maxSize the maximum number of names to hold.
+     */
+    public X500NameCache(final int maxSize)
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+
+        this.names = new LinkedHashMap(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry eldest)
+            {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Return the X500Name for the passed in ASN.1 name, sharing any equal name previously returned.
+     *
+     * @param name the ASN.1 structure of a name.
+     * @return an X500Name for name.
+     */
+    public X500Name getName(ASN1Encodable name)
+    {
+        byte[] encoding;
+        try
+        {
+            encoding = name.toASN1Primitive().getEncoded(ASN1Encoding.DER);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException("unable to encode name: " + e.getMessage());
+        }
+
+        return getName(encoding, 0, encoding.length);
+    }
+
+    /**
+     * Return the X500Name for the DER encoded name at buf[off..off+len), only copying the encoding if the name is
+     * not already held.
+     */
+    X500Name getName(byte[] buf, int off, int len)
+    {
+        Key lookup = new Key(buf, off, len);
+
+        synchronized (names)
+        {
+            X500Name cached = (X500Name)names.get(lookup);
+            if (cached != null)
+            {
+                return cached;
+            }
+        }
+
+        byte[] encoding = Arrays.copyOfRange(buf, off, off + len);
+        X500Name x500Name;
+        try
+        {
+            x500Name = X500Name.getInstance(ASN1Primitive.fromByteArray(encoding));
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException("malformed name: " + e.getMessage());
+        }
+
+        synchronized (names)
+        {
+            Key key = new Key(encoding, 0, len);
+            X500Name cached = (X500Name)names.get(key);
+            if (cached != null)
+            {
+                return cached;
+            }
+
+            names.put(key, x500Name);
+        }
+
+        return x500Name;
+    }
+
+    /**
+     * Return the number of names held.
+     *
+     * @return the cache size.
+     */
+    public int size()
+    {
+        synchronized (names)
+        {
+            return names.size();
+        }
+    }
+
+    private static class Key
+    {
+        private final byte[] buf;
+        private final int off;
+        private final int len;
+        private final int hashCode;
+
+        Key(byte[] buf, int off, int len)
+        {
+            this.buf = buf;
+            this.off = off;
+            this.len = len;
+            this.hashCode = Arrays.hashCode(buf, off, len);
+        }
+
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+
+            Key other = (Key)o;
+
+            return Arrays.areEqual(buf, off, off + len, other.buf, other.off, other.off + other.len);
+        }
+    }
+}
@@ -0,0 +1,642 @@
+package org.bouncycastle.cert;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Date;
+
+import org.bouncycastle.asn1.ASN1BitString;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.Certificate;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Encodable;
+import org.bouncycastle.util.Fingerprint;
+
+/**
+ * A lazily decoded view of a DER encoded X.509 certificate, for when only a few of a certificate's fields are of
+ * interest.
+ * <p>
+ * Construction only checks the DER framing of the certificate and records where each field of the TBSCertificate
+ * starts and ends, nothing is decoded into ASN.1 objects until it is asked for. Each field is decoded on first
+ * access and then held, extensions are looked up by OID without decoding the others, names can be shared across
+ * certificates, and chains, through an {@link X500NameCache}, and the fingerprint and hash code are calculated once
+ * from the encoding. The full
+ * {@link X509CertificateHolder} is available, decoded on first use, for anything not covered here.
+ * </p>
+ * <p>
+ * Note: as fields are only decoded when they are accessed an invalid field may only be found then, in which case an
+ * IllegalArgumentException is thrown. The encoding passed in is not copied and should not be modified.
+ * </p>
+ */
+public class X509CertificateView
+    implements Encodable
+{
+    private static final int SEQUENCE = 0x30;
+    private static final int INTEGER = 0x02;
+    private static final int BIT_STRING = 0x03;
+
+    private static final int SERIAL = 0;
+    private static final int SIGNATURE = 1;
+    private static final int ISSUER = 2;
+    private static final int VALIDITY = 3;
+    private static final int SUBJECT = 4;
+    private static final int PUBLIC_KEY = 5;
+
+    private final byte[] encoding;
+    private final X500NameCache nameCache;
+    private final int versionNumber;
+
+    // start and end offsets of the TBSCertificate fields from the serial number on.
+    private final int[] fields = new int[12];
+    private final int sigAlgStart, sigAlgEnd;
+    private final int sigStart, sigEnd;
+    private final int extsSeqStart, extsStart, extsEnd;
+
+    private final Object cacheLock = new Object();
+    private BigInteger serialNumber;
+    private X500Name issuer;
+    private X500Name subject;
+    private Date notBefore;
+    private Date notAfter;
+    private SubjectPublicKeyInfo subjectPublicKeyInfo;
+    private AlgorithmIdentifier signatureAlgorithm;
+    private byte[] signature;
+    private Extensions extensions;
+    private byte[] fingerprint;
+    private X509CertificateHolder holder;
+
+    private volatile boolean hashValueSet;
+    private volatile int hashValue;
+
+    /**
+     * Create a view of the certificate encoded in certEncoding.
+     *
+     * @param certEncoding DER encoding of the certificate.
+     * @throws IOException in the event of corrupted data, or an incorrect top level structure.
+     */
+    public X509CertificateView(byte[] certEncoding)
+        throws IOException
+    {
+        this(certEncoding, null);
+    }
+
+    /**
+     * Create a view of the certificate encoded in certEncoding, sharing the issuer and subject names through nameCache.
+     *
+     * @param certEncoding DER encoding of the certificate.
+     * @param nameCache the cache to share names through, may be null.
+     * @throws IOException in the event of corrupted data, or an incorrect top level structure.
+     */
+    public X509CertificateView(byte[] certEncoding, X500NameCache nameCache)
+        throws IOException
+    {
+        if (certEncoding.length == 0)
+        {
+            throw new IOException("no content found");
+        }
+
+        this.encoding = certEncoding;
+        this.nameCache = nameCache;
+
+        int[] tlv = new int[2];
+
+        // Certificate
+        int pos = next(0, certEncoding.length, SEQUENCE, tlv);
+        if (tlv[1] != certEncoding.length)
+        {
+            throw new CertIOException("malformed data: extra data found after certificate");
+        }
+
+        // TBSCertificate
+        int end = tlv[1];
+        pos = next(pos, end, SEQUENCE, tlv);
+        int tbsEnd = tlv[1];
+
+        this.sigAlgStart = tlv[1];
+        next(sigAlgStart, end, SEQUENCE, tlv);
+        this.sigAlgEnd = tlv[1];
+
+        this.sigStart = sigAlgEnd;
+        next(sigStart, end, BIT_STRING, tlv);
+        this.sigEnd = tlv[1];
+
+        if (sigEnd != end)
+        {
+            throw new CertIOException("malformed data: sequence wrong size for a certificate");
+        }
+
+        // some certificates don't include a version number - we assume v1
+        if (pos < tbsEnd && (certEncoding[pos] & 0xFF) == 0xA0)
+        {
+            int vPos = next(pos, tbsEnd, 0xA0, tlv);
+            int vEnd = tlv[1];
+            int iPos = next(vPos, vEnd, INTEGER, tlv);
+
+            if (tlv[1] != vEnd || tlv[1] - iPos != 1 || certEncoding[iPos] < 0 || certEncoding[iPos] > 2)
+            {
+                throw new CertIOException("malformed data: version number not recognised");
+            }
+
+            this.versionNumber = certEncoding[iPos] + 1;
+            pos = vEnd;
+        }
+        else
+        {
+            this.versionNumber = 1;
+        }
+
+        int[] tags = { INTEGER, SEQUENCE, SEQUENCE, SEQUENCE, SEQUENCE, SEQUENCE };
+        for (int i = 0; i != tags.length; i++)
+        {
+            fields[2 * i] = pos;
+            next(pos, tbsEnd, tags[i], tlv);
+            pos = fields[2 * i + 1] = tlv[1];
+        }
+
+        int extsSeq = -1, exts = -1, extsLimit = -1, lastTag = 0;
+        while (pos < tbsEnd)
+        {
+            if (versionNumber == 1)
+            {
+                throw new CertIOException("malformed data: version 1 certificate contains extra data");
+            }
+
+            int tag = certEncoding[pos] & 0xFF;
+            int tagNo = tag & 0x1F;
+            if (tagNo <= lastTag || tagNo > 3 || (tag & 0xC0) != 0x80 || (tagNo == 3 && tag != 0xA3))
+            {
+                throw new CertIOException("malformed data: unknown tag encountered in structure: " + tagNo);
+            }
+
+            int contents = next(pos, tbsEnd, tag, tlv);
+            pos = tlv[1];
+
+            if (tagNo == 3)
+            {
+                if (versionNumber != 3)
+                {
+                    throw new CertIOException("malformed data: version 2 certificate cannot contain extensions");
+                }
+
+                extsSeq = contents;
+                exts = next(contents, pos, SEQUENCE, tlv);
+                extsLimit = tlv[1];
+                if (extsLimit != pos)
+                {
+                    throw new CertIOException("malformed data: extra data found in extensions");
+                }
+            }
+
+            lastTag = tagNo;
+        }
+
+        this.extsSeqStart = extsSeq;
+        this.extsStart = exts;
+        this.extsEnd = extsLimit;
+    }
+
+    public int getVersionNumber()
+    {
+        return versionNumber;
+    }
+
+    /**
+     * Return the serial number of this certificate.
+     *
+     * @return the serial number.
+     */
+    public BigInteger getSerialNumber()
+    {
+        synchronized (cacheLock)
+        {
+            if (serialNumber == null)
+            {
+                serialNumber = ASN1Integer.getInstance(decode(fields[2 * SERIAL], fields[2 * SERIAL + 1])).getValue();
+            }
+
+            return serialNumber;
+        }
+    }
+
+    /**
+     * Return the issuer of this certificate.
+     *
+     * @return the certificate issuer.
+     */
+    public X500Name getIssuer()
+    {
+        synchronized (cacheLock)
+        {
+            if (issuer == null)
+            {
+                issuer = decodeName(ISSUER);
+            }
+
+            return issuer;
+        }
+    }
+
+    /**
+     * Return the subject this certificate is for.
+     *
+     * @return the subject for the certificate.
+     */
+    public X500Name getSubject()
+    {
+        synchronized (cacheLock)
+        {
+            if (subject == null)
+            {
+                subject = decodeName(SUBJECT);
+            }
+
+            return subject;
+        }
+    }
+
+    /**
+     * Return the date before which this certificate is not valid.
+     *
+     * @return the start time for the certificate's validity period.
+     */
+    public Date getNotBefore()
+    {
+        synchronized (cacheLock)
+        {
+            if (notBefore == null)
+            {
+                notBefore = getValidityTime(0);
+            }
+
+            return new Date(notBefore.getTime());
+        }
+    }
+
+    /**
+     * Return the date after which this certificate is not valid.
+     *
+     * @return the final time for the certificate's validity period.
+     */
+    public Date getNotAfter()
+    {
+        synchronized (cacheLock)
+        {
+            if (notAfter == null)
+            {
+                notAfter = getValidityTime(1);
+            }
+
+            return new Date(notAfter.getTime());
+        }
+    }
+
+    /**
+     * Return whether or not this certificate is valid on a particular date.
+     *
+     * @param date the date of interest.
+     * @return true if the certificate is valid, false otherwise.
+     */
+    public boolean isValidOn(Date date)
+    {
+        return !date.before(getNotBefore()) && !date.after(getNotAfter());
+    }
+
+    /**
+     * Return the SubjectPublicKeyInfo describing the public key this certificate is carrying.
+     *
+     * @return the public key ASN.1 structure contained in the certificate.
+     */
+    public SubjectPublicKeyInfo getSubjectPublicKeyInfo()
+    {
+        synchronized (cacheLock)
+        {
+            if (subjectPublicKeyInfo == null)
+            {
+                subjectPublicKeyInfo = SubjectPublicKeyInfo.getInstance(
+                    decode(fields[2 * PUBLIC_KEY], fields[2 * PUBLIC_KEY + 1]));
+            }
+
+            return subjectPublicKeyInfo;
+        }
+    }
+
+    /**
+     * Return the details of the signature algorithm used to create this certificate.
+     *
+     * @return the AlgorithmIdentifier describing the signature algorithm used to create this certificate.
+     */
+    public AlgorithmIdentifier getSignatureAlgorithm()
+    {
+        synchronized (cacheLock)
+        {
+            if (signatureAlgorithm == null)
+            {
+                signatureAlgorithm = AlgorithmIdentifier.getInstance(decode(sigAlgStart, sigAlgEnd));
+            }
+
+            return signatureAlgorithm;
+        }
+    }
+
+    /**
+     * Return the bytes making up the signature associated with this certificate.
+     *
+     * @return the certificate signature bytes.
+     */
+    public byte[] getSignature()
+    {
+        synchronized (cacheLock)
+        {
+            if (signature == null)
+            {
+                signature = ASN1BitString.getInstance(decode(sigStart, sigEnd)).getOctets();
+            }
+
+            return Arrays.clone(signature);
+        }
+    }
+
+    /**
+     * Return whether or not this certificate contains extensions.
+     *
+     * @return true if extension are present, false otherwise.
+     */
+    public boolean hasExtensions()
+    {
+        return extsStart >= 0;
+    }
+
+    /**
+     * Look up the extension associated with the passed in OID. If the extensions block has not already been decoded
+     * by {@link #getExtensions()} only the extension found is decoded.
+     *
+     * @param oid the OID of the extension of interest.
+     *
+     * @return the extension if present, null otherwise.
+     */
+    public Extension getExtension(ASN1ObjectIdentifier oid)
+    {
+        if (extsStart < 0)
+        {
+            return null;
+        }
+
+        synchronized (cacheLock)
+        {
+            if (extensions != null)
+            {
+                return extensions.getExtension(oid);
+            }
+        }
+
+        byte[] oidEnc;
+        try
+        {
+            oidEnc = oid.getEncoded(ASN1Encoding.DER);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException("unable to encode OID: " + e.getMessage());
+        }
+
+        int[] tlv = new int[2];
+        int pos = extsStart;
+        try
+        {
+            while (pos < extsEnd)
+            {
+                int start = pos;
+                int contents = next(pos, extsEnd, SEQUENCE, tlv);
+                int end = tlv[1];
+
+                if (contents + oidEnc.length <= end
+                    && Arrays.areEqual(encoding, contents, contents + oidEnc.length, oidEnc, 0, oidEnc.length))
+                {
+                    return Extension.getInstance(decode(start, end));
+                }
+
+                pos = end;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException("malformed extensions: " + e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Return the extensions block associated with this certificate if there is one.
+     *
+     * @return the extensions block, null otherwise.
+     */
+    public Extensions getExtensions()
+    {
+        if (extsStart < 0)
+        {
+            return null;
+        }
+
+        synchronized (cacheLock)
+        {
+            if (extensions == null)
+            {
+                extensions = Extensions.getInstance(decode(extsSeqStart, extsEnd));
+            }
+
+            return extensions;
+        }
+    }
+
+    /**
+     * Return a fingerprint for this certificate, the SHAKE-256 based {@link Fingerprint} of its encoding.
+     *
+     * @return the certificate fingerprint.
+     */
+    public byte[] getFingerprint()
+    {
+        synchronized (cacheLock)
+        {
+            if (fingerprint == null)
+            {
+                fingerprint = Fingerprint.calculateFingerprint(encoding);
+            }
+
+            return Arrays.clone(fingerprint);
+        }
+    }
+
+    /**
+     * Return the fully decoded certificate holder for this certificate.
+     *
+     * @return an X509CertificateHolder for the certificate.
+     */
+    public X509CertificateHolder getX509CertificateHolder()
+    {
+        synchronized (cacheLock)
+        {
+            if (holder == null)
+            {
+                holder = new X509CertificateHolder(Certificate.getInstance(decode(0, encoding.length)));
+            }
+
+            return holder;
+        }
+    }
+
+    /**
+     * Return the ASN.1 encoding of this certificate.
+     *
+     * @return a DER encoded byte array.
+     */
+    public byte[] getEncoded()
+        throws IOException
+    {
+        return Arrays.clone(encoding);
+    }
+
+    public boolean equals(
+        Object o)
+    {
+        if (o == this)
+        {
+            return true;
+        }
+
+        if (!(o instanceof X509CertificateView))
+        {
+            return false;
+        }
+
+        X509CertificateView other = (X509CertificateView)o;
+
+        return this.hashCode() == other.hashCode() && Arrays.areEqual(this.encoding, other.encoding);
+    }
+
+    public int hashCode()
+    {
+        if (!hashValueSet)
+        {
+            hashValue = Arrays.hashCode(encoding);
+            hashValueSet = true;
+        }
+
+        return hashValue;
+    }
+
+    private Date getValidityTime(int index)
+    {
+        int[] tlv = new int[2];
+
+        try
+        {
+            int pos = next(fields[2 * VALIDITY], fields[2 * VALIDITY + 1], SEQUENCE, tlv);
+            int end = tlv[1];
+
+            for (int i = 0; i != index; i++)
+            {
+                pos = skip(pos, end, tlv);
+            }
+
+            return Time.getInstance(decode(pos, skip(pos, end, tlv))).getDate();
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException("malformed validity: " + e.getMessage());
+        }
+    }
+
+    private X500Name decodeName(int field)
+    {
+        int start = fields[2 * field], end = fields[2 * field + 1];
+
+        if (nameCache != null)
+        {
+            return nameCache.getName(encoding, start, end - start);
+        }
+
+        return X500Name.getInstance(decode(start, end));
+    }
+
+    private ASN1Primitive decode(int start, int end)
+    {
+        try
+        {
+            return ASN1Primitive.fromByteArray(Arrays.copyOfRange(encoding, start, end));
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException("malformed field: " + e.getMessage());
+        }
+    }
+
+    private int skip(int pos, int limit, int[] tlv)
+        throws IOException
+    {
+        next(pos, limit, encoding[pos] & 0xFF, tlv);
+
+        return tlv[1];
+    }
+
+    /**
+     * Read the DER header at pos, which must have the expected tag, returning the start of the contents and setting
+     * tlv[1] to the end of the contents.
+     */
+    private int next(int pos, int limit, int expectedTag, int[] tlv)
+        throws IOException
+    {
+        if (pos >= limit)
+        {
+            throw new CertIOException("malformed data: unexpected end of structure");
+        }
+        if ((encoding[pos] & 0xFF) != expectedTag)
+        {
+            throw new CertIOException("malformed data: unexpected tag " + (encoding[pos] & 0xFF)
+                + " found where " + expectedTag + " expected");
+        }
+
+        if (++pos >= limit)
+        {
+            throw new CertIOException("malformed data: unexpected end of structure");
+        }
+
+        int length = encoding[pos++] & 0xFF;
+        if (length > 0x7F)
+        {
+            int size = length & 0x7F;
+            if (size == 0)
+            {
+                throw new CertIOException("malformed data: indefinite length found in DER encoding");
+            }
+            if (size > 3 || pos + size > limit)
+            {
+                throw new CertIOException("malformed data: invalid length");
+            }
+
+            length = 0;
+            for (int i = 0; i != size; i++)
+            {
+                length = (length << 8) | (encoding[pos++] & 0xFF);
+            }
+        }
+
+        if (length > limit - pos)
+        {
+            throw new CertIOException("malformed data: length exceeds structure");
+        }
+
+        tlv[0] = pos;
+        tlv[1] = pos + length;
+
+        return pos;
+    }
+}
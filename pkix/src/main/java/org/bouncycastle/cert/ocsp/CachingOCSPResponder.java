@@ -0,0 +1,369 @@
+package org.bouncycastle.cert.ocsp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.util.Arrays;
+
+/**
+ * An OCSP responder which keeps a bounded cache of pre-signed single response replies, one for each CertificateID
+ * it has been asked about.
+ * <p>
+ * A request for a single certificate without a nonce is answered with the cached DER encoding of the OCSPResp,
+ * signing a new one only if there is none or the one there has reached its nextUpdate. Requests with a nonce, or
+ * for more than one certificate, are signed live with the status taken from the status source, never the cache.
+ * Calling {@link #refresh(Date)} on a schedule re-signs cached replies before they expire, and
+ * {@link #statusChanged(CertificateID, Date)} re-signs the reply for a single certificate when its revocation status
+ * changes, so the signing happens off the request path.
+ * </p>
+ * <p>
+ * Instances are safe for use by multiple threads. Signing is serialised on a lock private to the responder, as the
+ * ContentSigner is not assumed to be thread safe, but cached replies are served while a signature is in progress.
+ * </p>
+ */
+public class CachingOCSPResponder
+{
+    /**
+     * Source of the current revocation status of a certificate.
+     */
+    public interface StatusSource
+    {
+        /**
+         * Return the status of the certificate identified by certID.
+         *
+         * @param certID the certificate of interest.
+         * @return CertificateStatus.GOOD, a RevokedStatus, or an UnknownStatus.
+         * @throws OCSPException if the status cannot be determined.
+         */
+        CertificateStatus getStatus(CertificateID certID)
+            throws OCSPException;
+    }
+
+    private final RespID responderID;
+    private final ContentSigner signer;
+    private final X509CertificateHolder[] chain;
+    private final StatusSource statusSource;
+    private final long validityPeriod;
+    private final Map entries;
+    private final Object signLock = new Object();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong liveSignings = new AtomicLong();
+    private final AtomicLong cachedSignings = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Base constructor.
+     *
+     * @param responderID the responder ID to include in replies.
+     * @param signer the signer to sign replies with.
+     * @param chain the certificates to include in replies, may be null.
+     * @param statusSource the source of certificate status.
+     * @param maxEntries the maximum number of pre-signed replies to hold.
+     * @param validityPeriod the time in milliseconds from thisUpdate to nextUpdate in a reply.
+     */
+    public CachingOCSPResponder(RespID responderID, ContentSigner signer, X509CertificateHolder[] chain,
+        StatusSource statusSource, final int maxEntries, long validityPeriod)
+    {
+        if (maxEntries < 1)
+        {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        if (validityPeriod < 1)
+        {
+            throw new IllegalArgumentException("validityPeriod must be positive");
+        }
+
+        this.responderID = responderID;
+        this.signer = signer;
+        this.chain = chain;
+        this.statusSource = statusSource;
+        this.validityPeriod = validityPeriod;
+        this.entries = new LinkedHashMap(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry eldest)
+            {
+                if (size() > maxEntries)
+                {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return the DER encoding of the OCSPResp answering request.
+     *
+     * @param request the request to answer.
+     * @param now the current time.
+     * @return a DER encoded OCSPResp.
+     * @throws OCSPException if a certificate status cannot be found or a reply cannot be signed.
+     */
+    public byte[] respond(OCSPReq request, Date now)
+        throws OCSPException
+    {
+        Req[] reqs = request.getRequestList();
+        Extension nonce = request.getExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce);
+
+        if (reqs.length == 1 && nonce == null)
+        {
+            CertificateID certID = reqs[0].getCertID();
+
+            synchronized (entries)
+            {
+                Entry entry = (Entry)entries.get(certID);
+
+                if (entry != null && entry.isCurrent(now))
+                {
+                    hits.incrementAndGet();
+                    return Arrays.clone(entry.encoding);
+                }
+
+                misses.incrementAndGet();
+            }
+
+            return Arrays.clone(sign(certID, now).encoding);
+        }
+
+        BasicOCSPRespBuilder respBuilder = new BasicOCSPRespBuilder(responderID);
+        Date nextUpdate = new Date(now.getTime() + validityPeriod);
+
+        for (int i = 0; i != reqs.length; i++)
+        {
+            CertificateID certID = reqs[i].getCertID();
+
+            // always the current status, a nonce is sent to avoid a cached one.
+            respBuilder.addResponse(certID, statusSource.getStatus(certID), now, nextUpdate, null);
+        }
+
+        if (nonce != null)
+        {
+            respBuilder.setResponseExtensions(new Extensions(nonce));
+        }
+
+        BasicOCSPResp basicResp;
+        synchronized (signLock)
+        {
+            basicResp = respBuilder.build(signer, chain, now);
+        }
+        liveSignings.incrementAndGet();
+
+        return encode(basicResp);
+    }
+
+    /**
+     * Sign and cache a reply for certID ahead of it being asked for.
+     *
+     * @param certID the certificate of interest.
+     * @param now the current time.
+     * @throws OCSPException if the certificate status cannot be found or the reply cannot be signed.
+     */
+    public void prepare(CertificateID certID, Date now)
+        throws OCSPException
+    {
+        sign(certID, now);
+    }
+
+    /**
+     * Re-sign the cached reply for certID, if there is one, with the status now returned by the status source.
+     *
+     * @param certID the certificate whose status has changed.
+     * @param now the current time.
+     * @throws OCSPException if the certificate status cannot be found or the reply cannot be signed.
+     */
+    public void statusChanged(CertificateID certID, Date now)
+        throws OCSPException
+    {
+        synchronized (entries)
+        {
+            if (!entries.containsKey(certID))
+            {
+                return;
+            }
+        }
+
+        sign(certID, now);
+    }
+
+    /**
+     * Re-sign the cached replies which have passed half of their validity period. This is intended to be called on
+     * a schedule, more often than half the validity period, so that cached replies never reach their nextUpdate.
+     *
+     * @param now the current time.
+     * @return the number of replies re-signed.
+     * @throws OCSPException if a certificate status cannot be found or a reply cannot be signed.
+     */
+    public int refresh(Date now)
+        throws OCSPException
+    {
+        List stale = new ArrayList();
+
+        synchronized (entries)
+        {
+            for (Iterator it = entries.values().iterator(); it.hasNext();)
+            {
+                Entry entry = (Entry)it.next();
+
+                if (now.getTime() - entry.thisUpdate.getTime() >= validityPeriod / 2)
+                {
+                    stale.add(entry.certID);
+                }
+            }
+        }
+
+        for (int i = 0; i != stale.size(); i++)
+        {
+            sign((CertificateID)stale.get(i), now);
+        }
+
+        return stale.size();
+    }
+
+    /**
+     * Remove all the cached replies.
+     */
+    public void clear()
+    {
+        synchronized (entries)
+        {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Return the number of cached replies.
+     *
+     * @return the cache size.
+     */
+    public int size()
+    {
+        synchronized (entries)
+        {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Return the number of requests answered from the cache.
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Return the number of cacheable requests which had to wait for a reply to be signed.
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Return the number of replies signed for the cache, including those signed by prepare(), refresh() and
+     * statusChanged().
+     */
+    public long getCachedSigningCount()
+    {
+        return cachedSignings.get();
+    }
+
+    /**
+     * Return the number of replies signed live, for requests with a nonce or for more than one certificate.
+     */
+    public long getLiveSigningCount()
+    {
+        return liveSignings.get();
+    }
+
+    /**
+     * Return the number of cached replies dropped to keep the cache within its maximum size.
+     */
+    public long getEvictionCount()
+    {
+        return evictions.get();
+    }
+
+    private Entry sign(CertificateID certID, Date now)
+        throws OCSPException
+    {
+        CertificateStatus status = statusSource.getStatus(certID);
+        Date nextUpdate = new Date(now.getTime() + validityPeriod);
+
+        BasicOCSPRespBuilder respBuilder = new BasicOCSPRespBuilder(responderID);
+
+        respBuilder.addResponse(certID, status, now, nextUpdate, null);
+
+        BasicOCSPResp basicResp;
+        synchronized (signLock)
+        {
+            basicResp = respBuilder.build(signer, chain, now);
+        }
+        cachedSignings.incrementAndGet();
+
+        Entry entry = new Entry(certID, status, now, nextUpdate, encode(basicResp));
+
+        synchronized (entries)
+        {
+            Entry current = (Entry)entries.get(certID);
+
+            // a concurrent signing may have finished first with a later status.
+            if (current == null || !current.thisUpdate.after(now))
+            {
+                entries.put(certID, entry);
+            }
+        }
+
+        return entry;
+    }
+
+    private static byte[] encode(BasicOCSPResp basicResp)
+        throws OCSPException
+    {
+        try
+        {
+            return new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL, basicResp).getEncoded();
+        }
+        catch (IOException e)
+        {
+            throw new OCSPException("can't encode object.", e);
+        }
+    }
+
+    private static class Entry
+    {
+        final CertificateID certID;
+        final CertificateStatus status;
+        final Date thisUpdate;
+        final Date nextUpdate;
+        final byte[] encoding;
+
+        Entry(CertificateID certID, CertificateStatus status, Date thisUpdate, Date nextUpdate, byte[] encoding)
+        {
+            this.certID = certID;
+            this.status = status;
+            this.thisUpdate = thisUpdate;
+            this.nextUpdate = nextUpdate;
+            this.encoding = encoding;
+        }
+
+        boolean isCurrent(Date now)
+        {
+            return !now.before(thisUpdate) && now.before(nextUpdate);
+        }
+    }
+}
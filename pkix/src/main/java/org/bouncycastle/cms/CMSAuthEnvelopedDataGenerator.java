@@ -4,7 +4,6 @@
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Collections;
-import java.util.Iterator;
 
 import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1Encoding;
@@ -75,12 +74,7 @@ private CMSAuthEnvelopedData doGenerate(
 
         GenericKey encKey = contentEncryptor.getKey();
 
-        for (Iterator it = recipientInfoGenerators.iterator(); it.hasNext();)
-        {
-            RecipientInfoGenerator recipient = (RecipientInfoGenerator)it.next();
-
-            recipientInfos.add(recipient.generate(encKey));
-        }
+        recipientInfos.addAll(generateRecipientInfos(recipientInfoGenerators, encKey));
 
         EncryptedContentInfo eci = new EncryptedContentInfo(
                         content.getContentType(),
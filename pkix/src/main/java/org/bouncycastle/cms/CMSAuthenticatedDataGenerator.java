@@ -4,7 +4,6 @@
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.Map;
 
 import org.bouncycastle.asn1.ASN1EncodableVector;
@@ -79,12 +78,7 @@ public CMSAuthenticatedData generate(CMSTypedData typedData, MacCalculator macCa
         ASN1OctetString         encContent;
         ASN1OctetString         macResult;
 
-        for (Iterator it = recipientInfoGenerators.iterator(); it.hasNext();)
-        {
-            RecipientInfoGenerator recipient = (RecipientInfoGenerator)it.next();
-
-            recipientInfos.add(recipient.generate(macCalculator.getKey()));
-        }
+        recipientInfos.addAll(generateRecipientInfos(recipientInfoGenerators, macCalculator.getKey()));
 
         AuthenticatedData authData;
 
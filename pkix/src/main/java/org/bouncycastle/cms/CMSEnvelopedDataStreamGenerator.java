@@ -3,7 +3,6 @@
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Collections;
-import java.util.Iterator;
 
 import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1Integer;
@@ -90,16 +89,8 @@ private OutputStream doOpen(
         OutputEncryptor      encryptor)
         throws IOException, CMSException
     {
-        ASN1EncodableVector recipientInfos = new ASN1EncodableVector();
         GenericKey encKey = encryptor.getKey();
-        Iterator it = recipientInfoGenerators.iterator();
-
-        while (it.hasNext())
-        {
-            RecipientInfoGenerator recipient = (RecipientInfoGenerator)it.next();
-
-            recipientInfos.add(recipient.generate(encKey));
-        }
+        ASN1EncodableVector recipientInfos = generateRecipientInfos(recipientInfoGenerators, encKey);
 
         return open(dataType, out, recipientInfos, encryptor);
     }
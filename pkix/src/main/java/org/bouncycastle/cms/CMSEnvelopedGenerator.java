@@ -1,14 +1,24 @@
 package org.bouncycastle.cms;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.cms.OriginatorInfo;
+import org.bouncycastle.asn1.cms.RecipientInfo;
 import org.bouncycastle.asn1.kisa.KISAObjectIdentifiers;
 import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
 import org.bouncycastle.asn1.ntt.NTTObjectIdentifiers;
 import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
+import org.bouncycastle.operator.GenericKey;
 
 /**
  * General class for generating a CMS enveloped-data message.
@@ -45,6 +55,9 @@
 
     protected OriginatorInfo originatorInfo;
 
+    private Executor executor;
+    private int maxPending;
+
     /**
      * base constructor
      */
@@ -62,6 +75,29 @@ public void setOriginatorInfo(OriginatorInformation originatorInfo)
         this.originatorInfo = originatorInfo.toASN1Structure();
     }
 
+    /**
+     * Set an executor to generate the recipient infos on. The recipient infos are still collected in the order
+     * their generators were added, so the message produced is the same as without an executor, only where the
+     * work is done changes. Tasks rejected by the executor are run on the calling thread.
+     * <p>
+     * Note: with an executor set the recipient info generators are called concurrently, so each generator added
+     * must be a separate object.
+     * </p>
+     *
+     * @param executor the executor to generate recipient infos on, null to generate them on the calling thread.
+     * @param maxPending the maximum number of recipient infos being generated at once.
+     */
+    public void setExecutor(Executor executor, int maxPending)
+    {
+        if (executor != null && maxPending < 1)
+        {
+            throw new IllegalArgumentException("maxPending must be positive");
+        }
+
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
     /**
      * Add a generator to produce the recipient info required.
      * 
@@ -71,4 +107,88 @@ public void addRecipientInfoGenerator(RecipientInfoGenerator recipientGenerator)
     {
         recipientInfoGenerators.add(recipientGenerator);
     }
+
+    ASN1EncodableVector generateRecipientInfos(List generators, final GenericKey key)
+        throws CMSException
+    {
+        ASN1EncodableVector recipientInfos = new ASN1EncodableVector(generators.size());
+
+        if (executor == null)
+        {
+            for (Iterator it = generators.iterator(); it.hasNext();)
+            {
+                RecipientInfoGenerator recipient = (RecipientInfoGenerator)it.next();
+
+                recipientInfos.add(recipient.generate(key));
+            }
+
+            return recipientInfos;
+        }
+
+        LinkedList pending = new LinkedList();
+        try
+        {
+            for (Iterator it = generators.iterator(); it.hasNext() || !pending.isEmpty();)
+            {
+                if (!it.hasNext() || pending.size() >= maxPending)
+                {
+                    recipientInfos.add((RecipientInfo)((FutureTask)pending.removeFirst()).get());
+                    continue;
+                }
+
+                final RecipientInfoGenerator recipient = (RecipientInfoGenerator)it.next();
+
+                FutureTask task = new FutureTask(new Callable()
+                {
+                    public Object call()
+                        throws Exception
+                    {
+                        return recipient.generate(key);
+                    }
+                });
+
+                pending.addLast(task);
+
+                try
+                {
+                    executor.execute(task);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    task.run();
+                }
+            }
+
+            return recipientInfos;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new CMSException("interrupted generating recipient infos");
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof CMSException)
+            {
+                throw (CMSException)cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error)cause;
+            }
+            throw new CMSException("exception generating recipient info: " + cause.getMessage(), (Exception)cause);
+        }
+        finally
+        {
+            while (!pending.isEmpty())
+            {
+                ((FutureTask)pending.removeFirst()).cancel(false);
+            }
+        }
+    }
 }
@@ -9,9 +9,15 @@
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.bouncycastle.asn1.ASN1Encodable;
 import org.bouncycastle.asn1.ASN1EncodableVector;
@@ -30,10 +36,12 @@
 import org.bouncycastle.cert.X509CRLHolder;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.operator.DefaultDigestAlgorithmIdentifierFinder;
+import org.bouncycastle.operator.DigestCalculator;
 import org.bouncycastle.operator.DigestAlgorithmIdentifierFinder;
 import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.util.Encodable;
 import org.bouncycastle.util.Store;
+import org.bouncycastle.util.io.TeeOutputStream;
 
 /**
  * general class for handling a pkcs7-signature message.
@@ -459,6 +467,231 @@ public boolean verifySignatures(SignerInformationVerifierProvider verifierProvid
         return true;
     }
 
+    /**
+     * Verify all the SignerInformation objects and optionally their associated counter signatures attached
+     * to this CMS SignedData object, reading the encapsulated content once. The content is digested a single time
+     * for each digest algorithm used by the signers, with the digests calculated side by side on the passed in
+     * executor where there is more than one algorithm, and the signatures are then checked on the executor.
+     * <p>
+     * The verifier provider is only called on the calling thread, but the verifiers it returns are used on the
+     * executor. Tasks rejected by the executor are run on the calling thread.
+     * </p>
+     *
+     * @param verifierProvider        a provider of SignerInformationVerifier objects.
+     * @param ignoreCounterSignatures if true don't check counter signatures. If false check counter signatures as well.
+     * @param executor                the executor to calculate digests and check signatures on, null to do both on
+     *                                the calling thread.
+     * @return true if all verify, false otherwise.
+     * @throws CMSException if an exception occurs during the verification process.
+     */
+    public boolean verifySignatures(SignerInformationVerifierProvider verifierProvider, boolean ignoreCounterSignatures,
+        Executor executor)
+        throws CMSException
+    {
+        List signers = new ArrayList();
+        List verifiers = new ArrayList();
+
+        try
+        {
+            for (Iterator it = this.getSignerInfos().getSigners().iterator(); it.hasNext(); )
+            {
+                addSigner((SignerInformation)it.next(), verifierProvider, !ignoreCounterSignatures, signers, verifiers);
+            }
+        }
+        catch (OperatorCreationException e)
+        {
+            throw new CMSException("failure in verifier provider: " + e.getMessage(), e);
+        }
+
+        digestContent(signers, verifiers, executor);
+
+        List tasks = new ArrayList(signers.size());
+        try
+        {
+            for (int i = 0; i != signers.size(); i++)
+            {
+                final SignerInformation signer = (SignerInformation)signers.get(i);
+                final SignerInformationVerifier verifier = (SignerInformationVerifier)verifiers.get(i);
+
+                FutureTask task = new FutureTask(new Callable()
+                {
+                    public Object call()
+                        throws Exception
+                    {
+                        return Boolean.valueOf(signer.verify(verifier));
+                    }
+                });
+
+                tasks.add(task);
+
+                if (executor == null)
+                {
+                    task.run();
+                }
+                else
+                {
+                    try
+                    {
+                        executor.execute(task);
+                    }
+                    catch (RejectedExecutionException e)
+                    {
+                        task.run();
+                    }
+                }
+            }
+
+            for (int i = 0; i != tasks.size(); i++)
+            {
+                if (!((Boolean)((FutureTask)tasks.get(i)).get()).booleanValue())
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new CMSException("interrupted verifying signatures");
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof CMSException)
+            {
+                throw (CMSException)cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error)cause;
+            }
+            throw new CMSException("exception verifying signature: " + cause.getMessage(), (Exception)cause);
+        }
+        finally
+        {
+            for (int i = 0; i != tasks.size(); i++)
+            {
+                ((FutureTask)tasks.get(i)).cancel(false);
+            }
+        }
+    }
+
+    private void addSigner(SignerInformation signer, SignerInformationVerifierProvider verifierProvider,
+        boolean includeCounterSignatures, List signers, List verifiers)
+        throws OperatorCreationException
+    {
+        signers.add(signer);
+        verifiers.add(verifierProvider.get(signer.getSID()));
+
+        if (includeCounterSignatures)
+        {
+            for (Iterator it = signer.getCounterSignatures().getSigners().iterator(); it.hasNext(); )
+            {
+                addSigner((SignerInformation)it.next(), verifierProvider, true, signers, verifiers);
+            }
+        }
+    }
+
+    /**
+     * Calculate the digests of the signed content needed by signers in a single pass over the content, one
+     * calculator per digest algorithm. Where there is an executor and more than one digest algorithm the
+     * calculators are run in parallel.
+     */
+    private void digestContent(List signers, List verifiers, Executor executor)
+        throws CMSException
+    {
+        if (signedContent == null)
+        {
+            return;
+        }
+
+        Map calculators = new LinkedHashMap();
+
+        try
+        {
+            for (int i = 0; i != signers.size(); i++)
+            {
+                SignerInformation signer = (SignerInformation)signers.get(i);
+
+                if (signer.getUndigestedContent() == signedContent)
+                {
+                    AlgorithmIdentifier digAlg = signer.getDigestAlgorithmID();
+
+                    if (!calculators.containsKey(digAlg))
+                    {
+                        calculators.put(digAlg,
+                            ((SignerInformationVerifier)verifiers.get(i)).getDigestCalculator(digAlg));
+                    }
+                }
+            }
+        }
+        catch (OperatorCreationException e)
+        {
+            throw new CMSException("can't create digest calculator: " + e.getMessage(), e);
+        }
+
+        if (calculators.isEmpty())
+        {
+            return;
+        }
+
+        try
+        {
+            OutputStream cOut = null;
+            if (executor != null && calculators.size() > 1)
+            {
+                List outputs = new ArrayList();
+                for (Iterator it = calculators.values().iterator(); it.hasNext(); )
+                {
+                    outputs.add(((DigestCalculator)it.next()).getOutputStream());
+                }
+
+                cOut = CMSUtils.getParallelTeeOutputStream(outputs, executor);
+            }
+            else
+            {
+                for (Iterator it = calculators.values().iterator(); it.hasNext(); )
+                {
+                    OutputStream digOut = ((DigestCalculator)it.next()).getOutputStream();
+
+                    cOut = (cOut == null) ? digOut : new TeeOutputStream(cOut, digOut);
+                }
+            }
+
+            signedContent.write(cOut);
+
+            cOut.close();
+        }
+        catch (IOException e)
+        {
+            throw new CMSException("can't process content to calculate digest.", e);
+        }
+
+        Map digests = new LinkedHashMap();
+        for (Iterator it = calculators.entrySet().iterator(); it.hasNext(); )
+        {
+            Map.Entry entry = (Map.Entry)it.next();
+
+            digests.put(entry.getKey(), ((DigestCalculator)entry.getValue()).getDigest());
+        }
+
+        for (int i = 0; i != signers.size(); i++)
+        {
+            SignerInformation signer = (SignerInformation)signers.get(i);
+
+            if (signer.getUndigestedContent() == signedContent)
+            {
+                signer.setContentDigest((byte[])digests.get(signer.getDigestAlgorithmID()));
+            }
+        }
+    }
+
     private boolean verifyCounterSignature(SignerInformation counterSigner, SignerInformationVerifierProvider verifierProvider)
         throws OperatorCreationException, CMSException
     {
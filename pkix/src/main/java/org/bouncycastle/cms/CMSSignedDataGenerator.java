@@ -8,6 +8,7 @@
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
@@ -54,6 +55,7 @@
 {
     private List signerInfs = new ArrayList();
     private boolean isDefiniteLength = false;
+    private Executor executor;
 
     /**
      * base constructor
@@ -80,6 +82,18 @@ public void setDefiniteLengthEncoding(boolean isDefiniteLength)
         this.isDefiniteLength = isDefiniteLength;
     }
 
+    /**
+     * Set an executor to run the signers' digest calculations on. Where there is more than one signer the content
+     * is passed to each of them on its own task, a chunk at a time, so the content is processed at the speed of the
+     * slowest digest rather than the sum of them. Tasks rejected by the executor are run on the calling thread.
+     *
+     * @param executor the executor to calculate digests on, null to calculate them on the calling thread (default null).
+     */
+    public void setExecutor(Executor executor)
+    {
+        this.executor = executor;
+    }
+
     /**
      * Generate a CMS Signed Data object carrying a detached CMS signature.
      *
@@ -172,7 +186,7 @@ public CMSSignedData generate(
                 bOut = new ByteArrayOutputStream();
             }
 
-            OutputStream cOut = CMSUtils.attachSignersToOutputStream(signerGens, bOut);
+            OutputStream cOut = CMSUtils.attachSignersToOutputStream(signerGens, bOut, executor);
 
             // Just in case it's unencapsulated and there are no signers!
             cOut = CMSUtils.getSafeOutputStream(cOut);
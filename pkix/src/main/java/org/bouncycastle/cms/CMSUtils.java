@@ -9,6 +9,7 @@
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.bouncycastle.asn1.ASN1Encodable;
 import org.bouncycastle.asn1.ASN1EncodableVector;
@@ -395,6 +396,50 @@ static OutputStream attachSignersToOutputStream(Collection signers, OutputStream
         return result;
     }
 
+    static OutputStream attachSignersToOutputStream(Collection signers, OutputStream s, Executor executor)
+    {
+        if (executor == null || signers.size() < 2)
+        {
+            return attachSignersToOutputStream(signers, s);
+        }
+
+        List outputs = new ArrayList();
+        if (s != null)
+        {
+            outputs.add(s);
+        }
+
+        Iterator it = signers.iterator();
+        while (it.hasNext())
+        {
+            OutputStream sOut = ((SignerInfoGenerator)it.next()).getCalculatingOutputStream();
+            if (sOut != null)
+            {
+                outputs.add(sOut);
+            }
+        }
+
+        return getParallelTeeOutputStream(outputs, executor);
+    }
+
+    /**
+     * Return a stream writing to all of outputs, on the executor if there is more than one of them.
+     */
+    static OutputStream getParallelTeeOutputStream(List outputs, Executor executor)
+    {
+        if (outputs.isEmpty())
+        {
+            return new NullOutputStream();
+        }
+        if (outputs.size() == 1)
+        {
+            return (OutputStream)outputs.get(0);
+        }
+
+        return new ParallelTeeOutputStream((OutputStream[])outputs.toArray(new OutputStream[outputs.size()]),
+            executor, ParallelTeeOutputStream.DEFAULT_CHUNK_SIZE);
+    }
+
     static OutputStream getSafeOutputStream(OutputStream s)
     {
         return s == null ? new NullOutputStream() : s;
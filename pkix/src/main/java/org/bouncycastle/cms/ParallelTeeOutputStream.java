@@ -0,0 +1,204 @@
+package org.bouncycastle.cms;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.bouncycastle.util.Exceptions;
+
+/**
+ * An output stream which passes the data written to it on to a number of streams, each on its own executor task.
+ * Data is collected into chunks and each chunk is written to all of the streams in parallel while the next chunk
+ * is being collected, so independent digest calculations over the same content run at the speed of the slowest
+ * one rather than the sum of them all.
+ */
+class ParallelTeeOutputStream
+    extends OutputStream
+{
+    static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private final OutputStream[] outputs;
+    private final Executor executor;
+    private final FutureTask[] pending;
+
+    private byte[] chunk;
+    private byte[] spare;
+    private int chunkOff;
+
+    ParallelTeeOutputStream(OutputStream[] outputs, Executor executor, int chunkSize)
+    {
+        if (chunkSize < 1)
+        {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+
+        this.outputs = outputs;
+        this.executor = executor;
+        this.pending = new FutureTask[outputs.length];
+        this.chunk = new byte[chunkSize];
+        this.spare = new byte[chunkSize];
+    }
+
+    public void write(int b)
+        throws IOException
+    {
+        if (chunkOff == chunk.length)
+        {
+            dispatch();
+        }
+
+        chunk[chunkOff++] = (byte)b;
+    }
+
+    public void write(byte[] b, int off, int len)
+        throws IOException
+    {
+        while (len > 0)
+        {
+            if (chunkOff == chunk.length)
+            {
+                dispatch();
+            }
+
+            int count = Math.min(len, chunk.length - chunkOff);
+
+            System.arraycopy(b, off, chunk, chunkOff, count);
+
+            chunkOff += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    public void flush()
+        throws IOException
+    {
+        if (chunkOff > 0)
+        {
+            dispatch();
+        }
+
+        await();
+
+        for (int i = 0; i != outputs.length; i++)
+        {
+            outputs[i].flush();
+        }
+    }
+
+    public void close()
+        throws IOException
+    {
+        if (chunkOff > 0)
+        {
+            dispatch();
+        }
+
+        await();
+
+        for (int i = 0; i != outputs.length; i++)
+        {
+            outputs[i].close();
+        }
+    }
+
+    /**
+     * Wait for the previous chunk to be written and then start writing the current one, swapping the buffers.
+     */
+    private void dispatch()
+        throws IOException
+    {
+        await();
+
+        final byte[] data = chunk;
+        final int dataLen = chunkOff;
+
+        for (int i = 0; i != outputs.length; i++)
+        {
+            final OutputStream out = outputs[i];
+
+            FutureTask task = new FutureTask(new Callable()
+            {
+                public Object call()
+                    throws Exception
+                {
+                    out.write(data, 0, dataLen);
+                    return null;
+                }
+            });
+
+            pending[i] = task;
+
+            try
+            {
+                executor.execute(task);
+            }
+            catch (RejectedExecutionException e)
+            {
+                task.run();
+            }
+        }
+
+        chunk = spare;
+        spare = data;
+        chunkOff = 0;
+    }
+
+    private void await()
+        throws IOException
+    {
+        try
+        {
+            for (int i = 0; i != pending.length; i++)
+            {
+                if (pending[i] != null)
+                {
+                    pending[i].get();
+                    pending[i] = null;
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted writing content");
+        }
+        catch (ExecutionException e)
+        {
+            cancel();
+
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException)cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error)cause;
+            }
+            throw Exceptions.ioException("exception writing content: " + cause.getMessage(), cause);
+        }
+    }
+
+    private void cancel()
+    {
+        for (int i = 0; i != pending.length; i++)
+        {
+            if (pending[i] != null)
+            {
+                pending[i].cancel(false);
+                pending[i] = null;
+            }
+        }
+    }
+}
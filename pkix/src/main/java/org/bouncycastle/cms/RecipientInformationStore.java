@@ -65,9 +65,17 @@ public RecipientInformationStore(
     public RecipientInformation get(
         RecipientId selector)
     {
-        Collection list = getRecipients(selector);
+        if (isCombinedSelector(selector))
+        {
+            Collection list = getRecipients(selector);
+
+            return list.size() == 0 ? null : (RecipientInformation)list.iterator().next();
+        }
 
-        return list.size() == 0 ? null : (RecipientInformation)list.iterator().next();
+        // direct lookup, there's no need to copy the matches just to return the first one.
+        List list = (List)table.get(selector);
+
+        return list == null ? null : (RecipientInformation)list.get(0);
     }
 
     /**
@@ -99,31 +107,28 @@ public Collection<RecipientInformation> getRecipients()
     public Collection<RecipientInformation> getRecipients(
         RecipientId selector)
     {
-        if (selector instanceof KeyTransRecipientId)
+        if (isCombinedSelector(selector))
         {
             KeyTransRecipientId keyTrans = (KeyTransRecipientId)selector;
 
             X500Name issuer = keyTrans.getIssuer();
             byte[] subjectKeyId = keyTrans.getSubjectKeyIdentifier();
 
-            if (issuer != null && subjectKeyId != null)
-            {
-                List<RecipientInformation> results = new ArrayList();
+            List<RecipientInformation> results = new ArrayList();
 
-                Collection<RecipientInformation> match1 = getRecipients(new KeyTransRecipientId(issuer, keyTrans.getSerialNumber()));
-                if (match1 != null)
-                {
-                    results.addAll(match1);
-                }
-
-                Collection<RecipientInformation> match2 = getRecipients(new KeyTransRecipientId(subjectKeyId));
-                if (match2 != null)
-                {
-                    results.addAll(match2);
-                }
+            Collection<RecipientInformation> match1 = getRecipients(new KeyTransRecipientId(issuer, keyTrans.getSerialNumber()));
+            if (match1 != null)
+            {
+                results.addAll(match1);
+            }
 
-                return results;
+            Collection<RecipientInformation> match2 = getRecipients(new KeyTransRecipientId(subjectKeyId));
+            if (match2 != null)
+            {
+                results.addAll(match2);
             }
+
+            return results;
         }
 
         List list = (ArrayList)table.get(selector);
@@ -131,6 +136,21 @@ public Collection<RecipientInformation> getRecipients(
         return list == null ? new ArrayList() : new ArrayList(list);
     }
 
+    /**
+     * A key transport selector carrying both an issuer and serial number and a subject key identifier matches
+     * recipients identified by either, so is looked up as two separate ids.
+     */
+    private static boolean isCombinedSelector(RecipientId selector)
+    {
+        if (selector instanceof KeyTransRecipientId)
+        {
+            KeyTransRecipientId keyTrans = (KeyTransRecipientId)selector;
+
+            return keyTrans.getIssuer() != null && keyTrans.getSubjectKeyIdentifier() != null;
+        }
+
+        return false;
+    }
 
     /**
      * Support method for Iterable where available.
@@ -204,6 +204,22 @@ public byte[] getContentDigest()
         return Arrays.clone(resultDigest);
     }
 
+    /**
+     * Return the content covered by this signer if its digest has yet to be calculated, null otherwise.
+     */
+    CMSProcessable getUndigestedContent()
+    {
+        return (resultDigest == null) ? content : null;
+    }
+
+    /**
+     * Set the digest of the content covered by this signer, calculated elsewhere, for use by verify().
+     */
+    void setContentDigest(byte[] digest)
+    {
+        this.resultDigest = digest;
+    }
+
     /**
      * return the object identifier for the signature.
      */
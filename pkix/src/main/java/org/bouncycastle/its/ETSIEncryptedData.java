@@ -1,6 +1,5 @@
 package org.bouncycastle.its;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -27,7 +26,7 @@
     public ETSIEncryptedData(byte[] oerEncoded)
         throws IOException
     {
-        this(new ByteArrayInputStream(oerEncoded));
+        this(new OERInputStream(oerEncoded, 0, oerEncoded.length));
     }
 
     public ETSIEncryptedData(InputStream str)
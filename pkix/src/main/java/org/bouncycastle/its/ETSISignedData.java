@@ -1,6 +1,5 @@
 package org.bouncycastle.its;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -35,7 +34,7 @@ public ETSISignedData(Opaque opaque)
     public ETSISignedData(byte[] oerEncoded)
         throws IOException
     {
-        this(new ByteArrayInputStream(oerEncoded));
+        this(new OERInputStream(oerEncoded, 0, oerEncoded.length));
     }
 
     public ETSISignedData(InputStream str)
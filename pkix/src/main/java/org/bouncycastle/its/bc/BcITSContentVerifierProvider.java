@@ -25,16 +25,16 @@
     implements ITSContentVerifierProvider
 {
     private final ITSCertificate issuer;
-    private final byte[] parentData;
     private final AlgorithmIdentifier digestAlgo;
     private final ECPublicKeyParameters pubParams;
     private final int sigChoice;
+    private final byte[] parentDigest;
+    private final byte[] parentTBSDigest;
 
     public BcITSContentVerifierProvider(ITSCertificate issuer)
         throws IOException
     {
         this.issuer = issuer;
-        this.parentData = issuer.getEncoded();
         ToBeSignedCertificate toBeSignedCertificate =
             issuer.toASN1Structure().getToBeSigned();
         VerificationKeyIndicator vki = toBeSignedCertificate.getVerifyKeyIndicator();
@@ -65,6 +65,26 @@ public BcITSContentVerifierProvider(ITSCertificate issuer)
         {
             throw new IllegalStateException("not public verification key");
         }
+
+        // the digests of the issuer are the same for every verifier, so are only calculated once.
+        Digest digest = createDigest();
+
+        byte[] parentData = issuer.getEncoded();
+        parentDigest = new byte[digest.getDigestSize()];
+        digest.update(parentData, 0, parentData.length);
+        digest.doFinal(parentDigest, 0);
+
+        if (issuer.getIssuer().isSelf())
+        {
+            byte[] enc = OEREncoder.toByteArray(toBeSignedCertificate, IEEE1609dot2.ToBeSignedCertificate.build());
+            parentTBSDigest = new byte[digest.getDigestSize()];
+            digest.update(enc, 0, enc.length);
+            digest.doFinal(parentTBSDigest, 0);
+        }
+        else
+        {
+            parentTBSDigest = null;
+        }
     }
 
     public ITSCertificate getAssociatedCertificate()
@@ -77,6 +97,16 @@ public boolean hasAssociatedCertificate()
         return issuer != null;
     }
 
+    /**
+     * Return the digest of the associated certificate, the last 8 bytes of which are its HashedId8.
+     *
+     * @return the whole-certificate digest.
+     */
+    public byte[] getAssociatedCertificateDigest()
+    {
+        return Arrays.clone(parentDigest);
+    }
+
     public ContentVerifier get(final int verifierAlgorithmIdentifier)
         throws OperatorCreationException
     {
@@ -85,22 +115,7 @@ public ContentVerifier get(final int verifierAlgorithmIdentifier)
             throw new OperatorCreationException("wrong verifier for algorithm: " + verifierAlgorithmIdentifier);
         }
 
-        final Digest digest = BcDefaultDigestProvider.INSTANCE.get(digestAlgo);
-
-        final byte[] parentDigest = new byte[digest.getDigestSize()];
-
-        digest.update(parentData, 0, parentData.length);
-
-        digest.doFinal(parentDigest, 0);
-
-        final byte[] parentTBSDigest = issuer.getIssuer().isSelf() ? new byte[digest.getDigestSize()] : null;
-
-        if (parentTBSDigest != null)
-        {
-            byte[] enc = OEREncoder.toByteArray(issuer.toASN1Structure().getToBeSigned(), IEEE1609dot2.ToBeSignedCertificate.build());
-            digest.update(enc, 0, enc.length);
-            digest.doFinal(parentTBSDigest, 0);
-        }
+        final Digest digest = createDigest();
 
         final OutputStream os = new OutputStream()
         {
@@ -125,8 +140,7 @@ public void write(byte[] b, int off, int len)
 
         return new ContentVerifier()
         {
-            final DSADigestSigner signer = new DSADigestSigner(new ECDSASigner(),
-                BcDefaultDigestProvider.INSTANCE.get(digestAlgo));
+            final DSADigestSigner signer = new DSADigestSigner(new ECDSASigner(), createDigest());
 
             public AlgorithmIdentifier getAlgorithmIdentifier()
             {
@@ -173,4 +187,16 @@ public boolean verify(byte[] expected)
             }
         };
     }
+
+    private Digest createDigest()
+    {
+        try
+        {
+            return BcDefaultDigestProvider.INSTANCE.get(digestAlgo);
+        }
+        catch (OperatorCreationException e)
+        {
+            throw new IllegalStateException("cannot recognise digest type: " + digestAlgo.getAlgorithm());
+        }
+    }
 }
@@ -0,0 +1,285 @@
+package org.bouncycastle.its.bc;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.digests.SHA384Digest;
+import org.bouncycastle.its.ETSISignedData;
+import org.bouncycastle.its.ITSCertificate;
+import org.bouncycastle.oer.its.ieee1609dot2.Certificate;
+import org.bouncycastle.oer.its.ieee1609dot2.SequenceOfCertificate;
+import org.bouncycastle.oer.its.ieee1609dot2.SignerIdentifier;
+import org.bouncycastle.oer.its.ieee1609dot2.VerificationKeyIndicator;
+import org.bouncycastle.oer.its.ieee1609dot2.basetypes.HashedId8;
+import org.bouncycastle.oer.its.ieee1609dot2.basetypes.PublicVerificationKey;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.encoders.Hex;
+
+/**
+ * A verifier for high rates of signed ETSI ITS messages, holding a bounded cache of the signer certificates it knows
+ * indexed by their HashedId8.
+ * <p>
+ * Each cache entry holds a prepared {@link BcITSContentVerifierProvider}, so the certificate is decoded, its public
+ * key reconstructed and its digest calculated only once. As the same public key object is then used for every
+ * message, the point precomputation done by the first verification is reused by the rest. Messages are only
+ * verified against certificates held by the engine: a message identifying its signer by digest is checked against
+ * the certificate with that HashedId8, and a message carrying its signer certificate is checked against the held
+ * copy of that certificate. A message whose signer certificate is not held is never reported as valid - a carried
+ * certificate needs to be validated by the caller and added with {@link #addCertificate(ITSCertificate)} first.
+ * </p><p>
+ * Only the signature is checked, the certificates added to the engine are assumed to have been validated by the
+ * caller. Instances are safe for use by multiple threads.
+ * </p>
+ */
+public class BcITSVerificationEngine
+{
+    private final Map<HashedId8, BcITSContentVerifierProvider> providers;
+
+    /**
+     * Base constructor.
+     *
+     * @param maxCertificates the maximum number of signer certificates to hold.
+     */
+    public BcITSVerificationEngine(final int maxCertificates)
+    {
+        if (maxCertificates < 1)
+        {
+            throw new IllegalArgumentException("maxCertificates must be positive");
+        }
+
+        this.providers = new LinkedHashMap<HashedId8, BcITSContentVerifierProvider>(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry<HashedId8, BcITSContentVerifierProvider> eldest)
+            {
+                return size() > maxCertificates;
+            }
+        };
+    }
+
+    /**
+     * Add a (validated) signer certificate to the engine.
+     *
+     * @param certificate the certificate to add.
+     * @return the HashedId8 messages signed using the certificate's key will carry.
+     * @throws IOException if the certificate cannot be encoded.
+     */
+    public HashedId8 addCertificate(ITSCertificate certificate)
+        throws IOException
+    {
+        BcITSContentVerifierProvider provider = new BcITSContentVerifierProvider(certificate);
+        HashedId8 hashedId = getHashedId8(provider.getAssociatedCertificateDigest());
+
+        synchronized (providers)
+        {
+            providers.put(hashedId, provider);
+        }
+
+        return hashedId;
+    }
+
+    /**
+     * Return the certificate held for a HashedId8.
+     *
+     * @param hashedId the HashedId8 of the certificate.
+     * @return the certificate, null if it is not known.
+     */
+    public ITSCertificate getCertificate(HashedId8 hashedId)
+    {
+        BcITSContentVerifierProvider provider = getProvider(hashedId);
+
+        return provider == null ? null : provider.getAssociatedCertificate();
+    }
+
+    /**
+     * Return the number of certificates currently held.
+     *
+     * @return the number of certificates.
+     */
+    public int size()
+    {
+        synchronized (providers)
+        {
+            return providers.size();
+        }
+    }
+
+    /**
+     * Remove all the certificates held.
+     */
+    public void clear()
+    {
+        synchronized (providers)
+        {
+            providers.clear();
+        }
+    }
+
+    /**
+     * Verify the signature on a message.
+     *
+     * @param signedData the message to verify.
+     * @return true if the signature was valid.
+     * @throws OperatorCreationException if the signer is self, or its certificate is not held by the engine.
+     * @throws Exception if the signature cannot be checked.
+     */
+    public boolean verify(ETSISignedData signedData)
+        throws Exception
+    {
+        return signedData.signatureValid(getSignerProvider(signedData.getSignedData().getSigner()));
+    }
+
+    /**
+     * Verify the signatures on a batch of messages, splitting the work into one task per available processor.
+     *
+     * @param messages the messages to verify.
+     * @param executor the executor to run the tasks, null to verify on the calling thread.
+     * @return an array with, for each message, true if its signature was valid, false if it was invalid or could
+     * not be checked, including where the signer certificate is not held by the engine.
+     * @throws InterruptedException if interrupted while waiting for the tasks to finish.
+     */
+    public boolean[] verify(final List<ETSISignedData> messages, Executor executor)
+        throws InterruptedException
+    {
+        final boolean[] results = new boolean[messages.size()];
+
+        int taskCount = Math.min(Runtime.getRuntime().availableProcessors(), results.length);
+        if (executor == null || taskCount < 2)
+        {
+            verify(messages, results, 0, results.length);
+            return results;
+        }
+
+        final CountDownLatch done = new CountDownLatch(taskCount);
+        for (int i = 0; i != taskCount; i++)
+        {
+            final int from = (int)((long)results.length * i / taskCount);
+            final int to = (int)((long)results.length * (i + 1) / taskCount);
+
+            Runnable task = new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        verify(messages, results, from, to);
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            };
+
+            try
+            {
+                executor.execute(task);
+            }
+            catch (RejectedExecutionException e)
+            {
+                task.run();
+            }
+        }
+        done.await();
+
+        return results;
+    }
+
+    private void verify(List<ETSISignedData> messages, boolean[] results, int from, int to)
+    {
+        for (int i = from; i != to; i++)
+        {
+            try
+            {
+                results[i] = verify(messages.get(i));
+            }
+            catch (Exception e)
+            {
+                results[i] = false;
+            }
+        }
+    }
+
+    private BcITSContentVerifierProvider getSignerProvider(SignerIdentifier signer)
+        throws Exception
+    {
+        switch (signer.getChoice())
+        {
+        case SignerIdentifier.digest:
+        {
+            HashedId8 hashedId = HashedId8.getInstance(signer.getSignerIdentifier());
+            BcITSContentVerifierProvider provider = getProvider(hashedId);
+            if (provider == null)
+            {
+                throw new OperatorCreationException("unknown signer: " + Hex.toHexString(hashedId.getHashBytes()));
+            }
+            return provider;
+        }
+        case SignerIdentifier.certificate:
+        {
+            List<Certificate> certificates = SequenceOfCertificate.getInstance(signer.getSignerIdentifier()).getCertificates();
+            if (certificates.isEmpty())
+            {
+                throw new OperatorCreationException("no signer certificate");
+            }
+
+            ITSCertificate certificate = new ITSCertificate(certificates.get(0));
+            byte[] certificateDigest = calculateCertificateDigest(certificate);
+            HashedId8 hashedId = getHashedId8(certificateDigest);
+            BcITSContentVerifierProvider provider = getProvider(hashedId);
+            // the carried certificate has to be the one held, not just share its HashedId8.
+            if (provider == null || !Arrays.areEqual(certificateDigest, provider.getAssociatedCertificateDigest()))
+            {
+                throw new OperatorCreationException("unknown signer certificate: " + Hex.toHexString(hashedId.getHashBytes()));
+            }
+            return provider;
+        }
+        default:
+            throw new OperatorCreationException("unsupported signer identifier: " + signer.getChoice());
+        }
+    }
+
+    private BcITSContentVerifierProvider getProvider(HashedId8 hashedId)
+    {
+        synchronized (providers)
+        {
+            return providers.get(hashedId);
+        }
+    }
+
+    private static byte[] calculateCertificateDigest(ITSCertificate certificate)
+        throws IOException
+    {
+        Digest digest;
+
+        VerificationKeyIndicator vki = certificate.toASN1Structure().getToBeSigned().getVerifyKeyIndicator();
+        if (vki.getVerificationKeyIndicator() instanceof PublicVerificationKey
+            && ((PublicVerificationKey)vki.getVerificationKeyIndicator()).getChoice() == PublicVerificationKey.ecdsaBrainpoolP384r1)
+        {
+            digest = new SHA384Digest();
+        }
+        else
+        {
+            digest = new SHA256Digest();
+        }
+
+        byte[] encoding = certificate.getEncoded();
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.update(encoding, 0, encoding.length);
+        digest.doFinal(hash, 0);
+
+        return hash;
+    }
+
+    private static HashedId8 getHashedId8(byte[] certificateDigest)
+    {
+        return new HashedId8(Arrays.copyOfRange(certificateDigest, certificateDigest.length - 8, certificateDigest.length));
+    }
+}
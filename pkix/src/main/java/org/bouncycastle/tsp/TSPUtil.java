@@ -214,4 +214,62 @@ static void addExtension(ExtensionsGenerator extGenerator, ASN1ObjectIdentifier
             throw new TSPIOException("cannot encode extension: " + e.getMessage(), e);
         }
     }
+
+    private static final int LEAF_PREFIX = 0x00;
+    private static final int NODE_PREFIX = 0x01;
+
+    /**
+     * Hash the data for a leaf in a batch hash tree, the data is prefixed with 0x00, and the nodes with 0x01, as in
+     * RFC 6962 so a leaf can never be taken for a node or the other way round.
+     */
+    static byte[] calculateLeafHash(DigestCalculator digCalc, byte[] data)
+        throws IOException
+    {
+        OutputStream dOut = digCalc.getOutputStream();
+
+        dOut.write(LEAF_PREFIX);
+        dOut.write(data);
+        dOut.close();
+
+        return digCalc.getDigest();
+    }
+
+    /**
+     * Hash a pair of nodes in a batch hash tree, the nodes are prefixed with 0x01 and concatenated in ascending
+     * order as for the hash trees in RFC 4998.
+     */
+    static byte[] calculateBranchHash(DigestCalculator digCalc, byte[] a, byte[] b)
+        throws IOException
+    {
+        OutputStream dOut = digCalc.getOutputStream();
+
+        dOut.write(NODE_PREFIX);
+        if (compareHashes(a, b) <= 0)
+        {
+            dOut.write(a);
+            dOut.write(b);
+        }
+        else
+        {
+            dOut.write(b);
+            dOut.write(a);
+        }
+        dOut.close();
+
+        return digCalc.getDigest();
+    }
+
+    static int compareHashes(byte[] a, byte[] b)
+    {
+        for (int i = 0; i < a.length && i < b.length; i++)
+        {
+            int diff = (a[i] & 0xff) - (b[i] & 0xff);
+            if (diff != 0)
+            {
+                return diff;
+            }
+        }
+
+        return a.length - b.length;
+    }
 }
@@ -3,6 +3,7 @@
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigInteger;
 
 import org.bouncycastle.asn1.ASN1Encodable;
 import org.bouncycastle.asn1.ASN1Encoding;
@@ -14,7 +15,9 @@
 import org.bouncycastle.asn1.cms.Attribute;
 import org.bouncycastle.asn1.cms.ContentInfo;
 import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.tsp.BatchTimeStampPath;
 import org.bouncycastle.asn1.tsp.TimeStampResp;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.util.Arrays;
 
 /**
@@ -153,8 +156,20 @@ public void validate(
         if (tok != null)
         {
             TimeStampTokenInfo  tstInfo = tok.getTimeStampInfo();
-            
-            if (request.getNonce() != null && !request.getNonce().equals(tstInfo.getNonce()))
+            BatchTimeStampPath  batchPath = tok.getBatchTimeStampPath();
+
+            // for a batched token the request details are in the path, the token validate() checks they lead to the signed imprint.
+            BigInteger nonce = tstInfo.getNonce();
+            AlgorithmIdentifier imprintAlgID = tstInfo.getHashAlgorithm();
+            byte[] imprintDigest = tstInfo.getMessageImprintDigest();
+            if (batchPath != null)
+            {
+                nonce = (batchPath.getNonce() == null) ? null : batchPath.getNonce().getValue();
+                imprintAlgID = batchPath.getMessageImprint().getHashAlgorithm();
+                imprintDigest = batchPath.getMessageImprint().getHashedMessage();
+            }
+
+            if (request.getNonce() != null && !request.getNonce().equals(nonce))
             {
                 throw new TSPValidationException("response contains wrong nonce value.");
             }
@@ -164,12 +179,12 @@ public void validate(
                 throw new TSPValidationException("time stamp token found in failed request.");
             }
             
-            if (!Arrays.constantTimeAreEqual(request.getMessageImprintDigest(), tstInfo.getMessageImprintDigest()))
+            if (!Arrays.constantTimeAreEqual(request.getMessageImprintDigest(), imprintDigest))
             {
                 throw new TSPValidationException("response for different message imprint digest.");
             }
             
-            if (!tstInfo.getMessageImprintAlgOID().equals(request.getMessageImprintAlgOID()))
+            if (!imprintAlgID.getAlgorithm().equals(request.getMessageImprintAlgOID()))
             {
                 throw new TSPValidationException("response for different message imprint algorithm.");
             }
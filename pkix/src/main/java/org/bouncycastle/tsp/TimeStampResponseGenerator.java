@@ -22,6 +22,7 @@
 import org.bouncycastle.asn1.cms.ContentInfo;
 import org.bouncycastle.asn1.tsp.TimeStampResp;
 import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.operator.DigestCalculator;
 
 /**
  * Generator for RFC 3161 Time Stamp Responses.
@@ -283,6 +284,72 @@ public TimeStampResponse generateGrantedResponse(
         }
     }
 
+    /**
+     * Return granted responses for a batch of requests, signing a single time-stamp token for the whole batch as
+     * described in {@link TimeStampTokenGenerator#generate(TimeStampRequest[], DigestCalculator, BigInteger, Date, Extensions)},
+     * batching must have been enabled on the token generator.
+     * <p>
+     * If genTime is null a timeNotAvailable or a validation exception occurs for any of the requests a
+     * TSPValidationException will be thrown, requests failing validation should be answered separately.
+     * </p>
+     * @param requests the requests the responses are for.
+     * @param digestCalculator calculator for the hash tree over the requests.
+     * @param serialNumber serial number for the batch.
+     * @param genTime generation time for the response tokens.
+     * @param statusString the status string to include, may be null.
+     * @param additionalExtensions extra extensions to be added to the response tokens, may be null.
+     * @return the TimeStampResponses with a status of PKIStatus.GRANTED, in the same order as the requests.
+     * @throws TSPException on validation exception or internal error.
+     */
+    public TimeStampResponse[] generateGrantedResponses(
+        TimeStampRequest[]  requests,
+        DigestCalculator    digestCalculator,
+        BigInteger          serialNumber,
+        Date                genTime,
+        String              statusString,
+        Extensions          additionalExtensions)
+        throws TSPException
+    {
+        if (genTime == null)
+        {
+            throw new TSPValidationException("The time source is not available.", PKIFailureInfo.timeNotAvailable);
+        }
+
+        for (int i = 0; i != requests.length; i++)
+        {
+            requests[i].validate(acceptedAlgorithms, acceptedPolicies, acceptedExtensions);
+        }
+
+        status = PKIStatus.GRANTED;
+        statusStrings = new ASN1EncodableVector();
+
+        if (statusString != null)
+        {
+            this.addStatusString(statusString);
+        }
+
+        PKIStatusInfo pkiStatusInfo = getPKIStatusInfo();
+
+        TimeStampToken[] tokens = tokenGenerator.generate(requests, digestCalculator, serialNumber, genTime, additionalExtensions);
+        TimeStampResponse[] responses = new TimeStampResponse[tokens.length];
+
+        try
+        {
+            for (int i = 0; i != tokens.length; i++)
+            {
+                ContentInfo tstTokenContentInfo = tokens[i].toCMSSignedData().toASN1Structure();
+
+                responses[i] = new TimeStampResponse(new DLSequence(new ASN1Encodable[] { pkiStatusInfo.toASN1Primitive(), tstTokenContentInfo.toASN1Primitive() }));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new TSPException("created badly formatted response!");
+        }
+
+        return responses;
+    }
+
     /**
      * Generate a generic rejection response based on a TSPValidationException or
      * an Exception. Exceptions which are not an instance of TSPValidationException
@@ -17,6 +17,9 @@
 import org.bouncycastle.asn1.ess.SigningCertificateV2;
 import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
 import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.tsp.BatchTimeStampPath;
+import org.bouncycastle.asn1.tsp.PartialHashtree;
+import org.bouncycastle.asn1.tsp.TSPObjectIdentifiers;
 import org.bouncycastle.asn1.tsp.TSTInfo;
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
@@ -49,6 +52,8 @@
     
     CertID   certID;
 
+    BatchTimeStampPath batchPath;
+
     public TimeStampToken(ContentInfo contentInfo)
         throws TSPException, IOException
     {
@@ -119,6 +124,17 @@ public TimeStampToken(CMSSignedData signedData)
 
                 this.certID = new CertID(ESSCertIDv2.getInstance(signCertV2.getCerts()[0]));
             }
+
+            AttributeTable unsignedAttrs = tsaSignerInfo.getUnsignedAttributes();
+            if (unsignedAttrs != null)
+            {
+                attr = unsignedAttrs.get(TSPObjectIdentifiers.id_aa_batchTimeStampPath);
+
+                if (attr != null)
+                {
+                    this.batchPath = BatchTimeStampPath.getInstance(attr.getAttrValues().getObjectAt(0));
+                }
+            }
         }
         catch (CMSException e)
         {
@@ -146,6 +162,18 @@ public AttributeTable getUnsignedAttributes()
         return tsaSignerInfo.getUnsignedAttributes();
     }
 
+    /**
+     * Return the path from the request to the signed message imprint if this token was issued as part of a batch.
+     * The message imprint and nonce of the request are in the path, the ones in the TimeStampTokenInfo are those
+     * of the batch.
+     *
+     * @return the batch path, null if the token was issued for a single request.
+     */
+    public BatchTimeStampPath getBatchTimeStampPath()
+    {
+        return batchPath;
+    }
+
     public Store<X509CertificateHolder> getCertificates()
     {
         return tsToken.getCertificates();
@@ -172,6 +200,10 @@ public Store<X509AttributeCertificateHolder> getAttributeCertificates()
      * timestamp was created.
      * </p>
      * <p>
+     * If the token was issued as part of a batch the path it carries must also lead from its request to
+     * the message imprint in the token.
+     * </p>
+     * <p>
      * A successful call to validate means all the above are true.
      * </p>
      *
@@ -238,6 +270,11 @@ public void validate(
                 throw new TSPValidationException("certificate not valid when time stamp created.");
             }
 
+            if (batchPath != null)
+            {
+                validateBatchPath(sigVerifier.getDigestCalculator(tstInfo.getHashAlgorithm()));
+            }
+
             if (!tsaSignerInfo.verify(sigVerifier))
             {
                 throw new TSPValidationException("signature not created by certificate.");
@@ -264,6 +301,38 @@ public void validate(
         }
     }
 
+    private void validateBatchPath(DigestCalculator digCalc)
+        throws IOException, TSPValidationException
+    {
+        PartialHashtree[] path = batchPath.getReducedHashtree();
+
+        for (int i = 0; i != path.length; i++)
+        {
+            if (path[i].getValueCount() != 1)
+            {
+                throw new TSPValidationException("malformed batch path in time stamp.");
+            }
+        }
+
+        byte[] leaf = TSPUtil.calculateLeafHash(digCalc, batchPath.getLeafData().getEncoded(ASN1Encoding.DER));
+
+        if (path.length == 0 || !path[0].containsHash(leaf))
+        {
+            throw new TSPValidationException("batch path not for the request in time stamp.");
+        }
+
+        byte[] node = leaf;
+        for (int i = 1; i < path.length; i++)
+        {
+            node = TSPUtil.calculateBranchHash(digCalc, node, path[i].getValues()[0]);
+        }
+
+        if (!Arrays.constantTimeAreEqual(node, tstInfo.getMessageImprintDigest()))
+        {
+            throw new TSPValidationException("batch path does not match message imprint in time stamp.");
+        }
+    }
+
     /**
      * Return true if the signature on time stamp token is valid.
      * <p>
@@ -6,6 +6,7 @@
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -16,12 +17,20 @@
 import java.util.SimpleTimeZone;
 
 import org.bouncycastle.asn1.ASN1Boolean;
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1Encoding;
 import org.bouncycastle.asn1.ASN1GeneralizedTime;
 import org.bouncycastle.asn1.ASN1Integer;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERSet;
 import org.bouncycastle.asn1.LocaleUtil;
+import org.bouncycastle.asn1.cms.Attribute;
 import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.cms.CMSObjectIdentifiers;
+import org.bouncycastle.asn1.cms.ContentInfo;
+import org.bouncycastle.asn1.cms.SignedData;
+import org.bouncycastle.asn1.cms.SignerInfo;
 import org.bouncycastle.asn1.ess.ESSCertID;
 import org.bouncycastle.asn1.ess.ESSCertIDv2;
 import org.bouncycastle.asn1.ess.SigningCertificate;
@@ -29,7 +38,10 @@
 import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
 import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.bouncycastle.asn1.tsp.Accuracy;
+import org.bouncycastle.asn1.tsp.BatchTimeStampPath;
 import org.bouncycastle.asn1.tsp.MessageImprint;
+import org.bouncycastle.asn1.tsp.PartialHashtree;
+import org.bouncycastle.asn1.tsp.TSPObjectIdentifiers;
 import org.bouncycastle.asn1.tsp.TSTInfo;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.asn1.x509.Extensions;
@@ -47,6 +59,7 @@
 import org.bouncycastle.cms.SignerInfoGenerator;
 import org.bouncycastle.operator.DigestCalculator;
 import org.bouncycastle.util.CollectionStore;
+import org.bouncycastle.util.Integers;
 import org.bouncycastle.util.Store;
 
 /**
@@ -117,6 +130,8 @@
     
     private ASN1ObjectIdentifier  tsaPolicyOID;
 
+    private boolean batchingEnabled = false;
+
     private List certs = new ArrayList();
     private List crls = new ArrayList();
     private List attrCerts = new ArrayList();
@@ -325,6 +340,18 @@ public void setTSA(GeneralName tsa)
         this.tsa = tsa;
     }
 
+    /**
+     * Allow batches of requests to be answered with a single signature - off by default. Tokens produced for a batch
+     * can only be checked by a verifier which understands the batch path attribute, see
+     * {@link #generate(TimeStampRequest[], DigestCalculator, BigInteger, Date, Extensions)}.
+     *
+     * @param batchingEnabled true if batch generation is allowed, false otherwise.
+     */
+    public void setBatchingEnabled(boolean batchingEnabled)
+    {
+        this.batchingEnabled = batchingEnabled;
+    }
+
     /**
      * Generate a TimeStampToken for the passed in request and serialNumber marking it with the passed in genTime.
      *
@@ -363,36 +390,6 @@ public TimeStampToken generate(
         AlgorithmIdentifier algID = request.getMessageImprintAlgID();
         MessageImprint messageImprint = new MessageImprint(algID, request.getMessageImprintDigest());
 
-        Accuracy accuracy = null;
-        if (accuracySeconds > 0 || accuracyMillis > 0 || accuracyMicros > 0)
-        {
-            ASN1Integer seconds = null;
-            if (accuracySeconds > 0)
-            {
-                seconds = new ASN1Integer(accuracySeconds);
-            }
-
-            ASN1Integer millis = null;
-            if (accuracyMillis > 0)
-            {
-                millis = new ASN1Integer(accuracyMillis);
-            }
-
-            ASN1Integer micros = null;
-            if (accuracyMicros > 0)
-            {
-                micros = new ASN1Integer(accuracyMicros);
-            }
-
-            accuracy = new Accuracy(seconds, millis, micros);
-        }
-
-        ASN1Boolean derOrdering = null;
-        if (ordering)
-        {
-            derOrdering = ASN1Boolean.getInstance(ordering);
-        }
-
         ASN1Integer nonce = null;
         if (request.getNonce() != null)
         {
@@ -425,6 +422,178 @@ public TimeStampToken generate(
             respExtensions = extGen.generate();
         }
 
+        TSTInfo tstInfo = createTSTInfo(tsaPolicy, messageImprint, serialNumber, genTime, nonce, respExtensions);
+
+        try
+        {
+            return new TimeStampToken(sign(tstInfo, request.getCertReq()));
+        }
+        catch (IOException e)
+        {
+            throw new TSPException("Exception encoding info", e);
+        }
+    }
+
+    /**
+     * Generate TimeStampTokens for a batch of requests with a single signature.
+     * <p>
+     * A hash tree is built over the requests, each leaf being the hash of a request's message imprint and nonce,
+     * and a single TSTInfo is signed with the root of the tree as its message imprint. Each token returned carries
+     * the path from its request to the root in the unsigned attribute TSPObjectIdentifiers.id_aa_batchTimeStampPath, which
+     * {@link TimeStampToken#validate} checks, so the cost of a batch is one signature
+     * and a hash per request rather than a signature per request.
+     * </p>
+     * <p>
+     * <b>Note:</b> the tokens are not RFC 3161 compliant. The signed TSTInfo carries the root of the tree rather than
+     * the request's message imprint, and no nonce, as the request's imprint and nonce are moved into the unsigned
+     * attribute. A standard RFC 3161 verifier will not be able to match such a token to its request, so batching
+     * must be turned on with {@link #setBatchingEnabled(boolean)} and is only suitable where the clients are known
+     * to check the batch path.
+     * </p>
+     * <p>
+     * The tokens in a batch share the serial number and generation time. The requests must all ask for the same
+     * policy, or for none, and cannot carry extensions as the TSTInfo they would be echoed in is shared.
+     * </p>
+     *
+     * @param requests the originating requests.
+     * @param digestCalculator calculator for the hash tree, its algorithm is used for the signed message imprint.
+     * @param serialNumber serial number for the batch.
+     * @param genTime token generation time.
+     * @param additionalExtensions extra extensions to be added to the response tokens, may be null.
+     * @return a TimeStampToken for each request, in the same order as the requests.
+     * @throws TSPException if batching is not enabled, the requests cannot be batched, or the tokens cannot be generated.
+     */
+    public TimeStampToken[] generate(
+        TimeStampRequest[]  requests,
+        DigestCalculator    digestCalculator,
+        BigInteger          serialNumber,
+        Date                genTime,
+        Extensions          additionalExtensions)
+        throws TSPException
+    {
+        if (!batchingEnabled)
+        {
+            throw new TSPException("batch generation not enabled");
+        }
+        if (requests.length == 0)
+        {
+            throw new IllegalArgumentException("no requests in batch");
+        }
+
+        ASN1ObjectIdentifier reqPolicy = requests[0].getReqPolicy();
+        boolean certReq = false;
+
+        BatchTimeStampPath[] leaves = new BatchTimeStampPath[requests.length];
+        byte[][] leafHashes = new byte[requests.length][];
+
+        try
+        {
+            for (int i = 0; i != requests.length; i++)
+            {
+                TimeStampRequest request = requests[i];
+
+                if (reqPolicy == null ? request.getReqPolicy() != null : !reqPolicy.equals(request.getReqPolicy()))
+                {
+                    throw new TSPException("requests in a batch must be for the same policy");
+                }
+                if (request.hasExtensions())
+                {
+                    throw new TSPException("requests in a batch cannot have extensions");
+                }
+
+                certReq |= request.getCertReq();
+
+                MessageImprint messageImprint = new MessageImprint(request.getMessageImprintAlgID(), request.getMessageImprintDigest());
+                ASN1Integer nonce = (request.getNonce() == null) ? null : new ASN1Integer(request.getNonce());
+
+                leaves[i] = new BatchTimeStampPath(messageImprint, nonce, new PartialHashtree[0]);
+                leafHashes[i] = TSPUtil.calculateLeafHash(digestCalculator, leaves[i].getLeafData().getEncoded(ASN1Encoding.DER));
+            }
+
+            PartialHashtree[][] paths = new PartialHashtree[requests.length][];
+            byte[] rootHash = buildHashTree(digestCalculator, leafHashes, paths);
+
+            ASN1ObjectIdentifier tsaPolicy = (reqPolicy != null) ? reqPolicy : tsaPolicyOID;
+            MessageImprint rootImprint = new MessageImprint(digestCalculator.getAlgorithmIdentifier(), rootHash);
+
+            TSTInfo tstInfo = createTSTInfo(tsaPolicy, rootImprint, serialNumber, genTime, null, additionalExtensions);
+
+            SignedData batchData = SignedData.getInstance(sign(tstInfo, certReq).toASN1Structure().getContent());
+            SignerInfo signerInfo = SignerInfo.getInstance(batchData.getSignerInfos().getObjectAt(0));
+
+            ASN1Encodable[] unsignedAttrs = new ASN1Encodable[0];
+            if (signerInfo.getUnauthenticatedAttributes() != null)
+            {
+                unsignedAttrs = signerInfo.getUnauthenticatedAttributes().toArray();
+            }
+
+            TimeStampToken[] tokens = new TimeStampToken[requests.length];
+            for (int i = 0; i != requests.length; i++)
+            {
+                BatchTimeStampPath path = new BatchTimeStampPath(leaves[i].getMessageImprint(), leaves[i].getNonce(), paths[i]);
+
+                ASN1EncodableVector attrs = new ASN1EncodableVector(unsignedAttrs.length + 1);
+                attrs.addAll(unsignedAttrs);
+                attrs.add(new Attribute(TSPObjectIdentifiers.id_aa_batchTimeStampPath, new DERSet(path)));
+
+                SignerInfo pathSignerInfo = new SignerInfo(signerInfo.getSID(), signerInfo.getDigestAlgorithm(),
+                    signerInfo.getAuthenticatedAttributes(), signerInfo.getDigestEncryptionAlgorithm(),
+                    signerInfo.getEncryptedDigest(), new DERSet(attrs));
+
+                SignedData signedData = new SignedData(batchData.getDigestAlgorithms(), batchData.getEncapContentInfo(),
+                    requests[i].getCertReq() ? batchData.getCertificates() : null, batchData.getCRLs(),
+                    new DERSet(pathSignerInfo));
+
+                tokens[i] = new TimeStampToken(new ContentInfo(CMSObjectIdentifiers.signedData, signedData));
+            }
+
+            return tokens;
+        }
+        catch (IOException e)
+        {
+            throw new TSPException("Exception encoding info", e);
+        }
+    }
+
+    private TSTInfo createTSTInfo(
+        ASN1ObjectIdentifier tsaPolicy,
+        MessageImprint       messageImprint,
+        BigInteger           serialNumber,
+        Date                 genTime,
+        ASN1Integer          nonce,
+        Extensions           respExtensions)
+        throws TSPException
+    {
+        Accuracy accuracy = null;
+        if (accuracySeconds > 0 || accuracyMillis > 0 || accuracyMicros > 0)
+        {
+            ASN1Integer seconds = null;
+            if (accuracySeconds > 0)
+            {
+                seconds = new ASN1Integer(accuracySeconds);
+            }
+
+            ASN1Integer millis = null;
+            if (accuracyMillis > 0)
+            {
+                millis = new ASN1Integer(accuracyMillis);
+            }
+
+            ASN1Integer micros = null;
+            if (accuracyMicros > 0)
+            {
+                micros = new ASN1Integer(accuracyMicros);
+            }
+
+            accuracy = new Accuracy(seconds, millis, micros);
+        }
+
+        ASN1Boolean derOrdering = null;
+        if (ordering)
+        {
+            derOrdering = ASN1Boolean.getInstance(ordering);
+        }
+
         ASN1GeneralizedTime timeStampTime;
         if (resolution == R_SECONDS)
         {
@@ -435,16 +604,20 @@ public TimeStampToken generate(
             timeStampTime = createGeneralizedTime(genTime);
         }
 
-        TSTInfo tstInfo = new TSTInfo(tsaPolicy,
+        return new TSTInfo(tsaPolicy,
                 messageImprint, new ASN1Integer(serialNumber),
                 timeStampTime, accuracy, derOrdering,
                 nonce, tsa, respExtensions);
+    }
 
+    private CMSSignedData sign(TSTInfo tstInfo, boolean certReq)
+        throws TSPException
+    {
         try
         {
             CMSSignedDataGenerator  signedDataGenerator = new CMSSignedDataGenerator();
 
-            if (request.getCertReq())
+            if (certReq)
             {
                 // TODO: do we need to check certs non-empty?
                 signedDataGenerator.addCertificates(new CollectionStore(certs));
@@ -467,9 +640,7 @@ messageImprint, new ASN1Integer(serialNumber),
 
             byte[] derEncodedTSTInfo = tstInfo.getEncoded(ASN1Encoding.DER);
 
-            CMSSignedData signedData = signedDataGenerator.generate(new CMSProcessableByteArray(PKCSObjectIdentifiers.id_ct_TSTInfo, derEncodedTSTInfo), true);
-
-            return new TimeStampToken(signedData);
+            return signedDataGenerator.generate(new CMSProcessableByteArray(PKCSObjectIdentifiers.id_ct_TSTInfo, derEncodedTSTInfo), true);
         }
         catch (CMSException cmsEx)
         {
@@ -481,6 +652,75 @@ messageImprint, new ASN1Integer(serialNumber),
         }
     }
 
+    /**
+     * Build a left weighted binary hash tree over the leaves, sorted in ascending order, with the last node of an
+     * odd length row carried up to the next one, as done by the ERS BinaryTreeRootCalculator.
+     *
+     * @return the root of the tree, with the path from each leaf to it in paths.
+     */
+    private static byte[] buildHashTree(DigestCalculator digCalc, final byte[][] leaves, PartialHashtree[][] paths)
+        throws IOException
+    {
+        Integer[] order = new Integer[leaves.length];
+        for (int i = 0; i != order.length; i++)
+        {
+            order[i] = Integers.valueOf(i);
+        }
+
+        java.util.Arrays.sort(order, new Comparator()
+        {
+            public int compare(Object a, Object b)
+            {
+                return TSPUtil.compareHashes(leaves[((Integer)a).intValue()], leaves[((Integer)b).intValue()]);
+            }
+        });
+
+        List rows = new ArrayList();
+        byte[][] row = new byte[leaves.length][];
+        for (int i = 0; i != row.length; i++)
+        {
+            row[i] = leaves[order[i].intValue()];
+        }
+        rows.add(row);
+
+        while (row.length > 1)
+        {
+            byte[][] next = new byte[(row.length + 1) / 2][];
+            for (int i = 0; i != next.length; i++)
+            {
+                int left = 2 * i;
+
+                next[i] = (left + 1 < row.length) ? TSPUtil.calculateBranchHash(digCalc, row[left], row[left + 1]) : row[left];
+            }
+            rows.add(next);
+            row = next;
+        }
+
+        for (int i = 0; i != order.length; i++)
+        {
+            List path = new ArrayList();
+
+            path.add(new PartialHashtree(leaves[order[i].intValue()]));
+
+            int index = i;
+            for (int r = 0; r < rows.size() - 1; r++)
+            {
+                byte[][] level = (byte[][])rows.get(r);
+                int sibling = index ^ 1;
+
+                if (sibling < level.length)
+                {
+                    path.add(new PartialHashtree(level[sibling]));
+                }
+                index >>>= 1;
+            }
+
+            paths[order[i].intValue()] = (PartialHashtree[])path.toArray(new PartialHashtree[path.size()]);
+        }
+
+        return row[0];
+    }
+
     // we need to produce a correct DER encoding GeneralizedTime here as the BC ASN.1 library doesn't handle this properly yet.
     private ASN1GeneralizedTime createGeneralizedTime(Date time)
         throws TSPException
@@ -5,6 +5,7 @@
 import java.security.KeyPair;
 import java.security.Security;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
 import java.util.Vector;
@@ -15,6 +16,7 @@
 import org.bouncycastle.asn1.DEROctetString;
 import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
 import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLReason;
 import org.bouncycastle.asn1.x509.Extension;
 import org.bouncycastle.asn1.x509.ExtensionsGenerator;
 import org.bouncycastle.asn1.x509.GeneralName;
@@ -23,6 +25,7 @@
 import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
 import org.bouncycastle.cert.ocsp.BasicOCSPResp;
 import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CachingOCSPResponder;
 import org.bouncycastle.cert.ocsp.CertificateID;
 import org.bouncycastle.cert.ocsp.CertificateStatus;
 import org.bouncycastle.cert.ocsp.OCSPReq;
@@ -31,13 +34,17 @@
 import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
 import org.bouncycastle.cert.ocsp.Req;
 import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
 import org.bouncycastle.cert.ocsp.SingleResp;
 import org.bouncycastle.cert.ocsp.jcajce.JcaBasicOCSPRespBuilder;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentVerifierProvider;
 import org.bouncycastle.operator.DigestCalculatorProvider;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
 import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Strings;
 import org.bouncycastle.util.encoders.Base64;
 import org.bouncycastle.util.test.SimpleTest;
 
@@ -693,6 +700,142 @@ public void testInvalidResp()
 
     }
 
+    private void testCachingResponder()
+        throws Exception
+    {
+        String signDN = "O=Bouncy Castle, C=AU";
+        KeyPair signKP = OCSPTestUtil.makeKeyPair();
+        X509CertificateHolder testCert = new JcaX509CertificateHolder(OCSPTestUtil.makeCertificate(signKP, signDN, signKP, signDN));
+        DigestCalculatorProvider digCalcProv = new JcaDigestCalculatorProviderBuilder().setProvider(BC).build();
+        ContentVerifierProvider verifierProvider = new JcaContentVerifierProviderBuilder().setProvider(BC).build(signKP.getPublic());
+
+        final Set revoked = new HashSet();
+        final Date revocationDate = new Date(1000000000000L);
+
+        CachingOCSPResponder.StatusSource statusSource = new CachingOCSPResponder.StatusSource()
+        {
+            public CertificateStatus getStatus(CertificateID certID)
+            {
+                if (revoked.contains(certID.getSerialNumber()))
+                {
+                    return new RevokedStatus(revocationDate, CRLReason.keyCompromise);
+                }
+                return CertificateStatus.GOOD;
+            }
+        };
+
+        CachingOCSPResponder responder = new CachingOCSPResponder(
+            new RespID(new X500Name(signDN)),
+            new JcaContentSignerBuilder("SHA256withRSA").setProvider(BC).build(signKP.getPrivate()),
+            new X509CertificateHolder[] { testCert }, statusSource, 2, 60000L);
+
+        CertificateID id1 = new CertificateID(digCalcProv.get(CertificateID.HASH_SHA1), testCert, BigInteger.valueOf(1));
+        CertificateID id2 = new CertificateID(digCalcProv.get(CertificateID.HASH_SHA1), testCert, BigInteger.valueOf(2));
+        CertificateID id3 = new CertificateID(digCalcProv.get(CertificateID.HASH_SHA1), testCert, BigInteger.valueOf(3));
+
+        Date now = new Date(1600000000000L);
+
+        //
+        // a miss signs and caches, a repeat is served from the cache.
+        //
+        OCSPReq req = new OCSPReqBuilder().addRequest(id1).build();
+
+        byte[] first = responder.respond(req, now);
+        byte[] second = responder.respond(req, new Date(now.getTime() + 1000));
+
+        isTrue("cached reply differs", Arrays.areEqual(first, second));
+        isEquals(1, responder.getHitCount());
+        isEquals(1, responder.getMissCount());
+        isEquals(1, responder.getCachedSigningCount());
+
+        BasicOCSPResp basicResp = (BasicOCSPResp)new OCSPResp(first).getResponseObject();
+
+        isTrue("cached reply signature failed", basicResp.isSignatureValid(verifierProvider));
+        isEquals(1, basicResp.getResponses().length);
+        isTrue("wrong cert ID", id1.equals(basicResp.getResponses()[0].getCertID()));
+        isTrue("status not good", basicResp.getResponses()[0].getCertStatus() == CertificateStatus.GOOD);
+        isEquals(new Date(now.getTime() + 60000L), basicResp.getResponses()[0].getNextUpdate());
+
+        //
+        // an expired reply is re-signed.
+        //
+        byte[] expired = responder.respond(req, new Date(now.getTime() + 60000L));
+
+        isTrue("expired reply served", !Arrays.areEqual(first, expired));
+        isEquals(2, responder.getMissCount());
+
+        //
+        // a request with a nonce is signed live and the nonce echoed.
+        //
+        ExtensionsGenerator extGen = new ExtensionsGenerator();
+        DEROctetString nonce = new DEROctetString(Strings.toByteArray("caching responder nonce"));
+
+        extGen.addExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce, false, nonce);
+
+        OCSPReq nonceReq = new OCSPReqBuilder().addRequest(id1).setRequestExtensions(extGen.generate()).build();
+
+        basicResp = (BasicOCSPResp)new OCSPResp(responder.respond(nonceReq, now)).getResponseObject();
+
+        isTrue("live reply signature failed", basicResp.isSignatureValid(verifierProvider));
+        isEquals(nonceReq.getExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce), basicResp.getExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce));
+        isEquals(1, responder.getLiveSigningCount());
+        isEquals(2, responder.getCachedSigningCount());
+
+        //
+        // a status change re-signs the cached reply only.
+        //
+        now = new Date(now.getTime() + 60000L);
+
+        revoked.add(BigInteger.valueOf(1));
+
+        // a nonce request sees the change before the cached reply is re-signed.
+        basicResp = (BasicOCSPResp)new OCSPResp(responder.respond(nonceReq, now)).getResponseObject();
+        isTrue("live status not revoked", basicResp.getResponses()[0].getCertStatus() instanceof RevokedStatus);
+        isEquals(2, responder.getLiveSigningCount());
+
+        responder.statusChanged(id1, now);
+        responder.statusChanged(id2, now);
+
+        isEquals(3, responder.getCachedSigningCount());
+        isEquals(1, responder.size());
+
+        basicResp = (BasicOCSPResp)new OCSPResp(responder.respond(req, now)).getResponseObject();
+
+        CertificateStatus status = basicResp.getResponses()[0].getCertStatus();
+        isTrue("status not revoked", status instanceof RevokedStatus);
+        isEquals(CRLReason.keyCompromise, ((RevokedStatus)status).getRevocationReason());
+        isEquals(2, responder.getHitCount());
+
+        //
+        // the cache is bounded, least recently used first out.
+        //
+        responder.prepare(id2, now);
+        responder.respond(req, now);
+        responder.prepare(id3, now);
+
+        isEquals(2, responder.size());
+        isEquals(1, responder.getEvictionCount());
+
+        responder.respond(new OCSPReqBuilder().addRequest(id1).build(), now);
+        isEquals(4, responder.getHitCount());
+
+        //
+        // refresh re-signs replies past half their validity period.
+        //
+        isEquals(0, responder.refresh(new Date(now.getTime() + 29999L)));
+        isEquals(2, responder.refresh(new Date(now.getTime() + 30000L)));
+
+        try
+        {
+            new CachingOCSPResponder(new RespID(new X500Name(signDN)), null, null, statusSource, 0, 60000L);
+            fail("no exception");
+        }
+        catch (IllegalArgumentException e)
+        {
+            isEquals("maxEntries must be positive", e.getMessage());
+        }
+    }
+
     public void performTest()
         throws Exception
     {
@@ -930,6 +1073,7 @@ public void performTest()
         testRSA();
         testIrregularVersionReq();
         testInvalidResp();
+        testCachingResponder();
 
         //
         // Empty data test
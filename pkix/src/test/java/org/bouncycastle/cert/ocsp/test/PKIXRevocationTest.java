@@ -45,6 +45,7 @@
 import org.bouncycastle.cert.ocsp.RevokedStatus;
 import org.bouncycastle.cert.ocsp.jcajce.JcaBasicOCSPRespBuilder;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.jce.provider.OcspCacheStatistics;
 import org.bouncycastle.openssl.PEMParser;
 import org.bouncycastle.operator.DigestCalculatorProvider;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
@@ -242,8 +243,17 @@ public void performTest()
         ocspResponder.setDaemon(true);
         ocspResponder.start();
 
+        OcspCacheStatistics beforeNonce = OcspCacheStatistics.getInstance();
+
         cpv.validate(certPath, param);
 
+        // a response to a request with a nonce is neither taken from nor added to the cache
+        OcspCacheStatistics afterNonce = OcspCacheStatistics.getInstance();
+
+        isEquals(0, afterNonce.getHits() - beforeNonce.getHits());
+        isEquals(1, afterNonce.getFetches() - beforeNonce.getFetches());
+        isEquals(beforeNonce.getEntries(), afterNonce.getEntries());
+
         // faulty OCSP responder certificate
         ocsp = OCSPTestUtil.makeCertificate(ocspKp, "CN=OCSP", caKp, ca, KeyPurposeId.id_kp_codeSigning);
 
@@ -299,6 +309,8 @@ public void performTest()
 
         cpv.validate(certPath, param);
 
+        ocspCacheTest(trust, certPath, getOcspResponse(ocspKp, ocsp, digCalcProv, ca, ee));
+
         // EE Only, CA using responder URL
         ca = OCSPTestUtil.makeCertificateWithOCSP(caKp, "CN=CA", rootKp, root, true, "http://localhost:" + TEST_OCSP_RESPONDER_PORT + "/");
         ee = OCSPTestUtil.makeCertificate(eeKp, "CN=EE", caKp, ca, false);
@@ -338,6 +350,86 @@ public void performTest()
         dispPointCertChainTest();
     }
 
+    private void ocspCacheTest(final Set trust, final CertPath certPath, byte[] resp)
+        throws Exception
+    {
+        final URI responder = new URI("http://localhost:" + (TEST_OCSP_RESPONDER_PORT + 3) + "/");
+
+        OCSPResponderTask responderTask = new OCSPResponderTask(TEST_OCSP_RESPONDER_PORT + 3, resp, 2);
+        Thread ocspResponder = new Thread(responderTask);
+
+        ocspResponder.setDaemon(true);
+        ocspResponder.start();
+
+        OcspCacheStatistics before = OcspCacheStatistics.getInstance();
+
+        // concurrent validations of the same certificate share one request
+        final Exception[] failures = new Exception[4];
+        Thread[] validators = new Thread[failures.length];
+        for (int i = 0; i != validators.length; i++)
+        {
+            final int index = i;
+            validators[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        validateWithResponder(trust, certPath, responder);
+                    }
+                    catch (Exception e)
+                    {
+                        failures[index] = e;
+                    }
+                }
+            };
+            validators[i].start();
+        }
+
+        for (int i = 0; i != validators.length; i++)
+        {
+            validators[i].join();
+            if (failures[i] != null)
+            {
+                fail("validation failed", failures[i]);
+            }
+        }
+
+        OcspCacheStatistics after = OcspCacheStatistics.getInstance();
+
+        isEquals(1, responderTask.getRequestCount());
+        isEquals(1, after.getFetches() - before.getFetches());
+        isEquals(3, (after.getHits() - before.getHits()) + (after.getCoalesced() - before.getCoalesced()));
+        isTrue(after.getEntries() > 0);
+        isTrue(after.getSize() > 0);
+
+        // and later validations use the cached response
+        validateWithResponder(trust, certPath, responder);
+
+        OcspCacheStatistics last = OcspCacheStatistics.getInstance();
+
+        isEquals(1, responderTask.getRequestCount());
+        isEquals(1, last.getHits() - after.getHits());
+        isEquals(0, last.getFetches() - after.getFetches());
+    }
+
+    private static void validateWithResponder(Set trust, CertPath certPath, URI responder)
+        throws Exception
+    {
+        CertPathValidator cpv = CertPathValidator.getInstance("PKIX", BC);
+
+        PKIXRevocationChecker rv = (PKIXRevocationChecker)cpv.getRevocationChecker();
+
+        rv.setOcspResponder(responder);
+        rv.setOptions(Collections.singleton(PKIXRevocationChecker.Option.ONLY_END_ENTITY));
+
+        PKIXParameters param = new PKIXParameters(trust);
+
+        param.addCertPathChecker(rv);
+
+        cpv.validate(certPath, param);
+    }
+
     private void ocspCertChainTest()
         throws Exception
     {
@@ -577,56 +669,39 @@ public void encode(OutputStream outputStream)
         implements Runnable
     {
         private final byte[] resp;
-        private final int portNo;
+        private final ServerSocket ss;
+        private final int maxRequests;
+
+        private volatile int requestCount = 0;
 
         OCSPResponderTask(int portNo, byte[] resp)
+            throws IOException
+        {
+            this(portNo, resp, 1);
+        }
+
+        OCSPResponderTask(int portNo, byte[] resp, int maxRequests)
+            throws IOException
         {
-            this.portNo = portNo;
+            // bound here, so the responder is listening before the task starts
+            this.ss = new ServerSocket(portNo);
             this.resp = resp;
+            this.maxRequests = maxRequests;
+        }
+
+        int getRequestCount()
+        {
+            return requestCount;
         }
 
         public void run()
         {
             try
             {
-                ServerSocket ss = new ServerSocket(portNo);
-                Socket s = ss.accept();
-
-                InputStream sIn = s.getInputStream();
-                ByteArrayOutputStream bOut = new ByteArrayOutputStream();
-                int ch;
-                int contentLength = 0;
-                while ((ch = sIn.read()) >= 0)
+                for (int i = 0; i != maxRequests; i++)
                 {
-                    bOut.write(ch);
-                    if (ch == '\n')
-                    {
-                        String line = Strings.fromByteArray(bOut.toByteArray()).trim();
-                        if (line.startsWith("Content-Length"))
-                        {
-                             contentLength = Integer.parseInt(line.substring("Content-Length: ".length()));
-                        }
-                        if (line.length() == 0)
-                        {
-                            break;
-                        }
-                        bOut.reset();
-                    }
+                    respond(ss.accept());
                 }
-
-                byte[] request = new byte[contentLength];
-                Streams.readFully(sIn, request);
-
-                OutputStream sOut = s.getOutputStream();
-
-                sOut.write(Strings.toByteArray("HTTP/1.1 200 OK\r\n"));
-                sOut.write(Strings.toByteArray("Content-type: application/ocsp-response\r\n"));
-                sOut.write(Strings.toByteArray("Content-Length: " + resp.length + "\r\n"));
-                sOut.write(Strings.toByteArray("\r\n"));
-                sOut.write(resp);
-                sOut.flush();
-                sOut.close();
-                s.close();
                 ss.close();
             }
             catch (Exception e)
@@ -634,6 +709,48 @@ public void run()
                 // ignore
             }
         }
+
+        private void respond(Socket s)
+            throws IOException
+        {
+            InputStream sIn = s.getInputStream();
+            ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+            int ch;
+            int contentLength = 0;
+            while ((ch = sIn.read()) >= 0)
+            {
+                bOut.write(ch);
+                if (ch == '\n')
+                {
+                    String line = Strings.fromByteArray(bOut.toByteArray()).trim();
+                    if (line.startsWith("Content-Length"))
+                    {
+                         contentLength = Integer.parseInt(line.substring("Content-Length: ".length()));
+                    }
+                    if (line.length() == 0)
+                    {
+                        break;
+                    }
+                    bOut.reset();
+                }
+            }
+
+            byte[] request = new byte[contentLength];
+            Streams.readFully(sIn, request);
+
+            OutputStream sOut = s.getOutputStream();
+
+            sOut.write(Strings.toByteArray("HTTP/1.1 200 OK\r\n"));
+            sOut.write(Strings.toByteArray("Content-type: application/ocsp-response\r\n"));
+            sOut.write(Strings.toByteArray("Content-Length: " + resp.length + "\r\n"));
+            sOut.write(Strings.toByteArray("\r\n"));
+            sOut.write(resp);
+            sOut.flush();
+            sOut.close();
+            s.close();
+
+            requestCount++;
+        }
     }
     public static void main(
         String[] args)
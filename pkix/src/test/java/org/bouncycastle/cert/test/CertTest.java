@@ -84,7 +84,9 @@
 import org.bouncycastle.cert.X509AttributeCertificateHolder;
 import org.bouncycastle.cert.X509CRLEntryHolder;
 import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X500NameCache;
 import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509CertificateView;
 import org.bouncycastle.cert.X509v1CertificateBuilder;
 import org.bouncycastle.cert.X509v2CRLBuilder;
 import org.bouncycastle.cert.X509v3CertificateBuilder;
@@ -133,7 +135,9 @@
 import org.bouncycastle.pqc.jcajce.spec.SPHINCSPlusParameterSpec;
 import org.bouncycastle.pqc.jcajce.spec.XMSSMTParameterSpec;
 import org.bouncycastle.pqc.jcajce.spec.XMSSParameterSpec;
+import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.Encodable;
+import org.bouncycastle.util.Fingerprint;
 import org.bouncycastle.util.Strings;
 import org.bouncycastle.util.encoders.Base64;
 import org.bouncycastle.util.encoders.Hex;
@@ -5349,6 +5353,108 @@ private void checkSerialisation()
         doSerialize(attrHolder);
     }
 
+    private void checkCertificateView(byte[] encCert)
+        throws Exception
+    {
+        X509CertificateHolder holder = new X509CertificateHolder(encCert);
+        X509CertificateView view = new X509CertificateView(encCert);
+
+        isEquals(holder.getVersionNumber(), view.getVersionNumber());
+        isEquals(holder.getSerialNumber(), view.getSerialNumber());
+        isEquals(holder.getIssuer(), view.getIssuer());
+        isEquals(holder.getSubject(), view.getSubject());
+        isEquals(holder.getNotBefore(), view.getNotBefore());
+        isEquals(holder.getNotAfter(), view.getNotAfter());
+        isEquals(holder.getSubjectPublicKeyInfo(), view.getSubjectPublicKeyInfo());
+        isEquals(holder.getSignatureAlgorithm(), view.getSignatureAlgorithm());
+        isTrue(Arrays.areEqual(holder.getSignature(), view.getSignature()));
+        isEquals(holder.hasExtensions(), view.hasExtensions());
+        isEquals(holder, view.getX509CertificateHolder());
+        isTrue(Arrays.areEqual(encCert, view.getEncoded()));
+
+        if (holder.hasExtensions())
+        {
+            isEquals(holder.getExtensions(), view.getExtensions());
+
+            ASN1ObjectIdentifier[] oids = holder.getExtensions().getExtensionOIDs();
+            for (int i = 0; i != oids.length; i++)
+            {
+                isEquals(holder.getExtension(oids[i]), view.getExtension(oids[i]));
+            }
+        }
+        isTrue(view.getExtension(Extension.expiredCertsOnCRL) == null);
+
+        X509CertificateView other = new X509CertificateView(Arrays.clone(encCert));
+
+        isEquals(view, other);
+        isEquals(view.hashCode(), other.hashCode());
+        isTrue(Arrays.areEqual(Fingerprint.calculateFingerprint(encCert), view.getFingerprint()));
+
+        // fields are decoded once, mutable values are handed out as copies.
+        isTrue(view.getSerialNumber() == view.getSerialNumber());
+        isTrue(view.getSubjectPublicKeyInfo() == view.getSubjectPublicKeyInfo());
+        isTrue(view.getSignatureAlgorithm() == view.getSignatureAlgorithm());
+        isTrue(view.getExtensions() == view.getExtensions());
+
+        view.getNotBefore().setTime(0);
+        isEquals(holder.getNotBefore(), view.getNotBefore());
+
+        view.getSignature()[0] ^= 1;
+        isTrue(Arrays.areEqual(holder.getSignature(), view.getSignature()));
+
+        if (holder.hasExtensions())
+        {
+            ASN1ObjectIdentifier[] oids = holder.getExtensions().getExtensionOIDs();
+            for (int i = 0; i != oids.length; i++)
+            {
+                isEquals(holder.getExtension(oids[i]), view.getExtension(oids[i]));
+            }
+        }
+    }
+
+    private void checkCertificateViewNameCache()
+        throws Exception
+    {
+        X500NameCache nameCache = new X500NameCache(2);
+
+        // a self signed certificate shares a single name between issuer and subject.
+        X509CertificateView caView = new X509CertificateView(gostCA1, nameCache);
+
+        isTrue(caView.getIssuer() == caView.getSubject());
+        isEquals(1, nameCache.size());
+
+        X509CertificateView caCopy = new X509CertificateView(Arrays.clone(gostCA1), nameCache);
+
+        isTrue(caView.getSubject() == caCopy.getIssuer());
+
+        X509CertificateView view1 = new X509CertificateView(cert1, nameCache);
+        X509CertificateView view2 = new X509CertificateView(cert2, nameCache);
+
+        isEquals(new X509CertificateHolder(cert1).getSubject(), view1.getSubject());
+        isEquals(new X509CertificateHolder(cert2).getSubject(), view2.getSubject());
+        isEquals(2, nameCache.size());
+
+        try
+        {
+            new X509CertificateView(Arrays.copyOfRange(cert1, 0, cert1.length - 1));
+            fail("truncated certificate accepted");
+        }
+        catch (IOException e)
+        {
+            // expected
+        }
+
+        try
+        {
+            new X509CertificateView(crl1);
+            fail("CRL accepted");
+        }
+        catch (IOException e)
+        {
+            // expected
+        }
+    }
+
     private void doSerialize(Serializable encodable)
         throws Exception
     {
@@ -5391,6 +5497,15 @@ public void performTest()
         checkComparison(cert1);
         checkComparison(cert2);
 
+        checkCertificateView(cert1);
+        checkCertificateView(cert2);
+        checkCertificateView(cert3);
+        checkCertificateView(cert4);
+        checkCertificateView(cert5);
+        checkCertificateView(keyUsage);
+        checkCertificateView(gostCA1);
+        checkCertificateViewNameCache();
+
         checkKeyUsage(8, keyUsage);
         checkSelfSignedCertificate(9, uncompressedPtEC);
         checkNameCertificate(10, nameCert);
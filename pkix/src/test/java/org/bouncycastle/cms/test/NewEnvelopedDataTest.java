@@ -24,6 +24,8 @@
 import java.util.Collection;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.crypto.SecretKey;
 import javax.crypto.spec.OAEPParameterSpec;
@@ -77,6 +79,7 @@
 import org.bouncycastle.cms.OriginatorInformation;
 import org.bouncycastle.cms.PasswordRecipient;
 import org.bouncycastle.cms.PasswordRecipientInformation;
+import org.bouncycastle.cms.KEKRecipientId;
 import org.bouncycastle.cms.RecipientId;
 import org.bouncycastle.cms.RecipientInformation;
 import org.bouncycastle.cms.RecipientInformationStore;
@@ -791,6 +794,64 @@ public void testKeyTrans()
         assertTrue(collection.iterator().next() instanceof RecipientInformation);
     }
 
+    public void testRecipientInfosWithExecutor()
+        throws Exception
+    {
+        byte[] data = "WallaWallaWashington".getBytes();
+        SecretKey[] keks = new SecretKey[32];
+
+        CMSEnvelopedDataGenerator edGen = new CMSEnvelopedDataGenerator();
+
+        edGen.addRecipientInfoGenerator(new JceKeyTransRecipientInfoGenerator(_reciCert).setProvider(BC));
+        for (int i = 0; i != keks.length; i++)
+        {
+            keks[i] = CMSTestUtil.makeAESKey(128);
+            edGen.addRecipientInfoGenerator(new JceKEKRecipientInfoGenerator(new byte[]{ 1, 2, (byte)i }, keks[i]).setProvider(BC));
+        }
+        edGen.addRecipientInfoGenerator(new JceKeyTransRecipientInfoGenerator(ASN1OctetString.getInstance(ASN1OctetString.getInstance(_reciCert.getExtensionValue(Extension.subjectKeyIdentifier.getId())).getOctets()).getOctets(), _reciCert.getPublicKey()).setProvider(BC));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            edGen.setExecutor(executor, 5);
+
+            CMSEnvelopedData ed = edGen.generate(
+                new CMSProcessableByteArray(data),
+                new JceCMSContentEncryptorBuilder(CMSAlgorithm.AES128_CBC).setProvider(BC).build());
+
+            ed = new CMSEnvelopedData(ed.getEncoded());
+
+            RecipientInformationStore recipients = ed.getRecipientInfos();
+
+            assertEquals(keks.length + 2, recipients.size());
+
+            for (int i = 0; i != keks.length; i++)
+            {
+                RecipientInformation recipient = recipients.get(new KEKRecipientId(new byte[]{ 1, 2, (byte)i }));
+
+                assertTrue(Arrays.equals(data, recipient.getContent(new JceKEKEnvelopedRecipient(keks[i]).setProvider(BC))));
+            }
+
+            Collection c = recipients.getRecipients(new JceKeyTransRecipientId(_reciCert));
+
+            assertEquals(2, c.size());
+            assertSame(c.iterator().next(), recipients.get(new JceKeyTransRecipientId(_reciCert)));
+
+            for (Iterator it = c.iterator(); it.hasNext();)
+            {
+                RecipientInformation recipient = (RecipientInformation)it.next();
+
+                assertTrue(Arrays.equals(data, recipient.getContent(new JceKeyTransEnvelopedRecipient(_reciKP.getPrivate()).setProvider(BC))));
+            }
+
+            assertNull(recipients.get(new KEKRecipientId(new byte[]{ 1, 2, 3, 4 })));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
     public void testKeyTransOAEPDefault()
         throws Exception
     {
@@ -1,7 +1,11 @@
 package org.bouncycastle.cms.test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.MessageDigest;
@@ -19,6 +23,8 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.Assert;
 import junit.framework.Test;
@@ -69,6 +75,7 @@
 import org.bouncycastle.cms.CMSAttributeTableGenerator;
 import org.bouncycastle.cms.CMSException;
 import org.bouncycastle.cms.CMSProcessableByteArray;
+import org.bouncycastle.cms.CMSProcessableFile;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.cms.CMSSignedDataGenerator;
 import org.bouncycastle.cms.CMSSignedDataParser;
@@ -99,6 +106,7 @@
 import org.bouncycastle.operator.bc.BcRSAContentSignerBuilder;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.CollectionStore;
 import org.bouncycastle.util.Store;
 import org.bouncycastle.util.encoders.Base64;
@@ -2084,6 +2092,207 @@ else if (_origCert.getSerialNumber().equals(signerId.getSerialNumber()))
         assertTrue(s.verifySignatures(vProv, false));
     }
 
+    public void testVerifySignaturesWithSharedDigests()
+        throws Exception
+    {
+        final int[] writes = new int[1];
+        CMSTypedData msg = new CMSProcessableByteArray("Hello World!".getBytes())
+        {
+            public void write(OutputStream zOut)
+                throws IOException, CMSException
+            {
+                writes[0]++;
+                super.write(zOut);
+            }
+        };
+
+        DigestCalculatorProvider digProv = new JcaDigestCalculatorProviderBuilder().setProvider(BC).build();
+        CMSSignedDataGenerator gen = new CMSSignedDataGenerator();
+
+        gen.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(digProv).build(
+            new JcaContentSignerBuilder("SHA256withRSA").setProvider(BC).build(_signKP.getPrivate()), _signCert));
+        gen.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(digProv).build(
+            new JcaContentSignerBuilder("SHA256withECDSA").setProvider(BC).build(_signEcDsaKP.getPrivate()), _signEcDsaCert));
+        gen.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(digProv).build(
+            new JcaContentSignerBuilder("SHA384withRSA").setProvider(BC).build(_origKP.getPrivate()), _origCert));
+
+        CMSSignedData s = gen.generate(msg, false);
+
+        // add a counter signature to the first signer.
+        gen = new CMSSignedDataGenerator();
+        gen.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(digProv).build(
+            new JcaContentSignerBuilder("SHA256withRSA").setProvider(BC).build(_origKP.getPrivate()), _origCert));
+
+        List signers = new ArrayList(s.getSignerInfos().getSigners());
+        SignerInformation first = (SignerInformation)signers.get(0);
+
+        signers.set(0, SignerInformation.addCounterSigners(first, gen.generateCounterSigners(first)));
+
+        byte[] encoded = CMSSignedData.replaceSigners(s, new SignerInformationStore(signers)).getEncoded();
+
+        final Map certs = new HashMap();
+        certs.put(_signCert.getSerialNumber(), _signCert);
+        certs.put(_signEcDsaCert.getSerialNumber(), _signEcDsaCert);
+        certs.put(_origCert.getSerialNumber(), _origCert);
+
+        SignerInformationVerifierProvider vProv = new SignerInformationVerifierProvider()
+        {
+            public SignerInformationVerifier get(SignerId signerId)
+                throws OperatorCreationException
+            {
+                return new JcaSimpleSignerInfoVerifierBuilder().setProvider(BC).build(
+                    (X509Certificate)certs.get(signerId.getSerialNumber()));
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            // the content is read once, for both the SHA-256 and SHA-384 digests.
+            writes[0] = 0;
+            assertTrue(new CMSSignedData(msg, encoded).verifySignatures(vProv, false, executor));
+            assertEquals(1, writes[0]);
+
+            writes[0] = 0;
+            assertTrue(new CMSSignedData(msg, encoded).verifySignatures(vProv, false, null));
+            assertEquals(1, writes[0]);
+
+            CMSSignedData sd = new CMSSignedData(msg, encoded);
+            assertTrue(sd.verifySignatures(vProv, true, executor));
+
+            SignerInformation signer = (SignerInformation)sd.getSignerInfos().getSigners().iterator().next();
+            assertTrue(Arrays.areEqual(MessageDigest.getInstance("SHA-256").digest("Hello World!".getBytes()),
+                signer.getContentDigest()));
+
+            // the RSA signers checked against each other's certificates.
+            SignerInformationVerifierProvider wrongProv = new SignerInformationVerifierProvider()
+            {
+                public SignerInformationVerifier get(SignerId signerId)
+                    throws OperatorCreationException
+                {
+                    X509Certificate cert = (X509Certificate)certs.get(signerId.getSerialNumber());
+                    if (cert == _signCert)
+                    {
+                        cert = _origCert;
+                    }
+                    else if (cert == _origCert)
+                    {
+                        cert = _signCert;
+                    }
+
+                    return new JcaSimpleSignerInfoVerifierBuilder().setProvider(BC).build(cert);
+                }
+            };
+
+            assertFalse(new CMSSignedData(msg, encoded).verifySignatures(wrongProv, false, executor));
+
+            // a different content is detected by the message digest check.
+            try
+            {
+                new CMSSignedData(new CMSProcessableByteArray("Hello World?".getBytes()), encoded)
+                    .verifySignatures(vProv, false, executor);
+                fail("message digest mismatch not detected");
+            }
+            catch (CMSException e)
+            {
+                assertTrue(e.getMessage().startsWith("message-digest attribute value does not match"));
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testDetachedFileWithExecutor()
+        throws Exception
+    {
+        byte[] data = new byte[3 * 1024 * 1024 + 1234];
+        for (int i = 0; i != data.length; i++)
+        {
+            data[i] = (byte)(i * 31 + (i >>> 11));
+        }
+
+        File file = File.createTempFile("bcsig", ".dat");
+        try
+        {
+            FileOutputStream fOut = new FileOutputStream(file);
+            fOut.write(data);
+            fOut.close();
+
+            // the content spans several of the parallel tee's chunks, read through a small buffer.
+            CMSProcessableFile msg = new CMSProcessableFile(file, 4096);
+            ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+
+            msg.write(bOut);
+
+            assertTrue(Arrays.areEqual(data, bOut.toByteArray()));
+
+            DigestCalculatorProvider digProv = new JcaDigestCalculatorProviderBuilder().setProvider(BC).build();
+            CMSSignedDataGenerator gen = new CMSSignedDataGenerator();
+
+            gen.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(digProv).build(
+                new JcaContentSignerBuilder("SHA256withRSA").setProvider(BC).build(_signKP.getPrivate()), _signCert));
+            gen.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(digProv).build(
+                new JcaContentSignerBuilder("SHA512withECDSA").setProvider(BC).build(_signEcDsaKP.getPrivate()), _signEcDsaCert));
+            gen.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(digProv).build(
+                new JcaContentSignerBuilder("SHA384withRSA").setProvider(BC).build(_origKP.getPrivate()), _origCert));
+
+            final Map certs = new HashMap();
+            certs.put(_signCert.getSerialNumber(), _signCert);
+            certs.put(_signEcDsaCert.getSerialNumber(), _signEcDsaCert);
+            certs.put(_origCert.getSerialNumber(), _origCert);
+
+            SignerInformationVerifierProvider vProv = new SignerInformationVerifierProvider()
+            {
+                public SignerInformationVerifier get(SignerId signerId)
+                    throws OperatorCreationException
+                {
+                    return new JcaSimpleSignerInfoVerifierBuilder().setProvider(BC).build(
+                        (X509Certificate)certs.get(signerId.getSerialNumber()));
+                }
+            };
+
+            ExecutorService executor = Executors.newFixedThreadPool(3);
+            try
+            {
+                gen.setExecutor(executor);
+
+                byte[] detached = gen.generate(msg, false).getEncoded();
+
+                // verified against the original bytes, and against the file with the digests run in parallel.
+                assertTrue(new CMSSignedData(new CMSProcessableByteArray(data), detached).verifySignatures(vProv));
+                assertTrue(new CMSSignedData(msg, detached).verifySignatures(vProv, false, executor));
+
+                // encapsulated content is collected alongside the digests.
+                CMSSignedData encapsulated = new CMSSignedData(gen.generate(msg, true).getEncoded());
+
+                assertTrue(Arrays.areEqual(data, (byte[])encapsulated.getSignedContent().getContent()));
+                assertTrue(encapsulated.verifySignatures(vProv, false, executor));
+
+                try
+                {
+                    data[data.length / 2] ^= 1;
+                    new CMSSignedData(new CMSProcessableByteArray(data), detached)
+                        .verifySignatures(vProv, false, executor);
+                    fail("message digest mismatch not detected");
+                }
+                catch (CMSException e)
+                {
+                    assertTrue(e.getMessage().startsWith("message-digest attribute value does not match"));
+                }
+            }
+            finally
+            {
+                executor.shutdown();
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
     public void testAddDigestAlgorithm()
         throws Exception
     {
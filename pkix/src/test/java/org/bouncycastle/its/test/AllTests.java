@@ -31,6 +31,7 @@ public static Test suite()
         suite.addTestSuite(ITSJcaJceBasicTest.class);
         suite.addTestSuite(ETSIDataSignerTest.class);
         suite.addTestSuite(ETSIEncryptedDataTest.class);
+        suite.addTestSuite(BcITSVerificationEngineTest.class);
 
         return new ITSTestSetup(suite);
     }
@@ -0,0 +1,135 @@
+package org.bouncycastle.its.test;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
+import org.bouncycastle.its.ETSISignedData;
+import org.bouncycastle.its.ETSISignedDataBuilder;
+import org.bouncycastle.its.ITSCertificate;
+import org.bouncycastle.its.bc.BcITSContentSigner;
+import org.bouncycastle.its.bc.BcITSContentVerifierProvider;
+import org.bouncycastle.its.bc.BcITSVerificationEngine;
+import org.bouncycastle.oer.its.ieee1609dot2.basetypes.HashedId8;
+import org.bouncycastle.oer.its.ieee1609dot2.basetypes.Psid;
+
+/**
+ * Measures the rate of P-256 verifications of digest signed CAMs, building a verifier provider for each message
+ * compared with using a {@link BcITSVerificationEngine}, on one thread and as batches across all processors.
+ * <p>
+ * Usage: BcITSVerificationEngineBenchmark [seconds per run] [signers]
+ * </p>
+ */
+public class BcITSVerificationEngineBenchmark
+{
+    private static final int BATCH_SIZE = 1000;
+
+    public static void main(String[] args)
+        throws Exception
+    {
+        long runMillis = 1000L * (args.length > 0 ? Integer.parseInt(args[0]) : 3);
+        int signerCount = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        SecureRandom rand = new SecureRandom();
+        BcITSVerificationEngine engine = new BcITSVerificationEngine(signerCount);
+
+        List<ETSISignedData> messages = new ArrayList<ETSISignedData>();
+        List<ITSCertificate> certificates = new ArrayList<ITSCertificate>();
+        for (int i = 0; i != signerCount; i++)
+        {
+            AsymmetricCipherKeyPair kp = ETSISignedDataBenchmark.generateKeyPair(rand);
+            ITSCertificate certificate = ETSISignedDataBenchmark.createCertificate(kp);
+            BcITSContentSigner signer = new BcITSContentSigner((ECPrivateKeyParameters)kp.getPrivate(), certificate);
+            HashedId8 hashedId = engine.addCertificate(certificate);
+
+            byte[] payload = new byte[100];
+            rand.nextBytes(payload);
+
+            messages.add(ETSISignedDataBuilder.builder(new Psid(36)).setUnsecuredData(payload).build(signer, hashedId));
+            certificates.add(certificate);
+        }
+
+        List<ETSISignedData> batch = new ArrayList<ETSISignedData>();
+        for (int i = 0; i != BATCH_SIZE; i++)
+        {
+            batch.add(messages.get(i % signerCount));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try
+        {
+            // Warm up
+            runUncached(messages, certificates, runMillis);
+            runEngine(engine, messages, runMillis);
+
+            System.out.println("provider per message: "
+                + (runUncached(messages, certificates, runMillis) * 1000L / runMillis) + " verifications/s");
+            System.out.println("engine, 1 thread: "
+                + (runEngine(engine, messages, runMillis) * 1000L / runMillis) + " verifications/s");
+            System.out.println("engine, batches on " + Runtime.getRuntime().availableProcessors() + " thread(s): "
+                + (runBatches(engine, batch, executor, runMillis) * 1000L / runMillis) + " verifications/s");
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static long runUncached(List<ETSISignedData> messages, List<ITSCertificate> certificates, long runMillis)
+        throws Exception
+    {
+        long end = System.currentTimeMillis() + runMillis;
+        long count = 0;
+        while (System.currentTimeMillis() < end)
+        {
+            int i = (int)(count % messages.size());
+            if (!messages.get(i).signatureValid(new BcITSContentVerifierProvider(certificates.get(i))))
+            {
+                throw new IllegalStateException("verification failed");
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static long runEngine(BcITSVerificationEngine engine, List<ETSISignedData> messages, long runMillis)
+        throws Exception
+    {
+        long end = System.currentTimeMillis() + runMillis;
+        long count = 0;
+        while (System.currentTimeMillis() < end)
+        {
+            if (!engine.verify(messages.get((int)(count % messages.size()))))
+            {
+                throw new IllegalStateException("verification failed");
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static long runBatches(BcITSVerificationEngine engine, List<ETSISignedData> batch,
+        ExecutorService executor, long runMillis)
+        throws Exception
+    {
+        long end = System.currentTimeMillis() + runMillis;
+        long count = 0;
+        while (System.currentTimeMillis() < end)
+        {
+            boolean[] results = engine.verify(batch, executor);
+            for (int i = 0; i != results.length; i++)
+            {
+                if (!results[i])
+                {
+                    throw new IllegalStateException("verification failed");
+                }
+            }
+            count += results.length;
+        }
+        return count;
+    }
+}
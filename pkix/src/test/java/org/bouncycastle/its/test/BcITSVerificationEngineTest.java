@@ -0,0 +1,207 @@
+package org.bouncycastle.its.test;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
+import org.bouncycastle.its.ETSISignedData;
+import org.bouncycastle.its.ETSISignedDataBuilder;
+import org.bouncycastle.its.ITSCertificate;
+import org.bouncycastle.its.bc.BcITSContentSigner;
+import org.bouncycastle.its.bc.BcITSContentVerifierProvider;
+import org.bouncycastle.its.bc.BcITSVerificationEngine;
+import org.bouncycastle.oer.its.ieee1609dot2.basetypes.HashedId8;
+import org.bouncycastle.oer.its.ieee1609dot2.basetypes.Psid;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.util.Arrays;
+
+public class BcITSVerificationEngineTest
+    extends TestCase
+{
+    private final SecureRandom random = new SecureRandom();
+
+    public void testDigestSigner()
+        throws Exception
+    {
+        AsymmetricCipherKeyPair kp = ETSISignedDataBenchmark.generateKeyPair(random);
+        ITSCertificate certificate = ETSISignedDataBenchmark.createCertificate(kp);
+        BcITSContentSigner signer = new BcITSContentSigner((ECPrivateKeyParameters)kp.getPrivate(), certificate);
+
+        BcITSVerificationEngine engine = new BcITSVerificationEngine(10);
+        HashedId8 hashedId = engine.addCertificate(certificate);
+
+        byte[] digest = signer.getAssociatedCertificateDigest();
+        assertTrue(Arrays.areEqual(Arrays.copyOfRange(digest, digest.length - 8, digest.length), hashedId.getHashBytes()));
+        assertSame(certificate, engine.getCertificate(hashedId));
+
+        ETSISignedData signedData = createMessage(signer, hashedId);
+        assertTrue(engine.verify(signedData));
+        assertTrue(engine.verify(new ETSISignedData(signedData.getEncoded())));
+
+        // same HashedId8, different key
+        AsymmetricCipherKeyPair other = ETSISignedDataBenchmark.generateKeyPair(random);
+        BcITSContentSigner otherSigner = new BcITSContentSigner((ECPrivateKeyParameters)other.getPrivate(), certificate);
+        assertFalse(engine.verify(createMessage(otherSigner, hashedId)));
+
+        engine.clear();
+        try
+        {
+            engine.verify(signedData);
+            fail("no exception");
+        }
+        catch (OperatorCreationException e)
+        {
+            assertTrue(e.getMessage().startsWith("unknown signer"));
+        }
+    }
+
+    public void testCertificateSigner()
+        throws Exception
+    {
+        AsymmetricCipherKeyPair kp = ETSISignedDataBenchmark.generateKeyPair(random);
+        ITSCertificate certificate = ETSISignedDataBenchmark.createCertificate(kp);
+        BcITSContentSigner signer = new BcITSContentSigner((ECPrivateKeyParameters)kp.getPrivate(), certificate);
+
+        ETSISignedData signedData = ETSISignedDataBuilder.builder(new Psid(37))
+            .setUnsecuredData(new byte[400])
+            .build(signer, Collections.singletonList(certificate));
+        signedData = new ETSISignedData(signedData.getEncoded());
+
+        assertTrue(signedData.signatureValid(new BcITSContentVerifierProvider(certificate)));
+
+        BcITSVerificationEngine engine = new BcITSVerificationEngine(10);
+
+        // not known, the carried certificate alone is not trusted.
+        try
+        {
+            engine.verify(signedData);
+            fail("no exception");
+        }
+        catch (OperatorCreationException e)
+        {
+            assertTrue(e.getMessage().startsWith("unknown signer certificate"));
+        }
+        assertFalse(engine.verify(Collections.singletonList(signedData), null)[0]);
+        assertEquals(0, engine.size());
+
+        engine.addCertificate(certificate);
+        assertTrue(engine.verify(signedData));
+        assertTrue(engine.verify(Collections.singletonList(signedData), null)[0]);
+
+        // a message carrying a different certificate, for its own key, is not checked against it.
+        AsymmetricCipherKeyPair other = ETSISignedDataBenchmark.generateKeyPair(random);
+        ITSCertificate otherCertificate = ETSISignedDataBenchmark.createCertificate(other);
+        BcITSContentSigner otherSigner = new BcITSContentSigner((ECPrivateKeyParameters)other.getPrivate(), otherCertificate);
+
+        ETSISignedData otherData = ETSISignedDataBuilder.builder(new Psid(37))
+            .setUnsecuredData(new byte[400])
+            .build(otherSigner, Collections.singletonList(otherCertificate));
+
+        assertFalse(engine.verify(Collections.singletonList(otherData), null)[0]);
+    }
+
+    public void testSelfSigner()
+        throws Exception
+    {
+        AsymmetricCipherKeyPair kp = ETSISignedDataBenchmark.generateKeyPair(random);
+        BcITSContentSigner signer = new BcITSContentSigner((ECPrivateKeyParameters)kp.getPrivate());
+
+        ETSISignedData signedData = ETSISignedDataBuilder.builder(new Psid(36))
+            .setUnsecuredData(new byte[100])
+            .build(signer);
+
+        try
+        {
+            new BcITSVerificationEngine(10).verify(signedData);
+            fail("no exception");
+        }
+        catch (OperatorCreationException e)
+        {
+            assertTrue(e.getMessage().startsWith("unsupported signer identifier"));
+        }
+    }
+
+    public void testBounded()
+        throws Exception
+    {
+        ITSCertificate cert1 = ETSISignedDataBenchmark.createCertificate(ETSISignedDataBenchmark.generateKeyPair(random));
+        ITSCertificate cert2 = ETSISignedDataBenchmark.createCertificate(ETSISignedDataBenchmark.generateKeyPair(random));
+        ITSCertificate cert3 = ETSISignedDataBenchmark.createCertificate(ETSISignedDataBenchmark.generateKeyPair(random));
+
+        BcITSVerificationEngine engine = new BcITSVerificationEngine(2);
+        HashedId8 id1 = engine.addCertificate(cert1);
+        HashedId8 id2 = engine.addCertificate(cert2);
+
+        assertNotNull(engine.getCertificate(id1));      // now most recently used
+
+        HashedId8 id3 = engine.addCertificate(cert3);
+
+        assertEquals(2, engine.size());
+        assertNotNull(engine.getCertificate(id1));
+        assertNull(engine.getCertificate(id2));
+        assertNotNull(engine.getCertificate(id3));
+    }
+
+    public void testBatch()
+        throws Exception
+    {
+        AsymmetricCipherKeyPair kp = ETSISignedDataBenchmark.generateKeyPair(random);
+        ITSCertificate certificate = ETSISignedDataBenchmark.createCertificate(kp);
+        BcITSContentSigner signer = new BcITSContentSigner((ECPrivateKeyParameters)kp.getPrivate(), certificate);
+
+        AsymmetricCipherKeyPair other = ETSISignedDataBenchmark.generateKeyPair(random);
+        BcITSContentSigner otherSigner = new BcITSContentSigner((ECPrivateKeyParameters)other.getPrivate(), certificate);
+
+        BcITSVerificationEngine engine = new BcITSVerificationEngine(10);
+        HashedId8 hashedId = engine.addCertificate(certificate);
+        HashedId8 unknownId = new HashedId8(new byte[8]);
+
+        List<ETSISignedData> messages = new ArrayList<ETSISignedData>();
+        boolean[] expected = new boolean[50];
+        for (int i = 0; i != expected.length; i++)
+        {
+            switch (i % 5)
+            {
+            case 3:
+                messages.add(createMessage(otherSigner, hashedId));
+                break;
+            case 4:
+                messages.add(createMessage(signer, unknownId));
+                break;
+            default:
+                messages.add(createMessage(signer, hashedId));
+                expected[i] = true;
+            }
+        }
+
+        assertTrue(Arrays.areEqual(expected, engine.verify(messages, null)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            assertTrue(Arrays.areEqual(expected, engine.verify(messages, executor)));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        assertEquals(0, engine.verify(new ArrayList<ETSISignedData>(), executor).length);
+    }
+
+    private ETSISignedData createMessage(BcITSContentSigner signer, HashedId8 hashedId)
+    {
+        byte[] payload = new byte[100];
+        random.nextBytes(payload);
+
+        return ETSISignedDataBuilder.builder(new Psid(36))
+            .setUnsecuredData(payload)
+            .build(signer, hashedId);
+    }
+}
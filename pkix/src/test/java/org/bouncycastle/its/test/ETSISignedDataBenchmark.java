@@ -0,0 +1,153 @@
+package org.bouncycastle.its.test;
+
+import java.io.ByteArrayInputStream;
+import java.security.SecureRandom;
+import java.util.Date;
+
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.nist.NISTNamedCurves;
+import org.bouncycastle.asn1.sec.SECObjectIdentifiers;
+import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.bouncycastle.crypto.generators.ECKeyPairGenerator;
+import org.bouncycastle.crypto.params.ECKeyGenerationParameters;
+import org.bouncycastle.crypto.params.ECNamedDomainParameters;
+import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
+import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.bouncycastle.its.ETSISignedData;
+import org.bouncycastle.its.ETSISignedDataBuilder;
+import org.bouncycastle.its.ITSCertificate;
+import org.bouncycastle.its.ITSValidityPeriod;
+import org.bouncycastle.its.bc.BcITSContentSigner;
+import org.bouncycastle.its.bc.BcITSExplicitCertificateBuilder;
+import org.bouncycastle.oer.its.ieee1609dot2.CertificateId;
+import org.bouncycastle.oer.its.ieee1609dot2.ToBeSignedCertificate;
+import org.bouncycastle.oer.its.ieee1609dot2.basetypes.BitmapSsp;
+import org.bouncycastle.oer.its.ieee1609dot2.basetypes.CrlSeries;
+import org.bouncycastle.oer.its.ieee1609dot2.basetypes.Hostname;
+import org.bouncycastle.oer.its.ieee1609dot2.basetypes.Psid;
+import org.bouncycastle.oer.its.ieee1609dot2.basetypes.PsidSsp;
+import org.bouncycastle.oer.its.ieee1609dot2.basetypes.SequenceOfPsidSsp;
+import org.bouncycastle.oer.its.ieee1609dot2.basetypes.ServiceSpecificPermissions;
+import org.bouncycastle.oer.its.ieee1609dot2.basetypes.SubjectAssurance;
+import org.bouncycastle.util.encoders.Hex;
+
+/**
+ * Measures the rate at which signed EtsiTs103097Data messages of CAM and DENM size are decoded, both from a stream
+ * and directly from a byte array.
+ * <p>
+ * Usage: ETSISignedDataBenchmark [seconds per run]
+ * </p>
+ */
+public class ETSISignedDataBenchmark
+{
+    // typical payload sizes of a CAM and a DENM
+    private static final int CAM_SIZE = 100;
+    private static final int DENM_SIZE = 400;
+
+    public static void main(String[] args)
+        throws Exception
+    {
+        long runMillis = 1000L * (args.length > 0 ? Integer.parseInt(args[0]) : 3);
+
+        SecureRandom rand = new SecureRandom();
+        AsymmetricCipherKeyPair kp = generateKeyPair(rand);
+
+        ECPrivateKeyParameters privateKey = (ECPrivateKeyParameters)kp.getPrivate();
+        ITSCertificate certificate = createCertificate(kp);
+
+        BcITSContentSigner signer = new BcITSContentSigner(privateKey, certificate);
+
+        byte[] cam = createMessage(signer, 36, CAM_SIZE, rand);
+        byte[] denm = createMessage(signer, 37, DENM_SIZE, rand);
+
+        // Warm up
+        run(cam, false, runMillis);
+        run(cam, true, runMillis);
+
+        report("CAM", cam, runMillis);
+        report("DENM", denm, runMillis);
+    }
+
+    static AsymmetricCipherKeyPair generateKeyPair(SecureRandom rand)
+    {
+        ECKeyPairGenerator generator = new ECKeyPairGenerator();
+        ECNamedDomainParameters domainParameters = new ECNamedDomainParameters(SECObjectIdentifiers.secp256r1,
+            NISTNamedCurves.getByOID(SECObjectIdentifiers.secp256r1));
+        generator.init(new ECKeyGenerationParameters(domainParameters, rand));
+        return generator.generateKeyPair();
+    }
+
+    /**
+     * Create a self-signed certificate, with CAM and DENM permissions, for a P-256 key pair.
+     */
+    static ITSCertificate createCertificate(AsymmetricCipherKeyPair kp)
+    {
+        ToBeSignedCertificate.Builder tbsBuilder = new ToBeSignedCertificate.Builder();
+        tbsBuilder.setAppPermissions(
+            SequenceOfPsidSsp.builder()
+                .setItem(PsidSsp.builder()
+                    .setPsid(new Psid(36))
+                    .setSsp(ServiceSpecificPermissions.bitmapSsp(new BitmapSsp(new DEROctetString(Hex.decode("01fffc")))))
+                    .createPsidSsp())
+                .setItem(PsidSsp.builder()
+                    .setPsid(new Psid(37))
+                    .setSsp(ServiceSpecificPermissions.bitmapSsp(new BitmapSsp(new DEROctetString(Hex.decode("01ffffff")))))
+                    .createPsidSsp())
+                .createSequenceOfPsidSsp());
+        tbsBuilder.setAssuranceLevel(new SubjectAssurance(new byte[]{(byte)0xC0}));
+        tbsBuilder.setCrlSeries(new CrlSeries(1));
+
+        BcITSExplicitCertificateBuilder certificateBuilder = new BcITSExplicitCertificateBuilder(
+            new BcITSContentSigner((ECPrivateKeyParameters)kp.getPrivate()), tbsBuilder);
+        certificateBuilder.setValidityPeriod(ITSValidityPeriod.from(new Date()).plusYears(1));
+
+        return certificateBuilder.build(
+            CertificateId.name(new Hostname("Benchmark AT")), (ECPublicKeyParameters)kp.getPublic());
+    }
+
+    static byte[] createMessage(BcITSContentSigner signer, int psid, int size, SecureRandom rand)
+        throws Exception
+    {
+        byte[] payload = new byte[size];
+        rand.nextBytes(payload);
+
+        return ETSISignedDataBuilder.builder(new Psid(psid))
+            .setUnsecuredData(payload)
+            .build(signer)
+            .getEncoded();
+    }
+
+    private static void report(String label, byte[] message, long runMillis)
+        throws Exception
+    {
+        long streamed = run(message, false, runMillis);
+        long direct = run(message, true, runMillis);
+
+        System.out.println(label + " (" + message.length + " bytes): "
+            + (streamed * 1000L / runMillis) + " decodes/s from stream, "
+            + (direct * 1000L / runMillis) + " decodes/s from byte array");
+    }
+
+    private static long run(byte[] message, boolean direct, long runMillis)
+        throws Exception
+    {
+        long end = System.currentTimeMillis() + runMillis;
+        long count = 0;
+        while (System.currentTimeMillis() < end)
+        {
+            for (int i = 0; i < 100; ++i)
+            {
+                if (direct)
+                {
+                    new ETSISignedData(message);
+                }
+                else
+                {
+                    new ETSISignedData(new ByteArrayInputStream(message));
+                }
+            }
+            count += 100;
+        }
+        return count;
+    }
+}
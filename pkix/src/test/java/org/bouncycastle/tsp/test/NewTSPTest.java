@@ -23,15 +23,20 @@
 import org.bouncycastle.asn1.ASN1Encoding;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSet;
 import org.bouncycastle.asn1.DERUTF8String;
 import org.bouncycastle.asn1.cmp.PKIFailureInfo;
 import org.bouncycastle.asn1.cmp.PKIStatus;
+import org.bouncycastle.asn1.cms.Attribute;
 import org.bouncycastle.asn1.cms.AttributeTable;
 import org.bouncycastle.asn1.ess.ESSCertID;
 import org.bouncycastle.asn1.ess.ESSCertIDv2;
 import org.bouncycastle.asn1.ess.SigningCertificate;
 import org.bouncycastle.asn1.ess.SigningCertificateV2;
 import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.tsp.BatchTimeStampPath;
+import org.bouncycastle.asn1.tsp.MessageImprint;
+import org.bouncycastle.asn1.tsp.TSPObjectIdentifiers;
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
 import org.bouncycastle.asn1.x509.Extension;
@@ -50,6 +55,8 @@
 import org.bouncycastle.cms.CMSAttributeTableGenerator;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.cms.DefaultSignedAttributeTableGenerator;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.SignerInformationStore;
 import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
 import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoGeneratorBuilder;
 import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
@@ -130,6 +137,7 @@ public void testGeneral()
         testNoNonse(origKP.getPrivate(), origCert, certs);
         extensionTest(origKP.getPrivate(), origCert, certs);
         additionalExtensionTest(origKP.getPrivate(), origCert, certs);
+        batchTest(origKP.getPrivate(), origCert, certs);
     }
 
     public void testCertOrdering()
@@ -233,6 +241,133 @@ private void basicTest(
         assertNotNull("no signingCertificate attribute found", table.get(PKCSObjectIdentifiers.id_aa_signingCertificate));
     }
 
+    private void batchTest(
+        PrivateKey privateKey,
+        X509Certificate cert,
+        Store certs)
+        throws Exception
+    {
+        TimeStampTokenGenerator tsTokenGen = new TimeStampTokenGenerator(
+            new JcaSimpleSignerInfoGeneratorBuilder().build("SHA256withRSA", privateKey, cert), new SHA1DigestCalculator(), new ASN1ObjectIdentifier("1.2"));
+
+        tsTokenGen.addCertificates(certs);
+
+        TimeStampRequestGenerator reqGen = new TimeStampRequestGenerator();
+
+        TimeStampRequest[] requests = new TimeStampRequest[7];
+        for (int i = 0; i != requests.length - 2; i++)
+        {
+            byte[] imprint = new byte[20];
+            imprint[0] = (byte)i;
+
+            reqGen.setCertReq((i & 1) == 0);
+            requests[i] = reqGen.generate(TSPAlgorithms.SHA1, imprint, BigInteger.valueOf(100 + i));
+        }
+        // same imprint as an earlier request, and no nonce.
+        requests[5] = reqGen.generate(TSPAlgorithms.SHA1, new byte[20]);
+        requests[6] = reqGen.generate(TSPAlgorithms.SHA256, new byte[32], BigInteger.valueOf(200));
+
+        TimeStampResponseGenerator tsRespGen = new TimeStampResponseGenerator(tsTokenGen, TSPAlgorithms.ALLOWED);
+
+        // batching is off unless asked for.
+        try
+        {
+            tsRespGen.generateGrantedResponses(requests, new SHA256DigestCalculator(), new BigInteger("23"), new Date(), null, null);
+            fail("batch generated without batching enabled");
+        }
+        catch (TSPException e)
+        {
+            assertEquals("batch generation not enabled", e.getMessage());
+        }
+
+        tsTokenGen.setBatchingEnabled(true);
+
+        TimeStampResponse[] responses = tsRespGen.generateGrantedResponses(requests, new SHA256DigestCalculator(), new BigInteger("23"), new Date(), null, null);
+
+        assertEquals(requests.length, responses.length);
+
+        byte[] root = null;
+        for (int i = 0; i != responses.length; i++)
+        {
+            TimeStampResponse tsResp = new TimeStampResponse(responses[i].getEncoded());
+
+            tsResp.validate(requests[i]);
+
+            TimeStampToken tsToken = tsResp.getTimeStampToken();
+
+            tsToken.validate(new JcaSimpleSignerInfoVerifierBuilder().setProvider(BC).build(cert));
+
+            assertNotNull(tsToken.getBatchTimeStampPath());
+            assertNull(tsToken.getTimeStampInfo().getNonce());
+            assertEquals(requests[i].getCertReq(), tsToken.getCertificates().getMatches(null).size() != 0);
+
+            if (root == null)
+            {
+                root = tsToken.getTimeStampInfo().getMessageImprintDigest();
+            }
+            assertTrue(Arrays.areEqual(root, tsToken.getTimeStampInfo().getMessageImprintDigest()));
+
+            // the response is only valid for its own request.
+            try
+            {
+                tsResp.validate(requests[(i + 1) % requests.length]);
+                fail("response validated for another request");
+            }
+            catch (TSPValidationException e)
+            {
+                // expected
+            }
+        }
+
+        // a path for a different request must not lead to the signed root.
+        TimeStampToken tsToken = responses[1].getTimeStampToken();
+        BatchTimeStampPath path = tsToken.getBatchTimeStampPath();
+        BatchTimeStampPath forged = new BatchTimeStampPath(new MessageImprint(path.getMessageImprint().getHashAlgorithm(), new byte[20]),
+            path.getNonce(), path.getReducedHashtree());
+
+        CMSSignedData signedData = tsToken.toCMSSignedData();
+        SignerInformation signer = (SignerInformation)signedData.getSignerInfos().getSigners().iterator().next();
+        signer = SignerInformation.replaceUnsignedAttributes(signer, new AttributeTable(new Attribute(TSPObjectIdentifiers.id_aa_batchTimeStampPath, new DERSet(forged))));
+
+        TimeStampToken forgedToken = new TimeStampToken(CMSSignedData.replaceSigners(signedData, new SignerInformationStore(signer)));
+
+        try
+        {
+            forgedToken.validate(new JcaSimpleSignerInfoVerifierBuilder().setProvider(BC).build(cert));
+            fail("forged batch path validated");
+        }
+        catch (TSPValidationException e)
+        {
+            assertEquals("batch path not for the request in time stamp.", e.getMessage());
+        }
+
+        // the leaf hash is domain separated from the node hashes, so a single request batch is signed over
+        // H(0x00 || leaf data) rather than the hash of the leaf data alone.
+        TimeStampToken single = tsTokenGen.generate(new TimeStampRequest[] { requests[0] },
+            new SHA256DigestCalculator(), new BigInteger("25"), new Date(), null)[0];
+
+        DigestCalculator leafCalc = new SHA256DigestCalculator();
+        OutputStream leafOut = leafCalc.getOutputStream();
+        leafOut.write(0x00);
+        leafOut.write(single.getBatchTimeStampPath().getLeafData().getEncoded(ASN1Encoding.DER));
+        leafOut.close();
+
+        assertTrue(Arrays.areEqual(leafCalc.getDigest(), single.getTimeStampInfo().getMessageImprintDigest()));
+
+        // requests for different policies cannot be batched.
+        reqGen.setReqPolicy(new ASN1ObjectIdentifier("1.5"));
+        try
+        {
+            tsTokenGen.generate(new TimeStampRequest[] { requests[0], reqGen.generate(TSPAlgorithms.SHA1, new byte[20]) },
+                new SHA256DigestCalculator(), new BigInteger("24"), new Date(), null);
+            fail("batch with mixed policies generated");
+        }
+        catch (TSPException e)
+        {
+            assertEquals("requests in a batch must be for the same policy", e.getMessage());
+        }
+    }
+
     public void testSM2withSM3()
         throws Exception
     {
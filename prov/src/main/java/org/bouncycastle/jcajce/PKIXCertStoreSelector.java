@@ -73,6 +73,11 @@ public boolean match(Certificate cert)
         return baseSelector.match(cert);
     }
 
+    CertSelector getBaseSelector()
+    {
+        return baseSelector;
+    }
+
     public Object clone()
     {
         return new PKIXCertStoreSelector(baseSelector);
@@ -0,0 +1,230 @@
+package org.bouncycastle.jcajce;
+
+import java.math.BigInteger;
+import java.security.cert.CertSelector;
+import java.security.cert.Certificate;
+import java.security.cert.X509CertSelector;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.util.Selector;
+
+/**
+ * An immutable certificate store that indexes its X.509 certificates by subject, subject key identifier and serial
+ * number, so that the lookups made during path building (e.g. for the issuer of a certificate) don't need to examine
+ * every certificate in the store.
+ * <p>
+ * Selectors based on an {@link X509CertSelector} (including a {@link PKIXCertStoreSelector} built from one) are
+ * answered from the index when they specify a certificate, serial number, subject key identifier or subject; the
+ * full selector is then applied to the (usually very few) candidates found. Any other selector is applied to every
+ * certificate, as for a collection based store.
+ * </p>
+ */
+public class PKIXIndexedCertStore
+    implements PKIXCertStore<Certificate>, Iterable<Certificate>
+{
+    private final List<Certificate> certificates;
+    private final Map<BigInteger, List<Certificate>> bySerialNumber = new HashMap<BigInteger, List<Certificate>>();
+    private final Map<ASN1OctetString, List<Certificate>> bySubjectKeyIdentifier = new HashMap<ASN1OctetString, List<Certificate>>();
+    private final Map<X500Principal, List<Certificate>> bySubject = new HashMap<X500Principal, List<Certificate>>();
+
+    /**
+     * Basic constructor.
+     *
+     * @param certificates the certificates for the store, this is copied.
+     */
+    public PKIXIndexedCertStore(Collection<? extends Certificate> certificates)
+    {
+        this.certificates = new ArrayList<Certificate>(certificates);
+
+        for (Iterator<Certificate> it = this.certificates.iterator(); it.hasNext();)
+        {
+            Certificate certificate = it.next();
+            if (certificate instanceof X509Certificate)
+            {
+                X509Certificate x509Certificate = (X509Certificate)certificate;
+
+                addToIndex(bySerialNumber, x509Certificate.getSerialNumber(), certificate);
+                addToIndex(bySubject, x509Certificate.getSubjectX500Principal(), certificate);
+
+                ASN1OctetString subjectKeyIdentifier = getSubjectKeyIdentifier(x509Certificate);
+                if (null != subjectKeyIdentifier)
+                {
+                    addToIndex(bySubjectKeyIdentifier, subjectKeyIdentifier, certificate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the number of certificates in the store.
+     *
+     * @return the number of certificates.
+     */
+    public int size()
+    {
+        return certificates.size();
+    }
+
+    /**
+     * Return the matches in the store for the passed in selector.
+     *
+     * @param selector the selector to match against, may be null to match everything.
+     * @return a possibly empty collection of matching certificates.
+     */
+    public Collection<Certificate> getMatches(Selector<Certificate> selector)
+    {
+        if (selector == null)
+        {
+            return new ArrayList<Certificate>(certificates);
+        }
+
+        X509CertSelector criteria = null;
+        if (selector instanceof PKIXCertStoreSelector)
+        {
+            CertSelector baseSelector = ((PKIXCertStoreSelector)selector).getBaseSelector();
+            if (baseSelector instanceof X509CertSelector)
+            {
+                criteria = (X509CertSelector)baseSelector;
+            }
+        }
+        else if (selector instanceof X509CertSelector)
+        {
+            criteria = (X509CertSelector)selector;
+        }
+
+        List<Certificate> result = new ArrayList<Certificate>();
+        for (Iterator<Certificate> it = getCandidates(criteria).iterator(); it.hasNext();)
+        {
+            Certificate certificate = it.next();
+            if (selector.match(certificate))
+            {
+                result.add(certificate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the matches in the store for the passed in JCA certificate selector.
+     *
+     * @param selector the selector to match against, may be null to match everything.
+     * @return a possibly empty collection of matching certificates.
+     */
+    public Collection<Certificate> getCertificates(CertSelector selector)
+    {
+        if (selector == null)
+        {
+            return new ArrayList<Certificate>(certificates);
+        }
+
+        X509CertSelector criteria = (selector instanceof X509CertSelector) ? (X509CertSelector)selector : null;
+
+        List<Certificate> result = new ArrayList<Certificate>();
+        for (Iterator<Certificate> it = getCandidates(criteria).iterator(); it.hasNext();)
+        {
+            Certificate certificate = it.next();
+            if (selector.match(certificate))
+            {
+                result.add(certificate);
+            }
+        }
+        return result;
+    }
+
+    public Iterator<Certificate> iterator()
+    {
+        return getMatches(null).iterator();
+    }
+
+    /*
+     * Return the certificates that could match the criteria, using the most selective criterion that is indexed.
+     */
+    private List<Certificate> getCandidates(X509CertSelector criteria)
+    {
+        if (null != criteria)
+        {
+            X509Certificate certificate = criteria.getCertificate();
+            if (null != certificate)
+            {
+                return lookup(bySerialNumber, certificate.getSerialNumber());
+            }
+
+            BigInteger serialNumber = criteria.getSerialNumber();
+            if (null != serialNumber)
+            {
+                return lookup(bySerialNumber, serialNumber);
+            }
+
+            byte[] subjectKeyIdentifier = criteria.getSubjectKeyIdentifier();
+            if (null != subjectKeyIdentifier)
+            {
+                ASN1OctetString keyID;
+                try
+                {
+                    keyID = ASN1OctetString.getInstance(subjectKeyIdentifier);
+                }
+                catch (Exception e)
+                {
+                    // NOTE: Malformed, so can't match anything; leave it to the selector
+                    return certificates;
+                }
+                return lookup(bySubjectKeyIdentifier, keyID);
+            }
+
+            X500Principal subject = criteria.getSubject();
+            if (null != subject)
+            {
+                return lookup(bySubject, subject);
+            }
+        }
+
+        return certificates;
+    }
+
+    private static <K> void addToIndex(Map<K, List<Certificate>> index, K key, Certificate certificate)
+    {
+        List<Certificate> entries = index.get(key);
+        if (null == entries)
+        {
+            entries = new ArrayList<Certificate>(1);
+            index.put(key, entries);
+        }
+        entries.add(certificate);
+    }
+
+    private static <K> List<Certificate> lookup(Map<K, List<Certificate>> index, K key)
+    {
+        List<Certificate> entries = index.get(key);
+        return null == entries ? Collections.<Certificate>emptyList() : entries;
+    }
+
+    private static ASN1OctetString getSubjectKeyIdentifier(X509Certificate certificate)
+    {
+        byte[] extensionValue = certificate.getExtensionValue(Extension.subjectKeyIdentifier.getId());
+        if (null == extensionValue)
+        {
+            return null;
+        }
+
+        try
+        {
+            // NOTE: Keyed on the KeyIdentifier value; the selector itself still compares the encodings
+            return ASN1OctetString.getInstance(ASN1OctetString.getInstance(extensionValue).getOctets());
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+}
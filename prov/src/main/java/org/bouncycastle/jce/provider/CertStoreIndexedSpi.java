@@ -0,0 +1,90 @@
+package org.bouncycastle.jce.provider;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.cert.CRL;
+import java.security.cert.CRLSelector;
+import java.security.cert.CertSelector;
+import java.security.cert.CertStoreException;
+import java.security.cert.CertStoreParameters;
+import java.security.cert.CertStoreSpi;
+import java.security.cert.Certificate;
+import java.security.cert.CollectionCertStoreParameters;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.bouncycastle.jcajce.PKIXIndexedCertStore;
+
+/**
+ * A CertStore over a collection of certificates and CRLs, like the "Collection" CertStore, but with the
+ * certificates indexed for fast lookup (see {@link PKIXIndexedCertStore}). Unlike the "Collection" CertStore, the
+ * contents of the collection are copied when the store is created, so later changes to the collection are not
+ * reflected in the store.
+ */
+public class CertStoreIndexedSpi extends CertStoreSpi
+{
+    private final PKIXIndexedCertStore certificates;
+    private final List crls = new ArrayList();
+
+    public CertStoreIndexedSpi(CertStoreParameters params)
+        throws InvalidAlgorithmParameterException
+    {
+        super(params);
+
+        if (!(params instanceof CollectionCertStoreParameters))
+        {
+            throw new InvalidAlgorithmParameterException("org.bouncycastle.jce.provider.CertStoreIndexedSpi: parameter must be a CollectionCertStoreParameters object\n" +  params.toString());
+        }
+
+        List certs = new ArrayList();
+        Iterator iter = ((CollectionCertStoreParameters)params).getCollection().iterator();
+        while (iter.hasNext())
+        {
+            Object obj = iter.next();
+
+            if (obj instanceof Certificate)
+            {
+                certs.add(obj);
+            }
+            else if (obj instanceof CRL)
+            {
+                crls.add(obj);
+            }
+        }
+
+        this.certificates = new PKIXIndexedCertStore(certs);
+    }
+
+    public Collection engineGetCertificates(
+        CertSelector selector)
+        throws CertStoreException
+    {
+        return certificates.getCertificates(selector);
+    }
+
+    public Collection engineGetCRLs(
+        CRLSelector selector)
+        throws CertStoreException
+    {
+        if (selector == null)
+        {
+            return new ArrayList(crls);
+        }
+
+        List        col = new ArrayList();
+        Iterator    iter = crls.iterator();
+
+        while (iter.hasNext())
+        {
+            CRL crl = (CRL)iter.next();
+
+            if (selector.match(crl))
+            {
+                col.add(crl);
+            }
+        }
+
+        return col;
+    }
+}
@@ -3,7 +3,6 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -12,11 +11,18 @@
 import java.security.cert.Extension;
 import java.security.cert.X509Certificate;
 import java.text.ParseException;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1GeneralizedTime;
@@ -38,16 +44,47 @@
 import org.bouncycastle.asn1.x509.Extensions;
 import org.bouncycastle.jcajce.PKIXCertRevocationCheckerParameters;
 import org.bouncycastle.jcajce.util.JcaJceHelper;
-import org.bouncycastle.util.BigIntegers;
+import org.bouncycastle.util.Properties;
 import org.bouncycastle.util.io.Streams;
 
+/**
+ * Process wide cache of OCSP responses, keyed by responder and CertID.
+ * <p>
+ * Concurrent requests for the same response are coalesced, so that only one request is made to the responder. A
+ * cached or shared response is re-validated for each caller, and requests carrying a nonce bypass the cache. A
+ * cached response is used until its nextUpdate (or, if it has none, for DEFAULT_MAX_AGE after its thisUpdate), and a
+ * response that is requested again in the last quarter of that period is refreshed in the background. The total
+ * size of the cached responses is limited to "org.bouncycastle.ocsp.cache_max_bytes" bytes, least recently used
+ * responses being discarded first.
+ * </p>
+ */
 class OcspCache
 {
     private static final int DEFAULT_TIMEOUT = 15000;
     private static final int DEFAULT_MAX_RESPONSE_SIZE = 32 * 1024;
+    private static final int DEFAULT_MAX_CACHE_SIZE = 4 * 1024 * 1024;
+    private static final long DEFAULT_MAX_AGE = 60 * 60 * 1000L;
 
-    private static Map<URI, WeakReference<Map<CertID, OCSPResponse>>> cache
-        = Collections.synchronizedMap(new WeakHashMap<URI, WeakReference<Map<CertID, OCSPResponse>>>());
+    private static final int maxCacheSize = Properties.asInteger("org.bouncycastle.ocsp.cache_max_bytes",
+        DEFAULT_MAX_CACHE_SIZE);
+
+    // least recently used first; guarded by itself
+    private static final Map<CacheKey, CacheEntry> cache = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true);
+    private static long cacheSize = 0;
+
+    private static final ConcurrentMap<CacheKey, PendingResponse> pending
+        = new ConcurrentHashMap<CacheKey, PendingResponse>();
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong coalesced = new AtomicLong();
+    private static final AtomicLong fetches = new AtomicLong();
+    private static final AtomicLong fetchFailures = new AtomicLong();
+    private static final AtomicLong fetchMillis = new AtomicLong();
+    private static final AtomicLong refreshes = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    private static Executor refresher = null;
 
     static OCSPResponse getOcspResponse(
         CertID certID, PKIXCertRevocationCheckerParameters parameters,
@@ -55,56 +92,338 @@ static OCSPResponse getOcspResponse(
         JcaJceHelper helper)
         throws CertPathValidatorException
     {
-        Map<CertID, OCSPResponse> responseMap = null;
+        byte[] nonce = getNonce(ocspExtensions);
+
+        // a response to a request with a nonce can't be shared with other requests, or answered from the cache
+        if (nonce != null)
+        {
+            misses.incrementAndGet();
+
+            return fetchCounted(certID, parameters, ocspResponder, responderCert, ocspExtensions, nonce, helper);
+        }
+
+        CacheKey key = new CacheKey(ocspResponder, certID);
+
+        CacheEntry entry = getCacheEntry(key, parameters.getValidDate());
+        if (entry != null)
+        {
+            hits.incrementAndGet();
+
+            if (entry.isRefreshDue(System.currentTimeMillis()))
+            {
+                scheduleRefresh(key, certID, parameters, ocspResponder, responderCert, ocspExtensions, helper);
+            }
+
+            return validated(entry.response, parameters, responderCert, helper);
+        }
+
+        misses.incrementAndGet();
+
+        PendingResponse pendingResponse = new PendingResponse();
+        PendingResponse existing = pending.putIfAbsent(key, pendingResponse);
+        if (existing != null)
+        {
+            coalesced.incrementAndGet();
+
+            return validated(existing.await(parameters), parameters, responderCert, helper);
+        }
+
+        try
+        {
+            OCSPResponse response = fetchAndCache(key, certID, parameters, ocspResponder, responderCert,
+                ocspExtensions, helper);
+
+            pendingResponse.complete(response, null);
+
+            return response;
+        }
+        catch (CertPathValidatorException e)
+        {
+            pendingResponse.complete(null, e);
+
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            pendingResponse.complete(null, new CertPathValidatorException(e.getMessage(), e,
+                parameters.getCertPath(), parameters.getIndex()));
+
+            throw e;
+        }
+        finally
+        {
+            pending.remove(key, pendingResponse);
+        }
+    }
+
+    static OcspCacheStatistics getStatistics()
+    {
+        int entries;
+        long size;
+        synchronized (cache)
+        {
+            entries = cache.size();
+            size = cacheSize;
+        }
+
+        return new OcspCacheStatistics(hits.get(), misses.get(), coalesced.get(), fetches.get(), fetchFailures.get(),
+            fetchMillis.get(), refreshes.get(), evictions.get(), entries, size);
+    }
+
+    private static CacheEntry getCacheEntry(CacheKey key, Date validDate)
+    {
+        synchronized (cache)
+        {
+            CacheEntry entry = cache.get(key);
+            if (entry == null)
+            {
+                return null;
+            }
+
+            if (!validDate.before(entry.expiry))
+            {
+                removeCacheEntry(key);
+                return null;
+            }
+
+            // a response produced after the validation date tells us nothing about it
+            if (validDate.before(entry.thisUpdate))
+            {
+                return null;
+            }
+
+            return entry;
+        }
+    }
+
+    private static void addCacheEntry(CacheKey key, CacheEntry entry)
+    {
+        if (entry.size > maxCacheSize)
+        {
+            return;
+        }
 
-        WeakReference<Map<CertID, OCSPResponse>> markerRef = cache.get(ocspResponder);
-        if (markerRef != null)
+        synchronized (cache)
         {
-            responseMap = markerRef.get();
+            CacheEntry previous = cache.put(key, entry);
+            if (previous != null)
+            {
+                cacheSize -= previous.size;
+            }
+            cacheSize += entry.size;
+
+            Iterator<Map.Entry<CacheKey, CacheEntry>> it = cache.entrySet().iterator();
+            while (cacheSize > maxCacheSize && it.hasNext())
+            {
+                CacheEntry eldest = it.next().getValue();
+                it.remove();
+                cacheSize -= eldest.size;
+                evictions.incrementAndGet();
+            }
         }
+    }
 
-        if (responseMap != null)
+    private static void removeCacheEntry(CacheKey key)
+    {
+        synchronized (cache)
         {
-            OCSPResponse response = responseMap.get(certID);
-            if (response != null)
+            CacheEntry entry = cache.remove(key);
+            if (entry != null)
             {
-                BasicOCSPResponse basicResp = BasicOCSPResponse.getInstance(
-                    ASN1OctetString.getInstance(response.getResponseBytes().getResponse()).getOctets());
+                cacheSize -= entry.size;
+            }
+        }
+    }
 
-                ResponseData responseData = ResponseData.getInstance(basicResp.getTbsResponseData());
+    private static void scheduleRefresh(final CacheKey key, final CertID certID,
+        final PKIXCertRevocationCheckerParameters parameters, final URI ocspResponder,
+        final X509Certificate responderCert, final List<Extension> ocspExtensions, final JcaJceHelper helper)
+    {
+        final PendingResponse pendingResponse = new PendingResponse();
+        if (pending.putIfAbsent(key, pendingResponse) != null)
+        {
+            // already being fetched
+            return;
+        }
 
-                ASN1Sequence s = responseData.getResponses();
+        refreshes.incrementAndGet();
 
-                for (int i = 0; i != s.size(); i++)
+        getRefresher().execute(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    pendingResponse.complete(fetchAndCache(key, certID, parameters, ocspResponder, responderCert,
+                        ocspExtensions, helper), null);
+                }
+                catch (CertPathValidatorException e)
                 {
-                    SingleResponse resp = SingleResponse.getInstance(s.getObjectAt(i));
-
-                    if (certID.equals(resp.getCertID()))
-                    {
-                        ASN1GeneralizedTime nextUp = resp.getNextUpdate();
-                        try
-                        {
-                            if (nextUp != null && parameters.getValidDate().after(nextUp.getDate()))
-                            {
-                                responseMap.remove(certID);
-                                response = null;
-                            }
-                        }
-                        catch (ParseException e)
-                        {
-                            // this should never happen, but...
-                            responseMap.remove(certID);
-                            response = null;
-                        }
-                    }
+                    // the current response remains in use until it expires
+                    pendingResponse.complete(null, e);
                 }
-                if (response != null)
+                catch (RuntimeException e)
+                {
+                    pendingResponse.complete(null, new CertPathValidatorException(e.getMessage(), e,
+                        parameters.getCertPath(), parameters.getIndex()));
+                }
+                finally
+                {
+                    pending.remove(key, pendingResponse);
+                }
+            }
+        });
+    }
+
+    private static synchronized Executor getRefresher()
+    {
+        if (refresher == null)
+        {
+            refresher = Executors.newSingleThreadExecutor(new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "BC OCSP cache refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return refresher;
+    }
+
+    private static byte[] getNonce(List<Extension> ocspExtensions)
+    {
+        byte[] nonce = null;
+        for (int i = 0; i != ocspExtensions.size(); i++)
+        {
+            Extension ext = ocspExtensions.get(i);
+
+            if (OCSPObjectIdentifiers.id_pkix_ocsp_nonce.getId().equals(ext.getId()))
+            {
+                nonce = ext.getValue();
+            }
+        }
+        return nonce;
+    }
+
+    private static OCSPResponse fetchAndCache(
+        CacheKey key, CertID certID, PKIXCertRevocationCheckerParameters parameters,
+        URI ocspResponder, X509Certificate responderCert, List<Extension> ocspExtensions, JcaJceHelper helper)
+        throws CertPathValidatorException
+    {
+        OCSPResponse response = fetchCounted(certID, parameters, ocspResponder, responderCert, ocspExtensions, null,
+            helper);
+
+        CacheEntry entry = createCacheEntry(certID, response);
+        if (entry != null)
+        {
+            addCacheEntry(key, entry);
+        }
+
+        return response;
+    }
+
+    private static OCSPResponse fetchCounted(
+        CertID certID, PKIXCertRevocationCheckerParameters parameters,
+        URI ocspResponder, X509Certificate responderCert, List<Extension> ocspExtensions, byte[] nonce,
+        JcaJceHelper helper)
+        throws CertPathValidatorException
+    {
+        long start = System.currentTimeMillis();
+
+        fetches.incrementAndGet();
+        try
+        {
+            return fetch(certID, parameters, ocspResponder, responderCert, ocspExtensions, nonce, helper);
+        }
+        catch (CertPathValidatorException e)
+        {
+            fetchFailures.incrementAndGet();
+            throw e;
+        }
+        finally
+        {
+            fetchMillis.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * A response fetched for one validation is checked again against the responder certificate and trust anchor of
+     * any other validation it is handed to, as these need not be the same.
+     */
+    private static OCSPResponse validated(OCSPResponse response, PKIXCertRevocationCheckerParameters parameters,
+        X509Certificate responderCert, JcaJceHelper helper)
+        throws CertPathValidatorException
+    {
+        BasicOCSPResponse basicResp = BasicOCSPResponse.getInstance(
+            ASN1OctetString.getInstance(response.getResponseBytes().getResponse()).getOctets());
+
+        if (!ProvOcspRevocationChecker.validatedOcspResponse(basicResp, parameters, null, responderCert, helper))
+        {
+            throw new CertPathValidatorException(
+                "OCSP response failed to validate", null, parameters.getCertPath(), parameters.getIndex());
+        }
+
+        return response;
+    }
+
+    private static CacheEntry createCacheEntry(CertID certID, OCSPResponse response)
+    {
+        try
+        {
+            BasicOCSPResponse basicResp = BasicOCSPResponse.getInstance(
+                ASN1OctetString.getInstance(response.getResponseBytes().getResponse()).getOctets());
+
+            ResponseData responseData = ResponseData.getInstance(basicResp.getTbsResponseData());
+
+            ASN1Sequence s = responseData.getResponses();
+
+            for (int i = 0; i != s.size(); i++)
+            {
+                SingleResponse resp = SingleResponse.getInstance(s.getObjectAt(i));
+
+                if (isSameCertID(certID, resp.getCertID()))
                 {
-                    return response;
+                    Date thisUpdate = resp.getThisUpdate().getDate();
+
+                    ASN1GeneralizedTime nextUp = resp.getNextUpdate();
+                    Date expiry = nextUp != null
+                        ? nextUp.getDate()
+                        : new Date(thisUpdate.getTime() + DEFAULT_MAX_AGE);
+
+                    return new CacheEntry(response, response.getEncoded().length, thisUpdate, expiry);
                 }
             }
         }
+        catch (ParseException e)
+        {
+            // this should never happen, but...
+        }
+        catch (IOException e)
+        {
+            // ditto
+        }
+
+        // not cacheable
+        return null;
+    }
 
+    private static boolean isSameCertID(CertID a, CertID b)
+    {
+        // NOTE: The hash algorithm parameters may be absent in one and NULL in the other
+        return a.getSerialNumber().equals(b.getSerialNumber())
+            && a.getHashAlgorithm().getAlgorithm().equals(b.getHashAlgorithm().getAlgorithm())
+            && a.getIssuerNameHash().equals(b.getIssuerNameHash())
+            && a.getIssuerKeyHash().equals(b.getIssuerKeyHash());
+    }
+
+    private static OCSPResponse fetch(
+        CertID certID, PKIXCertRevocationCheckerParameters parameters,
+        URI ocspResponder, X509Certificate responderCert, List<Extension> ocspExtensions, byte[] nonce,
+        JcaJceHelper helper)
+        throws CertPathValidatorException
+    {
         URL ocspUrl;
         try
         {
@@ -126,17 +445,11 @@ static OCSPResponse getOcspResponse(
         List exts = ocspExtensions;
         ASN1EncodableVector requestExtensions = new ASN1EncodableVector();
 
-        byte[] nonce = null;
         for (int i = 0; i != exts.size(); i++)
         {
             Extension ext = (Extension)exts.get(i);
             byte[] value = ext.getValue();
 
-            if (OCSPObjectIdentifiers.id_pkix_ocsp_nonce.getId().equals(ext.getId()))
-            {
-                nonce = value;
-            }
-
             requestExtensions.add(new org.bouncycastle.asn1.x509.Extension(
                 new ASN1ObjectIdentifier(ext.getId()), ext.isCritical(), value));
         }
@@ -192,19 +505,6 @@ static OCSPResponse getOcspResponse(
                         "OCSP response failed to validate", null, parameters.getCertPath(), parameters.getIndex());
                 }
 
-                markerRef = cache.get(ocspResponder);
-                if (markerRef != null)
-                {
-                    responseMap = markerRef.get();
-                    responseMap.put(certID, response);
-                }
-                else
-                {
-                    responseMap = new HashMap<CertID, OCSPResponse>();
-                    responseMap.put(certID, response);
-                    cache.put(ocspResponder, new WeakReference<Map<CertID, OCSPResponse>>(responseMap));
-                }
-
                 return response;
             }
             else
@@ -220,4 +520,103 @@ static OCSPResponse getOcspResponse(
                      e, parameters.getCertPath(), parameters.getIndex());
         }
     }
+
+    private static class CacheKey
+    {
+        private final URI ocspResponder;
+        private final CertID certID;
+        private final int hashCode;
+
+        CacheKey(URI ocspResponder, CertID certID)
+        {
+            this.ocspResponder = ocspResponder;
+            this.certID = certID;
+            this.hashCode = 31 * ocspResponder.hashCode() + certID.hashCode();
+        }
+
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (o == this)
+            {
+                return true;
+            }
+            if (!(o instanceof CacheKey))
+            {
+                return false;
+            }
+
+            CacheKey other = (CacheKey)o;
+
+            return ocspResponder.equals(other.ocspResponder) && certID.equals(other.certID);
+        }
+    }
+
+    private static class CacheEntry
+    {
+        final OCSPResponse response;
+        final int size;
+        final Date thisUpdate;
+        final Date expiry;
+        final long refreshTime;
+
+        CacheEntry(OCSPResponse response, int size, Date thisUpdate, Date expiry)
+        {
+            this.response = response;
+            this.size = size;
+            this.thisUpdate = thisUpdate;
+            this.expiry = expiry;
+
+            // refresh in the last quarter of the validity period
+            long start = thisUpdate.getTime(), end = expiry.getTime();
+            this.refreshTime = end - Math.max(0L, end - start) / 4;
+        }
+
+        boolean isRefreshDue(long now)
+        {
+            return now >= refreshTime && now < expiry.getTime();
+        }
+    }
+
+    private static class PendingResponse
+    {
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile OCSPResponse response;
+        private volatile CertPathValidatorException exception;
+
+        void complete(OCSPResponse response, CertPathValidatorException exception)
+        {
+            this.response = response;
+            this.exception = exception;
+            done.countDown();
+        }
+
+        OCSPResponse await(PKIXCertRevocationCheckerParameters parameters)
+            throws CertPathValidatorException
+        {
+            try
+            {
+                done.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new CertPathValidatorException("interrupted waiting for OCSP response", e,
+                    parameters.getCertPath(), parameters.getIndex());
+            }
+
+            if (exception != null)
+            {
+                throw new CertPathValidatorException(exception.getMessage(), exception.getCause(),
+                    parameters.getCertPath(), parameters.getIndex());
+            }
+
+            return response;
+        }
+    }
 }
@@ -0,0 +1,141 @@
+package org.bouncycastle.jce.provider;
+
+/**
+ * A snapshot of the counters of the provider's OCSP response cache, used by the PKIX revocation checker when it
+ * contacts an OCSP responder. The cache size limit can be set in bytes using the property
+ * "org.bouncycastle.ocsp.cache_max_bytes".
+ */
+public final class OcspCacheStatistics
+{
+    private final long hits;
+    private final long misses;
+    private final long coalesced;
+    private final long fetches;
+    private final long fetchFailures;
+    private final long fetchMillis;
+    private final long refreshes;
+    private final long evictions;
+    private final int entries;
+    private final long size;
+
+    OcspCacheStatistics(long hits, long misses, long coalesced, long fetches, long fetchFailures, long fetchMillis,
+        long refreshes, long evictions, int entries, long size)
+    {
+        this.hits = hits;
+        this.misses = misses;
+        this.coalesced = coalesced;
+        this.fetches = fetches;
+        this.fetchFailures = fetchFailures;
+        this.fetchMillis = fetchMillis;
+        this.refreshes = refreshes;
+        this.evictions = evictions;
+        this.entries = entries;
+        this.size = size;
+    }
+
+    /**
+     * Return the current counters of the OCSP response cache.
+     *
+     * @return a snapshot of the cache statistics.
+     */
+    public static OcspCacheStatistics getInstance()
+    {
+        return OcspCache.getStatistics();
+    }
+
+    /**
+     * Return the number of lookups answered from the cache.
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Return the number of lookups not answered from the cache.
+     */
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Return the number of misses that waited for a request already in progress rather than making their own.
+     */
+    public long getCoalesced()
+    {
+        return coalesced;
+    }
+
+    /**
+     * Return the number of requests made to OCSP responders, including background refreshes.
+     */
+    public long getFetches()
+    {
+        return fetches;
+    }
+
+    /**
+     * Return the number of requests to OCSP responders that failed or returned a response that didn't validate.
+     */
+    public long getFetchFailures()
+    {
+        return fetchFailures;
+    }
+
+    /**
+     * Return the total time, in milliseconds, spent on requests to OCSP responders.
+     */
+    public long getFetchMillis()
+    {
+        return fetchMillis;
+    }
+
+    /**
+     * Return the average time, in milliseconds, of a request to an OCSP responder.
+     */
+    public long getAverageFetchMillis()
+    {
+        return fetches == 0 ? 0 : fetchMillis / fetches;
+    }
+
+    /**
+     * Return the number of background refreshes of cached responses started.
+     */
+    public long getRefreshes()
+    {
+        return refreshes;
+    }
+
+    /**
+     * Return the number of responses discarded to keep the cache within its size limit.
+     */
+    public long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Return the number of responses currently cached.
+     */
+    public int getEntries()
+    {
+        return entries;
+    }
+
+    /**
+     * Return the total encoded size, in bytes, of the responses currently cached.
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    public String toString()
+    {
+        return "OcspCacheStatistics(hits=" + hits + ", misses=" + misses + ", coalesced=" + coalesced
+            + ", fetches=" + fetches + ", fetchFailures=" + fetchFailures + ", averageFetchMillis="
+            + getAverageFetchMillis() + ", refreshes=" + refreshes + ", evictions=" + evictions
+            + ", entries=" + entries + ", size=" + size + ")";
+    }
+}
@@ -123,11 +123,28 @@ else if (params instanceof PKIXExtendedParameters)
         //
         // (d)
         // 
-        TrustAnchor trust;
+        TrustAnchor trust = null;
+
+        // a previously validated prefix of this path needs no signature verification up to the target certificate
+        PKIXValidatedPathCache pathCache = PKIXValidatedPathCache.getDefault();
+        byte[] pathCacheKey = null;
+        if (pathCache != null)
+        {
+            pathCacheKey = PKIXValidatedPathCache.calculateKey(certs, paramsPKIX.getSigProvider());
+            if (pathCacheKey != null)
+            {
+                trust = pathCache.getTrustAnchor(pathCacheKey, paramsPKIX.getTrustAnchors(), validityDate);
+            }
+        }
+        final boolean prefixVerified = (trust != null);
+
         try
         {
-            trust = CertPathValidatorUtilities.findTrustAnchor((X509Certificate) certs.get(certs.size() - 1),
-                    paramsPKIX.getTrustAnchors(), paramsPKIX.getSigProvider());
+            if (trust == null)
+            {
+                trust = CertPathValidatorUtilities.findTrustAnchor((X509Certificate) certs.get(certs.size() - 1),
+                        paramsPKIX.getTrustAnchors(), paramsPKIX.getSigProvider());
+            }
 
             if (trust == null)
             {
@@ -317,7 +334,7 @@ else if (params instanceof PKIXExtendedParameters)
             // first time from the TrustAnchor
             //
             cert = (X509Certificate) certs.get(index);
-            boolean verificationAlreadyPerformed = (index == certs.size() - 1);
+            boolean verificationAlreadyPerformed = (index == certs.size() - 1) || (prefixVerified && index > 0);
 
             try
             {
@@ -488,6 +505,11 @@ else if (params instanceof PKIXExtendedParameters)
 
         if ((explicitPolicy > 0) || (intersection != null))
         {
+            if (pathCacheKey != null && !prefixVerified)
+            {
+                pathCache.addValidated(pathCacheKey, certs, trust);
+            }
+
             return new PKIXCertPathValidatorResult(trust, intersection, cert.getPublicKey());
         }
 
@@ -0,0 +1,218 @@
+package org.bouncycastle.jce.provider;
+
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.util.DigestFactory;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Pack;
+import org.bouncycastle.util.Properties;
+import org.bouncycastle.util.Strings;
+
+/**
+ * A bounded cache of the certification path prefixes (trust anchor and intermediate certificates) that have been
+ * part of a successfully validated path.
+ * <p>
+ * When a path whose intermediate certificates are in the cache is validated again, the trust anchor search and the
+ * signature verification of the intermediate certificates are skipped; only the target certificate's signature is
+ * verified. All other processing (validity, revocation, policies, name constraints and any path checkers) is still
+ * carried out for every certificate, so the cache never changes the outcome of a validation. Entries are keyed on a
+ * digest of the intermediate certificates and the signature provider, and expire at the earliest notAfter of the
+ * trust anchor and intermediate certificates.
+ * </p><p>
+ * The cache used by the provider's PKIX CertPathValidator (and hence CertPathBuilder and the JSSE trust manager) is
+ * disabled by default; it is enabled by setting the property "org.bouncycastle.x509.validated_path_cache_size" to the
+ * maximum number of entries.
+ * </p>
+ */
+public class PKIXValidatedPathCache
+{
+    public static final String CACHE_SIZE_PROPERTY = "org.bouncycastle.x509.validated_path_cache_size";
+
+    private static PKIXValidatedPathCache defaultCache = null;
+
+    private final int maxSize;
+    private final Map entries;
+
+    /**
+     * Base constructor.
+     *
+     * @param maxSize the maximum number of path prefixes to hold.
+     */
+    public PKIXValidatedPathCache(final int maxSize)
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry eldest)
+            {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Return the cache configured by the {@link #CACHE_SIZE_PROPERTY} property.
+     *
+     * @return the default cache, or null if it is not enabled.
+     */
+    public static synchronized PKIXValidatedPathCache getDefault()
+    {
+        int size = Properties.asInteger(CACHE_SIZE_PROPERTY, 0);
+        if (size < 1)
+        {
+            defaultCache = null;
+        }
+        else if (defaultCache == null || defaultCache.maxSize != size)
+        {
+            defaultCache = new PKIXValidatedPathCache(size);
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Return the number of path prefixes currently held.
+     *
+     * @return the number of entries.
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * Calculate the cache key for the prefix of the given path, or null if the path has no intermediate certificates.
+     */
+    static byte[] calculateKey(List certs, String sigProvider)
+    {
+        int n = certs.size();
+        if (n < 2)
+        {
+            return null;
+        }
+
+        Digest digest = DigestFactory.createSHA256();
+        try
+        {
+            for (int index = n - 1; index >= 1; --index)
+            {
+                update(digest, ((X509Certificate)certs.get(index)).getEncoded());
+            }
+        }
+        catch (CertificateEncodingException e)
+        {
+            return null;
+        }
+
+        update(digest, sigProvider == null ? new byte[0] : Strings.toUTF8ByteArray(sigProvider));
+
+        byte[] key = new byte[digest.getDigestSize()];
+        digest.doFinal(key, 0);
+        return key;
+    }
+
+    /**
+     * Return the trust anchor a previously validated path prefix was found to chain to, if it is still valid and is
+     * one of the current trust anchors.
+     */
+    synchronized TrustAnchor getTrustAnchor(byte[] key, Set trustAnchors, Date validityDate)
+    {
+        Key k = new Key(key);
+        Entry entry = (Entry)entries.get(k);
+        if (entry == null)
+        {
+            return null;
+        }
+        if (!validityDate.before(entry.expiry))
+        {
+            entries.remove(k);
+            return null;
+        }
+
+        // NOTE: TrustAnchor doesn't override equals, so the anchor must be the same instance
+        return trustAnchors.contains(entry.trustAnchor) ? entry.trustAnchor : null;
+    }
+
+    /**
+     * Record a path prefix that is part of a successfully validated path.
+     */
+    synchronized void addValidated(byte[] key, List certs, TrustAnchor trustAnchor)
+    {
+        Date expiry = null;
+        if (trustAnchor.getTrustedCert() != null)
+        {
+            expiry = trustAnchor.getTrustedCert().getNotAfter();
+        }
+        for (int index = certs.size() - 1; index >= 1; --index)
+        {
+            Date notAfter = ((X509Certificate)certs.get(index)).getNotAfter();
+            if (expiry == null || notAfter.before(expiry))
+            {
+                expiry = notAfter;
+            }
+        }
+
+        entries.put(new Key(key), new Entry(trustAnchor, expiry));
+    }
+
+    private static void update(Digest digest, byte[] data)
+    {
+        byte[] length = Pack.intToBigEndian(data.length);
+        digest.update(length, 0, length.length);
+        digest.update(data, 0, data.length);
+    }
+
+    private static class Key
+    {
+        private final byte[] value;
+        private final int hashCode;
+
+        Key(byte[] value)
+        {
+            this.value = value;
+            this.hashCode = Arrays.hashCode(value);
+        }
+
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        public boolean equals(Object o)
+        {
+            return o instanceof Key && Arrays.areEqual(value, ((Key)o).value);
+        }
+    }
+
+    private static class Entry
+    {
+        final TrustAnchor trustAnchor;
+        final Date expiry;
+
+        Entry(TrustAnchor trustAnchor, Date expiry)
+        {
+            this.trustAnchor = trustAnchor;
+            this.expiry = expiry;
+        }
+    }
+}
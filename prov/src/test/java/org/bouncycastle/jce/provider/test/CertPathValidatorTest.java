@@ -76,6 +76,7 @@
 import org.bouncycastle.asn1.x509.X509Extensions;
 import org.bouncycastle.jce.X509Principal;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.jce.provider.PKIXValidatedPathCache;
 import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.Integers;
 import org.bouncycastle.util.Strings;
@@ -513,6 +514,7 @@ public void performTest()
         validateWithExtendedKeyUsage();
         testEmptyPath();
         checkInvalidCertPath();
+        checkValidatedPathCache();
     }
 
     // extended key usage chain
@@ -571,6 +573,82 @@ private void validateWithExtendedKeyUsage()
     static byte[] extInvExtCA = Base64.decode("MIICKDCCAZGgAwIBAgIGAV3ZIWorMA0GCSqGSIb3DQEBCwUAMBMxETAPBgNVBAMMCEtQMSBST09UMB4XDTE3MDgxMzAxMDcwN1oXDTE3MDgxMzAxMzcxMlowETEPMA0GA1UEAwwGS1AxIENBMIGfMA0GCSqGSIb3DQEBAQUAA4GNADCBiQKBgQCJKySmanEENpLJdPwpM/v0I7H0bW9ZlIxRpiL+/Z4uvF3j0r0O42Tm+dW8Ub42DzHcQ8pK/n/k2Wb4Jf7cP8+TGTAne3bgC24USW131XUZxaunGt4tCqZ0RNWpmBQUcUM0lgntDSfcvyv3QFB+nwLc93GYij9l3FaeUcHkwFiKsQIDAQABo4GIMIGFMEAGA1UdIwQ5MDeAFLnC9UF+JqEqboFH84ab9dEAkwEBoRekFTATMREwDwYDVQQDDAhLUDEgUk9PVIIGAV3ZIWoqMB0GA1UdDgQWBBQkr/0UP1MKPGQH7bkRNctHMsVQsjASBgNVHRMBAf8ECDAGAQH/AgEAMA4GA1UdDwEB/wQEAwIBhjANBgkqhkiG9w0BAQsFAAOBgQCZxLwkAPif1H2P398MHK3NLf3mrmLsP41ZphdHnSLNROlY9PdO5I/dfhElzVXW2oxecIIKbOQsjZe0FOSGvZHEhLftQmOdfGc5QfGf5w9CSFCCBe5vHdMjglRLVhNB51jz6DB7Dp0MjFDgkQI4lBHaiMVkE+HUZjNLwBddHH58Sw==");
     static byte[] extInvExtEE = Base64.decode("MIICNjCCAZ+gAwIBAgIGAV3ZIWosMA0GCSqGSIb3DQEBCwUAMBExDzANBgNVBAMMBktQMSBDQTAeFw0xNzA4MTMwMTA3MDdaFw0xNzA4MTMwMTM3MTJaMBExDzANBgNVBAMMBktQMSBFRTCBnzANBgkqhkiG9w0BAQEFAAOBjQAwgYkCgYEAj6WOoo8xHLLo+CT0l288xZDK3OsF64lPfNVkFnrRI65Ywl89M19nNF5Q24hF1FS6getO5oU+BhvRqft1/De22SME9SzKqs3G6uMxACKrMqgni1QBEOC/DdZ5Uaxh2s4lEgxbN0PQZIarAgLtAIgzRM4CrvofxFMwQy/neUuWmeMCAwEAAaOBmDCBlTBABgNVHSMEOTA3gBQkr/0UP1MKPGQH7bkRNctHMsVQsqEXpBUwEzERMA8GA1UEAwwIS1AxIFJPT1SCBgFd2SFqKzAdBgNVHQ4EFgQU/yuQXlvqXJQsbqB6whCPu5bwFCAwEgYDVR0TAQH/BAgwBgEB/wIBADAOBgNVHQ8BAf8EBAMCAYYwDgYDVR0PAQH/BAQDAgGGMA0GCSqGSIb3DQEBCwUAA4GBABYUGar9s7wlM3Qlnja7uc7U8FqU+xH4e8/Jk64ku7DdwXelEbKo/FTFAzh464aiFP4eMDOH7YThXyTruPudEAvYyWY7eaEgRqA2MmL0uWHSrN+HR9aBeqrMCJK/E2e1egvk2whJHMimhDUFJ3cIPsFhazMvLTnVgWGMjOqQtuP+");
 
+    private void checkValidatedPathCache()
+        throws Exception
+    {
+        CertificateFactory cf = CertificateFactory.getInstance("X.509", "BC");
+
+        X509Certificate rootCert = (X509Certificate)cf.generateCertificate(new ByteArrayInputStream(CertPathTest.rootCertBin));
+        X509Certificate interCert = (X509Certificate)cf.generateCertificate(new ByteArrayInputStream(CertPathTest.interCertBin));
+        X509Certificate finalCert = (X509Certificate)cf.generateCertificate(new ByteArrayInputStream(CertPathTest.finalCertBin));
+        X509Certificate otherCert = (X509Certificate)cf.generateCertificate(new ByteArrayInputStream(extEE));
+
+        List certchain = new ArrayList();
+        certchain.add(finalCert);
+        certchain.add(interCert);
+        CertPath cp = cf.generateCertPath(certchain);
+
+        certchain = new ArrayList();
+        certchain.add(otherCert);
+        certchain.add(interCert);
+        CertPath invalidCp = cf.generateCertPath(certchain);
+
+        Set trust = new HashSet();
+        trust.add(new TrustAnchor(rootCert, null));
+
+        PKIXParameters param = new PKIXParameters(trust);
+        param.setRevocationEnabled(false);
+        param.setDate(new Date(finalCert.getNotBefore().getTime() + 60 * 60 * 1000));
+
+        CertPathValidator cpv = CertPathValidator.getInstance("PKIX", "BC");
+
+        System.setProperty(PKIXValidatedPathCache.CACHE_SIZE_PROPERTY, "16");
+        try
+        {
+            PKIXValidatedPathCache cache = PKIXValidatedPathCache.getDefault();
+            isTrue(cache != null);
+            cache.clear();
+
+            PKIXCertPathValidatorResult result = (PKIXCertPathValidatorResult)cpv.validate(cp, param);
+            isTrue(result.getTrustAnchor().getTrustedCert().equals(rootCert));
+            isEquals(1, cache.size());
+
+            // validated again, using the cached prefix
+            result = (PKIXCertPathValidatorResult)cpv.validate(cp, param);
+            isTrue(result.getTrustAnchor().getTrustedCert().equals(rootCert));
+            isTrue(result.getPublicKey().equals(finalCert.getPublicKey()));
+            isEquals(1, cache.size());
+
+            // the target certificate is still verified against the cached prefix
+            try
+            {
+                cpv.validate(invalidCp, param);
+                fail("invalid path validated with cached prefix");
+            }
+            catch (CertPathValidatorException e)
+            {
+                isEquals(0, e.getIndex());
+            }
+
+            // a different trust anchor instance isn't served from the cache
+            Set otherTrust = new HashSet();
+            otherTrust.add(new TrustAnchor(rootCert, null));
+            param.setTrustAnchors(otherTrust);
+
+            result = (PKIXCertPathValidatorResult)cpv.validate(cp, param);
+            isTrue(result.getTrustAnchor().getTrustedCert().equals(rootCert));
+            isEquals(1, cache.size());
+
+            cache.clear();
+        }
+        finally
+        {
+            System.clearProperty(PKIXValidatedPathCache.CACHE_SIZE_PROPERTY);
+        }
+
+        isTrue(PKIXValidatedPathCache.getDefault() == null);
+    }
+
     private void checkInvalidCertPath()
         throws Exception
     {
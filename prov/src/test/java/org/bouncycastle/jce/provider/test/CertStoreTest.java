@@ -1,6 +1,12 @@
 package org.bouncycastle.jce.provider.test;
 
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.jcajce.PKIXCertStoreSelector;
+import org.bouncycastle.jcajce.PKIXIndexedCertStore;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.util.Store;
 import org.bouncycastle.util.test.SimpleTest;
 
 import java.io.ByteArrayInputStream;
@@ -26,6 +32,7 @@ public void performTest()
     {
         basicTest();
         orderTest();
+        indexedTest();
     }
 
     private void basicTest()
@@ -219,6 +226,124 @@ private void orderTest()
         }
     }
     
+    private void indexedTest()
+        throws Exception
+    {
+        CertificateFactory cf = CertificateFactory.getInstance("X.509", "BC");
+
+        X509Certificate rootCert = (X509Certificate)cf
+                .generateCertificate(new ByteArrayInputStream(
+                        CertPathTest.rootCertBin));
+        X509Certificate interCert = (X509Certificate)cf
+                .generateCertificate(new ByteArrayInputStream(
+                        CertPathTest.interCertBin));
+        X509Certificate finalCert = (X509Certificate)cf
+                .generateCertificate(new ByteArrayInputStream(
+                        CertPathTest.finalCertBin));
+        X509CRL rootCrl = (X509CRL)cf.generateCRL(new ByteArrayInputStream(
+                CertPathTest.rootCrlBin));
+
+        List list = new ArrayList();
+        list.add(rootCert);
+        list.add(interCert);
+        list.add(finalCert);
+        list.add(rootCrl);
+        CollectionCertStoreParameters ccsp = new CollectionCertStoreParameters(list);
+        CertStore store = CertStore.getInstance("Indexed", ccsp, "BC");
+
+        // the store is a snapshot of the collection
+        list.clear();
+
+        // Searching for interCert by subject
+        X509CertSelector targetConstraints = new X509CertSelector();
+        targetConstraints.setSubject(interCert.getSubjectX500Principal());
+        Collection certs = store.getCertificates(targetConstraints);
+        if (certs.size() != 1 || !certs.contains(interCert))
+        {
+            fail("interCert not found by subject");
+        }
+
+        // Searching for finalCert by serial number and issuer
+        targetConstraints = new X509CertSelector();
+        targetConstraints.setSerialNumber(finalCert.getSerialNumber());
+        targetConstraints.setIssuer(finalCert.getIssuerX500Principal());
+        certs = store.getCertificates(targetConstraints);
+        if (certs.size() != 1 || !certs.contains(finalCert))
+        {
+            fail("finalCert not found by issuer and serial number");
+        }
+
+        // Searching for a certificate by itself
+        targetConstraints = new X509CertSelector();
+        targetConstraints.setCertificate(rootCert);
+        certs = store.getCertificates(targetConstraints);
+        if (certs.size() != 1 || !certs.contains(rootCert))
+        {
+            fail("rootCert not found by certificate");
+        }
+
+        // Searching by subject key identifier, as for an authority key identifier during path building
+        byte[] ski = interCert.getExtensionValue(Extension.subjectKeyIdentifier.getId());
+        if (ski != null)
+        {
+            targetConstraints = new X509CertSelector();
+            targetConstraints.setSubjectKeyIdentifier(ASN1OctetString.getInstance(ski).getOctets());
+            certs = store.getCertificates(targetConstraints);
+            if (certs.size() != 1 || !certs.contains(interCert))
+            {
+                fail("interCert not found by subject key identifier");
+            }
+        }
+
+        targetConstraints = new X509CertSelector();
+        targetConstraints.setSubjectKeyIdentifier(new DEROctetString(new byte[20]).getEncoded());
+        certs = store.getCertificates(targetConstraints);
+        if (certs.size() != 0)
+        {
+            fail("unknown subject key identifier matched");
+        }
+
+        // Searching by a criterion that isn't indexed
+        targetConstraints = new X509CertSelector();
+        targetConstraints.setIssuer(rootCert.getSubjectX500Principal());
+        certs = store.getCertificates(targetConstraints);
+        if (certs.size() != 2 || !certs.contains(rootCert) || !certs.contains(interCert))
+        {
+            fail("certificates not found by issuer");
+        }
+
+        certs = store.getCertificates(null);
+        if (certs.size() != 3)
+        {
+            fail("wrong number of certificates");
+        }
+
+        Collection crls = store.getCRLs(new X509CRLSelector());
+        if (crls.size() != 1 || !crls.contains(rootCrl))
+        {
+            fail("rootCrl not found");
+        }
+
+        // Searching directly with a PKIXCertStoreSelector
+        List certList = new ArrayList();
+        certList.add(rootCert);
+        certList.add(interCert);
+        certList.add(finalCert);
+        PKIXIndexedCertStore indexedStore = new PKIXIndexedCertStore(certList);
+
+        targetConstraints = new X509CertSelector();
+        targetConstraints.setSubject(finalCert.getSubjectX500Principal());
+        certs = ((Store)indexedStore).getMatches(new PKIXCertStoreSelector.Builder(targetConstraints).build());
+        if (certs.size() != 1 || !certs.contains(finalCert))
+        {
+            fail("finalCert not found by PKIXCertStoreSelector");
+        }
+        if (indexedStore.size() != 3)
+        {
+            fail("wrong indexed store size");
+        }
+    }
+
     public String getName()
     {
         return "CertStore";
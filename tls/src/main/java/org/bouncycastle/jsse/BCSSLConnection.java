@@ -26,6 +26,15 @@
      */
     byte[] getChannelBinding(String channelBinding);
 
+    /**
+     * Returns whether the server accepted (TLS 1.3) early data for this connection. Early data is not
+     * protected against replay by TLS itself; see
+     * <a href="https://tools.ietf.org/html/rfc8446#section-8">RFC 8446 8</a> for details.
+     * 
+     * @return true if early data was accepted, otherwise false.
+     */
+    boolean isEarlyDataAccepted();
+
     /**
      * Returns the SSL session in use by this connection
      * @return The {@link BCExtendedSSLSession}.
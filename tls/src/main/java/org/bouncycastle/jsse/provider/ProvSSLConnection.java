@@ -46,6 +46,11 @@ public byte[] getChannelBinding(String channelBinding)
         throw new UnsupportedOperationException();
     }
 
+    public boolean isEarlyDataAccepted()
+    {
+        return tlsContext.getSecurityParametersConnection().isEarlyDataAccepted();
+    }
+
     public ProvSSLSession getSession()
     {
         return session;
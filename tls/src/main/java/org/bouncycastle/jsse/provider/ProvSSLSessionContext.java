@@ -16,6 +16,9 @@
 import javax.net.ssl.SSLSessionContext;
 
 import org.bouncycastle.tls.SessionID;
+import org.bouncycastle.tls.SessionTicketKeyRing;
+import org.bouncycastle.tls.StrikeRegister;
+import org.bouncycastle.tls.TlsAntiReplayStore;
 import org.bouncycastle.tls.TlsSession;
 import org.bouncycastle.tls.TlsUtils;
 import org.bouncycastle.tls.crypto.impl.jcajce.JcaTlsCrypto;
@@ -28,6 +31,9 @@
     private static final int provSessionCacheSize = PropertyUtils
         .getIntegerSystemProperty("javax.net.ssl.sessionCacheSize", 20480, 0, Integer.MAX_VALUE);
 
+    private static final int provAntiReplayCapacity = PropertyUtils
+        .getIntegerSystemProperty("org.bouncycastle.jsse.server.antiReplayCapacity", 10000, 1, Integer.MAX_VALUE);
+
     // NOTE: This is configured as a simple LRU cache using the "access order" constructor
     @SuppressWarnings("serial")
     protected final Map<SessionID, SessionEntry> sessionsByID = new LinkedHashMap<SessionID, SessionEntry>(16, 0.75f, true)
@@ -49,6 +55,8 @@ protected boolean removeEldestEntry(Map.Entry<SessionID, SessionEntry> eldest)
 
     protected int sessionCacheSize = provSessionCacheSize;
     protected int sessionTimeoutSeconds = 86400; // 24hrs (in seconds)
+    protected SessionTicketKeyRing sessionTicketKeyRing = null;
+    protected TlsAntiReplayStore antiReplayStore = null;
 
     ProvSSLSessionContext(ContextData contextData)
     {
@@ -65,6 +73,30 @@ JcaTlsCrypto getCrypto()
         return contextData.getCrypto();
     }
 
+    synchronized SessionTicketKeyRing getSessionTicketKeyRing()
+    {
+        if (null == sessionTicketKeyRing)
+        {
+            long ticketLifetime = SessionTicketKeyRing.MAX_TICKET_LIFETIME;
+            if (sessionTimeoutSeconds > 0)
+            {
+                ticketLifetime = Math.min(ticketLifetime, sessionTimeoutSeconds);
+            }
+
+            this.sessionTicketKeyRing = new SessionTicketKeyRing(getCrypto(), ticketLifetime);
+        }
+        return sessionTicketKeyRing;
+    }
+
+    synchronized TlsAntiReplayStore getAntiReplayStore()
+    {
+        if (null == antiReplayStore)
+        {
+            this.antiReplayStore = new StrikeRegister(provAntiReplayCapacity);
+        }
+        return antiReplayStore;
+    }
+
     synchronized ProvSSLSession getSessionImpl(byte[] sessionID)
     {
         processQueue();
@@ -208,6 +240,9 @@ public synchronized void setSessionTimeout(int seconds) throws IllegalArgumentEx
 
         this.sessionTimeoutSeconds = seconds;
 
+        // NOTE: Tickets issued under the old timeout will no longer be accepted
+        this.sessionTicketKeyRing = null;
+
         removeAllExpiredSessions();
     }
 
@@ -35,7 +35,9 @@
 import org.bouncycastle.tls.SecurityParameters;
 import org.bouncycastle.tls.ServerName;
 import org.bouncycastle.tls.SessionParameters;
+import org.bouncycastle.tls.SessionTicketKeyRing;
 import org.bouncycastle.tls.SignatureAndHashAlgorithm;
+import org.bouncycastle.tls.TlsAntiReplayStore;
 import org.bouncycastle.tls.TlsCredentials;
 import org.bouncycastle.tls.TlsDHUtils;
 import org.bouncycastle.tls.TlsExtensionsUtils;
@@ -72,6 +74,12 @@
     private static final boolean provServerEnableSessionResumption = PropertyUtils
         .getBooleanSystemProperty("org.bouncycastle.jsse.server.enableSessionResumption", true);
 
+    private static final boolean provServerEnableSessionTickets13 = PropertyUtils
+        .getBooleanSystemProperty("jdk.tls.server.enableSessionTicketExtension", true);
+
+    private static final int provServerMaxEarlyDataSize = PropertyUtils
+        .getIntegerSystemProperty("org.bouncycastle.jsse.server.maxEarlyDataSize", 0, 0, Integer.MAX_VALUE);
+
     // TODO[jsse] Support status_request and status_request_v2 extensions
 //    private static final boolean provServerEnableStatusRequest = PropertyUtils.getBooleanSystemProperty(
 //        "jdk.tls.server.enableStatusRequestExtension", false);
@@ -604,10 +612,59 @@ public TlsSession getSessionToResume(byte[] sessionID)
         return null;
     }
 
+    @Override
+    public SessionTicketKeyRing getSessionTicketKeyRing()
+    {
+        if (!provServerEnableSessionResumption || !provServerEnableSessionTickets13)
+        {
+            return null;
+        }
+
+        return manager.getContextData().getServerSessionContext().getSessionTicketKeyRing();
+    }
+
+    @Override
+    public long getMaxEarlyDataSize()
+    {
+        return provServerMaxEarlyDataSize;
+    }
+
+    @Override
+    public TlsAntiReplayStore getAntiReplayStore()
+    {
+        if (provServerMaxEarlyDataSize < 1)
+        {
+            return null;
+        }
+
+        return manager.getContextData().getServerSessionContext().getAntiReplayStore();
+    }
+
+    @Override
+    public boolean allowSessionTicketResumption(SessionParameters sessionParameters) throws IOException
+    {
+        if (!Arrays.contains(getCipherSuites(), sessionParameters.getCipherSuite()))
+        {
+            return false;
+        }
+
+        if (sslParameters.getNeedClientAuth())
+        {
+            Certificate peerCertificate = sessionParameters.getPeerCertificate();
+            if (null == peerCertificate || peerCertificate.isEmpty())
+            {
+                LOG.finest("Session ticket not resumable - client authentication required");
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     @Override
     public byte[] getNewSessionID()
     {
-        // TODO[tls13] Resumption/PSK
+        // NOTE: TLS 1.3 sessions are only resumed via (stateless) session tickets
         if (!provServerEnableSessionResumption || TlsUtils.isTLSv13(context))
         {
             return null;
@@ -627,6 +684,12 @@ public void notifySession(TlsSession session)
             // -DM Hex.toHexString
             LOG.fine("Server resumed session: " + Hex.toHexString(sessionID));
         }
+        else if (context.getSecurityParametersHandshake().isResumedSession())
+        {
+            this.sslSession = null;
+
+            LOG.fine("Server resumed session from a session ticket");
+        }
         else
         {
             this.sslSession = null;
@@ -745,7 +808,7 @@ public synchronized void notifyHandshakeComplete() throws IOException
             String peerHost = manager.getPeerHost();
             int peerPort = manager.getPeerPort();
             JsseSessionParameters jsseSessionParameters = new JsseSessionParameters(null, matchedSNIServerName);
-            // TODO[tls13] Resumption/PSK
+            // NOTE: TLS 1.3 sessions aren't cached; they are resumed via (stateless) session tickets
             boolean addToCache = provServerEnableSessionResumption && !TlsUtils.isTLSv13(context)
                 && context.getSecurityParametersConnection().isExtendedMasterSecret();
 
@@ -487,4 +487,15 @@ public void notifyNewSessionTicket(NewSessionTicket newSessionTicket)
         throws IOException
     {
     }
+
+    public void notifyResumableSession(TlsSession session)
+        throws IOException
+    {
+    }
+
+    public byte[] getEarlyData()
+        throws IOException
+    {
+        return null;
+    }
 }
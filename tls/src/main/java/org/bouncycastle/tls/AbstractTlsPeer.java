@@ -82,6 +82,11 @@ public short[] getPskKeyExchangeModes()
         return new short[]{ PskKeyExchangeMode.psk_dhe_ke };
     }
 
+    public TlsCertificateCompressor[] getCertificateCompressors()
+    {
+        return null;
+    }
+
     public boolean requiresCloseNotify()
     {
         return true;
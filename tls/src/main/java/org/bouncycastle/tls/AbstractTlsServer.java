@@ -288,6 +288,26 @@ public TlsPSKExternal getExternalPSK(Vector identities)
         return null;
     }
 
+    public SessionTicketKeyRing getSessionTicketKeyRing()
+    {
+        return null;
+    }
+
+    public boolean allowSessionTicketResumption(SessionParameters sessionParameters) throws IOException
+    {
+        return true;
+    }
+
+    public long getMaxEarlyDataSize()
+    {
+        return 0L;
+    }
+
+    public TlsAntiReplayStore getAntiReplayStore()
+    {
+        return null;
+    }
+
     public void notifySession(TlsSession session)
     {
     }
@@ -0,0 +1,135 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+import java.util.Hashtable;
+
+import org.bouncycastle.util.Arrays;
+
+/**
+ * A {@link TlsCertificateCompressor} that remembers the output of another compressor for recently compressed
+ * Certificate messages. A server normally sends the same few certificate chains (one per credential) to every
+ * client, so sharing an instance between connections means each chain is only compressed once.
+ * <p>
+ * Entries are keyed on the complete encoding of the Certificate message, so a chain sent with different per-entry
+ * extensions (e.g. a stapled OCSP response that has been refreshed) is compressed again. When the cache is full, the
+ * oldest entry is discarded.
+ * </p><p>
+ * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+ * </p>
+ */
+public class CachedCertificateCompressor
+    implements TlsCertificateCompressor
+{
+    /**
+     * The default number of compressed Certificate messages to remember.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private static final class Key
+    {
+        private final byte[] encoding;
+        private final int hashCode;
+
+        Key(byte[] encoding)
+        {
+            this.encoding = encoding;
+            this.hashCode = Arrays.hashCode(encoding);
+        }
+
+        public boolean equals(Object obj)
+        {
+            return obj instanceof Key && Arrays.areEqual(encoding, ((Key)obj).encoding);
+        }
+
+        public int hashCode()
+        {
+            return hashCode;
+        }
+    }
+
+    protected final TlsCertificateCompressor compressor;
+    protected final int capacity;
+
+    // NOTE: Keys are held in a ring, in order of insertion
+    private final Key[] keys;
+    private final Hashtable cache;
+    private int head = 0, count = 0;
+
+    public CachedCertificateCompressor(TlsCertificateCompressor compressor)
+    {
+        this(compressor, DEFAULT_CAPACITY);
+    }
+
+    public CachedCertificateCompressor(TlsCertificateCompressor compressor, int capacity)
+    {
+        if (null == compressor)
+        {
+            throw new NullPointerException("'compressor' cannot be null");
+        }
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("'capacity' must be positive");
+        }
+
+        this.compressor = compressor;
+        this.capacity = capacity;
+        this.keys = new Key[capacity];
+        this.cache = new Hashtable();
+    }
+
+    public int getAlgorithm()
+    {
+        return compressor.getAlgorithm();
+    }
+
+    public byte[] compress(byte[] certificateMessage) throws IOException
+    {
+        Key key = new Key(certificateMessage);
+
+        synchronized (this)
+        {
+            byte[] compressed = (byte[])cache.get(key);
+            if (null != compressed)
+            {
+                return compressed;
+            }
+        }
+
+        // NOTE: Compress outside the lock; concurrent misses for the same message just do redundant work
+        byte[] compressed = compressor.compress(certificateMessage);
+
+        synchronized (this)
+        {
+            if (!cache.containsKey(key))
+            {
+                if (count == capacity)
+                {
+                    cache.remove(keys[head]);
+                    keys[head] = key;
+                    head = (head + 1) % capacity;
+                }
+                else
+                {
+                    keys[(head + count) % capacity] = key;
+                    ++count;
+                }
+                cache.put(key, compressed);
+            }
+        }
+
+        return compressed;
+    }
+
+    public byte[] decompress(byte[] compressedCertificateMessage, int uncompressedLength) throws IOException
+    {
+        return compressor.decompress(compressedCertificateMessage, uncompressedLength);
+    }
+
+    /**
+     * @return the number of compressed Certificate messages currently remembered.
+     */
+    public synchronized int size()
+    {
+        return count;
+    }
+}
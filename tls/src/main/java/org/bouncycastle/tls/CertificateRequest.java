@@ -56,6 +56,7 @@ private static Vector checkSupportedSignatureAlgorithms(Vector supportedSignatur
     protected final Vector supportedSignatureAlgorithms;
     protected final Vector supportedSignatureAlgorithmsCert;
     protected final Vector certificateAuthorities;
+    protected final int[] certificateCompressionAlgorithms;
 
     /**
      * @param certificateTypes       see {@link ClientCertificateType} for valid constants.
@@ -64,12 +65,25 @@ private static Vector checkSupportedSignatureAlgorithms(Vector supportedSignatur
     public CertificateRequest(short[] certificateTypes, Vector supportedSignatureAlgorithms,
         Vector certificateAuthorities)
     {
-        this(null, certificateTypes, supportedSignatureAlgorithms, null, certificateAuthorities);
+        this(null, certificateTypes, supportedSignatureAlgorithms, null, certificateAuthorities, null);
     }
 
     // TODO[tls13] Prefer to manage the certificateRequestContext internally only? 
     public CertificateRequest(byte[] certificateRequestContext, Vector supportedSignatureAlgorithms,
         Vector supportedSignatureAlgorithmsCert, Vector certificateAuthorities) throws IOException
+    {
+        this(certificateRequestContext, supportedSignatureAlgorithms, supportedSignatureAlgorithmsCert,
+            certificateAuthorities, null);
+    }
+
+    /**
+     * @param certificateCompressionAlgorithms
+     *            the {@link CertificateCompressionAlgorithm} values (RFC 8879) that the client may use to
+     *            compress its Certificate message, or null.
+     */
+    public CertificateRequest(byte[] certificateRequestContext, Vector supportedSignatureAlgorithms,
+        Vector supportedSignatureAlgorithmsCert, Vector certificateAuthorities, int[] certificateCompressionAlgorithms)
+        throws IOException
     {
         /*
          * TODO[tls13] Removed certificateTypes, added certificate_request_context, added extensions
@@ -79,11 +93,11 @@ public CertificateRequest(byte[] certificateRequestContext, Vector supportedSign
 
         this(certificateRequestContext, null,
             checkSupportedSignatureAlgorithms(supportedSignatureAlgorithms, AlertDescription.internal_error),
-            supportedSignatureAlgorithmsCert, certificateAuthorities);
+            supportedSignatureAlgorithmsCert, certificateAuthorities, certificateCompressionAlgorithms);
     }
 
     private CertificateRequest(byte[] certificateRequestContext, short[] certificateTypes, Vector supportedSignatureAlgorithms,
-        Vector supportedSignatureAlgorithmsCert, Vector certificateAuthorities)
+        Vector supportedSignatureAlgorithmsCert, Vector certificateAuthorities, int[] certificateCompressionAlgorithms)
     {
         if (null != certificateRequestContext && !TlsUtils.isValidUint8(certificateRequestContext.length))
         {
@@ -100,6 +114,7 @@ private CertificateRequest(byte[] certificateRequestContext, short[] certificate
         this.supportedSignatureAlgorithms = supportedSignatureAlgorithms;
         this.supportedSignatureAlgorithmsCert = supportedSignatureAlgorithmsCert;
         this.certificateAuthorities = certificateAuthorities;
+        this.certificateCompressionAlgorithms = certificateCompressionAlgorithms;
     }
 
     public byte[] getCertificateRequestContext()
@@ -141,6 +156,15 @@ public Vector getCertificateAuthorities()
         return certificateAuthorities;
     }
 
+    /**
+     * @return an array of {@link CertificateCompressionAlgorithm} values (RFC 8879) that the client may use to
+     *         compress its Certificate message, or null if none were specified.
+     */
+    public int[] getCertificateCompressionAlgorithms()
+    {
+        return certificateCompressionAlgorithms;
+    }
+
     public boolean hasCertificateRequestContext(byte[] certificateRequestContext)
     {
         return Arrays.areEqual(this.certificateRequestContext, certificateRequestContext);
@@ -186,6 +210,11 @@ public void encode(TlsContext context, OutputStream output)
                 TlsExtensionsUtils.addCertificateAuthoritiesExtension(extensions, certificateAuthorities);
             }
 
+            if (null != certificateCompressionAlgorithms)
+            {
+                TlsExtensionsUtils.addCompressCertificateExtension(extensions, certificateCompressionAlgorithms);
+            }
+
             byte[] extEncoding = TlsProtocol.writeExtensionsData(extensions);
 
             TlsUtils.writeOpaque16(extEncoding, output);
@@ -263,9 +292,10 @@ public static CertificateRequest parse(TlsContext context, InputStream input)
             Vector supportedSignatureAlgorithmsCert = TlsExtensionsUtils
                 .getSignatureAlgorithmsCertExtension(extensions);
             Vector certificateAuthorities = TlsExtensionsUtils.getCertificateAuthoritiesExtension(extensions);
+            int[] certificateCompressionAlgorithms = TlsExtensionsUtils.getCompressCertificateExtension(extensions);
 
             return new CertificateRequest(certificateRequestContext, supportedSignatureAlgorithms,
-                supportedSignatureAlgorithmsCert, certificateAuthorities);
+                supportedSignatureAlgorithmsCert, certificateAuthorities, certificateCompressionAlgorithms);
         }
 
         final boolean isTLSv12 = TlsUtils.isTLSv12(negotiatedVersion);
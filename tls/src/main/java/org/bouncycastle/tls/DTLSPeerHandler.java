@@ -0,0 +1,79 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+
+/**
+ * Callbacks through which a {@link DTLSServerEndpoint} hands each verified peer to the application.
+ * <p>
+ * Once a peer's handshake has completed the endpoint is event driven: the methods taking a transport are called on
+ * one of the endpoint's executor threads as the peer's datagrams arrive, never more than one at a time for a given
+ * peer. They should return promptly and must not block in {@link DTLSTransport#receive}, the data received is passed
+ * to {@link #handleData}. The transport may be used to send, or closed, at any time.
+ * </p><p>
+ * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+ * </p>
+ */
+public interface DTLSPeerHandler
+{
+    /**
+     * Create the {@link TlsServer} that will perform the handshake with a new peer. Since the endpoint cannot
+     * otherwise reclaim a peer that stops responding mid-handshake, the server should return a non-zero value from
+     * {@link TlsPeer#getHandshakeTimeoutMillis()}.
+     *
+     * @param peerAddress
+     *            the address of the peer.
+     * @return a new {@link TlsServer}.
+     * @throws IOException
+     */
+    TlsServer createServer(SocketAddress peerAddress) throws IOException;
+
+    /**
+     * Notifies the application that the handshake with a peer has completed.
+     *
+     * @param peerAddress
+     *            the address of the peer.
+     * @param transport
+     *            the established {@link DTLSTransport}.
+     * @throws IOException
+     */
+    void notifyPeerConnected(SocketAddress peerAddress, DTLSTransport transport) throws IOException;
+
+    /**
+     * Handle application data received from a peer.
+     *
+     * @param peerAddress
+     *            the address of the peer.
+     * @param transport
+     *            the established {@link DTLSTransport}.
+     * @param buf
+     *            the buffer holding the data, only valid for the duration of the call.
+     * @param off
+     *            the offset of the data in buf.
+     * @param len
+     *            the length of the data.
+     * @throws IOException
+     */
+    void handleData(SocketAddress peerAddress, DTLSTransport transport, byte[] buf, int off, int len)
+        throws IOException;
+
+    /**
+     * Notifies the application that an established peer's connection has been closed, either by the peer or by the
+     * endpoint because the peer was idle.
+     *
+     * @param peerAddress
+     *            the address of the peer.
+     */
+    void notifyPeerClosed(SocketAddress peerAddress);
+
+    /**
+     * Notifies the application that a peer was dropped because its handshake failed or a callback for it threw an
+     * exception, or that the endpoint itself failed (in which case <code>peerAddress</code> is null).
+     *
+     * @param peerAddress
+     *            the address of the peer, or null.
+     * @param cause
+     *            the exception that ended the connection.
+     */
+    void notifyPeerFailed(SocketAddress peerAddress, Exception cause);
+}
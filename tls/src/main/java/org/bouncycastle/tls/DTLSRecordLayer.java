@@ -15,8 +15,8 @@
 class DTLSRecordLayer
     implements DatagramTransport
 {
-    private static final int RECORD_HEADER_LENGTH = 13;
-    private static final int MAX_FRAGMENT_LENGTH = 1 << 14;
+    static final int RECORD_HEADER_LENGTH = 13;
+    static final int MAX_FRAGMENT_LENGTH = 1 << 14;
     private static final long TCP_MSL = 1000L * 60 * 2;
     private static final long RETRANSMIT_TIMEOUT = TCP_MSL * 2;
 
@@ -318,6 +318,12 @@ else if (Timeout.hasExpired(heartbeatResendTimeout, currentTimeMillis))
                 return processed;
             }
 
+            // NOTE: After a close_notify from the peer, the transport has been closed; signal end of stream
+            if (closed)
+            {
+                return -1;
+            }
+
             currentTimeMillis = System.currentTimeMillis();
             waitMillis = Timeout.getWaitMillis(timeout, currentTimeMillis);
         }
@@ -325,6 +331,35 @@ else if (Timeout.hasExpired(heartbeatResendTimeout, currentTimeMillis))
         return -1;
     }
 
+    /*
+     * Process the records that have already been received, without waiting for more. The transport must return -1
+     * at once when it has no datagram, whatever the wait passed to it. Returns the length of the first application
+     * data found, or -1 once there are no records left (or the connection has been closed by the peer).
+     */
+    int receivePending(byte[] buf, int off, int len)
+        throws IOException
+    {
+        int receiveLimit = Math.min(len, getReceiveLimit()) + RECORD_HEADER_LENGTH;
+        byte[] record = new byte[receiveLimit];
+
+        while (!closed)
+        {
+            int received = receiveRecord(record, 0, receiveLimit, 1);
+            if (received < 0)
+            {
+                break;
+            }
+
+            int processed = processRecord(received, record, buf, off);
+            if (processed >= 0)
+            {
+                return processed;
+            }
+        }
+
+        return -1;
+    }
+
     public void send(byte[] buf, int off, int len)
         throws IOException
     {
@@ -13,7 +13,7 @@
 class DTLSReliableHandshake
 {
     private static final int MAX_RECEIVE_AHEAD = 16;
-    private static final int MESSAGE_HEADER_LENGTH = 12;
+    static final int MESSAGE_HEADER_LENGTH = 12;
 
     static final int INITIAL_RESEND_MILLIS = 1000;
     private static final int MAX_RESEND_MILLIS = 60000;
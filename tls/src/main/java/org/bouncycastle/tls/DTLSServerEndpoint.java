@@ -0,0 +1,727 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.bouncycastle.util.Strings;
+
+/**
+ * A DTLS server endpoint serving any number of peers over a single (unconnected) {@link DatagramChannel}.
+ * <p>
+ * A dispatcher thread (see {@link #run()}) reads every datagram from the channel, which is used in non-blocking
+ * mode, and routes it to the state of the peer it came from. Datagrams from unknown peers are passed to a
+ * {@link DTLSVerifier}, so that a flood of ClientHellos only costs a HelloVerifyRequest each; a peer is only created
+ * once it has returned a valid cookie.
+ * </p><p>
+ * Each new peer's handshake runs as a task on the supplied {@link Executor}, reading from a bounded queue of the
+ * datagrams routed to it. The handshake protocol is blocking, so this task holds its thread while it waits for the
+ * peer's next flight; it is bounded by the server's handshake timeout, and a peer only counts against the maximum
+ * number of peers once its task has started. After the handshake no thread is held for a peer: when datagrams
+ * arrive for it a short task is run on the executor which processes the records already received, hands any
+ * application data to the {@link DTLSPeerHandler}, and returns. Established peers that receive nothing for the idle
+ * timeout (see {@link #setIdleTimeoutMillis(int)}) are closed, so a small thread pool can serve many connected peers.
+ * </p><p>
+ * Peers are identified by their {@link SocketAddress}. Since this implementation does not negotiate DTLS connection
+ * IDs (RFC 9146), routing by connection ID is left to subclasses overriding {@link #getPeerKey}.
+ * </p><p>
+ * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+ * </p>
+ */
+public class DTLSServerEndpoint
+    implements Runnable, TlsCloseable
+{
+    protected final static int MIN_IP_OVERHEAD = 20;
+    protected final static int MAX_IP_OVERHEAD = MIN_IP_OVERHEAD + 64;
+    protected final static int UDP_OVERHEAD = 8;
+
+    // The maximum number of datagrams queued for a peer that isn't reading them
+    protected final static int PEER_QUEUE_LIMIT = 64;
+
+    // The longest the dispatcher waits before checking for idle peers
+    protected final static int MAX_SWEEP_MILLIS = 1000;
+
+    protected final DatagramChannel channel;
+    protected final int receiveLimit, sendLimit;
+    protected final DTLSVerifier verifier;
+    protected final Executor executor;
+    protected final DTLSPeerHandler handler;
+    protected final int maxPeers;
+
+    private final Selector selector;
+    private final Hashtable peers = new Hashtable();
+    private final DTLSServerProtocol serverProtocol = new DTLSServerProtocol();
+
+    // The number of peers whose handshake task has started, guarded by 'peers'
+    private int activePeers = 0;
+
+    private volatile int idleTimeoutMillis = 5 * 60 * 1000;
+    private volatile boolean closed = false;
+
+    /**
+     * @param channel
+     *            a bound {@link DatagramChannel}, which must not be connected. It will be put in non-blocking mode.
+     * @param mtu
+     *            the path MTU, used to determine the receive and send limits of each peer.
+     * @param verifier
+     *            the {@link DTLSVerifier} used to check the cookies of new peers.
+     * @param executor
+     *            the {@link Executor} that runs the handshakes, and the processing of received records, for the peers.
+     * @param handler
+     *            the {@link DTLSPeerHandler} that creates the server for, and serves, each peer.
+     * @param maxPeers
+     *            the maximum number of peers to serve at once, and to hold waiting for their handshake to start;
+     *            further new peers are ignored.
+     * @throws IOException
+     */
+    public DTLSServerEndpoint(DatagramChannel channel, int mtu, DTLSVerifier verifier, Executor executor,
+        DTLSPeerHandler handler, int maxPeers) throws IOException
+    {
+        if (null == channel || null == verifier || null == executor || null == handler)
+        {
+            throw new NullPointerException();
+        }
+        if (channel.isConnected())
+        {
+            throw new IllegalArgumentException("'channel' must not be connected");
+        }
+        if (maxPeers < 1)
+        {
+            throw new IllegalArgumentException("'maxPeers' must be positive");
+        }
+
+        this.channel = channel;
+        this.receiveLimit = mtu - MIN_IP_OVERHEAD - UDP_OVERHEAD;
+        this.sendLimit = mtu - MAX_IP_OVERHEAD - UDP_OVERHEAD;
+        this.verifier = verifier;
+        this.executor = executor;
+        this.handler = handler;
+        this.maxPeers = maxPeers;
+
+        channel.configureBlocking(false);
+
+        this.selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+    }
+
+    /**
+     * Set the time after which an established peer that has sent nothing is closed, 5 minutes by default.
+     *
+     * @param idleTimeoutMillis
+     *            the idle timeout in milliseconds, or 0 to never close idle peers.
+     */
+    public void setIdleTimeoutMillis(int idleTimeoutMillis)
+    {
+        if (idleTimeoutMillis < 0)
+        {
+            throw new IllegalArgumentException("'idleTimeoutMillis' cannot be negative");
+        }
+
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        selector.wakeup();
+    }
+
+    /**
+     * @return the number of peers currently being served, including those waiting for their handshake to start.
+     */
+    public int getPeerCount()
+    {
+        return peers.size();
+    }
+
+    /**
+     * Dispatch received datagrams until the endpoint is closed. This is normally run on a dedicated thread.
+     */
+    public void run()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(receiveLimit);
+
+        try
+        {
+            while (!closed)
+            {
+                int idleMillis = idleTimeoutMillis;
+
+                selector.select(idleMillis > 0 ? Math.min(idleMillis, MAX_SWEEP_MILLIS) : 0);
+                selector.selectedKeys().clear();
+
+                if (idleMillis > 0)
+                {
+                    closeIdlePeers(System.currentTimeMillis() - idleMillis);
+                }
+
+                SocketAddress address;
+                while (!closed && null != (address = channel.receive(buffer)))
+                {
+                    buffer.flip();
+                    dispatch(address, buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        catch (ClosedChannelException e)
+        {
+            // Closed concurrently
+        }
+        catch (IOException e)
+        {
+            if (!closed)
+            {
+                handler.notifyPeerFailed(null, e);
+            }
+        }
+        finally
+        {
+            closeQuietly();
+
+            try
+            {
+                selector.close();
+            }
+            catch (IOException e)
+            {
+                // Ignore
+            }
+        }
+    }
+
+    /**
+     * Close the channel and all peer transports. The dispatcher thread exits, and handshakes in progress fail on their
+     * next receive.
+     */
+    public void close() throws IOException
+    {
+        this.closed = true;
+        selector.wakeup();
+
+        try
+        {
+            channel.close();
+        }
+        finally
+        {
+            closePeers();
+        }
+    }
+
+    /**
+     * Determine the key under which the state of the peer that sent a datagram is held. The default is the peer's
+     * address; a subclass that supports connection IDs may use the connection ID of records carrying one.
+     *
+     * @param address
+     *            the source address of the datagram.
+     * @param data
+     *            the datagram; its position and limit must not be modified.
+     * @return the key identifying the peer.
+     */
+    protected Object getPeerKey(SocketAddress address, ByteBuffer data)
+    {
+        return address;
+    }
+
+    private void dispatch(final SocketAddress address, ByteBuffer data) throws IOException
+    {
+        Object key = getPeerKey(address, data);
+
+        PeerTransport peer = (PeerTransport)peers.get(key);
+        if (null != peer)
+        {
+            byte[] datagram = new byte[data.remaining()];
+            data.get(datagram);
+            if (peer.enqueue(datagram))
+            {
+                schedule(peer);
+            }
+            return;
+        }
+
+        synchronized (peers)
+        {
+            // Peers waiting for their handshake to start are limited separately from those being served
+            if (activePeers >= maxPeers || peers.size() - activePeers >= maxPeers)
+            {
+                return;
+            }
+        }
+
+        DTLSRequest request = verifier.verifyRequest(getClientID(address), data.array(),
+            data.arrayOffset() + data.position(), data.remaining(), new DatagramSender()
+            {
+                public int getSendLimit()
+                {
+                    return sendLimit;
+                }
+
+                public void send(byte[] buf, int off, int len) throws IOException
+                {
+                    sendTo(address, buf, off, len);
+                }
+            });
+
+        if (null != request)
+        {
+            final PeerTransport newPeer = new PeerTransport(key, address);
+            peers.put(key, newPeer);
+
+            final DTLSRequest peerRequest = request;
+            try
+            {
+                executor.execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        acceptPeer(newPeer, peerRequest);
+                    }
+                });
+            }
+            catch (RuntimeException e)
+            {
+                newPeer.close();
+                handler.notifyPeerFailed(address, e);
+            }
+        }
+    }
+
+    private void acceptPeer(PeerTransport peer, DTLSRequest request)
+    {
+        if (!peer.activate())
+        {
+            // No room for another peer (or the endpoint is closed); the client will retry
+            peer.close();
+            return;
+        }
+
+        DTLSTransport transport = null;
+        try
+        {
+            TlsServer server = handler.createServer(peer.address);
+            transport = serverProtocol.accept(server, peer, request);
+
+            handler.notifyPeerConnected(peer.address, transport);
+        }
+        catch (Exception e)
+        {
+            if (null != transport)
+            {
+                closeQuietly(transport);
+            }
+            peer.close();
+
+            if (!closed)
+            {
+                handler.notifyPeerFailed(peer.address, e);
+            }
+            return;
+        }
+
+        // From here on records are processed as they arrive, including any that came in during the handshake
+        if (peer.establish(transport))
+        {
+            schedule(peer);
+        }
+    }
+
+    /*
+     * Run a task to process a peer's records, the caller having been told by the peer that none is scheduled.
+     */
+    private void schedule(final PeerTransport peer)
+    {
+        Runnable task = new Runnable()
+        {
+            public void run()
+            {
+                processPeer(peer);
+            }
+        };
+
+        try
+        {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException e)
+        {
+            task.run();
+        }
+    }
+
+    private void processPeer(PeerTransport peer)
+    {
+        DTLSTransport transport = peer.transport;
+        try
+        {
+            byte[] buf = new byte[transport.getReceiveLimit()];
+
+            for (;;)
+            {
+                if (peer.isIdleCloseRequested())
+                {
+                    // NOTE: Sends close_notify, then closes (and removes) the peer
+                    transport.close();
+                    peer.close();
+                    handler.notifyPeerClosed(peer.address);
+                    return;
+                }
+
+                int length = transport.receivePending(buf, 0, buf.length);
+                if (length >= 0)
+                {
+                    handler.handleData(peer.address, transport, buf, 0, length);
+                    continue;
+                }
+
+                if (transport.isClosed())
+                {
+                    peer.close();
+                    handler.notifyPeerClosed(peer.address);
+                    return;
+                }
+
+                if (peer.finishProcessing())
+                {
+                    return;
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            closeQuietly(transport);
+            peer.close();
+
+            if (!closed)
+            {
+                handler.notifyPeerFailed(peer.address, e);
+            }
+        }
+    }
+
+    private void closeIdlePeers(long idleSince)
+    {
+        Vector idle = new Vector();
+        synchronized (peers)
+        {
+            Enumeration e = peers.elements();
+            while (e.hasMoreElements())
+            {
+                idle.addElement(e.nextElement());
+            }
+        }
+
+        for (int i = 0; i < idle.size(); ++i)
+        {
+            PeerTransport peer = (PeerTransport)idle.elementAt(i);
+            if (peer.requestIdleClose(idleSince))
+            {
+                schedule(peer);
+            }
+        }
+    }
+
+    private void sendTo(SocketAddress address, byte[] buf, int off, int len) throws IOException
+    {
+        if (len > sendLimit)
+        {
+            /*
+             * RFC 4347 4.1.1. "If the application attempts to send a record larger than the MTU,
+             * the DTLS implementation SHOULD generate an error, thus avoiding sending a packet
+             * which will be fragmented."
+             */
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        // NOTE: In non-blocking mode, a datagram that doesn't fit in the socket buffer is dropped (as on the network)
+        channel.send(ByteBuffer.wrap(buf, off, len), address);
+    }
+
+    private void closePeers()
+    {
+        Vector all = new Vector();
+        synchronized (peers)
+        {
+            Enumeration e = peers.elements();
+            while (e.hasMoreElements())
+            {
+                all.addElement(e.nextElement());
+            }
+        }
+
+        for (int i = 0; i < all.size(); ++i)
+        {
+            ((PeerTransport)all.elementAt(i)).close();
+        }
+    }
+
+    private static void closeQuietly(DTLSTransport transport)
+    {
+        try
+        {
+            transport.close();
+        }
+        catch (IOException e)
+        {
+            // Ignore
+        }
+    }
+
+    private void closeQuietly()
+    {
+        try
+        {
+            close();
+        }
+        catch (IOException e)
+        {
+            // Ignore
+        }
+    }
+
+    private static byte[] getClientID(SocketAddress address)
+    {
+        // NOTE: The cookie is bound to the peer's complete address (IP address and port)
+        if (address instanceof InetSocketAddress)
+        {
+            InetSocketAddress inetAddress = (InetSocketAddress)address;
+            byte[] ip = inetAddress.getAddress().getAddress();
+            byte[] clientID = new byte[ip.length + 2];
+            System.arraycopy(ip, 0, clientID, 0, ip.length);
+            TlsUtils.writeUint16(inetAddress.getPort(), clientID, ip.length);
+            return clientID;
+        }
+
+        return Strings.toUTF8ByteArray(address.toString());
+    }
+
+    private class PeerTransport
+        implements DatagramTransport
+    {
+        private final Object key;
+        private final SocketAddress address;
+        private final Vector queue = new Vector();
+
+        // Set once the handshake has completed, after which receive() never waits
+        private volatile DTLSTransport transport = null;
+
+        private boolean active = false;
+        private boolean scheduled = false;
+        private boolean idleCloseRequested = false;
+        private long lastReceived = System.currentTimeMillis();
+        private boolean peerClosed = false;
+
+        PeerTransport(Object key, SocketAddress address)
+        {
+            this.key = key;
+            this.address = address;
+        }
+
+        public int getReceiveLimit()
+        {
+            return receiveLimit;
+        }
+
+        public int getSendLimit()
+        {
+            return sendLimit;
+        }
+
+        public int receive(byte[] buf, int off, int len, int waitMillis) throws IOException
+        {
+            byte[] datagram;
+            synchronized (this)
+            {
+                long end = waitMillis > 0 ? System.currentTimeMillis() + waitMillis : 0L;
+
+                while (queue.isEmpty())
+                {
+                    if (peerClosed)
+                    {
+                        throw new IOException("DTLS endpoint closed");
+                    }
+
+                    // NOTE: Once established, records are only processed when datagrams have arrived
+                    if (null != transport)
+                    {
+                        return -1;
+                    }
+
+                    long remaining = 0L;
+                    if (end != 0L)
+                    {
+                        remaining = end - System.currentTimeMillis();
+                        if (remaining <= 0L)
+                        {
+                            return -1;
+                        }
+                    }
+
+                    try
+                    {
+                        wait(remaining);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for a datagram");
+                    }
+                }
+
+                datagram = (byte[])queue.elementAt(0);
+                queue.removeElementAt(0);
+            }
+
+            // NOTE: As for a socket, any excess part of the datagram is discarded
+            int count = Math.min(len, datagram.length);
+            System.arraycopy(datagram, 0, buf, off, count);
+            return count;
+        }
+
+        public void send(byte[] buf, int off, int len) throws IOException
+        {
+            synchronized (this)
+            {
+                if (peerClosed)
+                {
+                    throw new IOException("DTLS endpoint closed");
+                }
+            }
+
+            sendTo(address, buf, off, len);
+        }
+
+        public void close()
+        {
+            synchronized (this)
+            {
+                if (peerClosed)
+                {
+                    return;
+                }
+
+                this.peerClosed = true;
+                queue.removeAllElements();
+                notifyAll();
+            }
+
+            synchronized (peers)
+            {
+                if (peers.get(key) == this)
+                {
+                    peers.remove(key);
+                }
+                if (active)
+                {
+                    --activePeers;
+                }
+            }
+        }
+
+        /*
+         * Called as the handshake task starts, to take one of the endpoint's peer slots.
+         */
+        boolean activate()
+        {
+            synchronized (peers)
+            {
+                synchronized (this)
+                {
+                    if (peerClosed || activePeers >= maxPeers)
+                    {
+                        return false;
+                    }
+                }
+
+                this.active = true;
+                ++activePeers;
+                return true;
+            }
+        }
+
+        /*
+         * Switch to processing records as datagrams arrive, returning true if the caller should schedule that now.
+         */
+        synchronized boolean establish(DTLSTransport transport)
+        {
+            this.transport = transport;
+            this.lastReceived = System.currentTimeMillis();
+            this.scheduled = !peerClosed;
+            return scheduled;
+        }
+
+        /*
+         * Queue a datagram, returning true if the caller should schedule the processing of the peer's records.
+         */
+        synchronized boolean enqueue(byte[] datagram)
+        {
+            if (peerClosed || queue.size() >= PEER_QUEUE_LIMIT)
+            {
+                return false;
+            }
+
+            queue.addElement(datagram);
+            this.lastReceived = System.currentTimeMillis();
+
+            if (null == transport)
+            {
+                notifyAll();
+                return false;
+            }
+
+            if (scheduled)
+            {
+                return false;
+            }
+
+            this.scheduled = true;
+            return true;
+        }
+
+        /*
+         * Request that an established peer that hasn't received anything since 'idleSince' be closed, returning true
+         * if the caller should schedule that.
+         */
+        synchronized boolean requestIdleClose(long idleSince)
+        {
+            if (peerClosed || null == transport || idleCloseRequested || lastReceived > idleSince)
+            {
+                return false;
+            }
+
+            this.idleCloseRequested = true;
+            if (scheduled)
+            {
+                return false;
+            }
+
+            this.scheduled = true;
+            return true;
+        }
+
+        synchronized boolean isIdleCloseRequested()
+        {
+            return idleCloseRequested;
+        }
+
+        /*
+         * Called by the processing task when it has found no more records; returns false if more have arrived since.
+         */
+        synchronized boolean finishProcessing()
+        {
+            if (!peerClosed && (!queue.isEmpty() || idleCloseRequested))
+            {
+                return false;
+            }
+
+            this.scheduled = false;
+            return true;
+        }
+    }
+}
@@ -70,6 +70,43 @@ public int receive(byte[] buf, int off, int len, int waitMillis)
         }
     }
 
+    /*
+     * As for receive(), but only processing the records the underlying transport already holds, see
+     * DTLSRecordLayer.receivePending().
+     */
+    int receivePending(byte[] buf, int off, int len)
+        throws IOException
+    {
+        try
+        {
+            return recordLayer.receivePending(buf, off, len);
+        }
+        catch (TlsFatalAlert fatalAlert)
+        {
+            recordLayer.fail(fatalAlert.getAlertDescription());
+            throw fatalAlert;
+        }
+        catch (InterruptedIOException e)
+        {
+            throw e;
+        }
+        catch (IOException e)
+        {
+            recordLayer.fail(AlertDescription.internal_error);
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            recordLayer.fail(AlertDescription.internal_error);
+            throw new TlsFatalAlert(AlertDescription.internal_error, e);
+        }
+    }
+
+    boolean isClosed()
+    {
+        return recordLayer.isClosed();
+    }
+
     public void send(byte[] buf, int off, int len)
         throws IOException
     {
@@ -4,85 +4,360 @@
 
 import org.bouncycastle.tls.crypto.TlsCrypto;
 import org.bouncycastle.tls.crypto.TlsMAC;
-import org.bouncycastle.tls.crypto.TlsMACOutputStream;
 import org.bouncycastle.util.Arrays;
 
+/**
+ * Stateless verification of DTLS ClientHello cookies (see RFC 6347 4.2.1), for use by a server before it commits any
+ * state to a client.
+ * <p>
+ * Cookies are an HMAC of the client's ID (e.g. its address) and the ClientHello (excluding the cookie), keyed with a
+ * secret that is replaced periodically; a cookie generated with the current or previous secret is accepted. The
+ * ClientHello fields are located in the datagram without copying, and each thread uses its own MAC instances, so
+ * a single verifier can be shared by any number of threads without contention.
+ * </p>
+ */
 public class DTLSVerifier
 {
-    private static TlsMAC createCookieMAC(TlsCrypto crypto)
-    {
-        TlsMAC mac = crypto.createHMAC(MACAlgorithm.hmac_sha256);
+    /**
+     * The default interval (in milliseconds) between changes of the cookie secret.
+     */
+    public static final long DEFAULT_ROTATION_MILLIS = 60000L;
 
-        byte[] secret = new byte[mac.getMacLength()];
-        crypto.getSecureRandom().nextBytes(secret);
+    private static final class CookieSecrets
+    {
+        final int generation;
+        final byte[] current, previous;
+        final long expiry;
 
-        mac.setKey(secret, 0, secret.length);
+        CookieSecrets(int generation, byte[] current, byte[] previous, long expiry)
+        {
+            this.generation = generation;
+            this.current = current;
+            this.previous = previous;
+            this.expiry = expiry;
+        }
+    }
 
-        return mac;
+    private static final class CookieMACs
+    {
+        int generation = -1;
+        TlsMAC current, previous;
+        byte[] currentSecret, previousSecret;
+        byte[] currentCookie, previousCookie;
     }
 
-    private final TlsMAC cookieMAC;
-    private final TlsMACOutputStream cookieMACOutputStream;
+    private final TlsCrypto crypto;
+    private final long rotationMillis;
+    private final ThreadLocal cookieMACs = new ThreadLocal();
+
+    private volatile CookieSecrets secrets;
 
     public DTLSVerifier(TlsCrypto crypto)
     {
-        this.cookieMAC = createCookieMAC(crypto);
-        this.cookieMACOutputStream = new TlsMACOutputStream(cookieMAC);
+        this(crypto, DEFAULT_ROTATION_MILLIS);
     }
 
-    public synchronized DTLSRequest verifyRequest(byte[] clientID, byte[] data, int dataOff, int dataLen,
-        DatagramSender sender)
+    /**
+     * @param crypto
+     *            the {@link TlsCrypto} used to generate secrets and calculate cookies.
+     * @param rotationMillis
+     *            the interval (in milliseconds) between changes of the cookie secret, or 0 to never change it.
+     *            Cookies remain valid for at least this long.
+     */
+    public DTLSVerifier(TlsCrypto crypto, long rotationMillis)
     {
-        boolean resetCookieMAC = true;
+        if (null == crypto)
+        {
+            throw new NullPointerException("'crypto' cannot be null");
+        }
+        if (rotationMillis < 0L)
+        {
+            throw new IllegalArgumentException("'rotationMillis' cannot be negative");
+        }
+
+        this.crypto = crypto;
+        this.rotationMillis = rotationMillis;
+        this.secrets = new CookieSecrets(0, createSecret(), null, getExpiry(currentTimeMillis()));
+    }
 
+    public DTLSRequest verifyRequest(byte[] clientID, byte[] data, int dataOff, int dataLen,
+        DatagramSender sender)
+    {
         try
         {
-            cookieMAC.update(clientID, 0, clientID.length);
+            int cookiePos = findCookie(data, dataOff, dataLen);
+            if (cookiePos < 0)
+            {
+                return null;
+            }
 
-            DTLSRequest request = DTLSReliableHandshake.readClientRequest(data, dataOff, dataLen, cookieMACOutputStream);
-            if (null != request)
+            CookieMACs macs = getCookieMACs();
+
+            calculateCookie(macs.current, clientID, data, dataOff, cookiePos, macs.currentCookie);
+            if (isCookie(macs.currentCookie, data, cookiePos))
             {
-                byte[] expectedCookie = cookieMAC.calculateMAC();
-                resetCookieMAC = false;
-
-                // TODO Consider stricter HelloVerifyRequest protocol
-//                switch (request.getMessageSeq())
-//                {
-//                case 0:
-//                {
-//                    DTLSReliableHandshake.sendHelloVerifyRequest(sender, request.getRecordSeq(), expectedCookie);
-//                    break;
-//                }
-//                case 1:
-//                {
-//                    if (Arrays.constantTimeAreEqual(expectedCookie, request.getClientHello().getCookie()))
-//                    {
-//                        return request;
-//                    }
-//                    break;
-//                }
-//                }
-
-                if (Arrays.constantTimeAreEqual(expectedCookie, request.getClientHello().getCookie()))
+                return readClientRequest(data, dataOff, dataLen);
+            }
+
+            if (null != macs.previousSecret)
+            {
+                calculateCookie(macs.previous, clientID, data, dataOff, cookiePos, macs.previousCookie);
+                if (isCookie(macs.previousCookie, data, cookiePos))
                 {
-                    return request;
+                    return readClientRequest(data, dataOff, dataLen);
                 }
-
-                DTLSReliableHandshake.sendHelloVerifyRequest(sender, request.getRecordSeq(), expectedCookie);
             }
+
+            long recordSeq = TlsUtils.readUint48(data, dataOff + 5);
+
+            DTLSReliableHandshake.sendHelloVerifyRequest(sender, recordSeq, Arrays.clone(macs.currentCookie));
         }
         catch (IOException e)
         {
             // Ignore
         }
-        finally
+
+        return null;
+    }
+
+    protected long currentTimeMillis()
+    {
+        return System.currentTimeMillis();
+    }
+
+    private byte[] createSecret()
+    {
+        byte[] secret = new byte[32];
+        crypto.getSecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    private long getExpiry(long now)
+    {
+        return rotationMillis == 0L ? Long.MAX_VALUE : now + rotationMillis;
+    }
+
+    private CookieSecrets getSecrets()
+    {
+        CookieSecrets s = this.secrets;
+
+        long now = currentTimeMillis();
+        if (now < s.expiry)
         {
-            if (resetCookieMAC)
+            return s;
+        }
+
+        // NOTE: Only contended once per rotation interval
+        synchronized (this)
+        {
+            s = this.secrets;
+            if (now >= s.expiry)
             {
-                cookieMAC.reset();
+                /*
+                 * Cookies made with the outgoing secret remain valid for one interval after it expired; if that
+                 * has already passed (because there were no requests), it is simply discarded.
+                 */
+                byte[] previous = now < s.expiry + rotationMillis ? s.current : null;
+
+                s = new CookieSecrets(s.generation + 1, createSecret(), previous, getExpiry(now));
+                this.secrets = s;
             }
+            return s;
         }
+    }
 
-        return null;
+    private CookieMACs getCookieMACs()
+    {
+        CookieSecrets s = getSecrets();
+
+        CookieMACs macs = (CookieMACs)cookieMACs.get();
+        if (null == macs)
+        {
+            macs = new CookieMACs();
+            cookieMACs.set(macs);
+        }
+
+        if (macs.generation != s.generation)
+        {
+            // NOTE: After a single rotation, the MAC keyed with the old current secret becomes the previous one
+            if (null != s.previous && s.previous == macs.currentSecret)
+            {
+                TlsMAC mac = macs.previous;
+                macs.previous = macs.current;
+                macs.current = mac;
+
+                byte[] secret = macs.previousSecret;
+                macs.previousSecret = macs.currentSecret;
+                macs.currentSecret = secret;
+
+                byte[] cookie = macs.previousCookie;
+                macs.previousCookie = macs.currentCookie;
+                macs.currentCookie = cookie;
+            }
+
+            if (null == macs.current)
+            {
+                macs.current = crypto.createHMAC(MACAlgorithm.hmac_sha256);
+                macs.currentCookie = new byte[macs.current.getMacLength()];
+            }
+            if (s.current != macs.currentSecret)
+            {
+                setKey(macs.current, s.current);
+                macs.currentSecret = s.current;
+            }
+
+            if (null != s.previous && null == macs.previous)
+            {
+                macs.previous = crypto.createHMAC(MACAlgorithm.hmac_sha256);
+                macs.previousCookie = new byte[macs.previous.getMacLength()];
+            }
+            if (s.previous != macs.previousSecret)
+            {
+                if (null != s.previous)
+                {
+                    setKey(macs.previous, s.previous);
+                }
+                macs.previousSecret = s.previous;
+            }
+
+            macs.generation = s.generation;
+        }
+
+        return macs;
+    }
+
+    private static void setKey(TlsMAC mac, byte[] secret)
+    {
+        mac.setKey(secret, 0, secret.length);
+    }
+
+    private static void calculateCookie(TlsMAC mac, byte[] clientID, byte[] data, int dataOff, int cookiePos,
+        byte[] cookie)
+    {
+        int bodyOff = dataOff + DTLSRecordLayer.RECORD_HEADER_LENGTH + DTLSReliableHandshake.MESSAGE_HEADER_LENGTH;
+        int bodyEnd = bodyOff + TlsUtils.readUint24(data, bodyOff - DTLSReliableHandshake.MESSAGE_HEADER_LENGTH + 1);
+        int cookieEnd = cookiePos + 1 + TlsUtils.readUint8(data, cookiePos);
+
+        // NOTE: The MAC covers the client ID and the ClientHello body, excluding the cookie (and its length)
+        mac.update(clientID, 0, clientID.length);
+        mac.update(data, bodyOff, cookiePos - bodyOff);
+        mac.update(data, cookieEnd, bodyEnd - cookieEnd);
+        mac.calculateMAC(cookie, 0);
+    }
+
+    /**
+     * Locate the cookie in a datagram that starts with a record containing a complete ClientHello, checking the
+     * layout of the record and message (but not the contents of the ClientHello fields).
+     *
+     * @return the offset in data of the cookie's length field, or -1 if the datagram doesn't start with a well-formed
+     *         ClientHello.
+     */
+    private static int findCookie(byte[] data, int dataOff, int dataLen)
+    {
+        final int recordHeaderLength = DTLSRecordLayer.RECORD_HEADER_LENGTH;
+        final int messageHeaderLength = DTLSReliableHandshake.MESSAGE_HEADER_LENGTH;
+
+        // Record header (see DTLSRecordLayer.receiveClientHelloRecord)
+        if (dataLen < recordHeaderLength
+            || ContentType.handshake != TlsUtils.readUint8(data, dataOff)
+            || 0xFE != TlsUtils.readUint8(data, dataOff + 1)
+            || 0 != TlsUtils.readUint16(data, dataOff + 3))
+        {
+            return -1;
+        }
+
+        int recordLength = TlsUtils.readUint16(data, dataOff + 11);
+        if (dataLen < recordHeaderLength + recordLength || recordLength > DTLSRecordLayer.MAX_FRAGMENT_LENGTH)
+        {
+            return -1;
+        }
+
+        // Handshake message header (see DTLSReliableHandshake.readClientRequest)
+        int msgOff = dataOff + recordHeaderLength;
+        if (recordLength < messageHeaderLength
+            || HandshakeType.client_hello != TlsUtils.readUint8(data, msgOff))
+        {
+            return -1;
+        }
+
+        int length = TlsUtils.readUint24(data, msgOff + 1);
+        if (recordLength != messageHeaderLength + length
+            || 0 != TlsUtils.readUint24(data, msgOff + 6)
+            || length != TlsUtils.readUint24(data, msgOff + 9))
+        {
+            return -1;
+        }
+
+        // ClientHello body: client_version, random, session_id, cookie, cipher_suites, compression_methods
+        int pos = msgOff + messageHeaderLength, end = pos + length;
+
+        pos += 2 + 32;
+        if (pos >= end)
+        {
+            return -1;
+        }
+
+        int sessionIDLength = TlsUtils.readUint8(data, pos);
+        if (sessionIDLength > 32)
+        {
+            return -1;
+        }
+
+        pos += 1 + sessionIDLength;
+        if (pos >= end)
+        {
+            return -1;
+        }
+
+        int cookiePos = pos;
+
+        pos += 1 + TlsUtils.readUint8(data, pos);
+        if (pos + 2 > end)
+        {
+            return -1;
+        }
+
+        int cipherSuitesLength = TlsUtils.readUint16(data, pos);
+        if (cipherSuitesLength < 2 || (cipherSuitesLength & 1) != 0)
+        {
+            return -1;
+        }
+
+        pos += 2 + cipherSuitesLength;
+        if (pos >= end)
+        {
+            return -1;
+        }
+
+        int compressionMethodsLength = TlsUtils.readUint8(data, pos);
+        if (compressionMethodsLength < 1)
+        {
+            return -1;
+        }
+
+        pos += 1 + compressionMethodsLength;
+        if (pos < end)
+        {
+            if (pos + 2 > end)
+            {
+                return -1;
+            }
+
+            pos += 2 + TlsUtils.readUint16(data, pos);
+        }
+
+        return pos == end ? cookiePos : -1;
+    }
+
+    private static boolean isCookie(byte[] expectedCookie, byte[] data, int cookiePos)
+    {
+        return expectedCookie.length == TlsUtils.readUint8(data, cookiePos)
+            && Arrays.constantTimeAreEqual(expectedCookie.length, expectedCookie, 0, data, cookiePos + 1);
+    }
+
+    private static DTLSRequest readClientRequest(byte[] data, int dataOff, int dataLen) throws IOException
+    {
+        // NOTE: The cookie has been verified already; this just parses the ClientHello
+        return DTLSReliableHandshake.readClientRequest(data, dataOff, dataLen, NullOutputStream.INSTANCE);
     }
 }
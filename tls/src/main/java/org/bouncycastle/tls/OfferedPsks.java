@@ -34,15 +34,18 @@
     {
         final int index;
         final TlsPSK psk;
-        final short[] pskKeyExchangeModes;
+        final short pskKeyExchangeMode;
         final TlsSecret earlySecret;
+        final SessionParameters sessionParameters;
 
-        SelectedConfig(int index, TlsPSK psk, short[] pskKeyExchangeModes, TlsSecret earlySecret)
+        SelectedConfig(int index, TlsPSK psk, short pskKeyExchangeMode, TlsSecret earlySecret,
+            SessionParameters sessionParameters)
         {
             this.index = index;
             this.psk = psk;
-            this.pskKeyExchangeModes = pskKeyExchangeModes;
+            this.pskKeyExchangeMode = pskKeyExchangeMode;
             this.earlySecret = earlySecret;
+            this.sessionParameters = sessionParameters;
         }
     }
 
@@ -145,7 +148,7 @@ public void encode(OutputStream output) throws IOException
     }
 
     static void encodeBinders(OutputStream output, TlsCrypto crypto, TlsHandshakeHash handshakeHash,
-        BindersConfig bindersConfig) throws IOException
+        BindersConfig bindersConfig, boolean afterHelloRetryRequest) throws IOException
     {
         TlsPSK[] psks = bindersConfig.psks;
         TlsSecret[] earlySecrets = bindersConfig.earlySecrets;
@@ -160,14 +163,22 @@ static void encodeBinders(OutputStream output, TlsCrypto crypto, TlsHandshakeHas
             TlsPSK psk = psks[i];
             TlsSecret earlySecret = earlySecrets[i];
 
-            // TODO[tls13-psk] Handle resumption PSKs
-            boolean isExternalPSK = true;
+            boolean isExternalPSK = !(psk instanceof TlsPSKResumption);
             int pskCryptoHashAlgorithm = TlsCryptoUtils.getHashForPRF(psk.getPRFAlgorithm());
 
-            // TODO[tls13-psk] Cache the transcript hashes per algorithm to avoid duplicates for multiple PSKs
-            TlsHash hash = crypto.createHash(pskCryptoHashAlgorithm);
-            handshakeHash.copyBufferTo(new TlsHashOutputStream(hash));
-            byte[] transcriptHash = hash.calculateHash();
+            byte[] transcriptHash;
+            if (afterHelloRetryRequest)
+            {
+                // NOTE: Only PSKs compatible with the negotiated PRF hash remain after a HelloRetryRequest
+                transcriptHash = handshakeHash.getFinalHash(pskCryptoHashAlgorithm);
+            }
+            else
+            {
+                // TODO[tls13-psk] Cache the transcript hashes per algorithm to avoid duplicates for multiple PSKs
+                TlsHash hash = crypto.createHash(pskCryptoHashAlgorithm);
+                handshakeHash.copyBufferTo(new TlsHashOutputStream(hash));
+                transcriptHash = hash.calculateHash();
+            }
 
             byte[] binder = TlsUtils.calculatePSKBinder(crypto, isExternalPSK, pskCryptoHashAlgorithm, earlySecret,
                 transcriptHash);
@@ -27,6 +27,7 @@
     private TlsCipher pendingCipher = null;
     private TlsCipher readCipher = TlsNullNullCipher.INSTANCE;
     private TlsCipher readCipherDeferred = null;
+    private TlsCipher readCipherEndOfEarlyData = null;
     private TlsCipher writeCipher = TlsNullNullCipher.INSTANCE;
 
     private ProtocolVersion writeVersion = null;
@@ -34,6 +35,7 @@
     private int plaintextLimit = DEFAULT_PLAINTEXT_LIMIT;
     private int ciphertextLimit = DEFAULT_PLAINTEXT_LIMIT;
     private boolean ignoreChangeCipherSpec = false;
+    private long earlyDataSkipLimit = -1L;
 
     RecordStream(TlsProtocol handler, InputStream input, OutputStream output)
     {
@@ -102,6 +104,49 @@ void enablePendingCipherRead(boolean deferred)
         }
     }
 
+    void enablePendingCipherReadAfterEarlyData()
+        throws IOException
+    {
+        if (pendingCipher == null)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+        if (readCipherDeferred != null || readCipherEndOfEarlyData != null)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+        this.readCipherEndOfEarlyData = pendingCipher;
+    }
+
+    void notifyEndOfEarlyDataReceived()
+        throws IOException
+    {
+        if (readCipherEndOfEarlyData == null)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+        this.readCipher = readCipherEndOfEarlyData;
+        this.readCipherEndOfEarlyData = null;
+        this.ciphertextLimit = readCipher.getCiphertextDecodeLimit(plaintextLimit);
+        readSeqNo.reset();
+    }
+
+    /**
+     * Discard (TLS 1.3) early data that the server will not process, up to the given limit. If a
+     * HelloRetryRequest was sent, early data is recognized by its outer content type; otherwise
+     * it is any record that fails deprotection under the handshake traffic keys (RFC 8446 4.2.10).
+     */
+    void skipEarlyData(long maxEarlyDataSize)
+    {
+        this.earlyDataSkipLimit = Math.max(0L, maxEarlyDataSize);
+    }
+
+    void resetWriteCipher()
+    {
+        this.writeCipher = TlsNullNullCipher.INSTANCE;
+        writeSeqNo.reset();
+    }
+
     void enablePendingCipherWrite()
         throws IOException
     {
@@ -204,7 +249,11 @@ boolean readFullRecord(byte[] input, int inputOff, int inputLen)
         TlsDecodeResult decoded = decodeAndVerify(recordType, recordVersion, input,
             inputOff + RecordFormat.FRAGMENT_OFFSET, length);
 
-        handler.processRecord(decoded.contentType, decoded.buf, decoded.off, decoded.len);
+        // NOTE: Skipped (early data) records have no result
+        if (null != decoded)
+        {
+            handler.processRecord(decoded.contentType, decoded.buf, decoded.off, decoded.len);
+        }
         return true;
     }
 
@@ -242,15 +291,60 @@ boolean readRecord()
             inputRecord.reset();
         }
 
-        handler.processRecord(decoded.contentType, decoded.buf, decoded.off, decoded.len);
+        // NOTE: Skipped (early data) records have no result
+        if (null != decoded)
+        {
+            handler.processRecord(decoded.contentType, decoded.buf, decoded.off, decoded.len);
+        }
         return true;
     }
 
     TlsDecodeResult decodeAndVerify(short recordType, ProtocolVersion recordVersion, byte[] ciphertext, int off, int len)
         throws IOException
     {
+        if (earlyDataSkipLimit >= 0L)
+        {
+            if (!readCipher.usesOpaqueRecordType())
+            {
+                if (ContentType.application_data == recordType)
+                {
+                    skipEarlyDataRecord(len);
+                    return null;
+                }
+
+                // NOTE: e.g. the second ClientHello; no early data is sent after it
+                this.earlyDataSkipLimit = -1L;
+            }
+        }
+
         long seqNo = readSeqNo.nextValue(AlertDescription.unexpected_message);
-        TlsDecodeResult decoded = readCipher.decodeCiphertext(seqNo, recordType, recordVersion, ciphertext, off, len);
+
+        TlsDecodeResult decoded;
+        if (earlyDataSkipLimit < 0L)
+        {
+            decoded = readCipher.decodeCiphertext(seqNo, recordType, recordVersion, ciphertext, off, len);
+        }
+        else
+        {
+            try
+            {
+                decoded = readCipher.decodeCiphertext(seqNo, recordType, recordVersion, ciphertext, off, len);
+            }
+            catch (TlsFatalAlert e)
+            {
+                if (AlertDescription.bad_record_mac != e.getAlertDescription())
+                {
+                    throw e;
+                }
+
+                // NOTE: Only the first record under these keys can be preceded by early data
+                readSeqNo.reset();
+                skipEarlyDataRecord(len);
+                return null;
+            }
+
+            this.earlyDataSkipLimit = -1L;
+        }
 
         checkLength(decoded.len, plaintextLimit, AlertDescription.record_overflow);
 
@@ -394,7 +488,7 @@ else if (readCipher.usesOpaqueRecordType())
             {
             case ContentType.application_data:
             {
-                if (!handler.isApplicationDataReady())
+                if (!handler.isApplicationDataReady() && earlyDataSkipLimit < 0L)
                 {
                     throw new TlsFatalAlert(AlertDescription.unexpected_message,
                         "Not ready for " + ContentType.getText(ContentType.application_data));
@@ -415,6 +509,21 @@ else if (readCipher.usesOpaqueRecordType())
         return recordType;
     }
 
+    private void skipEarlyDataRecord(int length)
+        throws IOException
+    {
+        /*
+         * NOTE: The limit applies to the content, so allow for the inner content type and (16-byte) tag
+         * of each record, but always charge something so that the number of records is also bounded.
+         */
+        long charge = Math.max(1, length - 17);
+        if (charge > earlyDataSkipLimit)
+        {
+            throw new TlsFatalAlert(AlertDescription.unexpected_message, "Too much early data");
+        }
+        this.earlyDataSkipLimit -= charge;
+    }
+
     private static void checkLength(int length, int limit, short alertDescription)
         throws IOException
     {
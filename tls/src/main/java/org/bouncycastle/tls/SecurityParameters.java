@@ -12,6 +12,7 @@
 {
     int entity = -1;
     boolean resumedSession = false;
+    boolean earlyDataAccepted = false;
     boolean renegotiating = false;
     boolean secureRenegotiation = false;
     int cipherSuite = CipherSuite.TLS_NULL_WITH_NULL_NULL;
@@ -29,6 +30,7 @@
     TlsSecret exporterMasterSecret = null;
     TlsSecret handshakeSecret = null;
     TlsSecret masterSecret = null;
+    TlsSecret resumptionMasterSecret = null;
     TlsSecret trafficSecretClient = null;
     TlsSecret trafficSecretServer = null;
     byte[] clientRandom = null;
@@ -100,6 +102,15 @@ public boolean isResumedSession()
         return resumedSession;
     }
 
+    /**
+     * TLS 1.3 only. Whether the server accepted the 0-RTT early data sent by the client. Note that early data is not
+     * protected against replay by the TLS protocol itself (see RFC 8446 8).
+     */
+    public boolean isEarlyDataAccepted()
+    {
+        return earlyDataAccepted;
+    }
+
     public boolean isRenegotiating()
     {
         return renegotiating;
@@ -253,6 +264,15 @@ public TlsSecret getMasterSecret()
         return masterSecret;
     }
 
+    /**
+     * TLS 1.3 only. Unlike the other handshake secrets, this is retained after the handshake completes, since it
+     * is needed to process (or issue) post-handshake NewSessionTicket messages.
+     */
+    public TlsSecret getResumptionMasterSecret()
+    {
+        return resumptionMasterSecret;
+    }
+
     public TlsSecret getTrafficSecretClient()
     {
         return trafficSecretClient;
@@ -22,6 +22,11 @@
         private byte[] srpIdentity = null;
         private byte[] encodedServerExtensions = null;
         private boolean extendedMasterSecret = false;
+        private byte[] ticket = null;
+        private long ticketAgeAdd = 0L;
+        private long ticketIssueTime = 0L;
+        private long ticketLifetime = 0L;
+        private long maxEarlyDataSize = 0L;
 
         public Builder()
         {
@@ -34,7 +39,7 @@ public SessionParameters build()
             validate(this.masterSecret != null, "masterSecret");
             return new SessionParameters(cipherSuite, compressionAlgorithm, localCertificate, masterSecret,
                 negotiatedVersion, peerCertificate, pskIdentity, srpIdentity, encodedServerExtensions,
-                extendedMasterSecret);
+                extendedMasterSecret, ticket, ticketAgeAdd, ticketIssueTime, ticketLifetime, maxEarlyDataSize);
         }
 
         public Builder setCipherSuite(int cipherSuite)
@@ -67,6 +72,16 @@ public Builder setMasterSecret(TlsSecret masterSecret)
             return this;
         }
 
+        /**
+         * TLS 1.3 only. The maximum amount of 0-RTT early data that may be sent when resuming this session (from the
+         * "early_data" extension of the NewSessionTicket message), or 0 if early data is not permitted.
+         */
+        public Builder setMaxEarlyDataSize(long maxEarlyDataSize)
+        {
+            this.maxEarlyDataSize = maxEarlyDataSize;
+            return this;
+        }
+
         public Builder setNegotiatedVersion(ProtocolVersion negotiatedVersion)
         {
             this.negotiatedVersion = negotiatedVersion;
@@ -106,6 +121,44 @@ public Builder setServerExtensions(Hashtable serverExtensions) throws IOExceptio
             return this;
         }
 
+        /**
+         * TLS 1.3 only. The opaque ticket (from a NewSessionTicket message) that identifies the PSK for
+         * resumption of this session.
+         */
+        public Builder setTicket(byte[] ticket)
+        {
+            this.ticket = ticket;
+            return this;
+        }
+
+        /**
+         * TLS 1.3 only. The (uint32) ticket_age_add value from the NewSessionTicket message.
+         */
+        public Builder setTicketAgeAdd(long ticketAgeAdd)
+        {
+            this.ticketAgeAdd = ticketAgeAdd;
+            return this;
+        }
+
+        /**
+         * TLS 1.3 only. The time (in milliseconds since the epoch) at which the ticket was issued (server) or
+         * received (client).
+         */
+        public Builder setTicketIssueTime(long ticketIssueTime)
+        {
+            this.ticketIssueTime = ticketIssueTime;
+            return this;
+        }
+
+        /**
+         * TLS 1.3 only. The (uint32) ticket_lifetime from the NewSessionTicket message, in seconds.
+         */
+        public Builder setTicketLifetime(long ticketLifetime)
+        {
+            this.ticketLifetime = ticketLifetime;
+            return this;
+        }
+
         private void validate(boolean condition, String parameter)
         {
             if (!condition)
@@ -125,10 +178,16 @@ private void validate(boolean condition, String parameter)
     private byte[] srpIdentity = null;
     private byte[] encodedServerExtensions;
     private boolean extendedMasterSecret;
+    private byte[] ticket;
+    private long ticketAgeAdd;
+    private long ticketIssueTime;
+    private long ticketLifetime;
+    private long maxEarlyDataSize;
 
     private SessionParameters(int cipherSuite, short compressionAlgorithm, Certificate localCertificate,
         TlsSecret masterSecret, ProtocolVersion negotiatedVersion, Certificate peerCertificate, byte[] pskIdentity,
-        byte[] srpIdentity, byte[] encodedServerExtensions, boolean extendedMasterSecret)
+        byte[] srpIdentity, byte[] encodedServerExtensions, boolean extendedMasterSecret, byte[] ticket,
+        long ticketAgeAdd, long ticketIssueTime, long ticketLifetime, long maxEarlyDataSize)
     {
         this.cipherSuite = cipherSuite;
         this.compressionAlgorithm = compressionAlgorithm;
@@ -140,6 +199,11 @@ private SessionParameters(int cipherSuite, short compressionAlgorithm, Certifica
         this.srpIdentity = Arrays.clone(srpIdentity);
         this.encodedServerExtensions = encodedServerExtensions;
         this.extendedMasterSecret = extendedMasterSecret;
+        this.ticket = Arrays.clone(ticket);
+        this.ticketAgeAdd = ticketAgeAdd;
+        this.ticketIssueTime = ticketIssueTime;
+        this.ticketLifetime = ticketLifetime;
+        this.maxEarlyDataSize = maxEarlyDataSize;
     }
 
     public void clear()
@@ -154,7 +218,7 @@ public SessionParameters copy()
     {
         return new SessionParameters(cipherSuite, compressionAlgorithm, localCertificate, masterSecret,
             negotiatedVersion, peerCertificate, pskIdentity, srpIdentity, encodedServerExtensions,
-            extendedMasterSecret);
+            extendedMasterSecret, ticket, ticketAgeAdd, ticketIssueTime, ticketLifetime, maxEarlyDataSize);
     }
 
     public int getCipherSuite()
@@ -177,6 +241,11 @@ public TlsSecret getMasterSecret()
         return masterSecret;
     }
 
+    public long getMaxEarlyDataSize()
+    {
+        return maxEarlyDataSize;
+    }
+
     public ProtocolVersion getNegotiatedVersion()
     {
         return negotiatedVersion;
@@ -197,6 +266,26 @@ public byte[] getSRPIdentity()
         return srpIdentity;
     }
 
+    public byte[] getTicket()
+    {
+        return ticket;
+    }
+
+    public long getTicketAgeAdd()
+    {
+        return ticketAgeAdd;
+    }
+
+    public long getTicketIssueTime()
+    {
+        return ticketIssueTime;
+    }
+
+    public long getTicketLifetime()
+    {
+        return ticketLifetime;
+    }
+
     public boolean isExtendedMasterSecret()
     {
         return extendedMasterSecret;
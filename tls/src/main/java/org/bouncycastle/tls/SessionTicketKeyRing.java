@@ -0,0 +1,274 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+
+import org.bouncycastle.tls.crypto.TlsCrypto;
+import org.bouncycastle.tls.crypto.TlsMAC;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Pack;
+
+/**
+ * A rotating set of keys used by a server to protect self-contained (stateless) TLS 1.3 session tickets.
+ * <p>
+ * New tickets are always sealed under the current key. Tickets sealed under either the current or the previous key
+ * are accepted, so a ticket stays redeemable for at least one full rotation interval after it was issued. The
+ * current key is replaced once it is one rotation interval old, and the previous key is discarded one rotation
+ * interval after it was replaced; both are checked against the clock whenever a ticket is sealed or opened, so keys
+ * expire on time however few tickets are issued. Keys may also be rotated explicitly via {@link #rotate()}.
+ * </p><p>
+ * Tickets are protected using encrypt-then-MAC with HMAC-SHA256 (as a counter-mode keystream, and for the tag over
+ * the key name, IV and ciphertext), so only {@link TlsCrypto#createHMAC(int)} is required of the crypto provider.
+ * </p><p>
+ * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+ * </p>
+ */
+public class SessionTicketKeyRing
+{
+    /**
+     * RFC 8446 4.6.1. Servers MUST NOT use any value greater than 604800 seconds (7 days).
+     */
+    public static final long MAX_TICKET_LIFETIME = 604800L;
+
+    private static final int KEY_NAME_LENGTH = 16;
+    private static final int IV_LENGTH = 16;
+    private static final int SECRET_LENGTH = 32;
+    private static final int MAC_LENGTH = 32;
+
+    private static final class TicketKey
+    {
+        final byte[] keyName;
+        final byte[] encKey;
+        final byte[] macKey;
+        final long createdMillis;
+        final long retiredMillis;
+
+        TicketKey(byte[] keyName, byte[] encKey, byte[] macKey, long createdMillis, long retiredMillis)
+        {
+            this.keyName = keyName;
+            this.encKey = encKey;
+            this.macKey = macKey;
+            this.createdMillis = createdMillis;
+            this.retiredMillis = retiredMillis;
+        }
+
+        TicketKey retire(long retiredMillis)
+        {
+            return new TicketKey(keyName, encKey, macKey, createdMillis, retiredMillis);
+        }
+    }
+
+    protected final TlsCrypto crypto;
+    protected final long ticketLifetime;
+
+    private TicketKey currentKey, previousKey;
+
+    /**
+     * @param crypto
+     *            the {@link TlsCrypto} used to generate keys and to protect tickets.
+     * @param ticketLifetime
+     *            the lifetime (in seconds) of issued tickets; also used as the key rotation interval.
+     */
+    public SessionTicketKeyRing(TlsCrypto crypto, long ticketLifetime)
+    {
+        if (null == crypto)
+        {
+            throw new NullPointerException("'crypto' cannot be null");
+        }
+        if (ticketLifetime < 1 || ticketLifetime > MAX_TICKET_LIFETIME)
+        {
+            throw new IllegalArgumentException("'ticketLifetime' must be from 1 to " + MAX_TICKET_LIFETIME);
+        }
+
+        this.crypto = crypto;
+        this.ticketLifetime = ticketLifetime;
+        this.currentKey = createTicketKey(currentTimeMillis());
+        this.previousKey = null;
+    }
+
+    /**
+     * @return the lifetime (in seconds) of tickets sealed by this key ring.
+     */
+    public long getTicketLifetime()
+    {
+        return ticketLifetime;
+    }
+
+    /**
+     * Make a freshly generated key current. The old current key becomes the previous key (so tickets sealed under it
+     * remain acceptable), and the old previous key is discarded.
+     */
+    public synchronized void rotate()
+    {
+        long now = currentTimeMillis();
+
+        this.previousKey = currentKey.retire(now);
+        this.currentKey = createTicketKey(now);
+    }
+
+    /**
+     * Protect a ticket plaintext under the current key.
+     *
+     * @param plaintext
+     *            the ticket contents.
+     * @return the opaque ticket.
+     */
+    public byte[] seal(byte[] plaintext) throws IOException
+    {
+        TicketKey key = getCurrentKey();
+
+        byte[] iv = new byte[IV_LENGTH];
+        crypto.getSecureRandom().nextBytes(iv);
+
+        int ciphertextOffset = KEY_NAME_LENGTH + IV_LENGTH;
+        int macOffset = ciphertextOffset + plaintext.length;
+
+        byte[] ticket = new byte[macOffset + MAC_LENGTH];
+        System.arraycopy(key.keyName, 0, ticket, 0, KEY_NAME_LENGTH);
+        System.arraycopy(iv, 0, ticket, KEY_NAME_LENGTH, IV_LENGTH);
+        System.arraycopy(plaintext, 0, ticket, ciphertextOffset, plaintext.length);
+
+        applyKeyStream(key.encKey, iv, ticket, ciphertextOffset, plaintext.length);
+
+        TlsMAC mac = createMAC(key.macKey);
+        mac.update(ticket, 0, macOffset);
+        mac.calculateMAC(ticket, macOffset);
+
+        return ticket;
+    }
+
+    /**
+     * Recover the plaintext of a ticket sealed (by this key ring) under the current or previous key.
+     *
+     * @param ticket
+     *            the opaque ticket.
+     * @return the ticket contents, or null if the ticket was not issued by this key ring, was sealed under a key
+     *         that has since been discarded, or fails authentication.
+     */
+    public byte[] open(byte[] ticket) throws IOException
+    {
+        int ciphertextOffset = KEY_NAME_LENGTH + IV_LENGTH;
+        if (null == ticket || ticket.length < ciphertextOffset + MAC_LENGTH)
+        {
+            return null;
+        }
+
+        TicketKey key = findKey(ticket);
+        if (null == key)
+        {
+            return null;
+        }
+
+        int macOffset = ticket.length - MAC_LENGTH;
+
+        TlsMAC mac = createMAC(key.macKey);
+        mac.update(ticket, 0, macOffset);
+        byte[] expectedMAC = mac.calculateMAC();
+
+        if (!Arrays.constantTimeAreEqual(MAC_LENGTH, expectedMAC, 0, ticket, macOffset))
+        {
+            return null;
+        }
+
+        byte[] iv = Arrays.copyOfRange(ticket, KEY_NAME_LENGTH, ciphertextOffset);
+        byte[] plaintext = Arrays.copyOfRange(ticket, ciphertextOffset, macOffset);
+
+        applyKeyStream(key.encKey, iv, plaintext, 0, plaintext.length);
+
+        return plaintext;
+    }
+
+    protected long currentTimeMillis()
+    {
+        return System.currentTimeMillis();
+    }
+
+    private void applyKeyStream(byte[] encKey, byte[] iv, byte[] buf, int off, int len)
+    {
+        TlsMAC prf = createMAC(encKey);
+
+        byte[] counter = new byte[4];
+        byte[] block = new byte[prf.getMacLength()];
+
+        for (int pos = 0, blockIndex = 0; pos < len; ++blockIndex)
+        {
+            Pack.intToBigEndian(blockIndex, counter, 0);
+
+            prf.update(iv, 0, iv.length);
+            prf.update(counter, 0, counter.length);
+            prf.calculateMAC(block, 0);
+
+            int count = Math.min(block.length, len - pos);
+            for (int i = 0; i < count; ++i)
+            {
+                buf[off + pos + i] ^= block[i];
+            }
+            pos += count;
+        }
+
+        Arrays.fill(block, (byte)0);
+    }
+
+    private TlsMAC createMAC(byte[] key)
+    {
+        TlsMAC mac = crypto.createHMAC(MACAlgorithm.hmac_sha256);
+        mac.setKey(key, 0, key.length);
+        return mac;
+    }
+
+    private TicketKey createTicketKey(long now)
+    {
+        byte[] keyName = new byte[KEY_NAME_LENGTH];
+        byte[] encKey = new byte[SECRET_LENGTH];
+        byte[] macKey = new byte[SECRET_LENGTH];
+
+        crypto.getSecureRandom().nextBytes(keyName);
+        crypto.getSecureRandom().nextBytes(encKey);
+        crypto.getSecureRandom().nextBytes(macKey);
+
+        return new TicketKey(keyName, encKey, macKey, now, Long.MAX_VALUE);
+    }
+
+    /**
+     * Replace the current key if it is due for rotation, and drop the previous key once tickets sealed under it
+     * have expired.
+     */
+    private void expireKeys(long now)
+    {
+        long interval = ticketLifetime * 1000L;
+
+        long rotationTime = currentKey.createdMillis + interval;
+        if (now >= rotationTime)
+        {
+            // NOTE: Retired as of when it was due, not when we noticed
+            this.previousKey = currentKey.retire(rotationTime);
+            this.currentKey = createTicketKey(now);
+        }
+
+        if (null != previousKey && now - previousKey.retiredMillis >= interval)
+        {
+            this.previousKey = null;
+        }
+    }
+
+    private synchronized TicketKey findKey(byte[] ticket)
+    {
+        expireKeys(currentTimeMillis());
+
+        if (Arrays.constantTimeAreEqual(KEY_NAME_LENGTH, currentKey.keyName, 0, ticket, 0))
+        {
+            return currentKey;
+        }
+        if (null != previousKey && Arrays.constantTimeAreEqual(KEY_NAME_LENGTH, previousKey.keyName, 0, ticket, 0))
+        {
+            return previousKey;
+        }
+        return null;
+    }
+
+    private synchronized TicketKey getCurrentKey()
+    {
+        expireKeys(currentTimeMillis());
+
+        return currentKey;
+    }
+}
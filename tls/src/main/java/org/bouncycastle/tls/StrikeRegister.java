@@ -0,0 +1,152 @@
+package org.bouncycastle.tls;
+
+import java.util.Hashtable;
+
+import org.bouncycastle.util.Arrays;
+
+/**
+ * A bounded, in-memory {@link TlsAntiReplayStore} combining the freshness check of RFC 8446 8.3 with the
+ * ClientHello recording of RFC 8446 8.2.
+ * <p>
+ * Early data is only accepted when the ticket age reported by the client is within a window of the age expected by
+ * the server. A ClientHello accepted at some time can therefore only be replayed (with the same reported ticket age)
+ * successfully within twice that window, which is how long each ClientHello is remembered. When the register is full
+ * of unexpired entries, early data is rejected (the handshake itself proceeds normally) until space is available.
+ * </p><p>
+ * A register only protects the servers that share it; a deployment with several servers must either share one
+ * register or ensure each ticket can only be redeemed at a single server.
+ * </p><p>
+ * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+ * </p>
+ */
+public class StrikeRegister
+    implements TlsAntiReplayStore
+{
+    /**
+     * The default freshness window (in milliseconds).
+     */
+    public static final long DEFAULT_WINDOW = 10000L;
+
+    private static final class Key
+    {
+        private final byte[] id;
+        private final int hashCode;
+
+        Key(byte[] id)
+        {
+            this.id = id;
+            this.hashCode = Arrays.hashCode(id);
+        }
+
+        public boolean equals(Object obj)
+        {
+            return obj instanceof Key && Arrays.areEqual(id, ((Key)obj).id);
+        }
+
+        public int hashCode()
+        {
+            return hashCode;
+        }
+    }
+
+    protected final int capacity;
+    protected final long window;
+
+    // NOTE: Entries are held in a ring, in order of insertion (and therefore of expiry)
+    private final Key[] keys;
+    private final long[] expiries;
+    private final Hashtable index;
+    private int head = 0, count = 0;
+
+    /**
+     * Create a register with the {@link #DEFAULT_WINDOW default} freshness window.
+     *
+     * @param capacity
+     *            the maximum number of ClientHellos remembered at any time.
+     */
+    public StrikeRegister(int capacity)
+    {
+        this(capacity, DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param capacity
+     *            the maximum number of ClientHellos remembered at any time.
+     * @param window
+     *            the largest difference (in milliseconds) tolerated between the ticket age reported by the client
+     *            and the age expected by the server.
+     */
+    public StrikeRegister(int capacity, long window)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("'capacity' must be > 0");
+        }
+        if (window < 1L)
+        {
+            throw new IllegalArgumentException("'window' must be > 0");
+        }
+
+        this.capacity = capacity;
+        this.window = window;
+        this.keys = new Key[capacity];
+        this.expiries = new long[capacity];
+        this.index = new Hashtable(capacity);
+    }
+
+    public synchronized boolean checkAndRecord(byte[] clientHelloID, long ticketAgeSkew)
+    {
+        if (null == clientHelloID)
+        {
+            throw new NullPointerException("'clientHelloID' cannot be null");
+        }
+
+        if (Math.abs(ticketAgeSkew) > window)
+        {
+            return false;
+        }
+
+        long now = currentTimeMillis();
+
+        purgeExpired(now);
+
+        Key key = new Key(Arrays.clone(clientHelloID));
+        if (index.containsKey(key) || count >= capacity)
+        {
+            return false;
+        }
+
+        int tail = (head + count) % capacity;
+        keys[tail] = key;
+        expiries[tail] = now + 2 * window;
+        index.put(key, key);
+        ++count;
+
+        return true;
+    }
+
+    /**
+     * @return the number of ClientHellos currently remembered (including any that have expired but not yet been
+     *         purged).
+     */
+    public synchronized int size()
+    {
+        return count;
+    }
+
+    protected long currentTimeMillis()
+    {
+        return System.currentTimeMillis();
+    }
+
+    private void purgeExpired(long now)
+    {
+        while (count > 0 && expiries[head] <= now)
+        {
+            index.remove(keys[head]);
+            keys[head] = null;
+            head = (head + 1) % capacity;
+            --count;
+        }
+    }
+}
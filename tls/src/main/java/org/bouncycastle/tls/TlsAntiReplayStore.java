@@ -0,0 +1,27 @@
+package org.bouncycastle.tls;
+
+/**
+ * Base interface for the anti-replay mechanism a server applies before accepting TLS 1.3 0-RTT early data (see
+ * RFC 8446 8). Implementations are shared by all connections that accept tickets from the same
+ * {@link SessionTicketKeyRing}, so must be thread-safe.
+ * <p>
+ * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+ * </p>
+ *
+ * @see StrikeRegister
+ */
+public interface TlsAntiReplayStore
+{
+    /**
+     * Decide whether early data may be accepted for a ClientHello and, if so, record the ClientHello so that any
+     * replay of it will not also be accepted.
+     *
+     * @param clientHelloID
+     *            a value unique to the ClientHello (its random value, which is covered by the PSK binder).
+     * @param ticketAgeSkew
+     *            the difference (in milliseconds) between the ticket age reported by the client and the age of the
+     *            ticket according to the server's clock (see RFC 8446 8.3).
+     * @return true if early data may be accepted for this ClientHello, otherwise false.
+     */
+    boolean checkAndRecord(byte[] clientHelloID, long ticketAgeSkew);
+}
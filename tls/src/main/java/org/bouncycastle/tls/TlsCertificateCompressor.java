@@ -0,0 +1,47 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+
+/**
+ * Base interface for an implementation of a TLS 1.3 certificate compression algorithm (see RFC 8879). Instances are
+ * typically shared by many connections, so must be thread-safe.
+ * <p>
+ * Only {@link CertificateCompressionAlgorithm#zlib} is implemented here (see {@link ZlibCertificateCompressor});
+ * support for {@link CertificateCompressionAlgorithm#brotli} or {@link CertificateCompressionAlgorithm#zstd} can be
+ * added by implementing this interface over a suitable library.
+ * </p><p>
+ * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+ * </p>
+ *
+ * @see CachedCertificateCompressor
+ */
+public interface TlsCertificateCompressor
+{
+    /**
+     * @return the {@link CertificateCompressionAlgorithm} implemented by this compressor.
+     */
+    int getAlgorithm();
+
+    /**
+     * Compress the encoding of a Certificate message (the message body only).
+     *
+     * @param certificateMessage
+     *            the encoded Certificate message.
+     * @return the compressed data (which must not be modified by the caller).
+     * @throws IOException
+     */
+    byte[] compress(byte[] certificateMessage) throws IOException;
+
+    /**
+     * Decompress a received compressed_certificate_message.
+     *
+     * @param compressedCertificateMessage
+     *            the compressed data.
+     * @param uncompressedLength
+     *            the length of the uncompressed Certificate message claimed by the peer.
+     * @return the uncompressed data, which must have length exactly <code>uncompressedLength</code>.
+     * @throws IOException
+     *             if the data could not be decompressed, or its length exceeds <code>uncompressedLength</code>.
+     */
+    byte[] decompress(byte[] compressedCertificateMessage, int uncompressedLength) throws IOException;
+}
@@ -121,4 +121,34 @@ Vector getClientSupplementalData()
      */
     void notifyNewSessionTicket(NewSessionTicket newSessionTicket)
         throws IOException;
+
+    /**
+     * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+     * 
+     * Notifies the client of a resumable session established by a TLS 1.3 NewSessionTicket message. The session
+     * can later be returned from {@link #getSessionToResume()} to offer its ticket for resumption. Note that this may
+     * be called at any time after the handshake has completed (possibly several times per connection).
+     * 
+     * @param session the resumable {@link TlsSession}.
+     * @throws IOException
+     */
+    void notifyResumableSession(TlsSession session)
+        throws IOException;
+
+    /**
+     * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+     * 
+     * Return application data to send as TLS 1.3 0-RTT early data. Note that this will only be called when resuming
+     * a session (from {@link #getSessionToResume()}) whose ticket permits early data, and the data is only sent if it
+     * fits within the limit set by the server for that ticket. Early data can be replayed by an attacker, so it should
+     * be safe to process more than once.
+     * 
+     * Whether the server accepted the early data is available (once the handshake completes) from
+     * {@link SecurityParameters#isEarlyDataAccepted()}; if not, the application is responsible for sending it again.
+     * 
+     * @return the early data to send, or null to not send any.
+     * @throws IOException
+     */
+    byte[] getEarlyData()
+        throws IOException;
 }
@@ -9,6 +9,8 @@
 import java.util.Vector;
 
 import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsHash;
+import org.bouncycastle.tls.crypto.TlsHashOutputStream;
 import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.tls.crypto.TlsStreamSigner;
 import org.bouncycastle.util.Arrays;
@@ -23,6 +25,7 @@
     protected Hashtable clientAgreements = null;
     OfferedPsks.BindersConfig clientBinders = null;
     protected ClientHello clientHello = null;
+    protected byte[] earlyData = null;
     protected TlsKeyExchange keyExchange = null;
     protected TlsAuthentication authentication = null;
 
@@ -114,6 +117,7 @@ protected void cleanupHandshake()
         this.clientAgreements = null;
         this.clientBinders = null;
         this.clientHello = null;
+        this.earlyData = null;
         this.keyExchange = null;
         this.authentication = null;
 
@@ -147,6 +151,7 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
         switch (type)
         {
         case HandshakeType.certificate:
+        case HandshakeType.compressed_certificate:
         {
             switch (this.connection_state)
             {
@@ -157,7 +162,15 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
             }
             case CS_SERVER_CERTIFICATE_REQUEST:
             {
-                receive13ServerCertificate(buf);
+                if (HandshakeType.compressed_certificate == type)
+                {
+                    receive13ServerCertificate(TlsUtils.receive13CompressedCertificate(tlsClient, buf,
+                        TlsExtensionsUtils.getCompressCertificateExtension(clientExtensions)));
+                }
+                else
+                {
+                    receive13ServerCertificate(buf);
+                }
                 this.connection_state = CS_SERVER_CERTIFICATE;
                 break;
             }
@@ -242,11 +255,22 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
                 // See RFC 8446 D.4.
                 recordStream.setIgnoreChangeCipherSpec(false);
 
-                /*
-                 * TODO[tls13] After receiving the server's Finished message, if the server has accepted early
-                 * data, an EndOfEarlyData message will be sent to indicate the key change. This message will
-                 * be encrypted with the 0-RTT traffic keys.
-                 */
+                if (null != earlyData)
+                {
+                    /*
+                     * RFC 8446 4.5. If the server sent an "early_data" extension in EncryptedExtensions, the
+                     * client MUST send an EndOfEarlyData message after receiving the server Finished.
+                     */
+                    if (tlsClientContext.getSecurityParametersHandshake().isEarlyDataAccepted())
+                    {
+                        send13EndOfEarlyDataMessage();
+                    }
+
+                    // NOTE: The rest of the client's flight is protected with the handshake traffic keys
+                    recordStream.enablePendingCipherWrite();
+
+                    this.earlyData = null;
+                }
 
                 if (null != certificateRequest)
                 {
@@ -265,7 +289,11 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
                         clientCertificate = Certificate.EMPTY_CHAIN_TLS13;
                     }
 
-                    send13CertificateMessage(clientCertificate);
+                    TlsCertificateCompressor certificateCompressor = clientCertificate.isEmpty() ? null
+                        : TlsUtils.selectCertificateCompressor(tlsClient.getCertificateCompressors(),
+                            certificateRequest.getCertificateCompressionAlgorithms());
+
+                    send13CertificateMessage(clientCertificate, certificateCompressor);
                     this.connection_state = CS_CLIENT_CERTIFICATE;
 
                     if (null != clientCredentials)
@@ -280,7 +308,10 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
                 send13FinishedMessage();
                 this.connection_state = CS_CLIENT_FINISHED;
 
+                byte[] clientFinishedTranscriptHash = TlsUtils.getCurrentPRFHash(handshakeHash);
+
                 TlsUtils.establish13PhaseApplication(tlsClientContext, serverFinishedTranscriptHash, recordStream);
+                TlsUtils.establish13ResumptionMasterSecret(tlsClientContext, clientFinishedTranscriptHash);
 
                 recordStream.enablePendingCipherWrite();
                 recordStream.enablePendingCipherRead(false);
@@ -337,7 +368,6 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
         case HandshakeType.certificate_url:
         case HandshakeType.client_hello:
         case HandshakeType.client_key_exchange:
-        case HandshakeType.compressed_certificate:
         case HandshakeType.end_of_early_data:
         case HandshakeType.hello_request:
         case HandshakeType.hello_verify_request:
@@ -358,11 +388,6 @@ protected void handleHandshakeMessage(short type, HandshakeMessageInput buf)
         if (connection_state > CS_CLIENT_HELLO
             && TlsUtils.isTLSv13(securityParameters.getNegotiatedVersion()))
         {
-            if (securityParameters.isResumedSession())
-            {
-                throw new TlsFatalAlert(AlertDescription.internal_error);
-            }
-
             handle13HandshakeMessage(type, buf);
             return;
         }
@@ -1021,6 +1046,18 @@ protected void process13ServerHello(ServerHello serverHello, boolean afterHelloR
                 pskEarlySecret = clientBinders.earlySecrets[selected_identity];
 
                 this.selectedPSK13 = true;
+
+                if (selectedPSK instanceof TlsPSKResumption)
+                {
+                    /*
+                     * RFC 8446 4.6.1. Any ticket MUST only be resumed with a cipher suite that has the same KDF
+                     * hash algorithm as that used to establish the original connection.
+                     */
+                    securityParameters.resumedSession = true;
+
+                    // NOTE: The resumption PSK is not notified (only external PSKs are)
+                    selectedPSK = null;
+                }
             }
 
             tlsClient.notifySelectedPSK(selectedPSK);
@@ -1063,8 +1100,11 @@ protected void process13ServerHello(ServerHello serverHello, boolean afterHelloR
 
         TlsUtils.establish13PhaseSecrets(tlsClientContext, pskEarlySecret, sharedSecret);
 
-        invalidateSession();
-        this.tlsSession = TlsUtils.importSession(securityParameters.getSessionID(), null);
+        if (!securityParameters.isResumedSession())
+        {
+            invalidateSession();
+            this.tlsSession = TlsUtils.importSession(securityParameters.getSessionID(), null);
+        }
     }
 
     protected void process13ServerHelloCoda(ServerHello serverHello, boolean afterHelloRetryRequest) throws IOException
@@ -1078,18 +1118,22 @@ protected void process13ServerHelloCoda(ServerHello serverHello, boolean afterHe
         {
             recordStream.setIgnoreChangeCipherSpec(true);
 
-            /*
-             * TODO[tls13] If offering early_data, the record is placed immediately after the first
-             * ClientHello.
-             */
-            /*
-             * TODO[tls13] Ideally wait until just after Server Finished received, but then we'd need to defer
-             * the enabling of the pending write cipher
-             */
-            sendChangeCipherSpecMessage();
+            // NOTE: If offering early_data, the record was placed immediately after the first ClientHello
+            if (null == earlyData)
+            {
+                /*
+                 * TODO[tls13] Ideally wait until just after Server Finished received, but then we'd need to
+                 * defer the enabling of the pending write cipher
+                 */
+                sendChangeCipherSpecMessage();
+            }
         }
 
-        recordStream.enablePendingCipherWrite();
+        // NOTE: If offering early_data, the early traffic keys are used until the server Finished is received
+        if (null == earlyData)
+        {
+            recordStream.enablePendingCipherWrite();
+        }
         recordStream.enablePendingCipherRead(false);
     }
 
@@ -1151,6 +1195,15 @@ protected void processServerHello(ServerHello serverHello)
             return;
         }
 
+        /*
+         * RFC 8446 D.3. A client that attempts to send 0-RTT data MUST fail a connection if it receives
+         * a ServerHello with TLS 1.2 or older.
+         */
+        if (null != earlyData)
+        {
+            throw new TlsFatalAlert(AlertDescription.protocol_version);
+        }
+
         int[] offeredCipherSuites = clientHello.getCipherSuites();
 
         this.clientHello = null;
@@ -1511,22 +1564,54 @@ protected void receive13EncryptedExtensions(ByteArrayInputStream buf)
         securityParameters.applicationProtocol = TlsExtensionsUtils.getALPNExtensionServer(serverExtensions);
         securityParameters.applicationProtocolSet = true;
 
-        Hashtable sessionClientExtensions = clientExtensions, sessionServerExtensions = serverExtensions;
+        /*
+         * NOTE: Even when resuming a session, TLS 1.3 negotiates extensions per-connection, but the version must
+         * be the same as for the original session (the KDF hash was already checked via the selected PSK).
+         */
         if (securityParameters.isResumedSession())
         {
-            if (securityParameters.getCipherSuite() != sessionParameters.getCipherSuite()
-                || CompressionMethod._null != sessionParameters.getCompressionAlgorithm()
+            if (CompressionMethod._null != sessionParameters.getCompressionAlgorithm()
                 || !negotiatedVersion.equals(sessionParameters.getNegotiatedVersion()))
             {
                 throw new TlsFatalAlert(AlertDescription.illegal_parameter);
             }
+        }
 
-            sessionClientExtensions = null;
-            sessionServerExtensions = sessionParameters.readServerExtensions();
+        /*
+         * NOTE: The "early_data" extension can only be here if it was in the (first) ClientHello, which
+         * only offers early data for the resumption PSK (always the first offered).
+         */
+        if (TlsExtensionsUtils.hasEarlyDataIndication(serverExtensions))
+        {
+            /*
+             * RFC 8446 4.2.10. If the server supplies an "early_data" extension, the client MUST verify
+             * that the server's selected_identity is 0. [..] it MUST use the same ALPN value as the one
+             * selected for the session, and the same cipher suite.
+             */
+            ProtocolName sessionProtocol = TlsExtensionsUtils
+                .getALPNExtensionServer(sessionParameters.readServerExtensions());
+            ProtocolName applicationProtocol = securityParameters.getApplicationProtocol();
+
+            if (null == earlyData
+                || !securityParameters.isResumedSession()
+                || securityParameters.getCipherSuite() != sessionParameters.getCipherSuite()
+                || (null == sessionProtocol
+                    ? null != applicationProtocol
+                    : !sessionProtocol.equals(applicationProtocol)))
+            {
+                throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+            }
+
+            securityParameters.earlyDataAccepted = true;
+        }
+        else if (null != securityParameters.earlyExporterMasterSecret)
+        {
+            securityParameters.earlyExporterMasterSecret.destroy();
+            securityParameters.earlyExporterMasterSecret = null;
         }
 
-        securityParameters.maxFragmentLength = processMaxFragmentLengthExtension(sessionClientExtensions,
-            sessionServerExtensions, AlertDescription.illegal_parameter);
+        securityParameters.maxFragmentLength = processMaxFragmentLengthExtension(clientExtensions,
+            serverExtensions, AlertDescription.illegal_parameter);
 
         securityParameters.encryptThenMAC = false;
         securityParameters.truncatedHMac = false;
@@ -1541,10 +1626,7 @@ protected void receive13EncryptedExtensions(ByteArrayInputStream buf)
 
         this.expectSessionTicket = false;
 
-        if (null != sessionClientExtensions)
-        {
-            tlsClient.processServerExtensions(serverExtensions);
-        }
+        tlsClient.processServerExtensions(serverExtensions);
 
         applyMaxFragmentLengthExtension(securityParameters.getMaxFragmentLength());
     }
@@ -1557,8 +1639,6 @@ protected void receive13NewSessionTicket(ByteArrayInputStream buf)
             throw new TlsFatalAlert(AlertDescription.unexpected_message);
         }
 
-        // TODO[tls13] Do something more than just ignore them
-
 //        struct {
 //            uint32 ticket_lifetime;
 //            uint32 ticket_age_add;
@@ -1567,12 +1647,59 @@ protected void receive13NewSessionTicket(ByteArrayInputStream buf)
 //            Extension extensions<0..2^16-2>;
 //        } NewSessionTicket;
 
-        TlsUtils.readUint32(buf);
-        TlsUtils.readUint32(buf);
-        TlsUtils.readOpaque8(buf);
-        TlsUtils.readOpaque16(buf);
-        TlsUtils.readOpaque16(buf);
+        long ticketLifetime = TlsUtils.readUint32(buf);
+        long ticketAgeAdd = TlsUtils.readUint32(buf);
+        byte[] ticketNonce = TlsUtils.readOpaque8(buf);
+        byte[] ticket = TlsUtils.readOpaque16(buf, 1);
+        byte[] extEncoding = TlsUtils.readOpaque16(buf);
         assertEmpty(buf);
+
+        Hashtable ticketExtensions = readExtensionsData13(HandshakeType.new_session_ticket, extEncoding);
+
+        long maxEarlyDataSize = Math.max(0L, TlsExtensionsUtils.getEarlyDataMaxSize(ticketExtensions));
+
+        /*
+         * RFC 8446 4.6.1. Servers MUST NOT use any value greater than 604800 seconds (7 days). The value of
+         * zero indicates that the ticket should be discarded immediately.
+         */
+        if (ticketLifetime > SessionTicketKeyRing.MAX_TICKET_LIFETIME)
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+        }
+        if (ticketLifetime < 1L)
+        {
+            return;
+        }
+
+        SecurityParameters securityParameters = tlsClientContext.getSecurityParametersConnection();
+
+        TlsSecret psk = TlsUtils.derive13ResumptionPSK(securityParameters, ticketNonce);
+
+        // NOTE: The ALPN protocol is retained only so that early data can be checked against it
+        Hashtable sessionServerExtensions = new Hashtable();
+        if (null != securityParameters.getApplicationProtocol())
+        {
+            TlsExtensionsUtils.addALPNExtensionServer(sessionServerExtensions,
+                securityParameters.getApplicationProtocol());
+        }
+
+        SessionParameters sessionParameters = new SessionParameters.Builder()
+            .setCipherSuite(securityParameters.getCipherSuite())
+            .setCompressionAlgorithm(securityParameters.getCompressionAlgorithm())
+            .setExtendedMasterSecret(true)
+            .setLocalCertificate(securityParameters.getLocalCertificate())
+            .setMasterSecret(psk)
+            .setMaxEarlyDataSize(maxEarlyDataSize)
+            .setNegotiatedVersion(securityParameters.getNegotiatedVersion())
+            .setPeerCertificate(securityParameters.getPeerCertificate())
+            .setServerExtensions(sessionServerExtensions)
+            .setTicket(ticket)
+            .setTicketAgeAdd(ticketAgeAdd)
+            .setTicketIssueTime(System.currentTimeMillis())
+            .setTicketLifetime(ticketLifetime)
+            .build();
+
+        tlsClient.notifyResumableSession(TlsUtils.importSession(TlsUtils.EMPTY_BYTES, sessionParameters));
     }
 
     protected void receive13ServerCertificate(ByteArrayInputStream buf)
@@ -1712,11 +1839,28 @@ protected void send13ClientHelloRetry() throws IOException
         {
             recordStream.setIgnoreChangeCipherSpec(true);
 
-            /*
-             * TODO[tls13] If offering early_data, the record is placed immediately after the first
-             * ClientHello.
-             */
-            sendChangeCipherSpecMessage();
+            if (null == earlyData)
+            {
+                sendChangeCipherSpecMessage();
+            }
+            else
+            {
+                /*
+                 * NOTE: The record was placed immediately after the first ClientHello. Any early data was
+                 * rejected by the server, and the second ClientHello is not protected.
+                 */
+                recordStream.resetWriteCipher();
+
+                TlsSecret earlyExporterMasterSecret = tlsClientContext.getSecurityParametersHandshake()
+                    .earlyExporterMasterSecret;
+                if (null != earlyExporterMasterSecret)
+                {
+                    earlyExporterMasterSecret.destroy();
+                    tlsClientContext.getSecurityParametersHandshake().earlyExporterMasterSecret = null;
+                }
+
+                this.earlyData = null;
+            }
         }
 
         sendClientHelloMessage();
@@ -1782,7 +1926,15 @@ protected void sendClientHello()
             securityParameters.clientRandom = createRandomBlock(useGMTUnixTime, tlsClientContext);
         }
 
-        establishSession(offeringTLSv12Minus ? tlsClient.getSessionToResume() : null);
+        {
+            TlsSession sessionToResume = tlsClient.getSessionToResume();
+            if (TlsUtils.isTLSv13Session(sessionToResume) ? !offeringTLSv13Plus : !offeringTLSv12Minus)
+            {
+                sessionToResume = null;
+            }
+
+            establishSession(sessionToResume);
+        }
         tlsClient.notifySessionToResume(tlsSession);
 
         /*
@@ -1813,6 +1965,14 @@ protected void sendClientHello()
 
             TlsExtensionsUtils.addSupportedVersionsExtensionClient(clientExtensions, supportedVersions);
 
+            int[] certificateCompressionAlgorithms = TlsUtils.getCertificateCompressionAlgorithms(
+                tlsClient.getCertificateCompressors());
+            if (null != certificateCompressionAlgorithms
+                && !clientExtensions.containsKey(TlsExtensionsUtils.EXT_compress_certificate))
+            {
+                TlsExtensionsUtils.addCompressCertificateExtension(clientExtensions, certificateCompressionAlgorithms);
+            }
+
             /*
              * RFC 8446 4.2.1. In compatibility mode [..], this field MUST be non-empty, so a client
              * not offering a pre-TLS 1.3 session MUST generate a new 32-byte value.
@@ -1835,7 +1995,13 @@ protected void sendClientHello()
         securityParameters.clientSupportedGroups = TlsExtensionsUtils.getSupportedGroupsExtension(clientExtensions);
 
         this.clientBinders = TlsUtils.addPreSharedKeyToClientHello(tlsClientContext, tlsClient, clientExtensions,
-            offeredCipherSuites);
+            offeredCipherSuites, sessionParameters, sessionMasterSecret);
+
+        this.earlyData = selectEarlyData();
+        if (null != earlyData)
+        {
+            TlsExtensionsUtils.addEarlyDataIndication(clientExtensions);
+        }
 
         // TODO[tls13-psk] Perhaps don't add key_share if external PSK(s) offered and 'psk_dhe_ke' not offered  
         this.clientAgreements = TlsUtils.addKeyShareToClientHello(tlsClientContext, tlsClient, clientExtensions);
@@ -1913,6 +2079,55 @@ else if (!offeringTLSv13Plus && tlsClient.requiresExtendedMasterSecret())
             null, offeredCipherSuites, clientExtensions, bindersSize);
 
         sendClientHelloMessage();
+
+        if (null != earlyData)
+        {
+            send13EarlyData();
+        }
+    }
+
+    protected void send13EarlyData() throws IOException
+    {
+        SecurityParameters securityParameters = tlsClientContext.getSecurityParametersHandshake();
+
+        // NOTE: Records other than the initial ClientHello use the TLS 1.2 legacy_record_version
+        recordStream.setWriteVersion(ProtocolVersion.TLSv12);
+
+        // See RFC 8446 D.4.
+        sendChangeCipherSpecMessage();
+
+        /*
+         * RFC 8446 4.2.10. [..] the client uses the cipher suite and key schedule of the PSK it is offering
+         * first, so its parameters are provisionally used until the ServerHello is received.
+         */
+        securityParameters.negotiatedVersion = sessionParameters.getNegotiatedVersion();
+        TlsUtils.negotiatedCipherSuite(securityParameters, sessionParameters.getCipherSuite());
+        securityParameters.earlySecret = clientBinders.earlySecrets[0];
+
+        byte[] clientHelloTranscriptHash;
+        {
+            TlsHash hash = tlsClientContext.getCrypto().createHash(securityParameters.getPRFCryptoHashAlgorithm());
+            handshakeHash.copyBufferTo(new TlsHashOutputStream(hash));
+            clientHelloTranscriptHash = hash.calculateHash();
+        }
+
+        TlsUtils.establish13PhaseEarly(tlsClientContext, clientHelloTranscriptHash, recordStream);
+
+        // NOTE: The negotiated version is established by the ServerHello
+        securityParameters.negotiatedVersion = null;
+
+        recordStream.enablePendingCipherWrite();
+
+        int limit = recordStream.getPlaintextLimit();
+        for (int off = 0; off < earlyData.length; off += limit)
+        {
+            safeWriteRecord(ContentType.application_data, earlyData, off, Math.min(limit, earlyData.length - off));
+        }
+    }
+
+    protected void send13EndOfEarlyDataMessage() throws IOException
+    {
+        HandshakeMessageOutput.send(this, HandshakeType.end_of_early_data, TlsUtils.EMPTY_BYTES);
     }
 
     protected void sendClientHelloMessage() throws IOException
@@ -1924,12 +2139,58 @@ protected void sendClientHelloMessage() throws IOException
 
         if (null != clientBinders)
         {
-            OfferedPsks.encodeBinders(message, tlsClientContext.getCrypto(), handshakeHash, clientBinders);
+            boolean afterHelloRetryRequest = CS_SERVER_HELLO_RETRY_REQUEST == connection_state;
+
+            OfferedPsks.encodeBinders(message, tlsClientContext.getCrypto(), handshakeHash, clientBinders,
+                afterHelloRetryRequest);
         }
 
         message.sendClientHello(this, handshakeHash, clientHello.getBindersSize());
     }
 
+    private byte[] selectEarlyData() throws IOException
+    {
+        /*
+         * RFC 8446 4.2.10. When a PSK is used and early data is allowed for that PSK, the client can send
+         * Application Data in its first flight of messages.
+         * 
+         * NOTE: Only early data for the resumption PSK (from a ticket allowing it) is supported.
+         */
+        if (null == clientBinders || !(clientBinders.psks[0] instanceof TlsPSKResumption))
+        {
+            return null;
+        }
+
+        long maxEarlyDataSize = sessionParameters.getMaxEarlyDataSize();
+        if (maxEarlyDataSize < 1L)
+        {
+            return null;
+        }
+
+        byte[] earlyData = tlsClient.getEarlyData();
+        if (null == earlyData || earlyData.length < 1 || earlyData.length > maxEarlyDataSize)
+        {
+            return null;
+        }
+
+        /*
+         * RFC 8446 4.2.10. [..] if the client opts to [offer ALPN], it MUST use the same ALPN value as the one
+         * selected for the session.
+         */
+        ProtocolName sessionProtocol = TlsExtensionsUtils
+            .getALPNExtensionServer(sessionParameters.readServerExtensions());
+        if (null != sessionProtocol)
+        {
+            Vector protocolNames = TlsExtensionsUtils.getALPNExtensionClient(clientExtensions);
+            if (null == protocolNames || !protocolNames.contains(sessionProtocol))
+            {
+                return null;
+            }
+        }
+
+        return earlyData;
+    }
+
     protected void sendClientKeyExchange()
         throws IOException
     {
@@ -0,0 +1,43 @@
+package org.bouncycastle.tls;
+
+import org.bouncycastle.tls.crypto.TlsSecret;
+
+/**
+ * A TLS 1.3 resumption PSK, identified by a session ticket (see RFC 8446 4.6.1).
+ */
+class TlsPSKResumption
+    implements TlsPSK
+{
+    protected final byte[] ticket;
+    protected final TlsSecret key;
+    protected final int prfAlgorithm;
+    protected final long obfuscatedTicketAge;
+
+    TlsPSKResumption(byte[] ticket, TlsSecret key, int prfAlgorithm, long obfuscatedTicketAge)
+    {
+        this.ticket = ticket;
+        this.key = key;
+        this.prfAlgorithm = prfAlgorithm;
+        this.obfuscatedTicketAge = obfuscatedTicketAge;
+    }
+
+    public byte[] getIdentity()
+    {
+        return ticket;
+    }
+
+    public TlsSecret getKey()
+    {
+        return key;
+    }
+
+    public int getPRFAlgorithm()
+    {
+        return prfAlgorithm;
+    }
+
+    public long getObfuscatedTicketAge()
+    {
+        return obfuscatedTicketAge;
+    }
+}
@@ -47,6 +47,21 @@
 
     short[] getPskKeyExchangeModes();
 
+    /**
+     * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+     * 
+     * Return the TLS 1.3 certificate compression algorithms (RFC 8879) supported by this peer, in order of
+     * preference. A client offers them in its ClientHello, and a server that requests a client certificate offers
+     * them in its CertificateRequest; the peer may then send a CompressedCertificate message using any of them.
+     * When sending a Certificate message, the first of these that the peer offered is used.
+     * 
+     * Compression results are best cached across connections (see {@link CachedCertificateCompressor}), so the
+     * same instances should be returned for every connection.
+     * 
+     * @return an array of {@link TlsCertificateCompressor}, or null to disable certificate compression.
+     */
+    TlsCertificateCompressor[] getCertificateCompressors();
+
     /**
      * This option is provided as a last resort for interoperability with TLS peers that fail to
      * correctly send a close_notify alert at end of stream. Implementations SHOULD return true;
@@ -563,7 +563,8 @@ protected void processRecord(short protocol, byte[] buf, int off, int len)
         {
             if (!appDataReady)
             {
-                throw new TlsFatalAlert(AlertDescription.unexpected_message);
+                // NOTE: A (TLS 1.3) server may accept early data before the handshake is complete
+                processEarlyData(len);
             }
             applicationDataQueue.addData(buf, off, len);
             processApplicationDataQueue();
@@ -609,6 +610,16 @@ protected void processRecord(short protocol, byte[] buf, int off, int len)
         }
     }
 
+    /**
+     * Called for each application_data record received before the handshake has completed. The data is queued for
+     * the application unless an exception is thrown.
+     */
+    protected void processEarlyData(int length)
+        throws IOException
+    {
+        throw new TlsFatalAlert(AlertDescription.unexpected_message);
+    }
+
     private void processHandshakeQueue(ByteQueue queue)
         throws IOException
     {
@@ -1769,6 +1780,12 @@ protected void sendCertificateMessage(Certificate certificate, OutputStream endP
     }
 
     protected void send13CertificateMessage(Certificate certificate) throws IOException
+    {
+        send13CertificateMessage(certificate, null);
+    }
+
+    protected void send13CertificateMessage(Certificate certificate, TlsCertificateCompressor compressor)
+        throws IOException
     {
         if (null == certificate)
         {
@@ -1782,9 +1799,32 @@ protected void send13CertificateMessage(Certificate certificate) throws IOExcept
             throw new TlsFatalAlert(AlertDescription.internal_error);
         }
 
-        HandshakeMessageOutput message = new HandshakeMessageOutput(HandshakeType.certificate);
-        certificate.encode(context, message, null);
-        message.send(this);
+        if (null == compressor)
+        {
+            HandshakeMessageOutput message = new HandshakeMessageOutput(HandshakeType.certificate);
+            certificate.encode(context, message, null);
+            message.send(this);
+        }
+        else
+        {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            certificate.encode(context, buf, null);
+            byte[] uncompressed = buf.toByteArray();
+
+            byte[] compressed = compressor.compress(uncompressed);
+            if (null == compressed || compressed.length < 1)
+            {
+                throw new TlsFatalAlert(AlertDescription.internal_error);
+            }
+
+            // RFC 8879 4. The CompressedCertificate message (not the Certificate) is in the transcript hash
+            HandshakeMessageOutput message = new HandshakeMessageOutput(HandshakeType.compressed_certificate,
+                2 + 3 + 3 + compressed.length);
+            TlsUtils.writeUint16(compressor.getAlgorithm(), message);
+            TlsUtils.writeUint24(uncompressed.length, message);
+            TlsUtils.writeOpaque24(compressed, message);
+            message.send(this);
+        }
 
         securityParameters.localCertificate = certificate;
     }
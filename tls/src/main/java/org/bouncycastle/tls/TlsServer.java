@@ -39,6 +39,54 @@
      */
     TlsPSKExternal getExternalPSK(Vector identities);
 
+    /**
+     * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+     * 
+     * Return the {@link SessionTicketKeyRing} used to issue (and redeem) stateless TLS 1.3 session tickets. Note
+     * that tickets will only be issued after a TLS 1.3 handshake, and only redeemed when the client offers them as
+     * PSK identities.
+     * 
+     * @return the {@link SessionTicketKeyRing} to use, or null to disable TLS 1.3 session tickets.
+     */
+    SessionTicketKeyRing getSessionTicketKeyRing();
+
+    /**
+     * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+     * 
+     * Decide whether a session recovered from a (valid, unexpired) TLS 1.3 session ticket may be resumed. Note that
+     * the peer's certificate chain for the session (if any) may need to be revalidated.
+     * 
+     * @param sessionParameters the {@link SessionParameters} of the session recovered from the ticket.
+     * @return true to allow resumption of the session, otherwise false.
+     * @see SessionParameters#getPeerCertificate()
+     */
+    boolean allowSessionTicketResumption(SessionParameters sessionParameters) throws IOException;
+
+    /**
+     * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+     * 
+     * Return the maximum amount of TLS 1.3 0-RTT early data that clients may send when resuming a session from a
+     * ticket issued by this server (advertised in the NewSessionTicket message). Early data is only accepted when
+     * {@link #getAntiReplayStore()} also returns a non-null value. Any accepted early data is available to read once
+     * the handshake completes, ahead of any data sent after the handshake; the application must be prepared for it
+     * to have been replayed.
+     * 
+     * @return the maximum size (in bytes) of early data, or 0 to disable early data.
+     * @see SecurityParameters#isEarlyDataAccepted()
+     */
+    long getMaxEarlyDataSize();
+
+    /**
+     * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+     * 
+     * Return the {@link TlsAntiReplayStore} consulted before accepting TLS 1.3 0-RTT early data. This should be
+     * shared by all connections using the same {@link SessionTicketKeyRing}.
+     * 
+     * @return the {@link TlsAntiReplayStore} to use, or null to never accept early data.
+     * @see StrikeRegister
+     */
+    TlsAntiReplayStore getAntiReplayStore();
+
     void notifySession(TlsSession session);
 
     void notifyClientVersion(ProtocolVersion clientVersion) throws IOException;
@@ -12,6 +12,7 @@
 import org.bouncycastle.tls.crypto.TlsCrypto;
 import org.bouncycastle.tls.crypto.TlsDHConfig;
 import org.bouncycastle.tls.crypto.TlsECConfig;
+import org.bouncycastle.tls.crypto.TlsNonceGenerator;
 import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.util.Arrays;
 
@@ -24,6 +25,7 @@
     protected int[] offeredCipherSuites = null;
     protected TlsKeyExchange keyExchange = null;
     protected CertificateRequest certificateRequest = null;
+    protected long earlyDataRemaining = -1L;
 
     /**
      * Constructor for non-blocking mode.<br>
@@ -102,6 +104,7 @@ protected void cleanupHandshake()
         this.offeredCipherSuites = null;
         this.keyExchange = null;
         this.certificateRequest = null;
+        this.earlyDataRemaining = -1L;
     }
 
     protected boolean expectCertificateVerifyMessage()
@@ -117,6 +120,59 @@ protected boolean expectCertificateVerifyMessage()
             && (null == keyExchange || keyExchange.requiresCertificateVerify());
     }
 
+    private boolean acceptEarlyData(OfferedPsks.SelectedConfig selectedPSK) throws IOException
+    {
+        /*
+         * RFC 8446 4.2.10. In order to accept early data, the server MUST have accepted a PSK cipher
+         * suite and selected the first key offered in the client's "pre_shared_key" extension.
+         */
+        if (null == selectedPSK || null == selectedPSK.sessionParameters || 0 != selectedPSK.index)
+        {
+            return false;
+        }
+
+        SessionParameters ticketParameters = selectedPSK.sessionParameters;
+        TlsAntiReplayStore antiReplayStore = tlsServer.getAntiReplayStore();
+        if (ticketParameters.getMaxEarlyDataSize() < 1L || tlsServer.getMaxEarlyDataSize() < 1L
+            || null == antiReplayStore)
+        {
+            return false;
+        }
+
+        /*
+         * RFC 8446 4.2.10. [..] the server MUST verify that the following values are the same as those
+         * associated with the selected PSK: [version, cipher suite, ALPN protocol].
+         * 
+         * NOTE: The version and cipher suite were already checked when the ticket was opened.
+         */
+        SecurityParameters securityParameters = tlsServerContext.getSecurityParametersHandshake();
+        ProtocolName ticketProtocol = TlsExtensionsUtils
+            .getALPNExtensionServer(ticketParameters.readServerExtensions());
+        ProtocolName applicationProtocol = securityParameters.getApplicationProtocol();
+        if (null == ticketProtocol ? null != applicationProtocol : !ticketProtocol.equals(applicationProtocol))
+        {
+            return false;
+        }
+
+        // RFC 8446 8.3. Freshness Checks
+        long ticketAge = (((TlsPSKResumption)selectedPSK.psk).getObfuscatedTicketAge()
+            - ticketParameters.getTicketAgeAdd()) & 0xFFFFFFFFL;
+        long expectedTicketAge = System.currentTimeMillis() - ticketParameters.getTicketIssueTime();
+
+        // RFC 8446 8.2. Client Hello Recording
+        return antiReplayStore.checkAndRecord(securityParameters.getClientRandom(), ticketAge - expectedTicketAge);
+    }
+
+    private long getEarlyDataSkipLimit()
+    {
+        long limit = tlsServer.getMaxEarlyDataSize();
+        if (null != sessionParameters)
+        {
+            limit = Math.max(limit, sessionParameters.getMaxEarlyDataSize());
+        }
+        return limit;
+    }
+
     protected ServerHello generate13HelloRetryRequest(ClientHello clientHello) throws IOException
     {
         // TODO[tls13] In future there might be other reasons for a HelloRetryRequest.
@@ -167,9 +223,10 @@ protected ServerHello generate13ServerHello(ClientHello clientHello, HandshakeMe
         ProtocolVersion serverVersion = securityParameters.getNegotiatedVersion();
         TlsCrypto crypto = tlsServerContext.getCrypto();
 
-        // NOTE: Will only select for psk_dhe_ke
         OfferedPsks.SelectedConfig selectedPSK = TlsUtils.selectPreSharedKey(tlsServerContext, tlsServer,
-            clientHelloExtensions, clientHelloMessage, handshakeHash, afterHelloRetryRequest);
+            clientHelloExtensions, clientHelloMessage, handshakeHash, afterHelloRetryRequest, offeredCipherSuites);
+
+        boolean selectedPSKOnly = null != selectedPSK && PskKeyExchangeMode.psk_ke == selectedPSK.pskKeyExchangeMode;
 
         Vector clientShares = TlsExtensionsUtils.getKeyShareClientHello(clientHelloExtensions);
         KeyShareEntry clientShare = null;
@@ -181,6 +238,12 @@ protected ServerHello generate13ServerHello(ClientHello clientHello, HandshakeMe
                 throw new TlsFatalAlert(AlertDescription.internal_error);
             }
 
+            boolean resumingSession = null != selectedPSK && null != selectedPSK.sessionParameters;
+            if (resumingSession != securityParameters.isResumedSession())
+            {
+                throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+            }
+
             if (null == selectedPSK)
             {
                 /*
@@ -259,14 +322,17 @@ protected ServerHello generate13ServerHello(ClientHello clientHello, HandshakeMe
 
             tlsServer.processClientExtensions(clientHelloExtensions);
 
-            /*
-             * NOTE: Currently no server support for session resumption
-             * 
-             * If adding support, ensure securityParameters.tlsUnique is set to the localVerifyData, but
-             * ONLY when extended_master_secret has been negotiated (otherwise NULL).
-             */
+            if (null != selectedPSK && null != selectedPSK.sessionParameters)
+            {
+                // NOTE: Resumption via a session ticket (see RFC 8446 2.2)
+                securityParameters.resumedSession = true;
+
+                this.tlsSession = TlsUtils.importSession(TlsUtils.EMPTY_BYTES, selectedPSK.sessionParameters);
+                this.sessionParameters = selectedPSK.sessionParameters;
+                this.sessionMasterSecret = null;
+            }
+            else
             {
-                // TODO[tls13] Resumption/PSK
                 securityParameters.resumedSession = false;
 
                 this.tlsSession = TlsUtils.importSession(TlsUtils.EMPTY_BYTES, null);
@@ -281,8 +347,10 @@ protected ServerHello generate13ServerHello(ClientHello clientHello, HandshakeMe
             TlsUtils.negotiatedVersionTLSServer(tlsServerContext);
 
             {
-                // TODO[tls13] Constrain selection when PSK selected
-                int cipherSuite = tlsServer.getSelectedCipherSuite();
+                // TODO[tls13] Constrain selection when external PSK selected
+                int cipherSuite = securityParameters.isResumedSession()
+                    ?   sessionParameters.getCipherSuite()
+                    :   tlsServer.getSelectedCipherSuite();
 
                 if (!TlsUtils.isValidCipherSuiteSelection(offeredCipherSuites, cipherSuite) ||
                     !TlsUtils.isValidVersionForCipherSuite(cipherSuite, serverVersion))
@@ -296,37 +364,51 @@ protected ServerHello generate13ServerHello(ClientHello clientHello, HandshakeMe
             int[] clientSupportedGroups = securityParameters.getClientSupportedGroups();
             int[] serverSupportedGroups = securityParameters.getServerSupportedGroups();
 
-            clientShare = TlsUtils.selectKeyShare(crypto, serverVersion, clientShares, clientSupportedGroups,
-                serverSupportedGroups);
-
-            if (null == clientShare)
+            // NOTE: For psk_ke mode, no (EC)DHE key exchange is performed
+            if (!selectedPSKOnly)
             {
-                this.retryGroup = TlsUtils.selectKeyShareGroup(crypto, serverVersion, clientSupportedGroups,
+                clientShare = TlsUtils.selectKeyShare(crypto, serverVersion, clientShares, clientSupportedGroups,
                     serverSupportedGroups);
-                if (retryGroup < 0)
+
+                if (null == clientShare)
                 {
-                    throw new TlsFatalAlert(AlertDescription.handshake_failure);
-                }
+                    this.retryGroup = TlsUtils.selectKeyShareGroup(crypto, serverVersion, clientSupportedGroups,
+                        serverSupportedGroups);
+                    if (retryGroup < 0)
+                    {
+                        throw new TlsFatalAlert(AlertDescription.handshake_failure);
+                    }
 
-                this.retryCookie = tlsServerContext.getNonceGenerator().generateNonce(16);
+                    this.retryCookie = tlsServerContext.getNonceGenerator().generateNonce(16);
 
-                return generate13HelloRetryRequest(clientHello);
-            }
+                    /*
+                     * RFC 8446 4.2.10. [..] when the server [..] responds with a HelloRetryRequest [..] it
+                     * ignores the early data by skipping all records with an external content type of
+                     * "application_data" [..] up to the configured max_early_data_size.
+                     */
+                    if (TlsExtensionsUtils.hasEarlyDataIndication(clientHelloExtensions))
+                    {
+                        recordStream.skipEarlyData(getEarlyDataSkipLimit());
+                    }
 
-            if (clientShare.getNamedGroup() != serverSupportedGroups[0])
-            {
-                /*
-                 * TODO[tls13] RFC 8446 4.2.7. As of TLS 1.3, servers are permitted to send the
-                 * "supported_groups" extension to the client. Clients MUST NOT act upon any
-                 * information found in "supported_groups" prior to successful completion of the
-                 * handshake but MAY use the information learned from a successfully completed
-                 * handshake to change what groups they use in their "key_share" extension in
-                 * subsequent connections. If the server has a group it prefers to the ones in the
-                 * "key_share" extension but is still willing to accept the ClientHello, it SHOULD
-                 * send "supported_groups" to update the client's view of its preferences; this
-                 * extension SHOULD contain all groups the server supports, regardless of whether
-                 * they are currently supported by the client.
-                 */
+                    return generate13HelloRetryRequest(clientHello);
+                }
+
+                if (clientShare.getNamedGroup() != serverSupportedGroups[0])
+                {
+                    /*
+                     * TODO[tls13] RFC 8446 4.2.7. As of TLS 1.3, servers are permitted to send the
+                     * "supported_groups" extension to the client. Clients MUST NOT act upon any
+                     * information found in "supported_groups" prior to successful completion of the
+                     * handshake but MAY use the information learned from a successfully completed
+                     * handshake to change what groups they use in their "key_share" extension in
+                     * subsequent connections. If the server has a group it prefers to the ones in the
+                     * "key_share" extension but is still willing to accept the ClientHello, it SHOULD
+                     * send "supported_groups" to update the client's view of its preferences; this
+                     * extension SHOULD contain all groups the server supports, regardless of whether
+                     * they are currently supported by the client.
+                     */
+                }
             }
         }
 
@@ -357,7 +439,7 @@ protected ServerHello generate13ServerHello(ClientHello clientHello, HandshakeMe
         if (!serverEncryptedExtensions.isEmpty())
         {
             securityParameters.maxFragmentLength = processMaxFragmentLengthExtension(
-                securityParameters.isResumedSession() ? null : clientHelloExtensions, serverEncryptedExtensions,
+                clientHelloExtensions, serverEncryptedExtensions,
                 AlertDescription.internal_error);
         }
 
@@ -384,7 +466,33 @@ protected ServerHello generate13ServerHello(ClientHello clientHello, HandshakeMe
             TlsExtensionsUtils.addPreSharedKeyServerHello(serverHelloExtensions, selectedPSK.index);
         }
 
-        TlsSecret sharedSecret;
+        if (TlsExtensionsUtils.hasEarlyDataIndication(clientHelloExtensions))
+        {
+            /*
+             * RFC 8446 4.2.10. A client MUST NOT include the "early_data" extension in its followup
+             * ClientHello.
+             */
+            if (afterHelloRetryRequest)
+            {
+                throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+            }
+
+            if (acceptEarlyData(selectedPSK))
+            {
+                securityParameters.earlyDataAccepted = true;
+
+                this.earlyDataRemaining = sessionParameters.getMaxEarlyDataSize();
+
+                TlsExtensionsUtils.addEarlyDataIndication(serverEncryptedExtensions);
+            }
+            else
+            {
+                recordStream.skipEarlyData(getEarlyDataSkipLimit());
+            }
+        }
+
+        TlsSecret sharedSecret = null;
+        if (null != clientShare)
         {
             int namedGroup = clientShare.getNamedGroup();
     
@@ -838,21 +946,33 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
         }
 
         /*
-         * TODO[tls13] Abbreviated handshakes (PSK resumption)
-         * 
-         * NOTE: No CertificateRequest, Certificate, CertificateVerify messages, but client
-         * might now send EndOfEarlyData after receiving server Finished message.
+         * NOTE: For PSK handshakes (including resumption) there are no CertificateRequest, Certificate,
+         * CertificateVerify messages.
          */
 
         switch (type)
         {
         case HandshakeType.certificate:
+        case HandshakeType.compressed_certificate:
         {
             switch (this.connection_state)
             {
             case CS_SERVER_FINISHED:
             {
-                receive13ClientCertificate(buf);
+                if (HandshakeType.compressed_certificate == type)
+                {
+                    if (null == certificateRequest)
+                    {
+                        throw new TlsFatalAlert(AlertDescription.unexpected_message);
+                    }
+
+                    receive13ClientCertificate(TlsUtils.receive13CompressedCertificate(tlsServer, buf,
+                        certificateRequest.getCertificateCompressionAlgorithms()));
+                }
+                else
+                {
+                    receive13ClientCertificate(buf);
+                }
                 this.connection_state = CS_CLIENT_CERTIFICATE;
                 break;
             }
@@ -903,11 +1023,40 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
             }
             break;
         }
+        case HandshakeType.end_of_early_data:
+        {
+            switch (this.connection_state)
+            {
+            case CS_SERVER_FINISHED:
+            {
+                if (earlyDataRemaining < 0L)
+                {
+                    throw new TlsFatalAlert(AlertDescription.unexpected_message);
+                }
+
+                receive13EndOfEarlyData(buf);
+                this.connection_state = CS_CLIENT_END_OF_EARLY_DATA;
+                break;
+            }
+            default:
+                throw new TlsFatalAlert(AlertDescription.unexpected_message);
+            }
+            break;
+        }
         case HandshakeType.finished:
         {
             switch (this.connection_state)
             {
             case CS_SERVER_FINISHED:
+            {
+                // NOTE: If early data was accepted, the client MUST send EndOfEarlyData first
+                if (earlyDataRemaining >= 0L)
+                {
+                    throw new TlsFatalAlert(AlertDescription.unexpected_message);
+                }
+                // NB: Fall through to next case label
+            }
+            case CS_CLIENT_END_OF_EARLY_DATA:
             {
                 skip13ClientCertificate();
                 // NB: Fall through to next case label
@@ -920,15 +1069,25 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
             case CS_CLIENT_CERTIFICATE_VERIFY:
             {
                 receive13ClientFinished(buf);
+                buf.updateHash(handshakeHash);
                 this.connection_state = CS_CLIENT_FINISHED;
 
+                byte[] clientFinishedTranscriptHash = TlsUtils.getCurrentPRFHash(handshakeHash);
+
+                TlsUtils.establish13ResumptionMasterSecret(tlsServerContext, clientFinishedTranscriptHash);
+
                 // See RFC 8446 D.4.
                 recordStream.setIgnoreChangeCipherSpec(false);
 
                 // NOTE: Completes the switch to application-data phase (server entered after CS_SERVER_FINISHED).
                 recordStream.enablePendingCipherRead(false);
 
+                // NOTE: The client's server names are cleared when the handshake completes
+                Vector clientServerNames = tlsServerContext.getSecurityParametersHandshake().getClientServerNames();
+
                 completeHandshake();
+
+                send13NewSessionTicketMessage(clientServerNames);
                 break;
             }
             default:
@@ -946,9 +1105,7 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
         case HandshakeType.certificate_status:
         case HandshakeType.certificate_url:
         case HandshakeType.client_key_exchange:
-        case HandshakeType.compressed_certificate:
         case HandshakeType.encrypted_extensions:
-        case HandshakeType.end_of_early_data:
         case HandshakeType.hello_request:
         case HandshakeType.hello_verify_request:
         case HandshakeType.message_hash:
@@ -970,11 +1127,6 @@ protected void handleHandshakeMessage(short type, HandshakeMessageInput buf)
         if (connection_state > CS_CLIENT_HELLO
             && TlsUtils.isTLSv13(securityParameters.getNegotiatedVersion()))
         {
-            if (securityParameters.isResumedSession())
-            {
-                throw new TlsFatalAlert(AlertDescription.internal_error);
-            }
-
             handle13HandshakeMessage(type, buf);
             return;
         }
@@ -1042,6 +1194,17 @@ protected void handleHandshakeMessage(short type, HandshakeMessageInput buf)
                     }
                     else
                     {
+                        if (earlyDataRemaining >= 0L)
+                        {
+                            byte[] clientHelloTranscriptHash = TlsUtils.getCurrentPRFHash(handshakeHash);
+
+                            TlsUtils.establish13PhaseEarly(tlsServerContext, clientHelloTranscriptHash,
+                                recordStream);
+
+                            // NOTE: Early data (if any) is received before the rest of the client's flight
+                            recordStream.enablePendingCipherRead(false);
+                        }
+
                         sendServerHelloMessage(serverHello);
                         this.connection_state = CS_SERVER_HELLO;
 
@@ -1407,6 +1570,26 @@ protected void notifyClientCertificate(Certificate clientCertificate)
         TlsUtils.processClientCertificate(tlsServerContext, clientCertificate, keyExchange, tlsServer);
     }
 
+    protected void processEarlyData(int length)
+        throws IOException
+    {
+        if (CS_SERVER_FINISHED != connection_state || earlyDataRemaining < 0L)
+        {
+            throw new TlsFatalAlert(AlertDescription.unexpected_message);
+        }
+
+        /*
+         * RFC 8446 4.2.10. If the server [..] receives more than max_early_data_size bytes of 0-RTT data,
+         * it SHOULD abort the connection with an "unexpected_message" alert.
+         */
+        if (length > earlyDataRemaining)
+        {
+            throw new TlsFatalAlert(AlertDescription.unexpected_message, "Too much early data");
+        }
+
+        this.earlyDataRemaining -= length;
+    }
+
     protected void receive13ClientCertificate(ByteArrayInputStream buf)
         throws IOException
     {
@@ -1444,6 +1627,16 @@ protected void receive13ClientCertificateVerify(ByteArrayInputStream buf)
         TlsUtils.verify13CertificateVerifyClient(tlsServerContext, handshakeHash, certificateVerify);
     }
 
+    protected void receive13EndOfEarlyData(ByteArrayInputStream buf) throws IOException
+    {
+        assertEmpty(buf);
+
+        // NOTE: The rest of the client's flight is protected with the handshake traffic keys
+        recordStream.notifyEndOfEarlyDataReceived();
+
+        this.earlyDataRemaining = -1L;
+    }
+
     protected void receive13ClientFinished(ByteArrayInputStream buf) throws IOException
     {
         process13FinishedMessage(buf);
@@ -1536,7 +1729,14 @@ protected void send13ServerHelloCoda(ServerHello serverHello, boolean afterHello
         TlsUtils.establish13PhaseHandshake(tlsServerContext, serverHelloTranscriptHash, recordStream);
 
         recordStream.enablePendingCipherWrite();
-        recordStream.enablePendingCipherRead(true);
+        if (earlyDataRemaining >= 0L)
+        {
+            recordStream.enablePendingCipherReadAfterEarlyData();
+        }
+        else
+        {
+            recordStream.enablePendingCipherRead(true);
+        }
 
         send13EncryptedExtensionsMessage(serverExtensions);
         this.connection_state = CS_SERVER_ENCRYPTED_EXTENSIONS;
@@ -1558,6 +1758,17 @@ protected void send13ServerHelloCoda(ServerHello serverHello, boolean afterHello
                     {
                         throw new TlsFatalAlert(AlertDescription.internal_error);
                     }
+
+                    int[] certificateCompressionAlgorithms = TlsUtils.getCertificateCompressionAlgorithms(
+                        tlsServer.getCertificateCompressors());
+                    if (null != certificateCompressionAlgorithms
+                        && null == certificateRequest.getCertificateCompressionAlgorithms())
+                    {
+                        this.certificateRequest = new CertificateRequest(TlsUtils.EMPTY_BYTES,
+                            certificateRequest.getSupportedSignatureAlgorithms(),
+                            certificateRequest.getSupportedSignatureAlgorithmsCert(),
+                            certificateRequest.getCertificateAuthorities(), certificateCompressionAlgorithms);
+                    }
     
                     TlsUtils.establishServerSigAlgs(securityParameters, certificateRequest);
     
@@ -1584,7 +1795,10 @@ protected void send13ServerHelloCoda(ServerHello serverHello, boolean afterHello
                  */
 
                 Certificate serverCertificate = serverCredentials.getCertificate();
-                send13CertificateMessage(serverCertificate);
+                TlsCertificateCompressor certificateCompressor = TlsUtils.selectCertificateCompressor(
+                    tlsServer.getCertificateCompressors(),
+                    TlsExtensionsUtils.getCompressCertificateExtension(clientExtensions));
+                send13CertificateMessage(serverCertificate, certificateCompressor);
                 securityParameters.tlsServerEndPoint = null;
                 this.connection_state = CS_SERVER_CERTIFICATE;
             }
@@ -1647,6 +1861,60 @@ protected void sendNewSessionTicketMessage(NewSessionTicket newSessionTicket)
         message.send(this);
     }
 
+    protected void send13NewSessionTicketMessage(Vector clientServerNames)
+        throws IOException
+    {
+        SessionTicketKeyRing sessionTicketKeyRing = tlsServer.getSessionTicketKeyRing();
+        if (null == sessionTicketKeyRing)
+        {
+            return;
+        }
+
+        SecurityParameters securityParameters = tlsServerContext.getSecurityParametersConnection();
+        TlsNonceGenerator nonceGenerator = tlsServerContext.getNonceGenerator();
+
+        // NOTE: Only one ticket is issued per connection, but the nonce is random anyway
+        byte[] ticketNonce = nonceGenerator.generateNonce(8);
+        long ticketAgeAdd = TlsUtils.readUint32(nonceGenerator.generateNonce(4), 0);
+        long ticketLifetime = sessionTicketKeyRing.getTicketLifetime();
+
+        // NOTE: Early data is only allowed for tickets if the server has an anti-replay mechanism
+        long maxEarlyDataSize = 0L;
+        if (null != tlsServer.getAntiReplayStore())
+        {
+            maxEarlyDataSize = Math.max(0L, Math.min(0xFFFFFFFFL, tlsServer.getMaxEarlyDataSize()));
+        }
+
+        TlsSecret psk = TlsUtils.derive13ResumptionPSK(securityParameters, ticketNonce);
+        byte[] ticket = TlsUtils.sealSessionTicket(tlsServerContext, sessionTicketKeyRing, psk, clientServerNames,
+            ticketAgeAdd, System.currentTimeMillis(), maxEarlyDataSize);
+
+        Hashtable ticketExtensions = new Hashtable();
+        if (maxEarlyDataSize > 0L)
+        {
+            TlsExtensionsUtils.addEarlyDataMaxSize(ticketExtensions, maxEarlyDataSize);
+        }
+
+        TlsUtils.checkExtensionData13(ticketExtensions, HandshakeType.new_session_ticket,
+            AlertDescription.internal_error);
+
+//        struct {
+//            uint32 ticket_lifetime;
+//            uint32 ticket_age_add;
+//            opaque ticket_nonce<0..255>;
+//            opaque ticket<1..2^16-1>;
+//            Extension extensions<0..2^16-2>;
+//        } NewSessionTicket;
+
+        HandshakeMessageOutput message = new HandshakeMessageOutput(HandshakeType.new_session_ticket);
+        TlsUtils.writeUint32(ticketLifetime, message);
+        TlsUtils.writeUint32(ticketAgeAdd, message);
+        TlsUtils.writeOpaque8(ticketNonce, message);
+        TlsUtils.writeOpaque16(ticket, message);
+        TlsUtils.writeOpaque16(writeExtensionsData(ticketExtensions), message);
+        message.send(this);
+    }
+
     protected void sendServerHelloDoneMessage()
         throws IOException
     {
@@ -21,7 +21,7 @@ class TlsSessionImpl implements TlsSession
 
         this.sessionID = Arrays.clone(sessionID);
         this.sessionParameters = sessionParameters;
-        this.resumable = sessionID.length > 0 && null != sessionParameters;
+        this.resumable = null != sessionParameters && (sessionID.length > 0 || null != sessionParameters.getTicket());
     }
 
     public synchronized SessionParameters exportSessionParameters()
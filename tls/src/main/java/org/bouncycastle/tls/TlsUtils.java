@@ -47,6 +47,7 @@
 import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.Integers;
 import org.bouncycastle.util.Shorts;
+import org.bouncycastle.util.Strings;
 import org.bouncycastle.util.encoders.Hex;
 import org.bouncycastle.util.io.Streams;
 
@@ -163,6 +164,8 @@ private static Vector createDefaultSupportedSigAlgs()
     static final short MINIMUM_HASH_STRICT = HashAlgorithm.sha1;
     static final short MINIMUM_HASH_PREFERRED = HashAlgorithm.sha256;
 
+    private static final short SESSION_TICKET_FORMAT_V1 = 1;
+
     public static void checkUint8(short i) throws IOException
     {
         if (!isValidUint8(i))
@@ -1856,8 +1859,6 @@ private static void establish13TrafficSecrets(TlsContext context, byte[] transcr
                 transcriptHash);
         }
 
-        // TODO[tls13] Early data (client->server only)
-
         recordStream.setPendingCipher(initCipher(context));
     }
 
@@ -1880,9 +1881,9 @@ static void establish13PhaseEarly(TlsContext context, byte[] clientHelloTranscri
         SecurityParameters securityParameters = context.getSecurityParametersHandshake();
         TlsSecret phaseSecret = securityParameters.getEarlySecret();
 
-        // TODO[tls13] binder_key
+        // NOTE: The binder_key is derived (per PSK) in calculatePSKBinder
 
-        // TODO[tls13] Early data (client->server only)
+        // NOTE: Early data is client->server only
         if (null != recordStream)
         {
             establish13TrafficSecrets(context, clientHelloTranscriptHash, phaseSecret, "c e traffic", null,
@@ -5178,6 +5179,102 @@ static TlsAuthentication receiveServerCertificate(TlsClientContext clientContext
         return authentication;
     }
 
+    static int[] getCertificateCompressionAlgorithms(TlsCertificateCompressor[] compressors)
+    {
+        if (null == compressors || compressors.length < 1)
+        {
+            return null;
+        }
+
+        int[] algorithms = new int[compressors.length];
+        for (int i = 0; i < compressors.length; ++i)
+        {
+            algorithms[i] = compressors[i].getAlgorithm();
+        }
+        return algorithms;
+    }
+
+    static TlsCertificateCompressor selectCertificateCompressor(TlsCertificateCompressor[] compressors,
+        int[] peerAlgorithms)
+    {
+        if (null != compressors && null != peerAlgorithms)
+        {
+            for (int i = 0; i < compressors.length; ++i)
+            {
+                TlsCertificateCompressor compressor = compressors[i];
+                if (Arrays.contains(peerAlgorithms, compressor.getAlgorithm()))
+                {
+                    return compressor;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read a (TLS 1.3) CompressedCertificate message (RFC 8879 4) and return a stream over the body of the
+     * Certificate message it contains.
+     */
+    static ByteArrayInputStream receive13CompressedCertificate(TlsPeer peer, ByteArrayInputStream buf,
+        int[] offeredAlgorithms) throws IOException
+    {
+        int algorithm = readUint16(buf);
+        int uncompressedLength = readUint24(buf);
+        byte[] compressed = readOpaque24(buf, 1);
+
+        TlsProtocol.assertEmpty(buf);
+
+        /*
+         * RFC 8879 4. If the specified compression algorithm is one not offered [..] the connection MUST be
+         * terminated with the "illegal_parameter" alert.
+         */
+        TlsCertificateCompressor compressor = null;
+        if (null != offeredAlgorithms && Arrays.contains(offeredAlgorithms, algorithm))
+        {
+            compressor = selectCertificateCompressor(peer.getCertificateCompressors(), new int[]{ algorithm });
+        }
+        if (null == compressor)
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter,
+                "Unexpected certificate compression algorithm: " + algorithm);
+        }
+
+        // NOTE: Limit the decompressed size just as for an uncompressed Certificate message
+        if (uncompressedLength < 1 || uncompressedLength > peer.getMaxHandshakeMessageSize())
+        {
+            throw new TlsFatalAlert(AlertDescription.bad_certificate, "Invalid uncompressed certificate length");
+        }
+
+        /*
+         * RFC 8879 4. If the received CompressedCertificate message cannot be decompressed, the connection MUST be
+         * terminated with the "bad_certificate" alert.
+         */
+        byte[] uncompressed;
+        try
+        {
+            uncompressed = compressor.decompress(compressed, uncompressedLength);
+        }
+        catch (TlsFatalAlert e)
+        {
+            throw e;
+        }
+        catch (IOException e)
+        {
+            throw new TlsFatalAlert(AlertDescription.bad_certificate, e);
+        }
+        catch (RuntimeException e)
+        {
+            throw new TlsFatalAlert(AlertDescription.bad_certificate, e);
+        }
+
+        if (null == uncompressed || uncompressed.length != uncompressedLength)
+        {
+            throw new TlsFatalAlert(AlertDescription.bad_certificate, "Invalid uncompressed certificate length");
+        }
+
+        return new ByteArrayInputStream(uncompressed);
+    }
+
     static TlsAuthentication receive13ServerCertificate(TlsClientContext clientContext, TlsClient client,
         ByteArrayInputStream buf, Hashtable serverExtensions) throws IOException
     {
@@ -5883,42 +5980,67 @@ static void addPreSharedKeyToClientExtensions(TlsPSK[] psks, Hashtable clientExt
         {
             TlsPSK psk = psks[i];
 
-            // TODO[tls13-psk] Handle obfuscated_ticket_age for resumption PSKs
-            identities.add(new PskIdentity(psk.getIdentity(), 0L));
+            long obfuscatedTicketAge = 0L;
+            if (psk instanceof TlsPSKResumption)
+            {
+                obfuscatedTicketAge = ((TlsPSKResumption)psk).getObfuscatedTicketAge();
+            }
+
+            identities.add(new PskIdentity(psk.getIdentity(), obfuscatedTicketAge));
         }
 
         TlsExtensionsUtils.addPreSharedKeyClientHello(clientExtensions, new OfferedPsks(identities));
     }
 
     static OfferedPsks.BindersConfig addPreSharedKeyToClientHello(TlsClientContext clientContext, TlsClient client,
-        Hashtable clientExtensions, int[] offeredCipherSuites) throws IOException
+        Hashtable clientExtensions, int[] offeredCipherSuites, SessionParameters sessionParameters,
+        TlsSecret sessionMasterSecret) throws IOException
     {
         if (!isTLSv13(clientContext.getClientVersion()))
         {
             return null;
         }
 
+        TlsPSKResumption pskResumption = getPSKResumptionClient(sessionParameters, sessionMasterSecret,
+            offeredCipherSuites);
         TlsPSKExternal[] pskExternals = getPSKExternalsClient(client, offeredCipherSuites);
-        if (null == pskExternals)
+
+        TlsPSK[] psks;
+        if (null == pskResumption)
         {
-            return null;
+            if (null == pskExternals)
+            {
+                return null;
+            }
+
+            psks = pskExternals;
+        }
+        else if (null == pskExternals)
+        {
+            psks = new TlsPSK[]{ pskResumption };
+        }
+        else
+        {
+            psks = new TlsPSK[1 + pskExternals.length];
+            psks[0] = pskResumption;
+            System.arraycopy(pskExternals, 0, psks, 1, pskExternals.length);
         }
 
         short[] pskKeyExchangeModes = client.getPskKeyExchangeModes();
         if (isNullOrEmpty(pskKeyExchangeModes))
         {
             throw new TlsFatalAlert(AlertDescription.internal_error,
-                "External PSKs configured but no PskKeyExchangeMode available");
+                "PSKs configured but no PskKeyExchangeMode available");
         }
 
-        TlsSecret[] pskEarlySecrets = getPSKEarlySecrets(clientContext.getCrypto(), pskExternals);
+        TlsSecret[] pskEarlySecrets = getPSKEarlySecrets(clientContext.getCrypto(), psks);
 
-        int bindersSize = OfferedPsks.getBindersSize(pskExternals);
+        int bindersSize = OfferedPsks.getBindersSize(psks);
 
-        addPreSharedKeyToClientExtensions(pskExternals, clientExtensions);
+        addPreSharedKeyToClientExtensions(psks, clientExtensions);
         TlsExtensionsUtils.addPSKKeyExchangeModesExtension(clientExtensions, pskKeyExchangeModes);
 
-        return new OfferedPsks.BindersConfig(pskExternals, pskKeyExchangeModes, pskEarlySecrets, bindersSize);
+        return new OfferedPsks.BindersConfig(psks, pskKeyExchangeModes, pskEarlySecrets, bindersSize);
     }
 
     static OfferedPsks.BindersConfig addPreSharedKeyToClientHelloRetry(TlsClientContext clientContext,
@@ -5963,7 +6085,7 @@ static OfferedPsks.BindersConfig addPreSharedKeyToClientHelloRetry(TlsClientCont
 
     static OfferedPsks.SelectedConfig selectPreSharedKey(TlsServerContext serverContext, TlsServer server,
         Hashtable clientHelloExtensions, HandshakeMessageInput clientHelloMessage, TlsHandshakeHash handshakeHash,
-        boolean afterHelloRetryRequest) throws IOException
+        boolean afterHelloRetryRequest, int[] offeredCipherSuites) throws IOException
     {
         boolean handshakeHashUpdated = false;
 
@@ -5976,52 +6098,100 @@ static OfferedPsks.SelectedConfig selectPreSharedKey(TlsServerContext serverCont
                 throw new TlsFatalAlert(AlertDescription.missing_extension);
             }
 
-            // TODO[tls13] Add support for psk_ke?
-            if (Arrays.contains(pskKeyExchangeModes, PskKeyExchangeMode.psk_dhe_ke))
+            short pskKeyExchangeMode = selectPSKKeyExchangeMode(server, pskKeyExchangeModes, afterHelloRetryRequest);
+            if (pskKeyExchangeMode >= 0)
             {
-                // TODO[tls13] Prefer to get the exact index from the server?
-                TlsPSKExternal psk = server.getExternalPSK(offeredPsks.getIdentities());
-                if (null != psk)
-                {
-                    int index = offeredPsks.getIndexOfIdentity(new PskIdentity(psk.getIdentity(), 0L));
-                    if (index >= 0)
-                    {
-                        byte[] binder = (byte[])offeredPsks.getBinders().elementAt(index);
+                TlsCrypto crypto = serverContext.getCrypto();
 
-                        TlsCrypto crypto = serverContext.getCrypto();
-                        TlsSecret earlySecret = getPSKEarlySecret(crypto, psk);
+                int index = -1;
+                TlsPSK psk = null;
+                SessionParameters sessionParameters = null;
 
-                        // TODO[tls13-psk] Handle resumption PSKs
-                        boolean isExternalPSK = true;
-                        int pskCryptoHashAlgorithm = TlsCryptoUtils.getHashForPRF(psk.getPRFAlgorithm());
+                SessionTicketKeyRing sessionTicketKeyRing = server.getSessionTicketKeyRing();
+                if (null != sessionTicketKeyRing)
+                {
+                    Vector clientServerNames = TlsExtensionsUtils.getServerNameExtensionClient(clientHelloExtensions);
 
-                        byte[] transcriptHash;
-                        {
-                            handshakeHashUpdated = true;
-                            int bindersSize = offeredPsks.getBindersSize();
-                            clientHelloMessage.updateHashPrefix(handshakeHash, bindersSize);
+                    Vector identities = offeredPsks.getIdentities();
+                    for (int i = 0, count = identities.size(); i < count; ++i)
+                    {
+                        PskIdentity identity = (PskIdentity)identities.elementAt(i);
 
-                            if (afterHelloRetryRequest)
-                            {
-                                transcriptHash = handshakeHash.getFinalHash(pskCryptoHashAlgorithm);
-                            }
-                            else
+                        SessionParameters ticketParameters = openSessionTicket(serverContext, sessionTicketKeyRing,
+                            identity.getIdentity(), clientServerNames, offeredCipherSuites, afterHelloRetryRequest);
+                        if (null != ticketParameters)
+                        {
+                            if (server.allowSessionTicketResumption(ticketParameters))
                             {
-                                TlsHash hash = crypto.createHash(pskCryptoHashAlgorithm);
-                                handshakeHash.copyBufferTo(new TlsHashOutputStream(hash));
-                                transcriptHash = hash.calculateHash();
+                                index = i;
+                                psk = new TlsPSKResumption(identity.getIdentity(), ticketParameters.getMasterSecret(),
+                                    getPRFAlgorithm13(ticketParameters.getCipherSuite()),
+                                    identity.getObfuscatedTicketAge());
+                                sessionParameters = ticketParameters;
+                                break;
                             }
 
-                            clientHelloMessage.updateHashSuffix(handshakeHash, bindersSize);
+                            ticketParameters.clear();
                         }
+                    }
+                }
 
-                        byte[] calculatedBinder = calculatePSKBinder(crypto, isExternalPSK, pskCryptoHashAlgorithm,
-                            earlySecret, transcriptHash);
+                if (null == psk)
+                {
+                    // TODO[tls13] Prefer to get the exact index from the server?
+                    TlsPSKExternal pskExternal = server.getExternalPSK(offeredPsks.getIdentities());
+                    if (null != pskExternal)
+                    {
+                        index = offeredPsks.getIndexOfIdentity(new PskIdentity(pskExternal.getIdentity(), 0L));
+                        psk = pskExternal;
+                    }
+                }
+
+                if (index >= 0)
+                {
+                    byte[] binder = (byte[])offeredPsks.getBinders().elementAt(index);
+
+                    TlsSecret earlySecret = getPSKEarlySecret(crypto, psk);
 
-                        if (Arrays.constantTimeAreEqual(calculatedBinder, binder))
+                    boolean isExternalPSK = null == sessionParameters;
+                    int pskCryptoHashAlgorithm = TlsCryptoUtils.getHashForPRF(psk.getPRFAlgorithm());
+
+                    byte[] transcriptHash;
+                    {
+                        handshakeHashUpdated = true;
+                        int bindersSize = offeredPsks.getBindersSize();
+                        clientHelloMessage.updateHashPrefix(handshakeHash, bindersSize);
+
+                        if (afterHelloRetryRequest)
+                        {
+                            transcriptHash = handshakeHash.getFinalHash(pskCryptoHashAlgorithm);
+                        }
+                        else
                         {
-                            return new OfferedPsks.SelectedConfig(index, psk, pskKeyExchangeModes, earlySecret);
+                            TlsHash hash = crypto.createHash(pskCryptoHashAlgorithm);
+                            handshakeHash.copyBufferTo(new TlsHashOutputStream(hash));
+                            transcriptHash = hash.calculateHash();
                         }
+
+                        clientHelloMessage.updateHashSuffix(handshakeHash, bindersSize);
+                    }
+
+                    byte[] calculatedBinder = calculatePSKBinder(crypto, isExternalPSK, pskCryptoHashAlgorithm,
+                        earlySecret, transcriptHash);
+
+                    if (Arrays.constantTimeAreEqual(calculatedBinder, binder))
+                    {
+                        return new OfferedPsks.SelectedConfig(index, psk, pskKeyExchangeMode, earlySecret,
+                            sessionParameters);
+                    }
+
+                    /*
+                     * RFC 8446 4.2.11. [..] the server MUST validate the corresponding binder value [..]. If
+                     * this value is not present or does not validate, the server MUST abort the handshake.
+                     */
+                    if (!isExternalPSK)
+                    {
+                        throw new TlsFatalAlert(AlertDescription.decrypt_error, "Invalid resumption PSK binder");
                     }
                 }
             }
@@ -6035,6 +6205,330 @@ static OfferedPsks.SelectedConfig selectPreSharedKey(TlsServerContext serverCont
         return null;
     }
 
+    static short selectPSKKeyExchangeMode(TlsServer server, short[] clientPskKeyExchangeModes,
+        boolean afterHelloRetryRequest)
+    {
+        short[] serverPskKeyExchangeModes = server.getPskKeyExchangeModes();
+        if (null != serverPskKeyExchangeModes)
+        {
+            for (int i = 0; i < serverPskKeyExchangeModes.length; ++i)
+            {
+                short pskKeyExchangeMode = serverPskKeyExchangeModes[i];
+
+                /*
+                 * NOTE: A HelloRetryRequest is only sent when a key share is needed, so psk_ke can't be selected
+                 * afterwards.
+                 */
+                if (afterHelloRetryRequest && PskKeyExchangeMode.psk_ke == pskKeyExchangeMode)
+                {
+                    continue;
+                }
+
+                if (Arrays.contains(clientPskKeyExchangeModes, pskKeyExchangeMode))
+                {
+                    return pskKeyExchangeMode;
+                }
+            }
+        }
+        return -1;
+    }
+
+    static void establish13ResumptionMasterSecret(TlsContext context, byte[] clientFinishedTranscriptHash)
+        throws IOException
+    {
+        SecurityParameters securityParameters = context.getSecurityParametersHandshake();
+
+        securityParameters.resumptionMasterSecret = deriveSecret(securityParameters,
+            securityParameters.getMasterSecret(), "res master", clientFinishedTranscriptHash);
+    }
+
+    static TlsSecret derive13ResumptionPSK(SecurityParameters securityParameters, byte[] ticketNonce)
+        throws IOException
+    {
+        TlsSecret resumptionMasterSecret = securityParameters.getResumptionMasterSecret();
+        if (null == resumptionMasterSecret)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        int prfCryptoHashAlgorithm = securityParameters.getPRFCryptoHashAlgorithm();
+        int prfHashLength = securityParameters.getPRFHashLength();
+
+        return TlsCryptoUtils.hkdfExpandLabel(resumptionMasterSecret, prfCryptoHashAlgorithm, "resumption",
+            ticketNonce, prfHashLength);
+    }
+
+    static TlsPSKResumption getPSKResumptionClient(SessionParameters sessionParameters, TlsSecret sessionMasterSecret,
+        int[] offeredCipherSuites)
+    {
+        if (null == sessionParameters
+            || null == sessionMasterSecret
+            || null == sessionParameters.getTicket()
+            || !isTLSv13(sessionParameters.getNegotiatedVersion()))
+        {
+            return null;
+        }
+
+        /*
+         * RFC 8446 4.6.1. Clients MUST NOT cache tickets for longer than 7 days, regardless of the
+         * ticket_lifetime, and MAY delete tickets earlier based on local policy.
+         */
+        long ticketAge = System.currentTimeMillis() - sessionParameters.getTicketIssueTime();
+        long ticketLifetime = Math.min(sessionParameters.getTicketLifetime(), SessionTicketKeyRing.MAX_TICKET_LIFETIME);
+        if (ticketAge < 0L || ticketAge >= ticketLifetime * 1000L)
+        {
+            return null;
+        }
+
+        /*
+         * RFC 8446 4.2.11. Clients MUST verify that [..] the server selected a cipher suite indicating a Hash
+         * associated with the PSK [..].
+         */
+        int prfAlgorithm = getPRFAlgorithm13(sessionParameters.getCipherSuite());
+        if (prfAlgorithm < 0 || !Arrays.contains(getPRFAlgorithms13(offeredCipherSuites), prfAlgorithm))
+        {
+            return null;
+        }
+
+        long obfuscatedTicketAge = (ticketAge + sessionParameters.getTicketAgeAdd()) & 0xFFFFFFFFL;
+
+        return new TlsPSKResumption(sessionParameters.getTicket(), sessionMasterSecret, prfAlgorithm,
+            obfuscatedTicketAge);
+    }
+
+    static boolean isTLSv13Session(TlsSession session)
+    {
+        SessionParameters sessionParameters = null == session ? null : session.exportSessionParameters();
+
+        return null != sessionParameters && isTLSv13(sessionParameters.getNegotiatedVersion());
+    }
+
+    static byte[] sealSessionTicket(TlsServerContext serverContext, SessionTicketKeyRing sessionTicketKeyRing,
+        TlsSecret psk, Vector clientServerNames, long ticketAgeAdd, long ticketIssueTime, long maxEarlyDataSize)
+        throws IOException
+    {
+        byte[] pskBytes = psk.extract();
+        byte[] hostName = getSessionTicketHostName(clientServerNames);
+
+        byte[] ticket = sessionTicketKeyRing.seal(encodeSessionTicket(serverContext, sessionTicketKeyRing, pskBytes,
+            hostName, ticketAgeAdd, ticketIssueTime, maxEarlyDataSize, false));
+
+        /*
+         * RFC 8446 4.6.1. The ticket is opaque<1..2^16-1>. Full certificate chains can exceed that, in which case only
+         * the end-entity certificates are kept.
+         */
+        if (!isValidUint16(ticket.length))
+        {
+            ticket = sessionTicketKeyRing.seal(encodeSessionTicket(serverContext, sessionTicketKeyRing, pskBytes,
+                hostName, ticketAgeAdd, ticketIssueTime, maxEarlyDataSize, true));
+
+            if (!isValidUint16(ticket.length))
+            {
+                throw new TlsFatalAlert(AlertDescription.internal_error, "session ticket too large: " + ticket.length);
+            }
+        }
+
+        return ticket;
+    }
+
+    private static byte[] encodeSessionTicket(TlsServerContext serverContext,
+        SessionTicketKeyRing sessionTicketKeyRing, byte[] psk, byte[] hostName, long ticketAgeAdd,
+        long ticketIssueTime, long maxEarlyDataSize, boolean endEntityOnly) throws IOException
+    {
+        SecurityParameters securityParameters = serverContext.getSecurityParametersConnection();
+        ProtocolName applicationProtocol = securityParameters.getApplicationProtocol();
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+
+        writeUint8(SESSION_TICKET_FORMAT_V1, buf);
+        writeUint64(ticketIssueTime, buf);
+        writeUint32(sessionTicketKeyRing.getTicketLifetime(), buf);
+        writeUint32(ticketAgeAdd, buf);
+        writeVersion(securityParameters.getNegotiatedVersion(), buf);
+        writeUint16(securityParameters.getCipherSuite(), buf);
+        writeUint32(maxEarlyDataSize, buf);
+        writeOpaque8(null == applicationProtocol ? EMPTY_BYTES : applicationProtocol.getBytes(), buf);
+        writeOpaque8(hostName, buf);
+        writeOpaque8(psk, buf);
+        writeSessionTicketCertificate(securityParameters.getLocalCertificate(), endEntityOnly, buf);
+        writeSessionTicketCertificate(securityParameters.getPeerCertificate(), endEntityOnly, buf);
+
+        return buf.toByteArray();
+    }
+
+    static SessionParameters openSessionTicket(TlsServerContext serverContext,
+        SessionTicketKeyRing sessionTicketKeyRing, byte[] ticket, Vector clientServerNames, int[] offeredCipherSuites,
+        boolean afterHelloRetryRequest) throws IOException
+    {
+        byte[] plaintext = sessionTicketKeyRing.open(ticket);
+        if (null == plaintext)
+        {
+            return null;
+        }
+
+        SecurityParameters securityParameters = serverContext.getSecurityParametersHandshake();
+        TlsCrypto crypto = serverContext.getCrypto();
+
+        ByteArrayInputStream buf = new ByteArrayInputStream(plaintext);
+
+        if (SESSION_TICKET_FORMAT_V1 != readUint8(buf))
+        {
+            return null;
+        }
+
+        long ticketIssueTime = (readUint32(buf) << 32) | readUint32(buf);
+        long ticketLifetime = readUint32(buf);
+        long ticketAgeAdd = readUint32(buf);
+        ProtocolVersion negotiatedVersion = readVersion(buf);
+        int ticketCipherSuite = readUint16(buf);
+        long maxEarlyDataSize = readUint32(buf);
+        byte[] applicationProtocol = readOpaque8(buf);
+        byte[] hostName = readOpaque8(buf);
+
+        long ticketAge = System.currentTimeMillis() - ticketIssueTime;
+        if (ticketAge < 0L
+            || ticketAge >= ticketLifetime * 1000L
+            || !negotiatedVersion.equals(securityParameters.getNegotiatedVersion())
+            || !Arrays.areEqual(hostName, getSessionTicketHostName(clientServerNames)))
+        {
+            return null;
+        }
+
+        /*
+         * RFC 8446 4.6.1. Any ticket MUST only be resumed with a cipher suite that has the same KDF hash algorithm
+         * as that used to establish the original connection.
+         */
+        int cipherSuite = afterHelloRetryRequest
+            ?   securityParameters.getCipherSuite()
+            :   selectResumptionCipherSuite(crypto, offeredCipherSuites, ticketCipherSuite, negotiatedVersion);
+
+        if (cipherSuite < 0 || getPRFAlgorithm13(cipherSuite) != getPRFAlgorithm13(ticketCipherSuite))
+        {
+            return null;
+        }
+
+        byte[] psk = readOpaque8(buf, 1);
+        Certificate localCertificate = readSessionTicketCertificate(crypto, buf);
+        Certificate peerCertificate = readSessionTicketCertificate(crypto, buf);
+        TlsProtocol.assertEmpty(buf);
+
+        // NOTE: The ALPN protocol is retained only so that early data can be checked against it
+        Hashtable serverExtensions = new Hashtable();
+        if (applicationProtocol.length > 0)
+        {
+            TlsExtensionsUtils.addALPNExtensionServer(serverExtensions,
+                ProtocolName.asRawBytes(applicationProtocol));
+        }
+
+        return new SessionParameters.Builder()
+            .setCipherSuite(cipherSuite)
+            .setCompressionAlgorithm(CompressionMethod._null)
+            .setExtendedMasterSecret(true)
+            .setLocalCertificate(localCertificate)
+            .setMasterSecret(crypto.createSecret(psk))
+            .setMaxEarlyDataSize(maxEarlyDataSize)
+            .setNegotiatedVersion(negotiatedVersion)
+            .setPeerCertificate(peerCertificate)
+            .setServerExtensions(serverExtensions)
+            .setTicketAgeAdd(ticketAgeAdd)
+            .setTicketIssueTime(ticketIssueTime)
+            .setTicketLifetime(ticketLifetime)
+            .build();
+    }
+
+    private static int selectResumptionCipherSuite(TlsCrypto crypto, int[] offeredCipherSuites,
+        int ticketCipherSuite, ProtocolVersion negotiatedVersion)
+    {
+        if (isValidCipherSuiteSelection(offeredCipherSuites, ticketCipherSuite)
+            && isValidVersionForCipherSuite(ticketCipherSuite, negotiatedVersion))
+        {
+            return ticketCipherSuite;
+        }
+
+        int prfAlgorithm = getPRFAlgorithm13(ticketCipherSuite);
+        if (prfAlgorithm < 0 || null == offeredCipherSuites)
+        {
+            return -1;
+        }
+
+        for (int i = 0; i < offeredCipherSuites.length; ++i)
+        {
+            int cipherSuite = offeredCipherSuites[i];
+
+            if (prfAlgorithm == getPRFAlgorithm13(cipherSuite)
+                && isValidCipherSuiteSelection(offeredCipherSuites, cipherSuite)
+                && isValidVersionForCipherSuite(cipherSuite, negotiatedVersion)
+                && isSupportedCipherSuite(crypto, cipherSuite))
+            {
+                return cipherSuite;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * RFC 8446 4.2.11. The server MUST ensure that the SNI value of a resumed session matches that of the original
+     * one, so the (lower case) host_name is kept in the ticket.
+     */
+    private static byte[] getSessionTicketHostName(Vector serverNames)
+    {
+        if (null != serverNames)
+        {
+            for (int i = 0, count = serverNames.size(); i < count; ++i)
+            {
+                ServerName serverName = (ServerName)serverNames.elementAt(i);
+                if (NameType.host_name == serverName.getNameType())
+                {
+                    return Strings.toByteArray(Strings.toLowerCase(Strings.fromByteArray(serverName.getNameData())));
+                }
+            }
+        }
+        return EMPTY_BYTES;
+    }
+
+    private static Certificate readSessionTicketCertificate(TlsCrypto crypto, InputStream input) throws IOException
+    {
+        if (0 == readUint8(input))
+        {
+            return null;
+        }
+
+        short certificateType = readUint8(input);
+        int count = readUint16(input);
+
+        CertificateEntry[] certificateEntryList = new CertificateEntry[count];
+        for (int i = 0; i < count; ++i)
+        {
+            byte[] encoding = readOpaque24(input, 1);
+            TlsCertificate certificate = crypto.createCertificate(certificateType, encoding);
+            certificateEntryList[i] = new CertificateEntry(certificate, null);
+        }
+
+        return new Certificate(certificateType, EMPTY_BYTES, certificateEntryList);
+    }
+
+    private static void writeSessionTicketCertificate(Certificate certificate, boolean endEntityOnly,
+        OutputStream output) throws IOException
+    {
+        if (null == certificate)
+        {
+            writeUint8(0, output);
+            return;
+        }
+
+        writeUint8(1, output);
+        writeUint8(certificate.getCertificateType(), output);
+
+        int count = endEntityOnly ? Math.min(1, certificate.getLength()) : certificate.getLength();
+        writeUint16(count, output);
+
+        for (int i = 0; i < count; ++i)
+        {
+            writeOpaque24(certificate.getCertificateAt(i).getEncoded(), output);
+        }
+    }
+
     static TlsSecret getPSKEarlySecret(TlsCrypto crypto, TlsPSK psk)
     {
         int cryptoHashAlgorithm = TlsCryptoUtils.getHashForPRF(psk.getPRFAlgorithm());
@@ -0,0 +1,106 @@
+package org.bouncycastle.tls;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A {@link TlsCertificateCompressor} for {@link CertificateCompressionAlgorithm#zlib}, using
+ * {@link java.util.zip}.
+ * <p>
+ * WARNING: EXPERIMENTAL FEATURE, UNSTABLE API
+ * </p>
+ */
+public class ZlibCertificateCompressor
+    implements TlsCertificateCompressor
+{
+    protected final int level;
+
+    public ZlibCertificateCompressor()
+    {
+        this(Deflater.BEST_COMPRESSION);
+    }
+
+    /**
+     * @param level
+     *            the compression level to use (see {@link Deflater}).
+     */
+    public ZlibCertificateCompressor(int level)
+    {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION))
+        {
+            throw new IllegalArgumentException("'level' is not a valid compression level");
+        }
+
+        this.level = level;
+    }
+
+    public int getAlgorithm()
+    {
+        return CertificateCompressionAlgorithm.zlib;
+    }
+
+    public byte[] compress(byte[] certificateMessage) throws IOException
+    {
+        Deflater deflater = new Deflater(level);
+        try
+        {
+            deflater.setInput(certificateMessage);
+            deflater.finish();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(certificateMessage.length);
+            byte[] buf = new byte[1024];
+            while (!deflater.finished())
+            {
+                int count = deflater.deflate(buf);
+                output.write(buf, 0, count);
+            }
+            return output.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    public byte[] decompress(byte[] compressedCertificateMessage, int uncompressedLength) throws IOException
+    {
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(compressedCertificateMessage);
+
+            // NOTE: One extra byte of output space so that over-long output is detected without inflating it all
+            byte[] output = new byte[uncompressedLength + 1];
+            int count = 0;
+            while (count < output.length && !inflater.finished())
+            {
+                int n = inflater.inflate(output, count, output.length - count);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    break;
+                }
+                count += n;
+            }
+
+            if (count != uncompressedLength || !inflater.finished() || inflater.getRemaining() != 0)
+            {
+                throw new TlsFatalAlert(AlertDescription.bad_certificate, "Compressed certificate has invalid length");
+            }
+
+            byte[] result = new byte[count];
+            System.arraycopy(output, 0, result, 0, count);
+            return result;
+        }
+        catch (DataFormatException e)
+        {
+            throw new TlsFatalAlert(AlertDescription.bad_certificate, "Compressed certificate is not valid", e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+}
@@ -345,9 +345,14 @@ protected void rekeyCipher(SecurityParameters securityParameters, TlsAEADCipherI
             ?   securityParameters.getTrafficSecretServer()
             :   securityParameters.getTrafficSecretClient();
 
-        // TODO[tls13] For early data, have to disable server->client
         if (null == secret)
         {
+            // NOTE: Early data (client->server only) has no server->client keys; that direction is never used
+            if (serverSecret && null != securityParameters.getTrafficSecretClient())
+            {
+                return;
+            }
+
             throw new TlsFatalAlert(AlertDescription.internal_error);
         }
 
@@ -24,9 +24,14 @@ public static Test suite()
         suite.addTestSuite(ByteQueueInputStreamTest.class);
         suite.addTestSuite(DTLSProtocolTest.class);
         suite.addTestSuite(DTLSPSKProtocolTest.class);
+        suite.addTestSuite(DTLSServerEndpointTest.class);
+        suite.addTestSuite(DTLSVerifierTest.class);
         suite.addTestSuite(OCSPTest.class);
         suite.addTestSuite(PRFTest.class);
+        suite.addTestSuite(Tls13CertificateCompressionTest.class);
+        suite.addTestSuite(Tls13EarlyDataProtocolTest.class);
         suite.addTestSuite(Tls13PSKProtocolTest.class);
+        suite.addTestSuite(Tls13ResumptionProtocolTest.class);
         suite.addTestSuite(TlsProtocolNonBlockingTest.class);
         suite.addTestSuite(TlsProtocolTest.class);
         suite.addTestSuite(TlsPSKProtocolTest.class);
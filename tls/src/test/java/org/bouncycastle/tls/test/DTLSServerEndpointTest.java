@@ -0,0 +1,234 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.security.SecureRandom;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.tls.DTLSClientProtocol;
+import org.bouncycastle.tls.DTLSPeerHandler;
+import org.bouncycastle.tls.DTLSServerEndpoint;
+import org.bouncycastle.tls.DTLSTransport;
+import org.bouncycastle.tls.DTLSVerifier;
+import org.bouncycastle.tls.TlsServer;
+import org.bouncycastle.tls.UDPTransport;
+import org.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto;
+import org.bouncycastle.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class DTLSServerEndpointTest
+    extends TestCase
+{
+    private static final int MTU = 1500;
+
+    public void testMultiplePeers() throws Exception
+    {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try
+        {
+            runPeers(executor, 4, 16);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testMorePeersThanThreads() throws Exception
+    {
+        // All the peers are connected at once, so no thread may be held by an established peer
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            runPeers(executor, 6, 8);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testIdlePeerClosed() throws Exception
+    {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.socket().bind(new InetSocketAddress("127.0.0.1", 0));
+        SocketAddress endpointAddress = channel.socket().getLocalSocketAddress();
+
+        EchoHandler handler = new EchoHandler();
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        DTLSServerEndpoint endpoint = new DTLSServerEndpoint(channel, MTU,
+            new DTLSVerifier(new BcTlsCrypto(new SecureRandom())), executor, handler, 4);
+        endpoint.setIdleTimeoutMillis(200);
+
+        Thread dispatcher = new Thread(endpoint);
+        dispatcher.start();
+
+        try
+        {
+            DatagramSocket socket = new DatagramSocket();
+            socket.connect(endpointAddress);
+
+            DTLSTransport dtlsClient = new DTLSClientProtocol().connect(new MockDTLSClient(null),
+                new UDPTransport(socket, MTU));
+
+            // The endpoint closes the idle connection, which the client sees as end of stream
+            byte[] buf = new byte[dtlsClient.getReceiveLimit()];
+            assertEquals(-1, dtlsClient.receive(buf, 0, buf.length, 5000));
+
+            waitForNoPeers(endpoint);
+            assertEquals(1, handler.connectedCount);
+            assertEquals(1, handler.closedCount);
+
+            dtlsClient.close();
+        }
+        finally
+        {
+            endpoint.close();
+            dispatcher.join();
+            executor.shutdown();
+        }
+    }
+
+    private static void runPeers(ExecutorService executor, final int clientCount, int maxPeers) throws Exception
+    {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.socket().bind(new InetSocketAddress("127.0.0.1", 0));
+        final SocketAddress endpointAddress = channel.socket().getLocalSocketAddress();
+
+        EchoHandler handler = new EchoHandler();
+        DTLSServerEndpoint endpoint = new DTLSServerEndpoint(channel, MTU,
+            new DTLSVerifier(new BcTlsCrypto(new SecureRandom())), executor, handler, maxPeers);
+
+        Thread dispatcher = new Thread(endpoint);
+        dispatcher.start();
+
+        try
+        {
+            final CyclicBarrier connected = new CyclicBarrier(clientCount);
+            final Exception[] failures = new Exception[clientCount];
+
+            Thread[] clients = new Thread[clientCount];
+            for (int i = 0; i < clientCount; ++i)
+            {
+                final int index = i;
+                clients[i] = new Thread()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            runClient(endpointAddress, index + 1, connected);
+                        }
+                        catch (Exception e)
+                        {
+                            failures[index] = e;
+                        }
+                    }
+                };
+                clients[i].start();
+            }
+
+            for (int i = 0; i < clientCount; ++i)
+            {
+                clients[i].join();
+                if (null != failures[i])
+                {
+                    throw failures[i];
+                }
+            }
+
+            // Peers are removed once their connection is closed
+            waitForNoPeers(endpoint);
+            assertEquals(clientCount, handler.connectedCount);
+            assertEquals(clientCount, handler.closedCount);
+        }
+        finally
+        {
+            endpoint.close();
+            dispatcher.join();
+        }
+
+        assertFalse(channel.isOpen());
+    }
+
+    private static void runClient(SocketAddress endpointAddress, int size, CyclicBarrier connected) throws Exception
+    {
+        DatagramSocket socket = new DatagramSocket();
+        socket.connect(endpointAddress);
+
+        DTLSTransport dtlsClient = new DTLSClientProtocol().connect(new MockDTLSClient(null),
+            new UDPTransport(socket, MTU));
+
+        connected.await(30, TimeUnit.SECONDS);
+
+        byte[] buf = new byte[dtlsClient.getReceiveLimit()];
+        for (int i = 0; i < 3; ++i)
+        {
+            byte[] data = new byte[size * 100 + i];
+            Arrays.fill(data, (byte)size);
+            dtlsClient.send(data, 0, data.length);
+
+            int length = dtlsClient.receive(buf, 0, buf.length, 5000);
+
+            assertEquals(data.length, length);
+            assertTrue(Arrays.areEqual(data, Arrays.copyOf(buf, length)));
+        }
+
+        dtlsClient.close();
+    }
+
+    private static void waitForNoPeers(DTLSServerEndpoint endpoint) throws InterruptedException
+    {
+        for (int i = 0; i < 50 && endpoint.getPeerCount() > 0; ++i)
+        {
+            Thread.sleep(100);
+        }
+        assertEquals(0, endpoint.getPeerCount());
+    }
+
+    static class EchoHandler
+        implements DTLSPeerHandler
+    {
+        volatile int connectedCount = 0;
+        volatile int closedCount = 0;
+
+        public TlsServer createServer(SocketAddress peerAddress)
+        {
+            return new MockDTLSServer()
+            {
+                public int getHandshakeTimeoutMillis()
+                {
+                    return 10000;
+                }
+            };
+        }
+
+        public synchronized void notifyPeerConnected(SocketAddress peerAddress, DTLSTransport transport)
+        {
+            ++connectedCount;
+        }
+
+        public void handleData(SocketAddress peerAddress, DTLSTransport transport, byte[] buf, int off, int len)
+            throws IOException
+        {
+            transport.send(buf, off, len);
+        }
+
+        public synchronized void notifyPeerClosed(SocketAddress peerAddress)
+        {
+            ++closedCount;
+        }
+
+        public void notifyPeerFailed(SocketAddress peerAddress, Exception cause)
+        {
+            cause.printStackTrace();
+        }
+    }
+}
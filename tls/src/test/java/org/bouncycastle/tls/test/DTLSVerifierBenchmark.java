@@ -0,0 +1,86 @@
+package org.bouncycastle.tls.test;
+
+import java.security.SecureRandom;
+
+import org.bouncycastle.tls.DTLSVerifier;
+import org.bouncycastle.tls.TlsUtils;
+import org.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto;
+
+/**
+ * Measures the rate of DTLS cookie verifications that a single shared {@link DTLSVerifier} sustains with
+ * increasing numbers of threads. Half the requests carry a valid cookie; the rest are initial ClientHellos (as in a
+ * flood) that each cause a HelloVerifyRequest to be sent.
+ * <p>
+ * Usage: DTLSVerifierBenchmark [seconds per run] [max threads]
+ * </p>
+ */
+public class DTLSVerifierBenchmark
+{
+    public static void main(String[] args)
+        throws Exception
+    {
+        final long runMillis = 1000L * (args.length > 0 ? Integer.parseInt(args[0]) : 3);
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        final DTLSVerifier verifier = new DTLSVerifier(new BcTlsCrypto(new SecureRandom()));
+        final byte[] clientID = new byte[]{ 10, 0, 0, 1, 0x12, 0x34 };
+
+        byte[] random = new byte[32];
+        final byte[] initial = DTLSVerifierTest.createClientHello(random, TlsUtils.EMPTY_BYTES);
+
+        DTLSVerifierTest.CapturingSender sender = new DTLSVerifierTest.CapturingSender();
+        verifier.verifyRequest(clientID, initial, 0, initial.length, sender);
+        final byte[] verified = DTLSVerifierTest.createClientHello(random, sender.takeCookie());
+
+        // Warm up
+        runThreads(verifier, clientID, initial, verified, 1, runMillis);
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2)
+        {
+            long count = runThreads(verifier, clientID, initial, verified, threads, runMillis);
+
+            System.out.println(threads + " thread(s): " + (count * 1000L / runMillis) + " verifications/s");
+        }
+    }
+
+    private static long runThreads(final DTLSVerifier verifier, final byte[] clientID, final byte[] initial,
+        final byte[] verified, int threadCount, final long runMillis) throws InterruptedException
+    {
+        final long[] counts = new long[threadCount];
+        final long end = System.currentTimeMillis() + runMillis;
+
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; ++t)
+        {
+            final int index = t;
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    DTLSVerifierTest.CapturingSender sender = new DTLSVerifierTest.CapturingSender();
+
+                    long count = 0;
+                    while (System.currentTimeMillis() < end)
+                    {
+                        for (int i = 0; i < 100; ++i)
+                        {
+                            byte[] data = (i & 1) == 0 ? initial : verified;
+                            verifier.verifyRequest(clientID, data, 0, data.length, sender);
+                        }
+                        count += 100;
+                    }
+                    counts[index] = count;
+                }
+            };
+            threads[t].start();
+        }
+
+        long total = 0;
+        for (int t = 0; t < threadCount; ++t)
+        {
+            threads[t].join();
+            total += counts[t];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,215 @@
+package org.bouncycastle.tls.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.SecureRandom;
+
+import org.bouncycastle.tls.CipherSuite;
+import org.bouncycastle.tls.ContentType;
+import org.bouncycastle.tls.DTLSVerifier;
+import org.bouncycastle.tls.DatagramSender;
+import org.bouncycastle.tls.HandshakeType;
+import org.bouncycastle.tls.ProtocolVersion;
+import org.bouncycastle.tls.TlsUtils;
+import org.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto;
+import org.bouncycastle.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class DTLSVerifierTest
+    extends TestCase
+{
+    private static final byte[] CLIENT_ID = new byte[]{ 127, 0, 0, 1, 0x12, 0x34 };
+
+    public void testCookieExchange() throws Exception
+    {
+        DTLSVerifier verifier = new DTLSVerifier(new BcTlsCrypto(new SecureRandom()));
+        CapturingSender sender = new CapturingSender();
+
+        byte[] random = new byte[32];
+
+        byte[] hello = createClientHello(random, TlsUtils.EMPTY_BYTES);
+        assertNull(verifier.verifyRequest(CLIENT_ID, hello, 0, hello.length, sender));
+        byte[] cookie = sender.takeCookie();
+        assertEquals(32, cookie.length);
+
+        // A different client gets a different cookie
+        assertNull(verifier.verifyRequest(new byte[]{ 1 }, hello, 0, hello.length, sender));
+        assertFalse(Arrays.areEqual(cookie, sender.takeCookie()));
+
+        hello = createClientHello(random, cookie);
+        assertNotNull(verifier.verifyRequest(CLIENT_ID, hello, 0, hello.length, sender));
+        assertNull(sender.cookie);
+
+        // The datagram may be at an offset within a larger buffer
+        byte[] buf = Arrays.concatenate(new byte[7], hello, new byte[5]);
+        assertNotNull(verifier.verifyRequest(CLIENT_ID, buf, 7, hello.length, sender));
+
+        // The cookie is bound to the client ID and the rest of the ClientHello
+        assertNull(verifier.verifyRequest(new byte[]{ 1 }, hello, 0, hello.length, sender));
+        assertNotNull(sender.takeCookie());
+
+        random[0] ^= 1;
+        hello = createClientHello(random, cookie);
+        assertNull(verifier.verifyRequest(CLIENT_ID, hello, 0, hello.length, sender));
+        assertNotNull(sender.takeCookie());
+    }
+
+    public void testMalformedClientHello() throws Exception
+    {
+        DTLSVerifier verifier = new DTLSVerifier(new BcTlsCrypto(new SecureRandom()));
+        CapturingSender sender = new CapturingSender();
+
+        byte[] hello = createClientHello(new byte[32], TlsUtils.EMPTY_BYTES);
+        for (int len = 0; len < hello.length; ++len)
+        {
+            assertNull(verifier.verifyRequest(CLIENT_ID, hello, 0, len, sender));
+            assertNull(sender.cookie);
+        }
+
+        byte[] wrongType = Arrays.clone(hello);
+        wrongType[0] = ContentType.application_data;
+        assertNull(verifier.verifyRequest(CLIENT_ID, wrongType, 0, wrongType.length, sender));
+        assertNull(sender.cookie);
+
+        byte[] badCookieLength = Arrays.clone(hello);
+        badCookieLength[13 + 12 + 2 + 32 + 1] = 100;
+        assertNull(verifier.verifyRequest(CLIENT_ID, badCookieLength, 0, badCookieLength.length, sender));
+        assertNull(sender.cookie);
+    }
+
+    public void testSecretRotation() throws Exception
+    {
+        final long[] now = new long[]{ 1000000L };
+
+        DTLSVerifier verifier = new DTLSVerifier(new BcTlsCrypto(new SecureRandom()), 100L)
+        {
+            protected long currentTimeMillis()
+            {
+                return now[0];
+            }
+        };
+        CapturingSender sender = new CapturingSender();
+
+        byte[] random = new byte[32];
+
+        byte[] hello = createClientHello(random, TlsUtils.EMPTY_BYTES);
+        assertNull(verifier.verifyRequest(CLIENT_ID, hello, 0, hello.length, sender));
+        byte[] cookie1 = sender.takeCookie();
+
+        hello = createClientHello(random, cookie1);
+
+        // Accepted while its secret is current or previous
+        now[0] += 99L;
+        assertNotNull(verifier.verifyRequest(CLIENT_ID, hello, 0, hello.length, sender));
+        now[0] += 1L;
+        assertNotNull(verifier.verifyRequest(CLIENT_ID, hello, 0, hello.length, sender));
+        now[0] += 99L;
+        assertNotNull(verifier.verifyRequest(CLIENT_ID, hello, 0, hello.length, sender));
+
+        // Rejected once its secret is two rotations old, with a new cookie sent
+        now[0] += 1L;
+        assertNull(verifier.verifyRequest(CLIENT_ID, hello, 0, hello.length, sender));
+        byte[] cookie2 = sender.takeCookie();
+        assertFalse(Arrays.areEqual(cookie1, cookie2));
+
+        hello = createClientHello(random, cookie2);
+        assertNotNull(verifier.verifyRequest(CLIENT_ID, hello, 0, hello.length, sender));
+
+        // After a long idle period, the previous secret is discarded immediately
+        now[0] += 1000L;
+        assertNull(verifier.verifyRequest(CLIENT_ID, hello, 0, hello.length, sender));
+        assertNotNull(sender.takeCookie());
+    }
+
+    public void testConcurrentVerification() throws Exception
+    {
+        final DTLSVerifier verifier = new DTLSVerifier(new BcTlsCrypto(new SecureRandom()));
+        final byte[] random = new byte[32];
+
+        CapturingSender sender = new CapturingSender();
+        byte[] hello = createClientHello(random, TlsUtils.EMPTY_BYTES);
+        verifier.verifyRequest(CLIENT_ID, hello, 0, hello.length, sender);
+        final byte[] valid = createClientHello(random, sender.takeCookie());
+
+        final boolean[] failed = new boolean[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t)
+        {
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    CapturingSender sender = new CapturingSender();
+                    for (int i = 0; i < 200; ++i)
+                    {
+                        if (null == verifier.verifyRequest(CLIENT_ID, valid, 0, valid.length, sender)
+                            || null != sender.cookie)
+                        {
+                            failed[0] = true;
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; ++t)
+        {
+            threads[t].join();
+        }
+
+        assertFalse(failed[0]);
+    }
+
+    static byte[] createClientHello(byte[] random, byte[] cookie) throws IOException
+    {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        TlsUtils.writeVersion(ProtocolVersion.DTLSv12, body);
+        body.write(random);
+        TlsUtils.writeOpaque8(TlsUtils.EMPTY_BYTES, body);
+        if (null != cookie)
+        {
+            TlsUtils.writeOpaque8(cookie, body);
+        }
+        TlsUtils.writeUint16ArrayWithUint16Length(new int[]{ CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256 },
+            body);
+        TlsUtils.writeUint8ArrayWithUint8Length(new short[]{ 0 }, body);
+        TlsUtils.writeOpaque16(TlsUtils.EMPTY_BYTES, body);
+        byte[] bodyBytes = body.toByteArray();
+
+        byte[] datagram = new byte[13 + 12 + bodyBytes.length];
+        TlsUtils.writeUint8(ContentType.handshake, datagram, 0);
+        TlsUtils.writeVersion(ProtocolVersion.DTLSv10, datagram, 1);
+        TlsUtils.writeUint16(12 + bodyBytes.length, datagram, 11);
+        TlsUtils.writeUint8(HandshakeType.client_hello, datagram, 13);
+        TlsUtils.writeUint24(bodyBytes.length, datagram, 14);
+        TlsUtils.writeUint24(bodyBytes.length, datagram, 22);
+        System.arraycopy(bodyBytes, 0, datagram, 25, bodyBytes.length);
+        return datagram;
+    }
+
+    static class CapturingSender
+        implements DatagramSender
+    {
+        byte[] cookie = null;
+
+        public int getSendLimit()
+        {
+            return 1500;
+        }
+
+        public void send(byte[] buf, int off, int len)
+        {
+            // Record header, handshake header, server_version
+            int cookiePos = off + 13 + 12 + 2;
+            this.cookie = TlsUtils.copyOfRangeExact(buf, cookiePos + 1, cookiePos + 1 + (buf[cookiePos] & 0xFF));
+        }
+
+        byte[] takeCookie()
+        {
+            byte[] result = cookie;
+            this.cookie = null;
+            return result;
+        }
+    }
+}
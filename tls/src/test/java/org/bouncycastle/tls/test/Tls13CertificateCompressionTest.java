@@ -0,0 +1,294 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.security.SecureRandom;
+
+import org.bouncycastle.tls.AlertDescription;
+import org.bouncycastle.tls.CachedCertificateCompressor;
+import org.bouncycastle.tls.Certificate;
+import org.bouncycastle.tls.CertificateCompressionAlgorithm;
+import org.bouncycastle.tls.CertificateRequest;
+import org.bouncycastle.tls.ProtocolVersion;
+import org.bouncycastle.tls.SignatureAndHashAlgorithm;
+import org.bouncycastle.tls.TlsAuthentication;
+import org.bouncycastle.tls.TlsCertificateCompressor;
+import org.bouncycastle.tls.TlsClientProtocol;
+import org.bouncycastle.tls.TlsCredentials;
+import org.bouncycastle.tls.TlsFatalAlert;
+import org.bouncycastle.tls.TlsServerCertificate;
+import org.bouncycastle.tls.TlsServerProtocol;
+import org.bouncycastle.tls.ZlibCertificateCompressor;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.io.Streams;
+
+import junit.framework.TestCase;
+
+public class Tls13CertificateCompressionTest
+    extends TestCase
+{
+    public void testServerCertificateCompressed() throws Exception
+    {
+        CountingCompressor clientCompressor = new CountingCompressor(new ZlibCertificateCompressor());
+        CountingCompressor serverZlib = new CountingCompressor(new ZlibCertificateCompressor());
+        CachedCertificateCompressor serverCompressor = new CachedCertificateCompressor(serverZlib);
+
+        runConnection(new CompressionClient(clientCompressor, false), new CompressionServer(serverCompressor));
+
+        assertEquals(1, clientCompressor.decompressCount);
+        assertEquals(1, serverZlib.compressCount);
+        assertEquals(1, serverCompressor.size());
+
+        // The compressed server chain is reused for subsequent connections
+        runConnection(new CompressionClient(clientCompressor, false), new CompressionServer(serverCompressor));
+
+        assertEquals(2, clientCompressor.decompressCount);
+        assertEquals(1, serverZlib.compressCount);
+        assertEquals(1, serverCompressor.size());
+    }
+
+    public void testClientCertificateCompressed() throws Exception
+    {
+        CountingCompressor clientCompressor = new CountingCompressor(new ZlibCertificateCompressor());
+        CountingCompressor serverCompressor = new CountingCompressor(new ZlibCertificateCompressor());
+
+        CompressionServer server = new CompressionServer(serverCompressor);
+        runConnection(new CompressionClient(clientCompressor, true), server);
+
+        assertTrue(server.receivedClientCertificate);
+        assertEquals(1, clientCompressor.compressCount);
+        assertEquals(1, clientCompressor.decompressCount);
+        assertEquals(1, serverCompressor.compressCount);
+        assertEquals(1, serverCompressor.decompressCount);
+    }
+
+    public void testNoCommonAlgorithm() throws Exception
+    {
+        CountingCompressor clientCompressor = new CountingCompressor(new ZlibCertificateCompressor());
+        CountingCompressor serverCompressor = new CountingCompressor(new ZlibCertificateCompressor()
+        {
+            public int getAlgorithm()
+            {
+                return CertificateCompressionAlgorithm.brotli;
+            }
+        });
+
+        CompressionServer server = new CompressionServer(serverCompressor);
+        runConnection(new CompressionClient(clientCompressor, true), server);
+
+        assertTrue(server.receivedClientCertificate);
+        assertEquals(0, clientCompressor.compressCount);
+        assertEquals(0, clientCompressor.decompressCount);
+        assertEquals(0, serverCompressor.compressCount);
+        assertEquals(0, serverCompressor.decompressCount);
+    }
+
+    public void testCompressionDisabled() throws Exception
+    {
+        CountingCompressor serverCompressor = new CountingCompressor(new ZlibCertificateCompressor());
+
+        runConnection(new CompressionClient(null, false), new CompressionServer(serverCompressor));
+
+        assertEquals(0, serverCompressor.compressCount);
+    }
+
+    public void testZlibInvalidLength() throws Exception
+    {
+        ZlibCertificateCompressor compressor = new ZlibCertificateCompressor();
+
+        byte[] data = new byte[1000];
+        new SecureRandom().nextBytes(data);
+
+        byte[] compressed = compressor.compress(data);
+        assertTrue(Arrays.areEqual(data, compressor.decompress(compressed, data.length)));
+
+        checkBadCertificate(compressor, compressed, data.length - 1);
+        checkBadCertificate(compressor, compressed, data.length + 1);
+        checkBadCertificate(compressor, Arrays.copyOf(compressed, compressed.length - 1), data.length);
+        checkBadCertificate(compressor, new byte[]{ 1, 2, 3, 4 }, data.length);
+    }
+
+    private static void checkBadCertificate(TlsCertificateCompressor compressor, byte[] compressed,
+        int uncompressedLength) throws IOException
+    {
+        try
+        {
+            compressor.decompress(compressed, uncompressedLength);
+            fail();
+        }
+        catch (TlsFatalAlert e)
+        {
+            assertEquals(AlertDescription.bad_certificate, e.getAlertDescription());
+        }
+    }
+
+    private static void runConnection(CompressionClient client, CompressionServer server) throws Exception
+    {
+        PipedInputStream clientRead = TlsTestUtils.createPipedInputStream();
+        PipedInputStream serverRead = TlsTestUtils.createPipedInputStream();
+        PipedOutputStream clientWrite = new PipedOutputStream(serverRead);
+        PipedOutputStream serverWrite = new PipedOutputStream(clientRead);
+
+        TlsClientProtocol clientProtocol = new TlsClientProtocol(clientRead, clientWrite);
+        TlsServerProtocol serverProtocol = new TlsServerProtocol(serverRead, serverWrite);
+
+        ServerThread serverThread = new ServerThread(serverProtocol, server);
+        serverThread.start();
+
+        clientProtocol.connect(client);
+
+        byte[] data = new byte[1000];
+        client.getCrypto().getSecureRandom().nextBytes(data);
+
+        OutputStream output = clientProtocol.getOutputStream();
+        output.write(data);
+
+        byte[] echo = new byte[data.length];
+        int count = Streams.readFully(clientProtocol.getInputStream(), echo);
+
+        assertEquals(count, data.length);
+        assertTrue(Arrays.areEqual(data, echo));
+
+        output.close();
+
+        serverThread.join();
+    }
+
+    static class CountingCompressor
+        implements TlsCertificateCompressor
+    {
+        private final TlsCertificateCompressor compressor;
+
+        volatile int compressCount = 0, decompressCount = 0;
+
+        CountingCompressor(TlsCertificateCompressor compressor)
+        {
+            this.compressor = compressor;
+        }
+
+        public int getAlgorithm()
+        {
+            return compressor.getAlgorithm();
+        }
+
+        public byte[] compress(byte[] certificateMessage) throws IOException
+        {
+            ++compressCount;
+            return compressor.compress(certificateMessage);
+        }
+
+        public byte[] decompress(byte[] compressedCertificateMessage, int uncompressedLength) throws IOException
+        {
+            ++decompressCount;
+            return compressor.decompress(compressedCertificateMessage, uncompressedLength);
+        }
+    }
+
+    static class CompressionClient
+        extends MockTlsClient
+    {
+        private final TlsCertificateCompressor compressor;
+        private final boolean sendClientCertificate;
+
+        CompressionClient(TlsCertificateCompressor compressor, boolean sendClientCertificate)
+        {
+            super(null);
+
+            this.compressor = compressor;
+            this.sendClientCertificate = sendClientCertificate;
+        }
+
+        protected ProtocolVersion[] getSupportedVersions()
+        {
+            return ProtocolVersion.TLSv13.only();
+        }
+
+        public TlsCertificateCompressor[] getCertificateCompressors()
+        {
+            return null == compressor ? null : new TlsCertificateCompressor[]{ compressor };
+        }
+
+        public TlsAuthentication getAuthentication() throws IOException
+        {
+            final TlsAuthentication authentication = super.getAuthentication();
+
+            return new TlsAuthentication()
+            {
+                public void notifyServerCertificate(TlsServerCertificate serverCertificate) throws IOException
+                {
+                    authentication.notifyServerCertificate(serverCertificate);
+                }
+
+                public TlsCredentials getClientCredentials(CertificateRequest certificateRequest) throws IOException
+                {
+                    if (!sendClientCertificate)
+                    {
+                        return null;
+                    }
+
+                    return TlsTestUtils.loadSignerCredentials(context, new String[]{ "x509-client-rsa.pem" },
+                        "x509-client-key-rsa.pem", SignatureAndHashAlgorithm.rsa_pss_rsae_sha256);
+                }
+            };
+        }
+    }
+
+    static class CompressionServer
+        extends MockTlsServer
+    {
+        private final TlsCertificateCompressor compressor;
+
+        volatile boolean receivedClientCertificate = false;
+
+        CompressionServer(TlsCertificateCompressor compressor)
+        {
+            this.compressor = compressor;
+        }
+
+        protected ProtocolVersion[] getSupportedVersions()
+        {
+            return ProtocolVersion.TLSv13.only();
+        }
+
+        public TlsCertificateCompressor[] getCertificateCompressors()
+        {
+            return new TlsCertificateCompressor[]{ compressor };
+        }
+
+        public void notifyClientCertificate(Certificate clientCertificate) throws IOException
+        {
+            super.notifyClientCertificate(clientCertificate);
+
+            this.receivedClientCertificate = !clientCertificate.isEmpty();
+        }
+    }
+
+    static class ServerThread
+        extends Thread
+    {
+        private final TlsServerProtocol serverProtocol;
+        private final CompressionServer server;
+
+        ServerThread(TlsServerProtocol serverProtocol, CompressionServer server)
+        {
+            this.serverProtocol = serverProtocol;
+            this.server = server;
+        }
+
+        public void run()
+        {
+            try
+            {
+                serverProtocol.accept(server);
+                Streams.pipeAll(serverProtocol.getInputStream(), serverProtocol.getOutputStream());
+                serverProtocol.close();
+            }
+            catch (Exception e)
+            {
+//                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.security.SecureRandom;
+
+import org.bouncycastle.tls.NamedGroup;
+import org.bouncycastle.tls.ProtocolVersion;
+import org.bouncycastle.tls.SecurityParameters;
+import org.bouncycastle.tls.SessionTicketKeyRing;
+import org.bouncycastle.tls.StrikeRegister;
+import org.bouncycastle.tls.TlsAntiReplayStore;
+import org.bouncycastle.tls.TlsClientProtocol;
+import org.bouncycastle.tls.TlsServerProtocol;
+import org.bouncycastle.tls.TlsSession;
+import org.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.io.Streams;
+
+import junit.framework.TestCase;
+
+public class Tls13EarlyDataProtocolTest
+    extends TestCase
+{
+    private static final byte[] EARLY_DATA = new byte[300];
+
+    static
+    {
+        for (int i = 0; i < EARLY_DATA.length; ++i)
+        {
+            EARLY_DATA[i] = (byte)i;
+        }
+    }
+
+    public void testEarlyDataAccepted() throws Exception
+    {
+        SessionTicketKeyRing keyRing = new SessionTicketKeyRing(new BcTlsCrypto(new SecureRandom()), 3600);
+        StrikeRegister antiReplayStore = new StrikeRegister(16);
+
+        EarlyDataClient client1 = new EarlyDataClient(null);
+        runConnection(client1, new EarlyDataServer(keyRing, antiReplayStore, 1024, false), null);
+
+        assertFalse(client1.earlyDataAccepted);
+        assertEquals(1024L, client1.resumableSession.exportSessionParameters().getMaxEarlyDataSize());
+
+        EarlyDataClient client2 = new EarlyDataClient(client1.resumableSession);
+        EarlyDataServer server2 = new EarlyDataServer(keyRing, antiReplayStore, 1024, false);
+        runConnection(client2, server2, EARLY_DATA);
+
+        assertTrue(client2.resumed);
+        assertTrue(client2.earlyDataAccepted);
+        assertTrue(server2.earlyDataAccepted);
+        assertEquals(1, antiReplayStore.size());
+
+        // The ticket from the resumed connection also permits early data
+        EarlyDataClient client3 = new EarlyDataClient(client2.resumableSession);
+        EarlyDataServer server3 = new EarlyDataServer(keyRing, antiReplayStore, 1024, false);
+        runConnection(client3, server3, EARLY_DATA);
+
+        assertTrue(client3.earlyDataAccepted);
+        assertTrue(server3.earlyDataAccepted);
+    }
+
+    public void testEarlyDataRejected() throws Exception
+    {
+        SessionTicketKeyRing keyRing = new SessionTicketKeyRing(new BcTlsCrypto(new SecureRandom()), 3600);
+
+        // A register with room for just one ClientHello
+        StrikeRegister antiReplayStore = new StrikeRegister(1);
+
+        EarlyDataClient client1 = new EarlyDataClient(null);
+        runConnection(client1, new EarlyDataServer(keyRing, antiReplayStore, 1024, false), null);
+
+        EarlyDataClient client2 = new EarlyDataClient(client1.resumableSession);
+        runConnection(client2, new EarlyDataServer(keyRing, antiReplayStore, 1024, false), EARLY_DATA);
+
+        assertTrue(client2.earlyDataAccepted);
+
+        // The early data is skipped, but the handshake succeeds (with resumption)
+        EarlyDataClient client3 = new EarlyDataClient(client1.resumableSession);
+        EarlyDataServer server3 = new EarlyDataServer(keyRing, antiReplayStore, 1024, false);
+        runConnection(client3, server3, null);
+
+        assertTrue(client3.resumed);
+        assertFalse(client3.earlyDataAccepted);
+        assertFalse(server3.earlyDataAccepted);
+    }
+
+    public void testEarlyDataRejectedByServerConfiguration() throws Exception
+    {
+        SessionTicketKeyRing keyRing = new SessionTicketKeyRing(new BcTlsCrypto(new SecureRandom()), 3600);
+
+        EarlyDataClient client1 = new EarlyDataClient(null);
+        runConnection(client1, new EarlyDataServer(keyRing, new StrikeRegister(16), 1024, false), null);
+
+        EarlyDataClient client2 = new EarlyDataClient(client1.resumableSession);
+        EarlyDataServer server2 = new EarlyDataServer(keyRing, null, 1024, false);
+        runConnection(client2, server2, null);
+
+        assertTrue(client2.resumed);
+        assertFalse(client2.earlyDataAccepted);
+        assertFalse(server2.earlyDataAccepted);
+
+        // Tickets from a server without an anti-replay store don't permit early data
+        assertEquals(0L, client2.resumableSession.exportSessionParameters().getMaxEarlyDataSize());
+    }
+
+    public void testEarlyDataRejectedAfterHelloRetryRequest() throws Exception
+    {
+        SessionTicketKeyRing keyRing = new SessionTicketKeyRing(new BcTlsCrypto(new SecureRandom()), 3600);
+        StrikeRegister antiReplayStore = new StrikeRegister(16);
+
+        EarlyDataClient client1 = new EarlyDataClient(null);
+        runConnection(client1, new EarlyDataServer(keyRing, antiReplayStore, 1024, false), null);
+
+        EarlyDataClient client2 = new EarlyDataClient(client1.resumableSession);
+        EarlyDataServer server2 = new EarlyDataServer(keyRing, antiReplayStore, 1024, true);
+        runConnection(client2, server2, null);
+
+        assertTrue(client2.resumed);
+        assertFalse(client2.earlyDataAccepted);
+        assertFalse(server2.earlyDataAccepted);
+    }
+
+    public void testEarlyDataTooLarge() throws Exception
+    {
+        SessionTicketKeyRing keyRing = new SessionTicketKeyRing(new BcTlsCrypto(new SecureRandom()), 3600);
+        StrikeRegister antiReplayStore = new StrikeRegister(16);
+
+        EarlyDataClient client1 = new EarlyDataClient(null);
+        runConnection(client1, new EarlyDataServer(keyRing, antiReplayStore, EARLY_DATA.length - 1, false), null);
+
+        // The client doesn't offer early data that exceeds the ticket's limit
+        EarlyDataClient client2 = new EarlyDataClient(client1.resumableSession);
+        runConnection(client2, new EarlyDataServer(keyRing, antiReplayStore, 1024, false), null);
+
+        assertTrue(client2.resumed);
+        assertFalse(client2.earlyDataAccepted);
+        assertEquals(0, antiReplayStore.size());
+    }
+
+    public void testStrikeRegister() throws Exception
+    {
+        final long[] now = new long[]{ 1000000L };
+
+        StrikeRegister register = new StrikeRegister(2, 100L)
+        {
+            protected long currentTimeMillis()
+            {
+                return now[0];
+            }
+        };
+
+        byte[] a = new byte[32], b = new byte[32], c = new byte[32];
+        b[0] = 1;
+        c[0] = 2;
+
+        // Ticket age outside the window
+        assertFalse(register.checkAndRecord(a, 101L));
+        assertFalse(register.checkAndRecord(a, -101L));
+        assertEquals(0, register.size());
+
+        assertTrue(register.checkAndRecord(a, 100L));
+        assertFalse(register.checkAndRecord(a, 0L));
+        assertTrue(register.checkAndRecord(b, -100L));
+
+        // Full
+        assertFalse(register.checkAndRecord(c, 0L));
+        assertEquals(2, register.size());
+
+        // Entries are remembered for twice the window
+        now[0] += 199L;
+        assertFalse(register.checkAndRecord(a, 0L));
+        assertFalse(register.checkAndRecord(c, 0L));
+
+        now[0] += 1L;
+        assertTrue(register.checkAndRecord(c, 0L));
+        assertTrue(register.checkAndRecord(a, 0L));
+        assertEquals(2, register.size());
+    }
+
+    private static void runConnection(EarlyDataClient client, EarlyDataServer server, byte[] expectedEarlyData)
+        throws Exception
+    {
+        PipedInputStream clientRead = TlsTestUtils.createPipedInputStream();
+        PipedInputStream serverRead = TlsTestUtils.createPipedInputStream();
+        PipedOutputStream clientWrite = new PipedOutputStream(serverRead);
+        PipedOutputStream serverWrite = new PipedOutputStream(clientRead);
+
+        TlsClientProtocol clientProtocol = new TlsClientProtocol(clientRead, clientWrite);
+        TlsServerProtocol serverProtocol = new TlsServerProtocol(serverRead, serverWrite);
+
+        ServerThread serverThread = new ServerThread(serverProtocol, server);
+        serverThread.start();
+
+        clientProtocol.connect(client);
+
+        byte[] data = new byte[1000];
+        client.getCrypto().getSecureRandom().nextBytes(data);
+
+        OutputStream output = clientProtocol.getOutputStream();
+        output.write(data);
+
+        // NOTE: Accepted early data is received by the server application ahead of any other data
+        byte[] expected = null == expectedEarlyData ? data : Arrays.concatenate(expectedEarlyData, data);
+
+        byte[] echo = new byte[expected.length];
+        int count = Streams.readFully(clientProtocol.getInputStream(), echo);
+
+        assertEquals(count, expected.length);
+        assertTrue(Arrays.areEqual(expected, echo));
+
+        output.close();
+
+        serverThread.join();
+    }
+
+    static class EarlyDataClient
+        extends MockTlsClient
+    {
+        boolean resumed = false;
+        boolean earlyDataAccepted = false;
+        TlsSession resumableSession = null;
+
+        EarlyDataClient(TlsSession session)
+        {
+            super(session);
+        }
+
+        protected ProtocolVersion[] getSupportedVersions()
+        {
+            return ProtocolVersion.TLSv13.only();
+        }
+
+        public byte[] getEarlyData() throws IOException
+        {
+            return EARLY_DATA;
+        }
+
+        public void notifyHandshakeComplete() throws IOException
+        {
+            super.notifyHandshakeComplete();
+
+            SecurityParameters securityParameters = context.getSecurityParametersConnection();
+            this.resumed = securityParameters.isResumedSession();
+            this.earlyDataAccepted = securityParameters.isEarlyDataAccepted();
+        }
+
+        public void notifyResumableSession(TlsSession session) throws IOException
+        {
+            this.resumableSession = session;
+        }
+    }
+
+    static class EarlyDataServer
+        extends MockTlsServer
+    {
+        private final SessionTicketKeyRing keyRing;
+        private final TlsAntiReplayStore antiReplayStore;
+        private final long maxEarlyDataSize;
+        private final boolean forceRetry;
+
+        volatile boolean earlyDataAccepted = false;
+
+        EarlyDataServer(SessionTicketKeyRing keyRing, TlsAntiReplayStore antiReplayStore, long maxEarlyDataSize,
+            boolean forceRetry)
+        {
+            this.keyRing = keyRing;
+            this.antiReplayStore = antiReplayStore;
+            this.maxEarlyDataSize = maxEarlyDataSize;
+            this.forceRetry = forceRetry;
+        }
+
+        public SessionTicketKeyRing getSessionTicketKeyRing()
+        {
+            return keyRing;
+        }
+
+        public TlsAntiReplayStore getAntiReplayStore()
+        {
+            return antiReplayStore;
+        }
+
+        public long getMaxEarlyDataSize()
+        {
+            return maxEarlyDataSize;
+        }
+
+        public int[] getSupportedGroups() throws IOException
+        {
+            // NOTE: The client only sends an x25519 key share, so this forces a HelloRetryRequest
+            return forceRetry ? new int[]{ NamedGroup.secp256r1 } : super.getSupportedGroups();
+        }
+
+        public void notifyHandshakeComplete() throws IOException
+        {
+            super.notifyHandshakeComplete();
+
+            this.earlyDataAccepted = context.getSecurityParametersConnection().isEarlyDataAccepted();
+        }
+    }
+
+    static class ServerThread
+        extends Thread
+    {
+        private final TlsServerProtocol serverProtocol;
+        private final EarlyDataServer server;
+
+        ServerThread(TlsServerProtocol serverProtocol, EarlyDataServer server)
+        {
+            this.serverProtocol = serverProtocol;
+            this.server = server;
+        }
+
+        public void run()
+        {
+            try
+            {
+                serverProtocol.accept(server);
+                Streams.pipeAll(serverProtocol.getInputStream(), serverProtocol.getOutputStream());
+                serverProtocol.close();
+            }
+            catch (Exception e)
+            {
+//                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.security.SecureRandom;
+import java.util.Vector;
+
+import org.bouncycastle.tls.Certificate;
+import org.bouncycastle.tls.CipherSuite;
+import org.bouncycastle.tls.NameType;
+import org.bouncycastle.tls.ProtocolVersion;
+import org.bouncycastle.tls.PskKeyExchangeMode;
+import org.bouncycastle.tls.SecurityParameters;
+import org.bouncycastle.tls.ServerName;
+import org.bouncycastle.tls.SessionTicketKeyRing;
+import org.bouncycastle.tls.TlsClientProtocol;
+import org.bouncycastle.tls.TlsServerProtocol;
+import org.bouncycastle.tls.TlsSession;
+import org.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Strings;
+import org.bouncycastle.util.io.Streams;
+
+import junit.framework.TestCase;
+
+public class Tls13ResumptionProtocolTest
+    extends TestCase
+{
+    public void testResumption() throws Exception
+    {
+        SessionTicketKeyRing keyRing = new SessionTicketKeyRing(new BcTlsCrypto(new SecureRandom()), 3600);
+
+        ResumptionClient client1 = new ResumptionClient(null, null);
+        ResumptionServer server1 = new ResumptionServer(keyRing, null);
+        runConnection(client1, server1);
+
+        assertFalse(client1.resumed);
+        assertFalse(server1.resumed);
+        assertNotNull(client1.resumableSession);
+        assertTrue(client1.resumableSession.isResumable());
+
+        ResumptionClient client2 = new ResumptionClient(client1.resumableSession, null);
+        ResumptionServer server2 = new ResumptionServer(keyRing, null);
+        runConnection(client2, server2);
+
+        assertTrue(client2.resumed);
+        assertTrue(server2.resumed);
+
+        // The server certificate is recovered from the session (client) and the ticket (server)
+        assertEquals(client1.peerCertificate.getLength(), client2.peerCertificate.getLength());
+        assertTrue(Arrays.areEqual(client1.peerCertificate.getCertificateAt(0).getEncoded(),
+            client2.peerCertificate.getCertificateAt(0).getEncoded()));
+        assertNotNull(server2.localCertificate);
+        assertTrue(Arrays.areEqual(client1.peerCertificate.getCertificateAt(0).getEncoded(),
+            server2.localCertificate.getCertificateAt(0).getEncoded()));
+
+        // A resumed connection issues a fresh ticket
+        assertNotNull(client2.resumableSession);
+        assertFalse(Arrays.areEqual(client1.resumableSession.exportSessionParameters().getTicket(),
+            client2.resumableSession.exportSessionParameters().getTicket()));
+    }
+
+    public void testResumptionPskKe() throws Exception
+    {
+        SessionTicketKeyRing keyRing = new SessionTicketKeyRing(new BcTlsCrypto(new SecureRandom()), 3600);
+        short[] pskKeyExchangeModes = new short[]{ PskKeyExchangeMode.psk_ke };
+
+        ResumptionClient client1 = new ResumptionClient(null, pskKeyExchangeModes);
+        runConnection(client1, new ResumptionServer(keyRing, pskKeyExchangeModes));
+
+        ResumptionClient client2 = new ResumptionClient(client1.resumableSession, pskKeyExchangeModes);
+        ResumptionServer server2 = new ResumptionServer(keyRing, pskKeyExchangeModes);
+        runConnection(client2, server2);
+
+        assertTrue(client2.resumed);
+        assertTrue(server2.resumed);
+    }
+
+    public void testKeyRotation() throws Exception
+    {
+        SessionTicketKeyRing keyRing = new SessionTicketKeyRing(new BcTlsCrypto(new SecureRandom()), 3600);
+
+        ResumptionClient client1 = new ResumptionClient(null, null);
+        runConnection(client1, new ResumptionServer(keyRing, null));
+
+        // Tickets sealed under the previous key are still accepted
+        keyRing.rotate();
+
+        ResumptionClient client2 = new ResumptionClient(client1.resumableSession, null);
+        ResumptionServer server2 = new ResumptionServer(keyRing, null);
+        runConnection(client2, server2);
+
+        assertTrue(client2.resumed);
+        assertTrue(server2.resumed);
+
+        // Once the key has been discarded, the ticket is ignored and a full handshake is performed
+        keyRing.rotate();
+
+        ResumptionClient client3 = new ResumptionClient(client1.resumableSession, null);
+        ResumptionServer server3 = new ResumptionServer(keyRing, null);
+        runConnection(client3, server3);
+
+        assertFalse(client3.resumed);
+        assertFalse(server3.resumed);
+    }
+
+    public void testKeyExpiry() throws Exception
+    {
+        final long[] now = new long[]{ System.currentTimeMillis() };
+        SessionTicketKeyRing keyRing = new SessionTicketKeyRing(new BcTlsCrypto(new SecureRandom()), 60)
+        {
+            protected long currentTimeMillis()
+            {
+                return now[0];
+            }
+        };
+
+        byte[] ticket = keyRing.seal(new byte[8]);
+
+        // No tickets are sealed in between, the key still rotates out and then expires on time
+        now[0] += 60 * 1000L;
+        assertNotNull(keyRing.open(ticket));
+
+        now[0] += 59 * 1000L;
+        assertNotNull(keyRing.open(ticket));
+
+        now[0] += 1000L;
+        assertNull(keyRing.open(ticket));
+
+        // A key left idle for several intervals is gone as soon as it is next looked at
+        ticket = keyRing.seal(new byte[8]);
+
+        now[0] += 10 * 60 * 1000L;
+        assertNull(keyRing.open(ticket));
+    }
+
+    public void testServerNameMismatch() throws Exception
+    {
+        SessionTicketKeyRing keyRing = new SessionTicketKeyRing(new BcTlsCrypto(new SecureRandom()), 3600);
+
+        ResumptionClient client1 = new ResumptionClient(null, null);
+        client1.serverName = "one.example";
+        runConnection(client1, new ResumptionServer(keyRing, null));
+
+        ResumptionClient client2 = new ResumptionClient(client1.resumableSession, null);
+        client2.serverName = "ONE.example";
+        ResumptionServer server2 = new ResumptionServer(keyRing, null);
+        runConnection(client2, server2);
+
+        assertTrue(client2.resumed);
+        assertTrue(server2.resumed);
+
+        ResumptionClient client3 = new ResumptionClient(client1.resumableSession, null);
+        client3.serverName = "two.example";
+        ResumptionServer server3 = new ResumptionServer(keyRing, null);
+        runConnection(client3, server3);
+
+        assertFalse(client3.resumed);
+        assertFalse(server3.resumed);
+    }
+
+    public void testResumptionWithOtherCipherSuite() throws Exception
+    {
+        SessionTicketKeyRing keyRing = new SessionTicketKeyRing(new BcTlsCrypto(new SecureRandom()), 3600);
+
+        ResumptionClient client1 = new ResumptionClient(null, null);
+        client1.cipherSuites = new int[]{ CipherSuite.TLS_CHACHA20_POLY1305_SHA256 };
+        runConnection(client1, new ResumptionServer(keyRing, null));
+
+        // Any cipher suite with the same KDF hash may be used
+        ResumptionClient client2 = new ResumptionClient(client1.resumableSession, null);
+        client2.cipherSuites = new int[]{ CipherSuite.TLS_AES_128_GCM_SHA256 };
+        ResumptionServer server2 = new ResumptionServer(keyRing, null);
+        runConnection(client2, server2);
+
+        assertTrue(client2.resumed);
+        assertTrue(server2.resumed);
+        assertEquals(CipherSuite.TLS_AES_128_GCM_SHA256, client2.cipherSuite);
+
+        ResumptionClient client3 = new ResumptionClient(client1.resumableSession, null);
+        client3.cipherSuites = new int[]{ CipherSuite.TLS_AES_256_GCM_SHA384 };
+        ResumptionServer server3 = new ResumptionServer(keyRing, null);
+        runConnection(client3, server3);
+
+        assertFalse(client3.resumed);
+        assertFalse(server3.resumed);
+    }
+
+    public void testNoKeyRing() throws Exception
+    {
+        ResumptionClient client1 = new ResumptionClient(null, null);
+        runConnection(client1, new ResumptionServer(null, null));
+
+        assertNull(client1.resumableSession);
+    }
+
+    public void testKeyRingSealOpen() throws Exception
+    {
+        SessionTicketKeyRing keyRing = new SessionTicketKeyRing(new BcTlsCrypto(new SecureRandom()), 60);
+
+        for (int length = 0; length < 100; ++length)
+        {
+            byte[] plaintext = new byte[length];
+            for (int i = 0; i < length; ++i)
+            {
+                plaintext[i] = (byte)i;
+            }
+
+            byte[] ticket = keyRing.seal(plaintext);
+            assertTrue(Arrays.areEqual(plaintext, keyRing.open(ticket)));
+
+            ticket[ticket.length - 1] ^= 1;
+            assertNull(keyRing.open(ticket));
+        }
+
+        assertNull(keyRing.open(new byte[16]));
+        assertNull(new SessionTicketKeyRing(new BcTlsCrypto(new SecureRandom()), 60).open(keyRing.seal(new byte[8])));
+    }
+
+    private static void runConnection(ResumptionClient client, ResumptionServer server) throws Exception
+    {
+        PipedInputStream clientRead = TlsTestUtils.createPipedInputStream();
+        PipedInputStream serverRead = TlsTestUtils.createPipedInputStream();
+        PipedOutputStream clientWrite = new PipedOutputStream(serverRead);
+        PipedOutputStream serverWrite = new PipedOutputStream(clientRead);
+
+        TlsClientProtocol clientProtocol = new TlsClientProtocol(clientRead, clientWrite);
+        TlsServerProtocol serverProtocol = new TlsServerProtocol(serverRead, serverWrite);
+
+        ServerThread serverThread = new ServerThread(serverProtocol, server);
+        serverThread.start();
+
+        clientProtocol.connect(client);
+
+        // NOTE: Because we write-all before we read-any, this length can't be more than the pipe capacity
+        int length = 1000;
+
+        byte[] data = new byte[length];
+        client.getCrypto().getSecureRandom().nextBytes(data);
+
+        OutputStream output = clientProtocol.getOutputStream();
+        output.write(data);
+
+        // NOTE: Any NewSessionTicket message is processed while reading the echo
+        byte[] echo = new byte[data.length];
+        int count = Streams.readFully(clientProtocol.getInputStream(), echo);
+
+        assertEquals(count, data.length);
+        assertTrue(Arrays.areEqual(data, echo));
+
+        output.close();
+
+        serverThread.join();
+    }
+
+    static class ResumptionClient
+        extends MockTlsClient
+    {
+        private final short[] pskKeyExchangeModes;
+
+        int[] cipherSuites = null;
+        String serverName = null;
+
+        boolean resumed = false;
+        int cipherSuite = -1;
+        Certificate peerCertificate = null;
+        TlsSession resumableSession = null;
+
+        ResumptionClient(TlsSession session, short[] pskKeyExchangeModes)
+        {
+            super(session);
+
+            this.pskKeyExchangeModes = pskKeyExchangeModes;
+        }
+
+        protected ProtocolVersion[] getSupportedVersions()
+        {
+            return ProtocolVersion.TLSv13.only();
+        }
+
+        protected int[] getSupportedCipherSuites()
+        {
+            return null == cipherSuites ? super.getSupportedCipherSuites() : cipherSuites;
+        }
+
+        protected Vector getSNIServerNames()
+        {
+            if (null == serverName)
+            {
+                return super.getSNIServerNames();
+            }
+
+            Vector serverNames = new Vector();
+            serverNames.addElement(new ServerName(NameType.host_name, Strings.toByteArray(serverName)));
+            return serverNames;
+        }
+
+        public short[] getPskKeyExchangeModes()
+        {
+            return null == pskKeyExchangeModes ? super.getPskKeyExchangeModes() : pskKeyExchangeModes;
+        }
+
+        public void notifyHandshakeComplete() throws IOException
+        {
+            super.notifyHandshakeComplete();
+
+            SecurityParameters securityParameters = context.getSecurityParametersConnection();
+            this.resumed = securityParameters.isResumedSession();
+            this.cipherSuite = securityParameters.getCipherSuite();
+            this.peerCertificate = securityParameters.getPeerCertificate();
+        }
+
+        public void notifyResumableSession(TlsSession session) throws IOException
+        {
+            this.resumableSession = session;
+        }
+    }
+
+    static class ResumptionServer
+        extends MockTlsServer
+    {
+        private final SessionTicketKeyRing keyRing;
+        private final short[] pskKeyExchangeModes;
+
+        volatile boolean resumed = false;
+        volatile Certificate localCertificate = null;
+
+        ResumptionServer(SessionTicketKeyRing keyRing, short[] pskKeyExchangeModes)
+        {
+            this.keyRing = keyRing;
+            this.pskKeyExchangeModes = pskKeyExchangeModes;
+        }
+
+        public short[] getPskKeyExchangeModes()
+        {
+            return null == pskKeyExchangeModes ? super.getPskKeyExchangeModes() : pskKeyExchangeModes;
+        }
+
+        public SessionTicketKeyRing getSessionTicketKeyRing()
+        {
+            return keyRing;
+        }
+
+        public void notifyHandshakeComplete() throws IOException
+        {
+            super.notifyHandshakeComplete();
+
+            SecurityParameters securityParameters = context.getSecurityParametersConnection();
+            this.resumed = securityParameters.isResumedSession();
+            this.localCertificate = securityParameters.getLocalCertificate();
+        }
+    }
+
+    static class ServerThread
+        extends Thread
+    {
+        private final TlsServerProtocol serverProtocol;
+        private final ResumptionServer server;
+
+        ServerThread(TlsServerProtocol serverProtocol, ResumptionServer server)
+        {
+            this.serverProtocol = serverProtocol;
+            this.server = server;
+        }
+
+        public void run()
+        {
+            try
+            {
+                serverProtocol.accept(server);
+                Streams.pipeAll(serverProtocol.getInputStream(), serverProtocol.getOutputStream());
+                serverProtocol.close();
+            }
+            catch (Exception e)
+            {
+//                throw new RuntimeException(e);
+            }
+        }
+    }
+}
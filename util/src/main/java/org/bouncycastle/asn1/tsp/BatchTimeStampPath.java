@@ -0,0 +1,136 @@
+package org.bouncycastle.asn1.tsp;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1Object;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.DERSequence;
+
+/**
+ * The path from a single request to the signed root of a batched time-stamp token, carried in the
+ * unsigned attribute TSPObjectIdentifiers.id_aa_batchTimeStampPath.
+ * <p>
+ * The leaf for a request is the hash of 0x00 followed by the DER encoding of SEQUENCE { messageImprint,
+ * nonce OPTIONAL }, and the reduced hash tree is a path from that leaf to the root as for an RFC 4998
+ * ArchiveTimeStamp, except that each pair of nodes is hashed with a 0x01 prefix as in RFC 6962.
+ * </p>
+ */
+public class BatchTimeStampPath
+    extends ASN1Object
+{
+    private final MessageImprint messageImprint;
+    private final ASN1Integer nonce;
+    private final PartialHashtree[] reducedHashtree;
+
+    /**
+     * Return an instance of BatchTimeStampPath, or null, based on o.
+     *
+     * @param o the object to be converted.
+     * @return a BatchTimeStampPath object.
+     */
+    public static BatchTimeStampPath getInstance(Object o)
+    {
+        if (o instanceof BatchTimeStampPath)
+        {
+            return (BatchTimeStampPath)o;
+        }
+
+        if (o != null)
+        {
+            return new BatchTimeStampPath(ASN1Sequence.getInstance(o));
+        }
+
+        return null;
+    }
+
+    private BatchTimeStampPath(ASN1Sequence seq)
+    {
+        if (seq.size() < 2 || seq.size() > 3)
+        {
+            throw new IllegalArgumentException("sequence has wrong number of elements");
+        }
+
+        this.messageImprint = MessageImprint.getInstance(seq.getObjectAt(0));
+        this.nonce = seq.size() == 3 ? ASN1Integer.getInstance(seq.getObjectAt(1)) : null;
+
+        ASN1Sequence path = ASN1Sequence.getInstance(seq.getObjectAt(seq.size() - 1));
+
+        this.reducedHashtree = new PartialHashtree[path.size()];
+        for (int i = 0; i != reducedHashtree.length; i++)
+        {
+            reducedHashtree[i] = PartialHashtree.getInstance(path.getObjectAt(i));
+        }
+    }
+
+    public BatchTimeStampPath(MessageImprint messageImprint, ASN1Integer nonce, PartialHashtree[] reducedHashtree)
+    {
+        this.messageImprint = messageImprint;
+        this.nonce = nonce;
+        this.reducedHashtree = copy(reducedHashtree);
+    }
+
+    public MessageImprint getMessageImprint()
+    {
+        return messageImprint;
+    }
+
+    public ASN1Integer getNonce()
+    {
+        return nonce;
+    }
+
+    public PartialHashtree[] getReducedHashtree()
+    {
+        return copy(reducedHashtree);
+    }
+
+    /**
+     * Return the structure the leaf hash is calculated over.
+     *
+     * @return SEQUENCE { messageImprint, nonce OPTIONAL }
+     */
+    public ASN1Sequence getLeafData()
+    {
+        ASN1EncodableVector v = new ASN1EncodableVector(2);
+
+        v.add(messageImprint);
+        if (nonce != null)
+        {
+            v.add(nonce);
+        }
+
+        return new DERSequence(v);
+    }
+
+    /**
+     * <pre>
+     *    BatchTimeStampPath ::= SEQUENCE {
+     *       messageImprint               MessageImprint,
+     *       nonce                        INTEGER OPTIONAL,
+     *       reducedHashtree              SEQUENCE OF PartialHashtree }
+     * </pre>
+     */
+    public ASN1Primitive toASN1Primitive()
+    {
+        ASN1EncodableVector v = new ASN1EncodableVector(3);
+
+        v.add(messageImprint);
+        if (nonce != null)
+        {
+            v.add(nonce);
+        }
+        v.add(new DERSequence(reducedHashtree));
+
+        return new DERSequence(v);
+    }
+
+    private static PartialHashtree[] copy(PartialHashtree[] trees)
+    {
+        PartialHashtree[] rv = new PartialHashtree[trees.length];
+
+        System.arraycopy(trees, 0, rv, 0, rv.length);
+
+        return rv;
+    }
+}
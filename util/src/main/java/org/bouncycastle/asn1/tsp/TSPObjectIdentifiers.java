@@ -0,0 +1,24 @@
+package org.bouncycastle.asn1.tsp;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+
+/**
+ * Object identifiers for the time-stamp extensions defined in this package.
+ */
+public interface TSPObjectIdentifiers
+{
+    /**
+     * The arc for the time-stamp extensions, a UUID based object identifier as described in ITU-T X.667, so the
+     * identifiers below it cannot clash with those assigned by anyone else.
+     * <p>
+     * 2.25.103925593543671615886297908088277164422
+     */
+    ASN1ObjectIdentifier id_tsp_ext = new ASN1ObjectIdentifier("2.25.103925593543671615886297908088277164422");
+
+    /**
+     * Unsigned attribute carrying the path to the signed root for a batched time-stamp token.
+     * <p>
+     * 2.25.103925593543671615886297908088277164422.1
+     */
+    ASN1ObjectIdentifier id_aa_batchTimeStampPath = id_tsp_ext.branch("1");
+}
@@ -33,6 +33,7 @@
     private final Map<String, ElementSupplier> supplierMap;
     private Element parent;
     private final int optionals;
+    private final int intBytesForRange;
     /**
      * This element is in the extension area of another element.
      */
@@ -68,6 +69,7 @@ public Element(
         this.block = block;
         this.optionals = optionals;
         this.defaultValuesInChildren = defaultValuesInChildren;
+        this.intBytesForRange = calculateIntBytesForRange(lowerBound, upperBound);
         if (supplierMap == null)
         {
             this.supplierMap = Collections.emptyMap();
@@ -104,6 +106,7 @@ public Element(Element element, Element parent)
         this.block = element.block;
         this.optionals = element.optionals;
         this.defaultValuesInChildren = element.defaultValuesInChildren;
+        this.intBytesForRange = element.intBytesForRange;
         for (Element e : this.children)
         {
             e.parent = this;
@@ -200,9 +203,14 @@ public boolean canBeNegative()
      */
     public int intBytesForRange()
     {
-        if (getLowerBound() != null && getUpperBound() != null)
+        return intBytesForRange;
+    }
+
+    private static int calculateIntBytesForRange(BigInteger lowerBound, BigInteger upperBound)
+    {
+        if (lowerBound != null && upperBound != null)
         {
-            if (BigInteger.ZERO.equals(getLowerBound()))
+            if (BigInteger.ZERO.equals(lowerBound))
             {
                 //
                 // Positive range.
@@ -210,7 +218,7 @@ public int intBytesForRange()
 
                 for (int i = 0, j = 1; i < OERDefinition.uIntMax.length; i++, j *= 2)
                 {
-                    if (getUpperBound().compareTo(OERDefinition.uIntMax[i]) < 0)
+                    if (upperBound.compareTo(OERDefinition.uIntMax[i]) < 0)
                     {
                         return j;
                     }
@@ -220,7 +228,7 @@ public int intBytesForRange()
             {
                 for (int i = 0, j = 1; i < OERDefinition.sIntRange.length; i++, j *= 2)
                 {
-                    if (getLowerBound().compareTo(OERDefinition.sIntRange[i][0]) >= 0 && getUpperBound().compareTo(OERDefinition.sIntRange[i][1]) < 0)
+                    if (lowerBound.compareTo(OERDefinition.sIntRange[i][0]) >= 0 && upperBound.compareTo(OERDefinition.sIntRange[i][1]) < 0)
                     {
                         return -j;
                     }
@@ -35,6 +35,24 @@
 
     private static final int[] bits = new int[]{1, 2, 4, 8, 16, 32, 64, 128};
     private static final int[] bitsR = new int[]{128, 64, 32, 16, 8, 4, 2, 1};
+
+    // INTEGERs with values in the range of a uint8 are shared, they are immutable.
+    private static final ASN1Integer[] smallIntegers = new ASN1Integer[256];
+    // Short form lengths.
+    private static final LengthInfo[] shortLengths = new LengthInfo[128];
+
+    static
+    {
+        for (int i = 0; i != smallIntegers.length; i++)
+        {
+            smallIntegers[i] = new ASN1Integer(i);
+        }
+        for (int i = 0; i != shortLengths.length; i++)
+        {
+            shortLengths[i] = new LengthInfo(i, true);
+        }
+    }
+
     protected PrintWriter debugOutput = null;
     private int maxByteAllocation = 1024 * 1024;
     protected PrintWriter debugStream = null;
@@ -63,6 +81,19 @@ public OERInputStream(InputStream src, int maxByteAllocation)
         this.maxByteAllocation = maxByteAllocation;
     }
 
+    /**
+     * Create an OER input over a byte array. Reads are made directly from the array, and open types are parsed in
+     * place rather than copied out first.
+     *
+     * @param src the encoding to parse.
+     * @param off the offset of the encoding in src.
+     * @param len the length of the encoding.
+     */
+    public OERInputStream(byte[] src, int off, int len)
+    {
+        super(new BufferInputStream(src, off, len));
+    }
+
     /**
      * Decode byte array.
      *
@@ -74,7 +105,7 @@ public OERInputStream(InputStream src, int maxByteAllocation)
     public static ASN1Encodable parse(byte[] src, Element element)
         throws IOException
     {
-        OERInputStream in = new OERInputStream(new ByteArrayInputStream(src));
+        OERInputStream in = new OERInputStream(src, 0, src.length);
         return in.parse(element);
     }
 
@@ -250,13 +281,7 @@ public ASN1Object parse(Element element)
                         if ((rawPresenceList[presenceIndex / 8] & bitsR[presenceIndex % 8]) != 0)
                         {
                             // skip.
-                            int len = readLength().intLength();
-                            while (--len >= 0)
-                            {
-                                in.read();
-                            }
-
-
+                            skipFully(readLength().intLength());
                         }
                     }
                     else
@@ -338,7 +363,18 @@ else if (choice.isUniversalTagClass())
             // Special fixed width cases used for signed and unsigned 8/16/24/32/64 bit numbers.
             //
             int bytesToRead = element.intBytesForRange();
-            if (bytesToRead != 0) // Fixed width
+            if (bytesToRead < 0 || (bytesToRead > 0 && bytesToRead < 8)) // Fixed width, fits a long
+            {
+                long value = readLong(bytesToRead < 0, Math.abs(bytesToRead));
+
+                if (debugOutput != null)
+                {
+                    debugPrint(element + ("INTEGER byteLen= " + Math.abs(bytesToRead) + " hex= " + Long.toHexString(value) + ")"));
+                }
+
+                return integer(value);
+            }
+            else if (bytesToRead != 0) // Fixed width
             {
                 data = allocateArray(Math.abs(bytesToRead));
                 Streams.readFully(this, data);
@@ -543,6 +579,55 @@ private ASN1Encodable absent(Element child)
         return OEROptional.ABSENT;
     }
 
+    private static ASN1Integer integer(long value)
+    {
+        if (value >= 0 && value < smallIntegers.length)
+        {
+            return smallIntegers[(int)value];
+        }
+        return new ASN1Integer(value);
+    }
+
+    private long readLong(boolean signed, int size)
+        throws IOException
+    {
+        int b = read();
+        if (b < 0)
+        {
+            throw new EOFException("integer not fully read");
+        }
+
+        long value = signed ? (byte)b : b;
+        for (int i = 1; i < size; i++)
+        {
+            b = read();
+            if (b < 0)
+            {
+                throw new EOFException("integer not fully read");
+            }
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+
+    private void skipFully(int len)
+        throws IOException
+    {
+        while (len > 0)
+        {
+            long skipped = in.skip(len);
+            if (skipped <= 0)
+            {
+                if (in.read() < 0)
+                {
+                    throw new EOFException("could not skip unknown extension");
+                }
+                skipped = 1;
+            }
+            len -= (int)skipped;
+        }
+    }
+
     private byte[] allocateArray(int requiredSize)
     {
         if (requiredSize > maxByteAllocation)
@@ -565,6 +650,90 @@ public BigInteger parseInt(boolean unsigned, int size)
 
     }
 
+    /**
+     * Read a fixed width unsigned 8 bit integer.
+     *
+     * @return the value read.
+     * @throws IOException if the stream ends first.
+     */
+    public int readUint8()
+        throws IOException
+    {
+        return (int)readLong(false, 1);
+    }
+
+    /**
+     * Read a fixed width unsigned 16 bit integer.
+     *
+     * @return the value read.
+     * @throws IOException if the stream ends first.
+     */
+    public int readUint16()
+        throws IOException
+    {
+        return (int)readLong(false, 2);
+    }
+
+    /**
+     * Read a fixed width unsigned 32 bit integer.
+     *
+     * @return the value read.
+     * @throws IOException if the stream ends first.
+     */
+    public long readUint32()
+        throws IOException
+    {
+        return readLong(false, 4);
+    }
+
+    /**
+     * Read a fixed width signed 8 bit integer.
+     *
+     * @return the value read.
+     * @throws IOException if the stream ends first.
+     */
+    public int readInt8()
+        throws IOException
+    {
+        return (int)readLong(true, 1);
+    }
+
+    /**
+     * Read a fixed width signed 16 bit integer.
+     *
+     * @return the value read.
+     * @throws IOException if the stream ends first.
+     */
+    public int readInt16()
+        throws IOException
+    {
+        return (int)readLong(true, 2);
+    }
+
+    /**
+     * Read a fixed width signed 32 bit integer.
+     *
+     * @return the value read.
+     * @throws IOException if the stream ends first.
+     */
+    public int readInt32()
+        throws IOException
+    {
+        return (int)readLong(true, 4);
+    }
+
+    /**
+     * Read a fixed width signed 64 bit integer.
+     *
+     * @return the value read.
+     * @throws IOException if the stream ends first.
+     */
+    public long readInt64()
+        throws IOException
+    {
+        return readLong(true, 8);
+    }
+
     public BigInteger uint8()
         throws Exception
     {
@@ -631,8 +800,11 @@ public LengthInfo readLength()
 
         if ((byteVal & 0x80) == 0) // short form 8.6.4
         {
-            debugPrint("Len (Short form): " + (byteVal & 0x7F));
-            return new LengthInfo(BigInteger.valueOf(byteVal & 0x7F), true);
+            if (debugOutput != null)
+            {
+                debugPrint("Len (Short form): " + (byteVal & 0x7F));
+            }
+            return shortLengths[byteVal & 0x7F];
         }
         else
         {
@@ -648,7 +820,7 @@ public LengthInfo readLength()
             // -DM Hex.toHexString
             debugPrint("Len (Long Form): " + (byteVal & 0x7F) + " actual len: " + Hex.toHexString(lengthInt));
 
-            return new LengthInfo(BigIntegers.fromUnsignedByteArray(lengthInt), false);
+            return new LengthInfo(BigIntegers.intValueExact(BigIntegers.fromUnsignedByteArray(lengthInt)), false);
         }
 
     }
@@ -692,6 +864,12 @@ protected ASN1Encodable parseOpenType(Element e)
         throws IOException
     {
         int len = readLength().intLength();
+        if (in instanceof BufferInputStream)
+        {
+            // parse the open type in place
+            return new OERInputStream(((BufferInputStream)in).slice(len)).parse(e);
+        }
+
         byte[] openTypeRaw = allocateArray(len);
         if (Streams.readFully(in, openTypeRaw) != openTypeRaw.length)
         {
@@ -985,10 +1163,10 @@ public String toString()
 
     private static final class LengthInfo
     {
-        private final BigInteger length;
+        private final int length;
         private final boolean shortForm;
 
-        public LengthInfo(BigInteger length, boolean shortForm)
+        public LengthInfo(int length, boolean shortForm)
         {
             this.length = length;
             this.shortForm = shortForm;
@@ -996,7 +1174,70 @@ public LengthInfo(BigInteger length, boolean shortForm)
 
         private int intLength()
         {
-            return BigIntegers.intValueExact(length);
+            return length;
+        }
+    }
+
+    /**
+     * Unsynchronized input over a byte array, which can be sliced to parse nested encodings in place.
+     */
+    private static final class BufferInputStream
+        extends InputStream
+    {
+        private final byte[] buf;
+        private final int end;
+        private int pos;
+
+        BufferInputStream(byte[] buf, int off, int len)
+        {
+            if (off < 0 || len < 0 || off > buf.length - len)
+            {
+                throw new IndexOutOfBoundsException("invalid offset/length for buffer");
+            }
+            this.buf = buf;
+            this.pos = off;
+            this.end = off + len;
+        }
+
+        public int read()
+        {
+            return pos < end ? buf[pos++] & 0xFF : -1;
+        }
+
+        public int read(byte[] b, int off, int len)
+        {
+            if (pos >= end)
+            {
+                return len == 0 ? 0 : -1;
+            }
+            int count = Math.min(len, end - pos);
+            System.arraycopy(buf, pos, b, off, count);
+            pos += count;
+            return count;
+        }
+
+        public long skip(long n)
+        {
+            int count = (int)Math.max(0L, Math.min(n, (long)(end - pos)));
+            pos += count;
+            return count;
+        }
+
+        public int available()
+        {
+            return end - pos;
+        }
+
+        BufferInputStream slice(int len)
+            throws EOFException
+        {
+            if (len > end - pos)
+            {
+                throw new EOFException("did not fully read open type as raw bytes");
+            }
+            BufferInputStream slice = new BufferInputStream(buf, pos, len);
+            pos += len;
+            return slice;
         }
     }
 
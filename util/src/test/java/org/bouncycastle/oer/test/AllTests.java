@@ -40,6 +40,7 @@ public static Test suite()
         suite.addTestSuite(AllTests.class);
         suite.addTestSuite(TestBuilders.class);
         suite.addTestSuite(OERExtensionTest.class);
+        suite.addTestSuite(OERInputStreamTest.class);
 
         return new BCTestSetup(suite);
     }
@@ -0,0 +1,135 @@
+package org.bouncycastle.oer.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigInteger;
+
+import junit.framework.TestCase;
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.oer.Element;
+import org.bouncycastle.oer.OERDefinition;
+import org.bouncycastle.oer.OEREncoder;
+import org.bouncycastle.oer.OERInputStream;
+import org.bouncycastle.oer.its.etsi103097.EtsiTs103097DataEncrypted;
+import org.bouncycastle.oer.its.template.ieee1609dot2.IEEE1609dot2;
+import org.bouncycastle.oer.its.template.ieee1609dot2.basetypes.Ieee1609Dot2BaseTypes;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.encoders.Hex;
+
+public class OERInputStreamTest
+    extends TestCase
+{
+    private static final byte[] encryptedData = Hex.decode(
+        "03820101826cc2023b5115003e8083996da81b76fbdcaae0289abddfaf2b7198"
+            + "456dbe5495e58c7c61e32a2c2610ca49a6e39470e44e37f302da99da444426f3"
+            + "68211d919a06c57b574647b97ccc5180eaf3a6736b866446b150131382011c1e"
+            + "56af1083537123946957844cc5906698a777dddc317966a3920e16cfad39c697"
+            + "7f28156bd849b57e33b2a9abd1caa8a08520084214b865a355f6d274c3a64694"
+            + "b81b605b729c2a6fbe88c561e591a055713698d40cabe196b1c96fefccc05f97"
+            + "7beef6ce3528950c0e05f1c43749fd06114641c0442d0c952eb2eb0fa6b6f0b3"
+            + "142c6a7e170c2520edf79076c0b6000d4216af50a72955a28e48b0d5ba14b05e"
+            + "3ed4e5220c8bcc207070f6738b3b6ecabe056584b971df2a515bccd129bb614d"
+            + "2666a461542fa4c4d25a67a91bacda14fba0310cb937fa9d5d3351f17272eef2"
+            + "b6e492c3d7a02df81befed05139ce58a9c7f5d2f24f8acd99c4f8a8adbdd6a53"
+            + "5f89a8a406430d3a335caa563b35bbb0733379d58f9056d017fdd7");
+
+    public void testPrimitiveReaders()
+        throws Exception
+    {
+        byte[] data = Hex.decode("ff" + "fffe" + "fffffffd" + "80" + "8000" + "80000000" + "8000000000000001");
+
+        OERInputStream in = new OERInputStream(data, 0, data.length);
+        assertEquals(0xff, in.readUint8());
+        assertEquals(0xfffe, in.readUint16());
+        assertEquals(0xfffffffdL, in.readUint32());
+        assertEquals(-128, in.readInt8());
+        assertEquals(-32768, in.readInt16());
+        assertEquals(Integer.MIN_VALUE, in.readInt32());
+        assertEquals(Long.MIN_VALUE + 1, in.readInt64());
+        assertEquals(-1, in.read());
+
+        in = new OERInputStream(new ByteArrayInputStream(data));
+        assertEquals(0xff, in.readUint8());
+        assertEquals(0xfffe, in.readUint16());
+        assertEquals(0xfffffffdL, in.readUint32());
+        assertEquals(-128, in.readInt8());
+    }
+
+    public void testTruncatedPrimitive()
+        throws Exception
+    {
+        byte[] data = Hex.decode("010203");
+
+        OERInputStream in = new OERInputStream(data, 0, data.length);
+        try
+        {
+            in.readUint32();
+            fail("no exception");
+        }
+        catch (EOFException e)
+        {
+            // expected
+        }
+
+        in = new OERInputStream(data, 1, 2);
+        assertEquals(0x0203, in.readUint16());
+        assertEquals(-1, in.read());
+    }
+
+    public void testFixedWidthIntegers()
+        throws Exception
+    {
+        checkInteger(Ieee1609Dot2BaseTypes.UINT8.build(), new ASN1Integer(0xfe));
+        checkInteger(Ieee1609Dot2BaseTypes.UINT16.build(), new ASN1Integer(0xfedc));
+        checkInteger(Ieee1609Dot2BaseTypes.UINT32.build(), new ASN1Integer(0xfedcba98L));
+        checkInteger(Ieee1609Dot2BaseTypes.UINT64.build(), new ASN1Integer(BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE)));
+        checkInteger(OERDefinition.integer(-128, 127).build(), new ASN1Integer(-100));
+        checkInteger(OERDefinition.integer(-32768, 32767).build(), new ASN1Integer(-30000));
+        checkInteger(OERDefinition.integer(Integer.MIN_VALUE, Integer.MAX_VALUE).build(), new ASN1Integer(-70000));
+        checkInteger(OERDefinition.integer(Long.MIN_VALUE, Long.MAX_VALUE).build(), new ASN1Integer(Long.MIN_VALUE));
+    }
+
+    public void testParseFromArray()
+        throws Exception
+    {
+        Element definition = IEEE1609dot2.Ieee1609Dot2Data.build();
+
+        ASN1Encodable fromStream = new OERInputStream(new ByteArrayInputStream(encryptedData)).parse(definition);
+        ASN1Encodable fromArray = OERInputStream.parse(encryptedData, definition);
+
+        assertEquals(fromStream.toASN1Primitive(), fromArray.toASN1Primitive());
+        assertNotNull(EtsiTs103097DataEncrypted.getInstance(fromArray));
+
+        byte[] padded = Arrays.concatenate(new byte[3], encryptedData, new byte[3]);
+        ASN1Encodable fromSlice = new OERInputStream(padded, 3, encryptedData.length).parse(definition);
+
+        assertEquals(fromStream.toASN1Primitive(), fromSlice.toASN1Primitive());
+    }
+
+    public void testTruncatedArray()
+        throws Exception
+    {
+        Element definition = IEEE1609dot2.Ieee1609Dot2Data.build();
+
+        try
+        {
+            new OERInputStream(encryptedData, 0, encryptedData.length - 20).parse(definition);
+            fail("no exception");
+        }
+        catch (IOException e)
+        {
+            // expected
+        }
+    }
+
+    private void checkInteger(Element definition, ASN1Integer value)
+        throws Exception
+    {
+        byte[] encoding = OEREncoder.toByteArray(value, definition);
+
+        assertEquals(value, OERInputStream.parse(encoding, definition));
+        assertEquals(value, new OERInputStream(new ByteArrayInputStream(encoding)).parse(definition));
+    }
+}